@@ -0,0 +1,77 @@
+#!/bin/sh
+#
+# Copyright (c) 2018 Oracle and/or its affiliates. All rights reserved.
+#
+# This program and the accompanying materials are made available under the
+# terms of the Eclipse Public License v. 2.0, which is available at
+# http://www.eclipse.org/legal/epl-2.0.
+#
+# This Source Code may also be made available under the following Secondary
+# Licenses when the conditions for such availability set forth in the
+# Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+# version 2 with the GNU Classpath Exception, which is available at
+# https://www.gnu.org/software/classpath/license.html.
+#
+# SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+#
+
+#
+# Runs the benchmarks against a revision and records the JMH results in
+# benchmarks/baselines/<name>.json.
+#
+#     benchmarks/baselines/record.sh <revision> <name> [JMH options]
+#
+# The revision is checked out in a temporary worktree and built with a local
+# Maven repository of its own, so the benchmarks only ever run against the
+# classes of that revision, never against SNAPSHOT artifacts installed from
+# another checkout.  Dependencies are downloaded into that repository again
+# on every run.  Revisions from before the benchmarks module was added get
+# the module of the current checkout, and revisions from before impl
+# published its test classes get their test jar built here.
+#
+
+set -e
+
+if [ $# -lt 2 ]; then
+    echo "usage: $0 <revision> <name> [JMH options]" >&2
+    exit 1
+fi
+
+revision=$1
+name=$2
+shift 2
+
+root=$(git rev-parse --show-toplevel)
+work=$(mktemp -d)
+repo="$work/.repository"
+trap 'git -C "$root" worktree remove --force "$work"' EXIT
+
+git -C "$root" worktree add --detach "$work" "$revision"
+
+build() {
+    (cd "$work" && mvn -B -Dmaven.repo.local="$repo" "$@")
+}
+
+build install -DskipTests
+version=$(build -q -N org.apache.maven.plugins:maven-help-plugin:3.2.0:evaluate \
+                -Dexpression=project.version -DforceStdout)
+
+if ! ls "$work"/impl/target/*-tests.jar > /dev/null 2>&1; then
+    # -DskipTests still compiled the test classes
+    build -f impl/pom.xml jar:test-jar
+    build install:install-file -Dfile="$(ls "$work"/impl/target/*-tests.jar)" \
+          -DgroupId=org.glassfish -DartifactId=javax.faces -Dversion="$version" \
+          -Dpackaging=jar -Dclassifier=tests
+fi
+
+if [ ! -f "$work/benchmarks/pom.xml" ]; then
+    mkdir -p "$work/benchmarks"
+    cp -R "$root/benchmarks/pom.xml" "$root/benchmarks/src" "$work/benchmarks/"
+    sed -i.orig "/<parent>/,/<\/parent>/ s|<version>.*</version>|<version>$version</version>|" \
+        "$work/benchmarks/pom.xml"
+fi
+
+build -f benchmarks/pom.xml package
+
+java -jar "$work/benchmarks/target/benchmarks.jar" \
+     -rf json -rff "$root/benchmarks/baselines/$name.json" "$@"
@@ -0,0 +1,687 @@
+/*
+ * Copyright (c) 1997, 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.faces.benchmarks;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import com.sun.faces.config.WebConfiguration;
+
+/**
+ * <p>
+ * The text and attribute escaping of <code>com.sun.faces.util.HtmlUtils</code>
+ * as it was before it became table driven, kept unchanged as the baseline
+ * of {@link HtmlUtilsBenchmark}.
+ * </p>
+ */
+final class BaselineHtmlUtils {
+
+    static public void writeText(Writer out,
+                                 boolean escapeUnicode,
+                                 boolean escapeIsocode, char[] buffer,
+                                 char[] text) throws IOException {
+        writeText(out, escapeUnicode, escapeIsocode, buffer, text, 0, text.length);
+    }
+
+
+    /**
+     * Write char array text.
+     */
+    static public void writeText(Writer out,
+                                 boolean escapeUnicode,
+                                 boolean escapeIsocode, char[] buff,
+                                 char[] text,
+                                 int start,
+                                 int length) throws IOException {
+        int buffLength = buff.length;
+        int buffIndex = 0;
+
+        int end = start + length;
+        for (int i = start; i < end; i++) {
+            buffIndex = writeTextChar(out, escapeUnicode, escapeIsocode, text[i], buffIndex, buff, buffLength);
+        }
+
+        flushBuffer(out, buff, buffIndex);
+    }
+
+
+    /**
+     * Write String text.  
+     */
+    static public void writeText(Writer out,
+                                 boolean escapeUnicode,
+                                 boolean escapeIsocode, char[] buff,
+                                 String text,
+                                 char[] textBuff) throws IOException {
+
+        int length = text.length();
+
+        if (length >= 16) {
+            text.getChars(0, length, textBuff, 0);
+            writeText(out, escapeUnicode, escapeIsocode, buff, textBuff, 0, length);
+        } else {
+            int buffLength = buff.length;
+            int buffIndex = 0;
+            for (int i = 0; i < length; i++) {
+                char ch = text.charAt(i);
+                buffIndex = writeTextChar(out, escapeUnicode, escapeIsocode, ch, buffIndex, buff, buffLength);
+            }
+            flushBuffer(out, buff, buffIndex);
+        }
+
+        
+    }
+
+    private static int writeTextChar(Writer out,
+                                     boolean escapeUnicode,
+                                     boolean escapeIsocode,
+                                     char ch,
+                                     int buffIndex,
+                                     char[] buff,
+                                     int buffLength) throws IOException {
+        int nextIndex;
+        if (ch <= 0x1f) {
+            if (!isPrintableControlChar(ch)) {
+                return buffIndex;
+            }
+        }
+        if (ch < 0xA0) {
+            // If "?" or over, no escaping is needed (this covers
+            // most of the Latin alphabet)
+            if (ch >= 0x3f) {
+                nextIndex = addToBuffer(out, buff, buffIndex,
+                                        buffLength, ch);
+            } else if (ch >= 0x27) {  // If above "'"...
+                // If between "'" and ";", no escaping is needed
+                if (ch < 0x3c) {
+                    nextIndex = addToBuffer(out, buff, buffIndex,
+                                            buffLength, ch);
+                } else if (ch == '<') {
+                    nextIndex = addToBuffer(out,
+                                            buff,
+                                            buffIndex,
+                                            buffLength,
+                                            LT_CHARS);
+                } else if (ch == '>') {
+                    nextIndex = addToBuffer(out,
+                                            buff,
+                                            buffIndex,
+                                            buffLength,
+                                            GT_CHARS);
+                } else {
+                    nextIndex = addToBuffer(out, buff, buffIndex,
+                                            buffLength, ch);
+                }
+            } else {
+                if (ch == '&') {
+                    nextIndex = addToBuffer(out,
+                                            buff,
+                                            buffIndex,
+                                            buffLength,
+                                            AMP_CHARS);
+                } else if (ch == '"') {
+                        nextIndex = addToBuffer(out,
+                             buff,
+                             buffIndex,
+                             buffLength,
+                             "\"".toCharArray());
+                } else {
+                    nextIndex = addToBuffer(out, buff, buffIndex,
+                                            buffLength, ch);
+                }
+            }
+        } else if (ch <= 0xff) {
+            if (escapeIsocode) {
+                // ISO-8859-1 entities: encode as needed
+                nextIndex = addToBuffer(out,
+                                        buff,
+                                        buffIndex,
+                                        buffLength,
+                                        sISO8859_1_Entities[ch - 0xA0]);
+            }
+            else {
+                nextIndex = addToBuffer(out, buff, buffIndex,
+                        buffLength, ch);
+            }
+        } else {
+            if(escapeUnicode) {
+                // UNICODE entities: encode as needed
+                nextIndex =
+                      _writeDecRef(out, buff, buffIndex, buffLength, ch);
+            } else {
+                nextIndex = addToBuffer(out, buff, buffIndex,
+                        buffLength, ch);
+            }
+        }
+        return nextIndex;
+    }
+
+
+    /**
+     * Write a string attribute.  Note that this code
+     * is duplicated below for character arrays - change both
+     * places if you make any changes!!!
+     */
+    static public void writeAttribute(Writer out,
+                                      boolean escapeUnicode,
+                                      boolean escapeIsocode,
+                                      char[] buff,
+                                      String text,
+                                      char[] textBuff,
+                                      boolean isScriptInAttributeValueEnabled) throws IOException {
+
+        int length = text.length();
+        if (length >= 16) {
+            if (length > textBuff.length) {
+                // resize our buffer
+                textBuff = new char[length * 2];
+            }
+            text.getChars(0, length, textBuff, 0);
+            writeAttribute(out, escapeUnicode, escapeIsocode, buff, textBuff, 0, length,
+                    isScriptInAttributeValueEnabled);
+        } else {
+            int buffLength = buff.length;
+            int buffIndex = 0;
+            for (int i = 0; i < length; i++) {
+                char ch = text.charAt(i);
+
+                if (ch <= 0x1f) {
+                    if (!isPrintableControlChar(ch)) {
+                        continue;
+                    }
+                }
+                // Tilde or less...
+                if (ch < 0xA0) {
+                    // If "?" or over, no escaping is needed (this covers
+                    // most of the Latin alphabet)
+                    if (ch >= 0x3f) {
+                        if (ch == 's') {
+                            // If putting scripts in attribute values
+                            // has been disabled (the defualt), look for
+                            // script: in the attribute value.
+                            // ensure the attribute value is long enough
+                            // to accomodate "script:"
+                            if (!isScriptInAttributeValueEnabled &&
+                                    ((i + 6) < text.length())) {
+                                if ('c' == text.charAt(i + 1) &&
+                                    'r' == text.charAt(i + 2) &&
+                                    'i' == text.charAt(i + 3) &&
+                                    'p' == text.charAt(i + 4) &&
+                                    't' == text.charAt(i + 5) &&
+                                    ':' == text.charAt(i + 6)) {
+                                    return;
+                                }
+                            }
+                        }
+                        buffIndex = addToBuffer(out, buff, buffIndex,
+                                                buffLength, ch);
+                    } else if (ch >= 0x27) { // If above "'"...
+                        // If between "'" and ";", no escaping is needed
+                        if (ch < 0x3c) {
+                            buffIndex = addToBuffer(out, buff, buffIndex,
+                                                    buffLength, ch);
+                        } else if (ch == '<') {
+                            buffIndex = addToBuffer(out,
+                                                    buff,
+                                                    buffIndex,
+                                                    buffLength,
+                                                    LT_CHARS);
+                        } else if (ch == '>') {
+                            buffIndex = addToBuffer(out,
+                                                    buff,
+                                                    buffIndex,
+                                                    buffLength,
+                                                    GT_CHARS);
+                        } else {
+                            buffIndex = addToBuffer(out, buff, buffIndex,
+                                                    buffLength, ch);
+                        }
+                    } else {
+                        if (ch == '&') {
+                            // HTML 4.0, section B.7.1: ampersands followed by
+                            // an open brace don't get escaped
+                            if ((i + 1 < length) && (text.charAt(i + 1)
+                                                     == '{')) {
+                                buffIndex = addToBuffer(out,
+                                                        buff,
+                                                        buffIndex,
+                                                        buffLength,
+                                                        ch);
+                            } else {
+                                buffIndex = addToBuffer(out,
+                                                        buff,
+                                                        buffIndex,
+                                                        buffLength,
+                                                        AMP_CHARS);
+                            }
+                        } else if (ch == '"') {
+                            buffIndex = addToBuffer(out,
+                                                    buff,
+                                                    buffIndex,
+                                                    buffLength,
+                                                    QUOT_CHARS);
+                        } else {
+                            buffIndex = addToBuffer(out, buff, buffIndex,
+                                                    buffLength, ch);
+                        }
+                    }
+                } else if (ch <= 0xff) {
+                    if (escapeIsocode) {
+                        // ISO-8859-1 entities: encode as needed
+                        buffIndex = addToBuffer(out,
+                                                buff,
+                                                buffIndex,
+                                                buffLength,
+                                                sISO8859_1_Entities[ch - 0xA0]);
+                    } else {
+                        buffIndex = addToBuffer(out, buff, buffIndex,
+                                                buffLength, ch);
+                    }
+                } else {
+                    if(escapeUnicode) {
+                        // UNICODE entities: encode as needed
+                        buffIndex =
+                              _writeDecRef(out, buff, buffIndex, buffLength, ch);
+                    } else {
+                        buffIndex = addToBuffer(out, buff, buffIndex,
+                                buffLength, ch);
+                    }
+                }
+            }
+
+            flushBuffer(out, buff, buffIndex);
+        }
+    }
+
+
+    static public void writeAttribute(Writer out,
+                                      boolean escapeUnicode,
+                                      boolean escapeIsocode,
+                                      char[] buffer,
+                                      char[] text) throws IOException {
+        writeAttribute(out, escapeUnicode, escapeIsocode, buffer, text, 0, text.length,
+                WebConfiguration.BooleanWebContextInitParameter.EnableScriptInAttributeValue.getDefaultValue());
+    }
+
+
+    /**
+     * Write a character array attribute.  Note that this code
+     * is duplicated above for string - change both places if you make
+     * any changes!!!
+     */
+    static public void writeAttribute(Writer out,
+                                      boolean escapeUnicode,
+                                      boolean escapeIsocode,
+                                      char[] buff,
+                                      char[] text,
+                                      int start,
+                                      int length,
+                                      boolean isScriptInAttributeValueEnabled) throws IOException {
+        int buffLength = buff.length;
+        int buffIndex = 0;
+
+        int end = start + length;
+        for (int i = start; i < end; i++) {
+            char ch = text[i];
+
+            // "Application Program Command" or less...
+            if (ch <= 0x1f) {
+                if (!isPrintableControlChar(ch)) {
+                    continue;
+                }
+            }
+            if (ch < 0xA0) {
+                // If "?" or over, no escaping is needed (this covers
+                // most of the Latin alphabet)
+                if (ch >= 0x3f) {
+                    if (ch == 's') {
+                        // If putting scripts in attribute values
+                        // has been disabled (the defualt), look for
+                        // script: in the attribute value.  
+                        // ensure the attribute value is long enough
+                        // to accomodate "script:"
+                        if (!isScriptInAttributeValueEnabled &&
+                                ((i + 6) < text.length)) {
+                            if ('c' == text[i + 1] &&
+                                'r' == text[i + 2] &&
+                                'i' == text[i + 3] &&
+                                'p' == text[i + 4] &&
+                                't' == text[i + 5] &&
+                                ':' == text[i + 6]) {
+                                return;
+                            }
+                        }
+                    }
+                    
+                    buffIndex = addToBuffer(out, buff, buffIndex,
+                                            buffLength, ch);
+                } else if (ch >= 0x27) { // If above "'"...
+                    if (ch < 0x3c) {
+                        // If between "'" and ";", no escaping is needed
+                        buffIndex = addToBuffer(out, buff, buffIndex,
+                                                buffLength, ch);                       
+                    } else if (ch == '<') {
+                        buffIndex = addToBuffer(out,
+                                                buff,
+                                                buffIndex,
+                                                buffLength,
+                                                LT_CHARS);
+                    } else if (ch == '>') {
+                        buffIndex = addToBuffer(out,
+                                                buff,
+                                                buffIndex,
+                                                buffLength,
+                                                GT_CHARS);
+                    } else {
+                        buffIndex = addToBuffer(out, buff, buffIndex,
+                                                buffLength, ch);
+                    }
+                } else {
+                    if (ch == '&') {
+                        // HTML 4.0, section B.7.1: ampersands followed by
+                        // an open brace don't get escaped
+                        if ((i + 1 < end) && (text[i + 1] == '{')) {
+                            buffIndex = addToBuffer(out,
+                                                    buff,
+                                                    buffIndex,
+                                                    buffLength,
+                                                    ch);
+                        } else {
+                            buffIndex = addToBuffer(out,
+                                                buff,
+                                                buffIndex,
+                                                buffLength,
+                                                AMP_CHARS);
+                        }
+                    } else if (ch == '"') {
+                        buffIndex = addToBuffer(out,
+                                                buff,
+                                                buffIndex,
+                                                buffLength,
+                                                QUOT_CHARS);
+                    } else {
+                        buffIndex = addToBuffer(out, buff, buffIndex,
+                                                buffLength, ch);
+                    }
+                }
+            } else if (ch <= 0xff) {
+                if (escapeIsocode) {
+                    // ISO-8859-1 entities: encode as needed
+                    buffIndex = addToBuffer(out,
+                                            buff,
+                                            buffIndex,
+                                            buffLength,
+                                            sISO8859_1_Entities[ch - 0xA0]);
+                }
+                else {
+                    buffIndex = addToBuffer(out, buff, buffIndex,
+                            buffLength, ch);
+                }
+            } else {
+                if(escapeUnicode) {
+                    // UNICODE entities: encode as needed
+                    buffIndex = _writeDecRef(out, buff, buffIndex, buffLength, ch);
+                } else {
+                    buffIndex = addToBuffer(out, buff, buffIndex,
+                            buffLength, ch);
+                }
+            }
+        }
+
+        flushBuffer(out, buff, buffIndex);
+    }
+
+
+    static private boolean isPrintableControlChar(int ch) {
+
+        return (ch == 0x09 || ch == 0x0A || ch == 0x0C || ch == 0x0D);
+
+    }
+
+
+    /**
+     * Writes a character as a decimal escape.  Hex escapes are smaller than
+     * the decimal version, but Netscape didn't support hex escapes until
+     * 4.7.4.
+     */
+    static private int _writeDecRef(Writer out,
+                                    char[] buffer,
+                                    int bufferIndex,
+                                    int bufferLength,
+                                    char ch) throws IOException {
+        if (ch == '\u20ac') {
+            bufferIndex = addToBuffer(out,
+                                      buffer,
+                                      bufferIndex,
+                                      bufferLength,
+                                      EURO_CHARS);
+            return bufferIndex;
+        }
+        bufferIndex = addToBuffer(out,
+                                  buffer,
+                                  bufferIndex,
+                                  bufferLength,
+                                  DEC_REF_START);
+        // Formerly used String.valueOf().  This version tests out
+        // about 40% faster in a microbenchmark (and on systems where GC is
+        // going gonzo, it should be even better)
+        int i = (int) ch;
+        if (i > 10000) {
+            bufferIndex = addToBuffer(out, buffer, bufferIndex, bufferLength, ((char) ('0' + (i / 10000))));
+            i = i % 10000;
+            bufferIndex = addToBuffer(out, buffer, bufferIndex, bufferLength, ((char) ('0' + (i / 1000))));
+            i = i % 1000;
+            bufferIndex = addToBuffer(out, buffer, bufferIndex, bufferLength, ((char) ('0' + (i / 100))));
+            i = i % 100;
+            bufferIndex = addToBuffer(out, buffer, bufferIndex, bufferLength, ((char) ('0' + (i / 10))));
+            i = i % 10;
+            bufferIndex = addToBuffer(out, buffer, bufferIndex, bufferLength, ((char) ('0' + i)));
+        } else if (i > 1000) {
+            bufferIndex = addToBuffer(out, buffer, bufferIndex, bufferLength, ((char) ('0' + (i / 1000))));
+            i = i % 1000;
+            bufferIndex = addToBuffer(out, buffer, bufferIndex, bufferLength, ((char) ('0' + (i / 100))));
+            i = i % 100;
+            bufferIndex = addToBuffer(out, buffer, bufferIndex, bufferLength, ((char) ('0' + (i / 10))));
+            i = i % 10;
+            bufferIndex = addToBuffer(out, buffer, bufferIndex, bufferLength, ((char) ('0' + i)));
+        } else {
+            bufferIndex = addToBuffer(out, buffer, bufferIndex, bufferLength, ((char) ('0' + (i / 100))));
+            i = i % 100;
+            bufferIndex = addToBuffer(out, buffer, bufferIndex, bufferLength, ((char) ('0' + (i / 10))));
+            i = i % 10;
+            bufferIndex = addToBuffer(out, buffer, bufferIndex, bufferLength, ((char) ('0' + i)));
+        }
+
+        return addToBuffer(out, buffer, bufferIndex, bufferLength, ';');
+        
+    }
+
+    // 
+    // Buffering scheme: we use a tremendously simple buffering
+    // scheme that greatly reduces the number of calls into the
+    // Writer/PrintWriter.  In practice this has produced significant
+    // measured performance gains (at least in JDK 1.3.1).
+    //
+
+    /**
+     * Add a character to the buffer, flushing the buffer if the buffer is
+     * full, and returning the new buffer index
+     */
+    private static int addToBuffer(Writer out,
+                                   char[] buffer,
+                                   int bufferIndex,
+                                   int bufferLength,
+                                   char ch) throws IOException {
+        if (bufferIndex >= bufferLength) {
+            out.write(buffer, 0, bufferIndex);
+            bufferIndex = 0;
+        }
+
+        buffer[bufferIndex] = ch;
+
+        return bufferIndex + 1;
+    }
+
+    /**
+     * Add an array of characters to the buffer, flushing the buffer
+     * if the buffer is full, and returning the new buffer index. 
+     */
+    private static int addToBuffer(Writer out,
+                                   char[] buffer,
+                                   int bufferIndex,
+                                   int bufferLength,
+                                   char[] toAdd) throws IOException {
+
+        if (bufferIndex >= bufferLength
+            || (toAdd.length + bufferIndex >= bufferLength)) {
+            out.write(buffer, 0, bufferIndex);
+            bufferIndex = 0;
+        }
+        System.arraycopy(toAdd, 0, buffer, bufferIndex, toAdd.length);
+        return bufferIndex + toAdd.length;
+
+    }
+
+
+    /**
+     * Flush the contents of the buffer to the output stream
+     * and return the reset buffer index
+     */
+    private static int flushBuffer(Writer out,
+                                   char[] buffer,
+                                   int bufferIndex) throws IOException {
+        if (bufferIndex > 0)
+            out.write(buffer, 0, bufferIndex);
+
+        return 0;
+    }
+
+
+    private BaselineHtmlUtils() {
+    }
+
+
+    static private final char[] AMP_CHARS = "&amp;".toCharArray();
+    static private final char[] QUOT_CHARS = "&quot;".toCharArray();
+    static private final char[] GT_CHARS = "&gt;".toCharArray();
+    static private final char[] LT_CHARS = "&lt;".toCharArray();
+    static private final char[] EURO_CHARS = "&euro;".toCharArray();
+    static private final char[] DEC_REF_START = "&#".toCharArray();
+
+    //
+    // Entities from HTML 4.0, section 24.2.1; character codes 0xA0 to 0xFF
+    //
+    static private char[][] sISO8859_1_Entities = new char[][]{
+        "&nbsp;".toCharArray(),
+        "&iexcl;".toCharArray(),
+        "&cent;".toCharArray(),
+        "&pound;".toCharArray(),
+        "&curren;".toCharArray(),
+        "&yen;".toCharArray(),
+        "&brvbar;".toCharArray(),
+        "&sect;".toCharArray(),
+        "&uml;".toCharArray(),
+        "&copy;".toCharArray(),
+        "&ordf;".toCharArray(),
+        "&laquo;".toCharArray(),
+        "&not;".toCharArray(),
+        "&shy;".toCharArray(),
+        "&reg;".toCharArray(),
+        "&macr;".toCharArray(),
+        "&deg;".toCharArray(),
+        "&plusmn;".toCharArray(),
+        "&sup2;".toCharArray(),
+        "&sup3;".toCharArray(),
+        "&acute;".toCharArray(),
+        "&micro;".toCharArray(),
+        "&para;".toCharArray(),
+        "&middot;".toCharArray(),
+        "&cedil;".toCharArray(),
+        "&sup1;".toCharArray(),
+        "&ordm;".toCharArray(),
+        "&raquo;".toCharArray(),
+        "&frac14;".toCharArray(),
+        "&frac12;".toCharArray(),
+        "&frac34;".toCharArray(),
+        "&iquest;".toCharArray(),
+        "&Agrave;".toCharArray(),
+        "&Aacute;".toCharArray(),
+        "&Acirc;".toCharArray(),
+        "&Atilde;".toCharArray(),
+        "&Auml;".toCharArray(),
+        "&Aring;".toCharArray(),
+        "&AElig;".toCharArray(),
+        "&Ccedil;".toCharArray(),
+        "&Egrave;".toCharArray(),
+        "&Eacute;".toCharArray(),
+        "&Ecirc;".toCharArray(),
+        "&Euml;".toCharArray(),
+        "&Igrave;".toCharArray(),
+        "&Iacute;".toCharArray(),
+        "&Icirc;".toCharArray(),
+        "&Iuml;".toCharArray(),
+        "&ETH;".toCharArray(),
+        "&Ntilde;".toCharArray(),
+        "&Ograve;".toCharArray(),
+        "&Oacute;".toCharArray(),
+        "&Ocirc;".toCharArray(),
+        "&Otilde;".toCharArray(),
+        "&Ouml;".toCharArray(),
+        "&times;".toCharArray(),
+        "&Oslash;".toCharArray(),
+        "&Ugrave;".toCharArray(),
+        "&Uacute;".toCharArray(),
+        "&Ucirc;".toCharArray(),
+        "&Uuml;".toCharArray(),
+        "&Yacute;".toCharArray(),
+        "&THORN;".toCharArray(),
+        "&szlig;".toCharArray(),
+        "&agrave;".toCharArray(),
+        "&aacute;".toCharArray(),
+        "&acirc;".toCharArray(),
+        "&atilde;".toCharArray(),
+        "&auml;".toCharArray(),
+        "&aring;".toCharArray(),
+        "&aelig;".toCharArray(),
+        "&ccedil;".toCharArray(),
+        "&egrave;".toCharArray(),
+        "&eacute;".toCharArray(),
+        "&ecirc;".toCharArray(),
+        "&euml;".toCharArray(),
+        "&igrave;".toCharArray(),
+        "&iacute;".toCharArray(),
+        "&icirc;".toCharArray(),
+        "&iuml;".toCharArray(),
+        "&eth;".toCharArray(),
+        "&ntilde;".toCharArray(),
+        "&ograve;".toCharArray(),
+        "&oacute;".toCharArray(),
+        "&ocirc;".toCharArray(),
+        "&otilde;".toCharArray(),
+        "&ouml;".toCharArray(),
+        "&divide;".toCharArray(),
+        "&oslash;".toCharArray(),
+        "&ugrave;".toCharArray(),
+        "&uacute;".toCharArray(),
+        "&ucirc;".toCharArray(),
+        "&uuml;".toCharArray(),
+        "&yacute;".toCharArray(),
+        "&thorn;".toCharArray(),
+        "&yuml;".toCharArray()
+    };
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 1997, 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.faces.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.faces.component.UIComponent;
+import javax.faces.context.FacesContext;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * <p>
+ * <code>UIComponentBase.getClientId</code> for every component of a view of
+ * 200 components in nested naming containers, both when the client ids are
+ * cached and when they have to be computed, as after the ids are reset while
+ * iterating.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClientIdBenchmark {
+
+    private FacesEnvironment environment;
+    private UIComponent[] components;
+
+
+    // ------------------------------------------------------------------- Setup
+
+
+    @Setup(Level.Trial)
+    public void setUp() {
+
+        environment = new FacesEnvironment(Collections.<String, String>emptyMap());
+        List<UIComponent> list = new ArrayList<>();
+        collect(environment.createView("/clientId.xhtml", 4, 25), list);
+        components = list.toArray(new UIComponent[list.size()]);
+
+    }
+
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+
+        environment.release();
+
+    }
+
+
+    // -------------------------------------------------------------- Benchmarks
+
+
+    @Benchmark
+    public void cached(Blackhole blackhole) {
+
+        FacesContext context = environment.facesContext;
+        for (UIComponent component : components) {
+            blackhole.consume(component.getClientId(context));
+        }
+
+    }
+
+
+    @Benchmark
+    public void computed(Blackhole blackhole) {
+
+        FacesContext context = environment.facesContext;
+        for (UIComponent component : components) {
+            // setting the id discards the cached client id
+            component.setId(component.getId());
+            blackhole.consume(component.getClientId(context));
+        }
+
+    }
+
+
+    // --------------------------------------------------------- Private Methods
+
+
+    private static void collect(UIComponent parent, List<UIComponent> list) {
+
+        for (UIComponent child : parent.getChildren()) {
+            list.add(child);
+            collect(child, list);
+        }
+
+    }
+
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 1997, 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.faces.benchmarks;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import javax.faces.context.FacesContext;
+import javax.faces.event.PhaseId;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sun.faces.context.flash.ELFlash;
+
+/**
+ * <p>
+ * <code>ELFlash</code> across a POST/redirect/GET: the POST puts values in
+ * the flash and redirects, and the GET, which sends the flash cookie back,
+ * reads them.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ELFlashBenchmark {
+
+    private FacesEnvironment environment;
+    private ELFlash flash;
+
+
+    // ------------------------------------------------------------------- Setup
+
+
+    @Setup(Level.Trial)
+    public void setUp() {
+
+        environment = new FacesEnvironment(Collections.<String, String>emptyMap());
+        environment.createView("/flash.xhtml", 0, 0);
+        flash = (ELFlash) ELFlash.getFlash();
+
+    }
+
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+
+        environment.release();
+
+    }
+
+
+    // -------------------------------------------------------------- Benchmarks
+
+
+    @Benchmark
+    public Object postRedirectGet() {
+
+        FacesContext context = environment.facesContext;
+
+        // POST
+        environment.requestCookies.clear();
+        beginRequest(context);
+        flash.put("message", "Saved");
+        flash.put("id", 42);
+        flash.doLastPhaseActions(context, true);
+
+        // GET
+        environment.requestCookies.putAll(environment.responseCookies);
+        environment.responseCookies.clear();
+        beginRequest(context);
+        Object message = flash.get("message");
+        flash.get("id");
+        flash.doLastPhaseActions(context, false);
+        environment.responseCookies.clear();
+        return message;
+
+    }
+
+
+    // --------------------------------------------------------- Private Methods
+
+
+    private void beginRequest(FacesContext context) {
+
+        context.getAttributes().clear();
+        context.setCurrentPhaseId(PhaseId.RESTORE_VIEW);
+        flash.doPrePhaseActions(context);
+        context.setCurrentPhaseId(PhaseId.INVOKE_APPLICATION);
+
+    }
+
+}
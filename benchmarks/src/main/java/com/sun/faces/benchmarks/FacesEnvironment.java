@@ -0,0 +1,279 @@
+/*
+ * Copyright (c) 1997, 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.faces.benchmarks;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.faces.FactoryFinder;
+import javax.faces.application.ApplicationFactory;
+import javax.faces.component.UIForm;
+import javax.faces.component.UIInput;
+import javax.faces.component.UINamingContainer;
+import javax.faces.component.UIOutput;
+import javax.faces.component.UIViewRoot;
+import javax.faces.context.PartialViewContext;
+import javax.faces.render.RenderKitFactory;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+
+import com.sun.faces.mock.MockApplication;
+import com.sun.faces.mock.MockExternalContext;
+import com.sun.faces.mock.MockFacesContext;
+import com.sun.faces.mock.MockHttpServletRequest;
+import com.sun.faces.mock.MockHttpServletResponse;
+import com.sun.faces.mock.MockHttpSession;
+import com.sun.faces.mock.MockLifecycle;
+import com.sun.faces.mock.MockServletContext;
+
+/**
+ * <p>
+ * A single request against the mock objects of the implementation's unit
+ * tests, set up the way <code>JUnitFacesTestCaseBase</code> does it.  The
+ * <code>FacesContext</code> is bound to the thread that creates the
+ * environment, so benchmark state holding one must be thread scoped.
+ * </p>
+ */
+final class FacesEnvironment {
+
+    final MockServletContext servletContext;
+    final MockHttpSession session;
+    final MockHttpServletRequest request;
+    final MockHttpServletResponse response;
+    final BenchmarkExternalContext externalContext;
+    final BenchmarkFacesContext facesContext;
+    final MockApplication application;
+
+    /**
+     * The request parameters; modifiable.
+     */
+    final Map<String, String> requestParameters = new HashMap<>();
+
+    /**
+     * The request headers; modifiable.
+     */
+    final Map<String, String> requestHeaders = new HashMap<>();
+
+    /**
+     * The cookies sent with the request; modifiable.
+     */
+    final Map<String, Object> requestCookies = new HashMap<>();
+
+    /**
+     * The cookies added to the response.
+     */
+    final Map<String, Object> responseCookies = new HashMap<>();
+
+
+    // ------------------------------------------------------------ Constructors
+
+
+    /**
+     * @param initParameters the context parameters of the application
+     */
+    FacesEnvironment(Map<String, String> initParameters) {
+
+        servletContext = new MockServletContext();
+        for (Map.Entry<String, String> param : initParameters.entrySet()) {
+            servletContext.addInitParameter(param.getKey(), param.getValue());
+        }
+        session = new MockHttpSession(servletContext);
+        request = new MockHttpServletRequest(session);
+        response = new MockHttpServletResponse();
+
+        reInitializeFactories();
+        externalContext = new BenchmarkExternalContext(servletContext, request, response, this);
+        externalContext.setRequestParameterMap(requestParameters);
+        facesContext = new BenchmarkFacesContext(externalContext);
+
+        FactoryFinder.setFactory(FactoryFinder.FACES_CONTEXT_FACTORY,
+                "com.sun.faces.mock.MockFacesContextFactory");
+        FactoryFinder.setFactory(FactoryFinder.LIFECYCLE_FACTORY,
+                "com.sun.faces.mock.MockLifecycleFactory");
+        FactoryFinder.setFactory(FactoryFinder.APPLICATION_FACTORY,
+                "com.sun.faces.mock.MockApplicationFactory");
+        FactoryFinder.setFactory(FactoryFinder.RENDER_KIT_FACTORY,
+                "com.sun.faces.mock.MockRenderKitFactory");
+        FactoryFinder.setFactory(FactoryFinder.VISIT_CONTEXT_FACTORY,
+                "com.sun.faces.component.visit.VisitContextFactoryImpl");
+        ApplicationFactory applicationFactory =
+              (ApplicationFactory) FactoryFinder.getFactory(FactoryFinder.APPLICATION_FACTORY);
+        application = (MockApplication) applicationFactory.getApplication();
+        facesContext.setApplication(application);
+
+    }
+
+
+    // --------------------------------------------------------- Package Methods
+
+
+    /**
+     * <p>
+     * Creates a view of <code>forms</code> forms, each holding
+     * <code>inputs</code> input and output pairs, and makes it the view of
+     * the current request.  Every component has an explicit id.
+     * </p>
+     *
+     * @param viewId the view ID
+     * @param forms the number of forms
+     * @param inputs the number of inputs per form
+     * @return the view
+     */
+    UIViewRoot createView(String viewId, int forms, int inputs) {
+
+        UIViewRoot root = new UIViewRoot();
+        root.setViewId(viewId);
+        root.setRenderKitId(RenderKitFactory.HTML_BASIC_RENDER_KIT);
+        facesContext.setViewRoot(root);
+        for (int f = 0; f < forms; f++) {
+            UIForm form = new UIForm();
+            form.setId("form" + f);
+            root.getChildren().add(form);
+            UINamingContainer container = new UINamingContainer();
+            container.setId("fields");
+            form.getChildren().add(container);
+            for (int i = 0; i < inputs; i++) {
+                UIOutput label = new UIOutput();
+                label.setId("label" + i);
+                label.setValue("Label " + i);
+                container.getChildren().add(label);
+                UIInput input = new UIInput();
+                input.setId("input" + i);
+                input.setValue("value " + i);
+                container.getChildren().add(input);
+            }
+        }
+        return root;
+
+    }
+
+
+    /**
+     * <p>Releases the <code>FacesContext</code> and the factories.</p>
+     */
+    void release() {
+
+        facesContext.release();
+        reInitializeFactories();
+
+    }
+
+
+    // --------------------------------------------------------- Private Methods
+
+
+    private static void reInitializeFactories() {
+
+        FactoryFinder.releaseFactories();
+        try {
+            Method reInitializeFactoryManager =
+                  FactoryFinder.class.getDeclaredMethod("reInitializeFactoryManager", (Class<?>[]) null);
+            reInitializeFactoryManager.setAccessible(true);
+            reInitializeFactoryManager.invoke(null, (Object[]) null);
+        } catch (ReflectiveOperationException roe) {
+            throw new IllegalStateException(roe);
+        }
+
+    }
+
+
+    // ----------------------------------------------------------- Inner Classes
+
+
+    /**
+     * <p>
+     * Adds the session, header, encoding and cookie access the state
+     * helpers, the compiler, the partial view context and the flash need.
+     * Response cookies are kept by name only, so that a later request can
+     * send them back.
+     * </p>
+     */
+    static final class BenchmarkExternalContext extends MockExternalContext {
+
+        private final FacesEnvironment environment;
+
+        BenchmarkExternalContext(ServletContext context,
+                                 ServletRequest request,
+                                 ServletResponse response,
+                                 FacesEnvironment environment) {
+            super(context, request, response);
+            this.environment = environment;
+        }
+
+        @Override
+        public Object getSession(boolean create) {
+            return ((HttpServletRequest) getRequest()).getSession(create);
+        }
+
+        @Override
+        public String getRequestCharacterEncoding() {
+            // as for a request without a charset in its content type
+            return null;
+        }
+
+        @Override
+        public Map getRequestHeaderMap() {
+            return environment.requestHeaders;
+        }
+
+        @Override
+        public Map getRequestCookieMap() {
+            return environment.requestCookies;
+        }
+
+        @Override
+        public void addResponseCookie(String name, String value, Map<String, Object> properties) {
+            environment.responseCookies.put(name, new Cookie(name, value));
+        }
+
+        @Override
+        public boolean isResponseCommitted() {
+            return false;
+        }
+
+    }
+
+
+    /**
+     * <p>A <code>MockFacesContext</code> whose partial view context can be replaced.</p>
+     */
+    static final class BenchmarkFacesContext extends MockFacesContext {
+
+        private PartialViewContext partialViewContext;
+
+        BenchmarkFacesContext(MockExternalContext externalContext) {
+            super(externalContext, new MockLifecycle());
+        }
+
+        void setPartialViewContext(PartialViewContext partialViewContext) {
+            this.partialViewContext = partialViewContext;
+        }
+
+        @Override
+        public PartialViewContext getPartialViewContext() {
+            return ((partialViewContext != null)
+                    ? partialViewContext
+                    : super.getPartialViewContext());
+        }
+
+    }
+
+}
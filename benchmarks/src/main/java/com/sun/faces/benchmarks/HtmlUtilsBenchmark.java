@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 1997, 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.faces.benchmarks;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sun.faces.util.HtmlUtils;
+
+/**
+ * <p>
+ * Text and attribute escaping of <code>HtmlUtils</code> compared with the
+ * escaping it replaced, kept in {@link BaselineHtmlUtils}.  Both are given
+ * the same buffers and write to a writer that discards its output.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HtmlUtilsBenchmark {
+
+    private static final String PLAIN =
+          "The quick brown fox jumps over the lazy dog, again and again and again";
+
+    private static final String MARKUP =
+          "<b>Fish & Chips</b> \"served\" with 'salt' & vinegar > nothing < else";
+
+    private static final String UNICODE =
+          "Gr\u00fc\u00dfe aus K\u00f6ln \u2013 \u00e9t\u00e9 \u00e0 Z\u00fcrich \u20ac 42";
+
+    @Param({ "PLAIN", "MARKUP", "UNICODE" })
+    public String content;
+
+    /**
+     * Whether non-ASCII characters are escaped, as for a response that is
+     * not encoded in UTF-8.
+     */
+    @Param({ "false", "true" })
+    public boolean escapeNonAscii;
+
+    private final Writer out = new NullWriter();
+    private final char[] buffer = new char[1028];
+    private final char[] textBuffer = new char[128];
+    private String text;
+
+
+    // ------------------------------------------------------------------- Setup
+
+
+    @Setup(Level.Trial)
+    public void setUp() {
+
+        switch (content) {
+            case "MARKUP":
+                text = MARKUP;
+                break;
+            case "UNICODE":
+                text = UNICODE;
+                break;
+            default:
+                text = PLAIN;
+        }
+
+    }
+
+
+    // -------------------------------------------------------------- Benchmarks
+
+
+    @Benchmark
+    public void writeText() throws IOException {
+
+        HtmlUtils.writeText(out, escapeNonAscii, escapeNonAscii, buffer, text, textBuffer);
+
+    }
+
+
+    @Benchmark
+    public void writeTextBaseline() throws IOException {
+
+        BaselineHtmlUtils.writeText(out, escapeNonAscii, escapeNonAscii, buffer, text, textBuffer);
+
+    }
+
+
+    @Benchmark
+    public void writeAttribute() throws IOException {
+
+        HtmlUtils.writeAttribute(out, escapeNonAscii, escapeNonAscii, buffer, text, textBuffer, true);
+
+    }
+
+
+    @Benchmark
+    public void writeAttributeBaseline() throws IOException {
+
+        BaselineHtmlUtils.writeAttribute(out, escapeNonAscii, escapeNonAscii, buffer, text, textBuffer, true);
+
+    }
+
+
+    // ----------------------------------------------------------- Inner Classes
+
+
+    private static final class NullWriter extends Writer {
+
+        @Override
+        public void write(int c) {
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+        }
+
+        @Override
+        public void write(String str, int off, int len) {
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+    }
+
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 1997, 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.faces.benchmarks;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import javax.faces.context.PartialViewContext;
+import javax.faces.event.PhaseId;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sun.faces.context.PartialViewContextImpl;
+
+/**
+ * <p>
+ * <code>PartialViewContextImpl.processPartial</code> of the process
+ * validations phase of an Ajax request executing a few inputs of a view of
+ * 800 components.  Each invocation is a new request, so the execute ids are
+ * parsed again every time.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PartialViewContextBenchmark {
+
+    @Param({ "form0:fields:input3",
+             "form0:fields:input3 form3:fields:input50 form7:fields:input99" })
+    public String execute;
+
+    private FacesEnvironment environment;
+
+
+    // ------------------------------------------------------------------- Setup
+
+
+    @Setup(Level.Trial)
+    public void setUp() {
+
+        environment = new FacesEnvironment(Collections.<String, String>emptyMap());
+        environment.createView("/partial.xhtml", 8, 50);
+        environment.requestHeaders.put("Faces-Request", "partial/ajax");
+        environment.requestParameters.put(PartialViewContext.PARTIAL_EXECUTE_PARAM_NAME, execute);
+        environment.facesContext.setCurrentPhaseId(PhaseId.PROCESS_VALIDATIONS);
+
+    }
+
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+
+        environment.release();
+
+    }
+
+
+    // -------------------------------------------------------------- Benchmarks
+
+
+    @Benchmark
+    public PartialViewContext processValidations() {
+
+        PartialViewContext pvc = new PartialViewContextImpl(environment.facesContext);
+        environment.facesContext.setPartialViewContext(pvc);
+        pvc.processPartial(PhaseId.PROCESS_VALIDATIONS);
+        return pvc;
+
+    }
+
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 1997, 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.faces.benchmarks;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import javax.faces.view.facelets.FaceletHandler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sun.faces.facelets.compiler.Compiler;
+import com.sun.faces.facelets.compiler.SAXCompiler;
+import com.sun.faces.facelets.tag.jsf.core.CoreLibrary;
+import com.sun.faces.facelets.tag.jsf.html.HtmlLibrary;
+import com.sun.faces.facelets.tag.ui.UILibrary;
+
+/**
+ * <p>
+ * Compilation by <code>SAXCompiler</code> of a Facelet of a typical form,
+ * with the core, html and facelets tag libraries available.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SAXCompilerBenchmark {
+
+    private static final String PAGE = "page.xhtml";
+
+    private FacesEnvironment environment;
+    private Compiler compiler;
+    private URL page;
+
+
+    // ------------------------------------------------------------------- Setup
+
+
+    @Setup(Level.Trial)
+    public void setUp() {
+
+        environment = new FacesEnvironment(Collections.<String, String>emptyMap());
+        compiler = new SAXCompiler();
+        compiler.addTagLibrary(new CoreLibrary(CoreLibrary.XMLNSNamespace));
+        compiler.addTagLibrary(new HtmlLibrary(HtmlLibrary.XMLNSNamespace));
+        compiler.addTagLibrary(new UILibrary(UILibrary.XMLNSNamespace));
+        page = SAXCompilerBenchmark.class.getResource(PAGE);
+
+    }
+
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+
+        environment.release();
+
+    }
+
+
+    // -------------------------------------------------------------- Benchmarks
+
+
+    @Benchmark
+    public FaceletHandler compile() throws IOException {
+
+        return compiler.compile(page, "/" + PAGE);
+
+    }
+
+}
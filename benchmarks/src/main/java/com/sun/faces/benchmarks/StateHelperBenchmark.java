@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 1997, 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.faces.benchmarks;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.faces.component.UIViewRoot;
+import javax.faces.render.ResponseStateManager;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sun.faces.config.WebConfiguration.BooleanWebContextInitParameter;
+import com.sun.faces.renderkit.ClientSideStateHelper;
+import com.sun.faces.renderkit.ServerSideStateHelper;
+import com.sun.faces.renderkit.StateHelper;
+
+/**
+ * <p>
+ * Writing the state of a view of 200 components with
+ * <code>ClientSideStateHelper</code> or <code>ServerSideStateHelper</code>,
+ * and restoring it from the request parameter the written value would be
+ * posted back in.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StateHelperBenchmark {
+
+    private static final String VIEW_ID = "/state.xhtml";
+
+    @Param({ "client", "server" })
+    public String stateSavingMethod;
+
+    @Param({ "true", "false" })
+    public boolean compressViewState;
+
+    private FacesEnvironment environment;
+    private StateHelper helper;
+    private Object[] state;
+    private final StringBuilder stateCapture = new StringBuilder(8192);
+
+
+    // ------------------------------------------------------------------- Setup
+
+
+    @Setup(Level.Trial)
+    public void setUp() {
+
+        Map<String, String> initParameters = new HashMap<>();
+        initParameters.put(BooleanWebContextInitParameter.CompressViewState.getQualifiedName(),
+                           Boolean.toString(compressViewState));
+        environment = new FacesEnvironment(initParameters);
+        UIViewRoot root = environment.createView(VIEW_ID, 4, 25);
+        state = new Object[] { null, root.processSaveState(environment.facesContext) };
+        helper = ("client".equals(stateSavingMethod)
+                  ? new ClientSideStateHelper()
+                  : new ServerSideStateHelper());
+
+    }
+
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+
+        environment.release();
+
+    }
+
+
+    // -------------------------------------------------------------- Benchmarks
+
+
+    @Benchmark
+    public int writeState() throws IOException {
+
+        return write();
+
+    }
+
+
+    @Benchmark
+    public Object roundTrip() throws IOException {
+
+        write();
+        environment.requestParameters.put(ResponseStateManager.VIEW_STATE_PARAM,
+                                          stateCapture.toString());
+        return helper.getState(environment.facesContext, VIEW_ID);
+
+    }
+
+
+    // --------------------------------------------------------- Private Methods
+
+
+    private int write() throws IOException {
+
+        // what ServerSideStateHelper and RequestStateManager keep per request
+        environment.facesContext.getAttributes().clear();
+        stateCapture.setLength(0);
+        helper.writeState(environment.facesContext, state, stateCapture);
+        return stateCapture.length();
+
+    }
+
+}
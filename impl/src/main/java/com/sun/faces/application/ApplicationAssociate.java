@@ -22,6 +22,7 @@ import static com.sun.faces.config.ConfigManager.getAnnotatedClasses;
 import static com.sun.faces.config.WebConfiguration.BooleanWebContextInitParameter.EnableFaceletsResourceResolverResolveCompositeComponents;
 import static com.sun.faces.config.WebConfiguration.BooleanWebContextInitParameter.FaceletsSkipComments;
 import static com.sun.faces.config.WebConfiguration.WebContextInitParameter.FaceletCache;
+import static com.sun.faces.config.WebConfiguration.WebContextInitParameter.FaceletsCompilationCacheDirectory;
 import static com.sun.faces.config.WebConfiguration.WebContextInitParameter.FaceletsDecorators;
 import static com.sun.faces.config.WebConfiguration.WebContextInitParameter.FaceletsDefaultRefreshPeriod;
 import static com.sun.faces.config.WebConfiguration.WebContextInitParameter.FaceletsDefaultRefreshPeriodDeprecated;
@@ -42,11 +43,13 @@ import static java.util.Collections.emptyMap;
 import static java.util.logging.Level.FINE;
 import static java.util.logging.Level.INFO;
 import static java.util.logging.Level.SEVERE;
+import static java.util.logging.Level.WARNING;
 import static javax.faces.FactoryFinder.FACELET_CACHE_FACTORY;
 import static javax.faces.FactoryFinder.FLOW_HANDLER_FACTORY;
 import static javax.faces.application.ProjectStage.Development;
 import static javax.faces.application.ProjectStage.Production;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
@@ -731,18 +734,57 @@ public class ApplicationAssociate {
 
     protected Compiler createCompiler(Map<String, Object> appMap, WebConfiguration webConfig) {
 
-        Compiler newCompiler = new SAXCompiler();
+        SAXCompiler newCompiler = new SAXCompiler();
 
         loadDecorators(appMap, newCompiler);
 
         // Skip params?
         newCompiler.setTrimmingComments(webConfig.isOptionEnabled(FaceletsSkipComments));
 
+        newCompiler.setEventsDirectory(getFaceletsCompilationCacheDirectory(appMap, webConfig));
+
         addTagLibraries(newCompiler);
 
         return newCompiler;
     }
 
+    /*
+     * The directory the compiler keeps the events of parsed documents in,
+     * relative to the temporary directory of the application unless absolute,
+     * or null if not configured or unusable.
+     */
+    private File getFaceletsCompilationCacheDirectory(Map<String, Object> appMap, WebConfiguration webConfig) {
+        String path = webConfig.getOptionValue(FaceletsCompilationCacheDirectory);
+        if (path == null || path.trim().isEmpty()) {
+            return null;
+        }
+
+        File directory = new File(path.trim());
+        if (!directory.isAbsolute()) {
+            File tempDir = (File) appMap.get("javax.servlet.context.tempdir");
+            if (tempDir == null) {
+                if (LOGGER.isLoggable(WARNING)) {
+                    LOGGER.log(WARNING,
+                               "No javax.servlet.context.tempdir to resolve {0} against.  Facelets will always be parsed.",
+                               path);
+                }
+                return null;
+            }
+            directory = new File(tempDir, path.trim());
+        }
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            if (LOGGER.isLoggable(WARNING)) {
+                LOGGER.log(WARNING,
+                           "Unable to create directory {0}.  Facelets will always be parsed.",
+                           directory);
+            }
+            return null;
+        }
+
+        return directory;
+    }
+
     protected void loadDecorators(Map<String, Object> appMap, Compiler newCompiler) {
         String decoratorsParamValue = webConfig.getOptionValue(FaceletsDecorators);
 
@@ -17,6 +17,7 @@
 package com.sun.faces.application;
 
 import static com.sun.faces.config.WebConfiguration.BooleanWebContextInitParameter.PartialStateSaving;
+import static com.sun.faces.config.WebConfiguration.WebContextInitParameter.BaselineStateSavingViewIds;
 import static com.sun.faces.config.WebConfiguration.WebContextInitParameter.FullStateSavingViewIds;
 import static com.sun.faces.util.Util.notNullViewId;
 import static java.util.Arrays.asList;
@@ -34,6 +35,7 @@ public class ApplicationStateInfo {
 
     private boolean partialStateSaving;
     private Set<String> fullStateViewIds;
+    private Set<String> baselineStateViewIds;
 
     // ------------------------------------------------------------ Constructors
 
@@ -46,6 +48,10 @@ public class ApplicationStateInfo {
             String[] viewIds = config.getOptionValue(FullStateSavingViewIds, ",");
             fullStateViewIds = new HashSet<>(viewIds.length, 1.0f);
             fullStateViewIds.addAll(asList(viewIds));
+
+            viewIds = config.getOptionValue(BaselineStateSavingViewIds, ",");
+            baselineStateViewIds = new HashSet<>(viewIds.length, 1.0f);
+            baselineStateViewIds.addAll(asList(viewIds));
         }
 
     }
@@ -64,4 +70,14 @@ public class ApplicationStateInfo {
         return partialStateSaving && !fullStateViewIds.contains(viewId);
     }
 
+    /**
+     * @param viewId the view ID to check
+     * @throws IllegalArgumentException if viewId is null
+     * @return <code>true</code> if partial state saving against a shared baseline
+     *         should be used for the specified view ID, otherwise <code>false</code>
+     */
+    public boolean useBaselineStateSaving(String viewId) {
+        return usePartialStateSaving(viewId) && baselineStateViewIds.contains(viewId);
+    }
+
 }
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 1997, 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.faces.application.resource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>
+ * Parser of the <code>Range</code> request header, see
+ * <a href="https://tools.ietf.org/html/rfc7233">RFC 7233</a>.  Only byte
+ * ranges are supported.
+ * </p>
+ */
+final class ByteRanges {
+
+    /**
+     * Requests for more ranges than this are answered with the whole
+     * resource, as a defence against requests for many tiny ranges.
+     */
+    static final int MAX_RANGES = 16;
+
+    private static final String BYTES_UNIT = "bytes=";
+
+
+    // ------------------------------------------------------------ Constructors
+
+
+    private ByteRanges() {
+    }
+
+
+    // --------------------------------------------------------- Package Methods
+
+
+    /**
+     * @param header the value of the <code>Range</code> request header
+     * @param length the length of the representation in bytes
+     * @return the satisfiable ranges, as arrays of the first and the last
+     *  byte position, in the order requested; an empty list if none of the
+     *  ranges is satisfiable; or <code>null</code> if the header is invalid
+     *  or must be ignored, in which case the whole representation is sent
+     */
+    static List<long[]> parse(String header, long length) {
+
+        if (!header.regionMatches(true, 0, BYTES_UNIT, 0, BYTES_UNIT.length())) {
+            return null;
+        }
+        List<long[]> ranges = new ArrayList<>(2);
+        boolean empty = true;
+        for (String spec : header.substring(BYTES_UNIT.length()).split(",")) {
+            spec = spec.trim();
+            if (spec.isEmpty()) {
+                continue;
+            }
+            empty = false;
+            int dash = spec.indexOf('-');
+            if (dash == -1) {
+                return null;
+            }
+            long first;
+            long last;
+            try {
+                if (dash == 0) {
+                    // suffix-byte-range-spec, the last n bytes
+                    long suffix = Long.parseLong(spec.substring(1));
+                    if (suffix < 0) {
+                        return null;
+                    }
+                    if (suffix == 0) {
+                        continue;
+                    }
+                    first = Math.max(0, length - suffix);
+                    last = length - 1;
+                } else {
+                    first = Long.parseLong(spec.substring(0, dash));
+                    String end = spec.substring(dash + 1);
+                    if (end.isEmpty()) {
+                        last = length - 1;
+                    } else {
+                        last = Long.parseLong(end);
+                        if (last < first) {
+                            return null;
+                        }
+                        last = Math.min(last, length - 1);
+                    }
+                    if (first < 0) {
+                        return null;
+                    }
+                }
+            } catch (NumberFormatException nfe) {
+                return null;
+            }
+            if (first >= length) {
+                // not satisfiable
+                continue;
+            }
+            ranges.add(new long[] { first, last });
+            if (ranges.size() > MAX_RANGES) {
+                return null;
+            }
+        }
+        return ((empty) ? null : ranges);
+
+    }
+
+}
@@ -20,6 +20,13 @@ import static javax.faces.application.ResourceHandler.JSF_SCRIPT_LIBRARY_NAME;
 import static javax.faces.application.ResourceHandler.JSF_SCRIPT_RESOURCE_NAME;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -38,12 +45,17 @@ public class ClientResourceInfo extends ResourceInfo {
     private static final Logger LOGGER = FacesLogger.RESOURCE.getLogger();
     private static final String COMPRESSED_CONTENT_DIRECTORY =
           "jsf-compressed";
+    private static final String CONTENT_HASH_ALGORITHM = "SHA-256";
     boolean cacheTimestamp;
     boolean isDevStage;
     String compressedPath;
     boolean compressible;
     boolean supportsEL;
     private volatile long lastModified = Long.MIN_VALUE;
+    private volatile String contentHash;
+    private volatile URL brotliURL;
+    private volatile boolean brotliURLResolved;
+    private volatile File minifiedFile;
 
 
     /**
@@ -131,6 +143,10 @@ public class ClientResourceInfo extends ResourceInfo {
         this.isDevStage = other.isDevStage;
         this.lastModified = other.lastModified;
         this.supportsEL = other.supportsEL;
+        this.contentHash = other.contentHash;
+        this.brotliURL = other.brotliURL;
+        this.brotliURLResolved = other.brotliURLResolved;
+        this.minifiedFile = other.minifiedFile;
     }
 
 
@@ -161,6 +177,14 @@ public class ClientResourceInfo extends ResourceInfo {
         return supportsEL;
     }
 
+    /**
+     * @return the file holding the minified content of this resource, or
+     *  <code>null</code> if the resource is served as it is
+     */
+    public File getMinifiedFile() {
+        return minifiedFile;
+    }
+
     /**
      * Disables EL evaluation for this resource. 
      */
@@ -197,6 +221,77 @@ public class ClientResourceInfo extends ResourceInfo {
         
     }
 
+    /**
+     * Returns a digest of the content of this resource, suitable as a strong
+     * entity tag or as a version in the request path of the resource.  Unless
+     * the project stage is <code>Development</code>, the digest is computed
+     * once for the lifetime of this <code>ClientResourceInfo</code> instance.
+     *
+     * @param ctx the {@link FacesContext} for the current request
+     *
+     * @return the URL and filename safe Base64 encoded SHA-256 digest of the
+     *  content of this resource, or <code>null</code> if the resource may
+     *  contain EL expressions or cannot be read
+     */
+    public String getContentHash(FacesContext ctx) {
+
+        if (supportsEL) {
+            return null;
+        }
+        if (isDevStage) {
+            return computeContentHash(ctx);
+        }
+        String hash = contentHash;
+        if (hash == null) {
+            synchronized (this) {
+                hash = contentHash;
+                if (hash == null) {
+                    // not remembered when null, the resource may appear later
+                    hash = computeContentHash(ctx);
+                    contentHash = hash;
+                }
+            }
+        }
+        return hash;
+
+    }
+
+    /**
+     * Returns the URL of the precompressed Brotli variant of this resource,
+     * a file named after the resource with the extension <code>.br</code>
+     * next to it.  Unless the project stage is <code>Development</code>, the
+     * variant is looked up once for the lifetime of this
+     * <code>ClientResourceInfo</code> instance.  A minified resource has no
+     * Brotli variant: the variant is compressed from the original content,
+     * whereas the resource is served, hashed and gzipped from its minified
+     * content.
+     *
+     * @param ctx the {@link FacesContext} for the current request
+     *
+     * @return the URL of the Brotli variant, or <code>null</code> if there
+     *  is none
+     */
+    URL getBrotliURL(FacesContext ctx) {
+
+        if (minifiedFile != null) {
+            return null;
+        }
+        if (!brotliURLResolved) {
+            URL url = helper.findBrotliURL(this, ctx);
+            if (isDevStage) {
+                return url;
+            }
+            brotliURL = url;
+            brotliURLResolved = true;
+        }
+        return brotliURL;
+
+    }
+
+    void setMinifiedFile(File minifiedFile) {
+        this.minifiedFile = minifiedFile;
+    }
+
     @Override
     public String toString() {
         return "ResourceInfo{" +
@@ -215,6 +310,46 @@ public class ClientResourceInfo extends ResourceInfo {
     // --------------------------------------------------------- Private Methods
 
 
+    /*
+     * The digest is always computed over the uncompressed content, so the
+     * same resource has the same hash whether it is sent compressed or not.
+     * It is the minified content if that is what is sent.
+     */
+    private String computeContentHash(FacesContext ctx) {
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance(CONTENT_HASH_ALGORITHM);
+            File minified = minifiedFile;
+            InputStream in = ((minified != null)
+                              ? new FileInputStream(minified)
+                              : helper.getNonCompressedInputStream(this, ctx));
+            if (in == null && localePrefix != null) {
+                in = helper.getNonCompressedInputStream(new ClientResourceInfo(this, false), ctx);
+            }
+            if (in == null) {
+                return null;
+            }
+            try {
+                byte[] buf = new byte[4096];
+                for (int read = in.read(buf); read != -1; read = in.read(buf)) {
+                    digest.update(buf, 0, read);
+                }
+            } finally {
+                in.close();
+            }
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest.digest());
+        } catch (IOException | NoSuchAlgorithmException e) {
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.log(Level.FINE,
+                           "Unable to compute the content hash of " + path,
+                           e);
+            }
+            return null;
+        }
+
+    }
+
+
     /**
      * Create the full path to the resource.  If the resource can be compressed,
      * setup the compressedPath ivar so that the path refers to the
@@ -0,0 +1,677 @@
+/*
+ * Copyright (c) 1997, 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.faces.application.resource;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.emptyMap;
+import static javax.faces.application.ProjectStage.Development;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.faces.FacesException;
+import javax.faces.application.Resource;
+import javax.faces.context.FacesContext;
+
+/**
+ * <p>
+ * A script or stylesheet made of the concatenated content of several
+ * resources of the same content type, so that a page can load them with a
+ * single request.
+ * </p>
+ *
+ * <p>
+ * The name of a combined resource is a digest of the names and contents of
+ * its parts, and its request path lists the parts, so that any instance of
+ * the application can serve it without knowing the page that referenced it.
+ * Combined resources are requested with the library name
+ * {@link #LIBRARY_NAME}.
+ * </p>
+ *
+ * <p>
+ * The {@link ResourceHandlerImpl} serves a combined resource like any other
+ * client resource: gzip compressed if every part is compressable and the
+ * client accepts it, from the {@link ResourceContentCache} if enabled, and
+ * with byte ranges of the uncompressed content.  There is no Brotli variant,
+ * as there is no precompressed file to serve it from.
+ * </p>
+ */
+public class CombinedResource extends Resource {
+
+    /**
+     * The library name under which combined resources are requested.
+     */
+    public static final String LIBRARY_NAME = "javax.faces.combined";
+
+    /**
+     * The request parameter listing the parts of a combined resource.
+     */
+    static final String PARTS_PARAM = "parts";
+
+    /**
+     * The maximum number of parts of a combined resource.  Requests listing
+     * more are rejected, as serving them reads every part.
+     */
+    public static final int MAX_PARTS = 16;
+
+    private static final String REGISTRY_KEY = CombinedResource.class.getName();
+
+    /* Number of view/parts combinations remembered, in all views, the least
+       recently used being forgotten first */
+    private static final int MAX_DEFINITIONS = 1024;
+
+    /* Number of combined contents kept in memory */
+    private static final int MAX_CONTENTS = 64;
+
+    /* Length of the name of a combined resource, 128 bits in Base64 */
+    private static final int NAME_LENGTH = 22;
+
+    private final List<Resource> parts;
+    private final String partsParameter;
+    private final String hash;
+    private final String extension;
+    private final long maxAge;
+    private Map<String, String> responseHeaders;
+
+
+    // ------------------------------------------------------------ Constructors
+
+
+    private CombinedResource(List<Resource> parts,
+                             String partsParameter,
+                             String hash,
+                             String extension,
+                             long maxAge) {
+
+        this.parts = parts;
+        this.partsParameter = partsParameter;
+        this.hash = hash;
+        this.extension = extension;
+        this.maxAge = maxAge;
+        setResourceName(hash + extension);
+        setLibraryName(LIBRARY_NAME);
+        setContentType(parts.get(0).getContentType());
+
+    }
+
+
+    // ---------------------------------------------------------- Public Methods
+
+
+    /**
+     * @param resourceName the name of a resource
+     * @param libraryName the library of the resource, or <code>null</code>
+     * @return <code>true</code> if the resource can be part of a combined
+     *  resource
+     */
+    public static boolean isCombinable(String resourceName, String libraryName) {
+
+        return (resourceName.indexOf(',') == -1
+                && resourceName.indexOf(':') == -1
+                && resourceName.indexOf('?') == -1
+                && resourceName.lastIndexOf('.') > resourceName.lastIndexOf('/')
+                && (libraryName == null
+                    || (libraryName.indexOf(',') == -1 && libraryName.indexOf(':') == -1)));
+
+    }
+
+
+    /**
+     * <p>
+     * Returns the combination of the given resources referenced by the
+     * current view.  The name of the combination is remembered per view and
+     * only recomputed when the {@link ResourceInfo} of a part changes.
+     * </p>
+     *
+     * @param context the <code>FacesContext</code> for the current request
+     * @param parts the resources to combine, of the same content type, as
+     *  checked by {@link #isCombinable(String, String)}
+     * @return the combined resource
+     */
+    public static CombinedResource create(FacesContext context, List<Resource> parts) {
+
+        String partsParameter = getPartsParameter(parts);
+        List<Object> infos = getResourceInfos(parts);
+        String key = context.getViewRoot().getViewId() + '\n' + partsParameter;
+
+        Map<String, Definition> definitions = getRegistry(context).definitions;
+        Definition definition;
+        synchronized (definitions) {
+            definition = definitions.get(key);
+        }
+        if (definition == null || !definition.isCurrent(infos)) {
+            definition = new Definition(infos, computeHash(context, parts));
+            synchronized (definitions) {
+                definitions.put(key, definition);
+            }
+        }
+        return new CombinedResource(parts,
+                                    partsParameter,
+                                    definition.hash,
+                                    getExtension(parts.get(0).getResourceName()),
+                                    0);
+
+    }
+
+
+    // --------------------------------------------------- Methods from Resource
+
+
+    /**
+     * @see javax.faces.application.Resource#getInputStream()
+     */
+    @Override
+    public InputStream getInputStream() throws IOException {
+
+        return new ByteArrayInputStream(getContent(FacesContext.getCurrentInstance()));
+
+    }
+
+
+    /**
+     * @see javax.faces.application.Resource#getResponseHeaders()
+     */
+    @Override
+    public Map<String, String> getResponseHeaders() {
+
+        FacesContext context = FacesContext.getCurrentInstance();
+        if (!context.getApplication().getResourceHandler().isResourceRequest(context)) {
+            return emptyMap();
+        }
+        if (responseHeaders == null) {
+            responseHeaders = new HashMap<>(6, 1.0f);
+        }
+
+        boolean immutable = isImmutable(context);
+        long now = System.currentTimeMillis();
+        responseHeaders.put("Expires",
+                            ResourceImpl.formatHttpDate(now + (immutable ? ResourceImpl.IMMUTABLE_MAX_AGE : maxAge)));
+        if (immutable) {
+            responseHeaders.put("Cache-Control", ResourceImpl.IMMUTABLE_CACHE_CONTROL);
+        }
+        responseHeaders.putAll(getCacheableHeaders(context, getContentEncoding(context)));
+        return responseHeaders;
+
+    }
+
+
+    /**
+     * @see javax.faces.application.Resource#getRequestPath()
+     */
+    @Override
+    public String getRequestPath() {
+
+        FacesContext context = FacesContext.getCurrentInstance();
+        String uri;
+        try {
+            uri = ResourceImpl.getResourceURI(context, getResourceName())
+                  + "?ln=" + LIBRARY_NAME
+                  + '&' + PARTS_PARAM + '=' + URLEncoder.encode(partsParameter, "UTF-8");
+        } catch (UnsupportedEncodingException uee) {
+            throw new FacesException(uee);
+        }
+        return context.getApplication().getViewHandler().getResourceURL(context, uri);
+
+    }
+
+
+    /**
+     * @return <code>null</code>, a combined resource has no URL of its own
+     * @see javax.faces.application.Resource#getURL()
+     */
+    @Override
+    public URL getURL() {
+
+        return null;
+
+    }
+
+
+    /**
+     * @see javax.faces.application.Resource#userAgentNeedsUpdate(javax.faces.context.FacesContext)
+     */
+    @Override
+    public boolean userAgentNeedsUpdate(FacesContext context) {
+
+        String ifNoneMatch = context.getExternalContext().getRequestHeaderMap().get("If-None-Match");
+        return (ifNoneMatch == null || !ResourceImpl.matchesEntityTag(ifNoneMatch, getEntityTag(context)));
+
+    }
+
+
+    // --------------------------------------------------------- Package Methods
+
+
+    /**
+     * @param context the <code>FacesContext</code> for the current request
+     * @return the uncompressed content of this resource, kept in memory
+     *  unless it is not cacheable
+     * @throws IOException if a part cannot be read
+     */
+    byte[] getContent(FacesContext context) throws IOException {
+
+        boolean cacheable = isCacheable(context);
+        Map<String, byte[]> contents = getRegistry(context).contents;
+        byte[] content = null;
+        if (cacheable) {
+            synchronized (contents) {
+                content = contents.get(hash);
+            }
+        }
+        if (content == null) {
+            content = readParts(context);
+            if (cacheable) {
+                synchronized (contents) {
+                    contents.put(hash, content);
+                }
+            }
+        }
+        return content;
+
+    }
+
+
+    /**
+     * @param context the <code>FacesContext</code> for the current request
+     * @param parts the resources to combine, as listed by the request
+     * @param maxAge the lifespan of the combined resource, for caching
+     *  purposes, in milliseconds
+     * @return the combined resource as it is now, which may differ from
+     *  what was requested if a part has changed since
+     */
+    static CombinedResource create(FacesContext context, List<Resource> parts, long maxAge) {
+
+        return new CombinedResource(parts,
+                                    getPartsParameter(parts),
+                                    computeHash(context, parts),
+                                    getExtension(parts.get(0).getResourceName()),
+                                    maxAge);
+
+    }
+
+
+    /**
+     * @param partsParameter the value of the {@link #PARTS_PARAM} request
+     *  parameter
+     * @return the library name, or <code>null</code>, and the resource name
+     *  of each part, or <code>null</code> if the parameter is malformed,
+     *  lists more than {@link #MAX_PARTS} parts, or lists a part twice
+     */
+    static List<String[]> parseParts(String partsParameter) {
+
+        String[] tokens = partsParameter.split(",", MAX_PARTS + 1);
+        if (tokens.length > MAX_PARTS) {
+            return null;
+        }
+        List<String[]> parts = new ArrayList<>(tokens.length);
+        Set<String> distinct = new HashSet<>();
+        for (String token : tokens) {
+            int colon = token.indexOf(':');
+            if (colon == -1 || colon == token.length() - 1 || !distinct.add(token)) {
+                return null;
+            }
+            parts.add(new String[] {
+                  ((colon == 0) ? null : token.substring(0, colon)),
+                  token.substring(colon + 1)
+            });
+        }
+        return ((parts.size() < 2) ? null : parts);
+
+    }
+
+
+    /**
+     * @param context the <code>FacesContext</code> for the current request
+     * @return the strong entity tag of the representation of this resource
+     *  negotiated for the current request
+     * @see #getEntityTag(FacesContext, String)
+     */
+    String getEntityTag(FacesContext context) {
+
+        return getEntityTag(context, getContentEncoding(context));
+
+    }
+
+
+    /**
+     * @param context the <code>FacesContext</code> for the current request
+     * @param contentEncoding the content coding of the representation, or
+     *  <code>null</code> for the uncompressed representation
+     * @return the strong entity tag of the representation of the current
+     *  content of this resource in <code>contentEncoding</code>, as for
+     *  {@link ResourceImpl#getEntityTag(FacesContext, String)}
+     */
+    String getEntityTag(FacesContext context, String contentEncoding) {
+
+        return '"' + ((contentEncoding != null) ? hash + '-' + contentEncoding : hash) + '"';
+
+    }
+
+
+    /**
+     * @param context the <code>FacesContext</code> for the current request
+     * @return <code>gzip</code> if this resource is compressable and the
+     *  client accepts gzip, otherwise <code>null</code>
+     */
+    String getContentEncoding(FacesContext context) {
+
+        return ((isCompressable() && ResourceHelper.clientAcceptsEncoding(context, ResourceHelper.GZIP_ENCODING))
+                ? ResourceHelper.GZIP_ENCODING
+                : null);
+
+    }
+
+
+    /**
+     * @return <code>true</code> if every part is compressable, so the
+     *  content of this resource is negotiated with the
+     *  <code>Accept-Encoding</code> request header
+     */
+    boolean isCompressable() {
+
+        for (Resource part : parts) {
+            if (!(part instanceof ResourceImpl) || !((ResourceImpl) part).isCompressable()) {
+                return false;
+            }
+        }
+        return true;
+
+    }
+
+
+    /**
+     * @param context the <code>FacesContext</code> for the current request
+     * @param contentEncoding the content coding of the representation, or
+     *  <code>null</code>
+     * @return the response headers of the representation in
+     *  <code>contentEncoding</code> that do not depend on the time of the
+     *  request
+     */
+    Map<String, String> getCacheableHeaders(FacesContext context, String contentEncoding) {
+
+        Map<String, String> headers = new LinkedHashMap<>(4);
+        long lastModified = 0;
+        for (Resource part : parts) {
+            if (part instanceof ResourceImpl) {
+                ResourceInfo info = ((ResourceImpl) part).getResourceInfo();
+                if (info instanceof ClientResourceInfo) {
+                    lastModified = Math.max(lastModified,
+                                            ((ClientResourceInfo) info).getLastModified(context));
+                }
+            }
+        }
+        if (lastModified != 0) {
+            headers.put("Last-Modified", ResourceImpl.formatHttpDate(lastModified));
+        }
+        headers.put("ETag", getEntityTag(context, contentEncoding));
+        if (isCompressable()) {
+            headers.put("Vary", "Accept-Encoding");
+        }
+        return headers;
+
+    }
+
+
+    /**
+     * @param context the <code>FacesContext</code> for the current request
+     * @return <code>true</code> if this resource was requested by the name
+     *  of its current content, so the response may be cached for as long as
+     *  possible; the name is only the current hash if no part has changed
+     *  since the page referencing it was rendered
+     */
+    boolean isImmutable(FacesContext context) {
+
+        return (!context.isProjectStage(Development)
+                && getResourceName().equals(hash + extension));
+
+    }
+
+
+    /**
+     * @param context the <code>FacesContext</code> for the current request
+     * @return <code>true</code> if the content of this resource may be kept
+     *  in memory, which it may not if a part may contain EL expressions or
+     *  the project stage is <code>Development</code>
+     */
+    boolean isCacheable(FacesContext context) {
+
+        if (context.isProjectStage(Development)) {
+            return false;
+        }
+        for (Resource part : parts) {
+            if (!(part instanceof ResourceImpl)) {
+                return false;
+            }
+            ResourceInfo info = ((ResourceImpl) part).getResourceInfo();
+            if (!(info instanceof ClientResourceInfo) || ((ClientResourceInfo) info).supportsEL()) {
+                return false;
+            }
+        }
+        return true;
+
+    }
+
+
+    // --------------------------------------------------------- Private Methods
+
+
+    /*
+     * Reads the uncompressed content of the parts; scripts are separated so
+     * that a part missing its final semicolon or newline cannot change the
+     * meaning of the next one.
+     */
+    private byte[] readParts(FacesContext context) throws IOException {
+
+        byte[] separator = ((getContentType() != null && getContentType().contains("javascript"))
+                            ? "\n;\n"
+                            : "\n").getBytes(UTF_8);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(8192);
+        byte[] buf = new byte[4096];
+        for (Resource part : parts) {
+            InputStream in = null;
+            if (part instanceof ResourceImpl) {
+                ResourceInfo info = ((ResourceImpl) part).getResourceInfo();
+                if (info instanceof ClientResourceInfo) {
+                    in = info.getHelper().getIdentityInputStream((ClientResourceInfo) info, context);
+                }
+            } else {
+                in = part.getInputStream();
+            }
+            if (in == null) {
+                throw new IOException("Unable to read " + part);
+            }
+            try {
+                for (int read = in.read(buf); read != -1; read = in.read(buf)) {
+                    out.write(buf, 0, read);
+                }
+            } finally {
+                in.close();
+            }
+            out.write(separator);
+        }
+        return out.toByteArray();
+
+    }
+
+
+    private static String getPartsParameter(List<Resource> parts) {
+
+        StringBuilder sb = new StringBuilder(parts.size() * 32);
+        for (Resource part : parts) {
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            if (part.getLibraryName() != null) {
+                sb.append(part.getLibraryName());
+            }
+            sb.append(':').append(part.getResourceName());
+        }
+        return sb.toString();
+
+    }
+
+
+    private static List<Object> getResourceInfos(List<Resource> parts) {
+
+        List<Object> infos = new ArrayList<>(parts.size());
+        for (Resource part : parts) {
+            infos.add((part instanceof ResourceImpl) ? ((ResourceImpl) part).getResourceInfo() : null);
+        }
+        return infos;
+
+    }
+
+
+    private static String getExtension(String resourceName) {
+
+        return resourceName.substring(resourceName.lastIndexOf('.'));
+
+    }
+
+
+    /*
+     * A digest of the name and the content hash, or failing that the
+     * modification time, of every part.
+     */
+    private static String computeHash(FacesContext context, List<Resource> parts) {
+
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new FacesException(nsae);
+        }
+        for (Resource part : parts) {
+            StringBuilder sb = new StringBuilder(64);
+            sb.append(part.getLibraryName()).append(':').append(part.getResourceName()).append('=');
+            ResourceInfo info = ((part instanceof ResourceImpl)
+                                 ? ((ResourceImpl) part).getResourceInfo()
+                                 : null);
+            if (info instanceof ClientResourceInfo) {
+                ClientResourceInfo clientInfo = (ClientResourceInfo) info;
+                String contentHash = clientInfo.getContentHash(context);
+                sb.append((contentHash != null)
+                          ? contentHash
+                          : Long.toString(clientInfo.getLastModified(context)));
+            }
+            sb.append('\n');
+            digest.update(sb.toString().getBytes(UTF_8));
+        }
+        return Base64.getUrlEncoder().withoutPadding()
+                     .encodeToString(digest.digest()).substring(0, NAME_LENGTH);
+
+    }
+
+
+    private static Registry getRegistry(FacesContext context) {
+
+        Map<String, Object> appMap = context.getExternalContext().getApplicationMap();
+        Registry registry = (Registry) appMap.get(REGISTRY_KEY);
+        if (registry == null) {
+            synchronized (CombinedResource.class) {
+                registry = (Registry) appMap.get(REGISTRY_KEY);
+                if (registry == null) {
+                    registry = new Registry();
+                    appMap.put(REGISTRY_KEY, registry);
+                }
+            }
+        }
+        return registry;
+
+    }
+
+
+    // ----------------------------------------------------------- Inner Classes
+
+
+    /**
+     * <p>The combined resources of an application: the names of the most
+     * recently used combinations referenced by each view, and the most
+     * recently used combined contents.</p>
+     */
+    private static final class Registry {
+
+        final Map<String, Definition> definitions = new LinkedHashMap<String, Definition>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Definition> eldest) {
+                return size() > MAX_DEFINITIONS;
+            }
+
+        };
+
+        final Map<String, byte[]> contents = new LinkedHashMap<String, byte[]>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+                return size() > MAX_CONTENTS;
+            }
+
+        };
+
+    }
+
+
+    /**
+     * <p>The name of a combination, valid as long as the parts are backed by
+     * the same {@link ResourceInfo} instances.</p>
+     */
+    private static final class Definition {
+
+        final List<Object> infos;
+        final String hash;
+
+        Definition(List<Object> infos, String hash) {
+
+            this.infos = infos;
+            this.hash = hash;
+
+        }
+
+        boolean isCurrent(List<Object> currentInfos) {
+
+            for (int i = 0; i < infos.size(); i++) {
+                if (infos.get(i) != currentInfos.get(i)) {
+                    return false;
+                }
+            }
+            return true;
+
+        }
+
+    }
+
+}
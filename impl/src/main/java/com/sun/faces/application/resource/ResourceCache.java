@@ -25,6 +25,8 @@ import com.sun.faces.util.Util;
 import javax.servlet.ServletContext;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -44,6 +46,12 @@ import java.util.logging.Logger;
  * then no caching will be perfomed.  Otherwise, the value of the option will
  * be the number of minutes between modification checks.
  * </p>
+ *
+ * <p>
+ * The cache also remembers the resources and libraries that could not be
+ * found, until the next modification check, so that repeated requests for
+ * them do not search the webapp and the classpath each time.
+ * </p>
  */
 public class ResourceCache {
 
@@ -56,12 +64,34 @@ public class ResourceCache {
     private MultiKeyConcurrentHashMap<Object,ResourceInfoCheckPeriodProxy> resourceCache;
 
 
+    /**
+     * The resources that could not be found, and the time until which they
+     * are assumed to be missing.
+     */
+    private MultiKeyConcurrentHashMap<Object,Long> missingResources;
+
+
+    /**
+     * The libraries that could not be found, and the time until which they
+     * are assumed to be missing.
+     */
+    private ConcurrentMap<String,Long> missingLibraries;
+
+
     /**
      * Resource check period in minutes.
      */
     private long checkPeriod;
 
 
+    /**
+     * The maximum number of missing resources, or libraries, remembered.
+     * Requests for more distinct missing names than this empty the list,
+     * so that random probes cannot exhaust the memory.
+     */
+    static final int MAX_MISSING_ENTRIES = 4096;
+
+
     // ------------------------------------------------------------ Constructors
 
 
@@ -87,6 +117,8 @@ public class ResourceCache {
     ResourceCache(long period) {
         checkPeriod = ((period != -1) ? period * 1000L * 60L : -1);
         resourceCache = new MultiKeyConcurrentHashMap<>(30);
+        missingResources = new MultiKeyConcurrentHashMap<>(30);
+        missingLibraries = new ConcurrentHashMap<>(16);
     }
 
     // ---------------------------------------------------------- Public Methods
@@ -103,6 +135,24 @@ public class ResourceCache {
      */
     public ResourceInfo add(ResourceInfo info, List<String> contracts) {
 
+        return add(info, info.localePrefix, contracts);
+
+    }
+
+
+    /**
+     * Add the {@link ResourceInfo} to the internal cache, under the locale
+     * prefix it was looked up with.  That prefix differs from the one of
+     * <code>info</code> when the resource has no localized variant.
+     *
+     * @param info resource metadata
+     * @param localePrefix the locale prefix of the lookup
+     * @param contracts the contracts
+     * @return previous value associated with specified key, or null
+     *  if there was no mapping for key
+     */
+    public ResourceInfo add(ResourceInfo info, String localePrefix, List<String> contracts) {
+
         Util.notNull("info", info);
 
         if (LOGGER.isLoggable(Level.FINE)) {
@@ -113,7 +163,7 @@ public class ResourceCache {
         ResourceInfoCheckPeriodProxy proxy =
               resourceCache.putIfAbsent(info.name,
                                         info.libraryName,
-                                        info.localePrefix,
+                                        localePrefix,
                                         new ArrayList(contracts),
                                         new ResourceInfoCheckPeriodProxy(info, checkPeriod));
         return ((proxy != null) ? proxy.getResourceInfo() : null);
@@ -145,12 +195,104 @@ public class ResourceCache {
     }
 
 
+    /**
+     * <p>Remember that a resource could not be found, until the next
+     * modification check.  Nothing is remembered if the check period is
+     * <code>0</code>.</p>
+     *
+     * @param name the resource name
+     * @param libraryName the library name
+     * @param localePrefix the locale prefix
+     * @param contracts the contracts
+     */
+    public void addMissing(String name, String libraryName, String localePrefix, List<String> contracts) {
+
+        Util.notNull("name", name);
+
+        if (checkPeriod == 0) {
+            return;
+        }
+        if (missingResources.size() >= MAX_MISSING_ENTRIES) {
+            missingResources.clear();
+        }
+        missingResources.put(name,
+                             libraryName,
+                             localePrefix,
+                             new ArrayList(contracts),
+                             getMissingUntil());
+
+    }
+
+
+    /**
+     * @param name the resource name
+     * @param libraryName the library name
+     * @param localePrefix the locale prefix
+     * @param contracts the contracts
+     * @return <code>true</code> if the resource is known not to exist
+     */
+    public boolean isMissing(String name, String libraryName, String localePrefix, List<String> contracts) {
+
+        Util.notNull("name", name);
+
+        Long missingUntil = missingResources.get(name, libraryName, localePrefix, contracts);
+        if (missingUntil != null && missingUntil < System.currentTimeMillis()) {
+            missingResources.remove(name, libraryName, localePrefix, contracts);
+            return false;
+        }
+        return (missingUntil != null);
+
+    }
+
+
+    /**
+     * <p>Remember that a library could not be found, until the next
+     * modification check.  Nothing is remembered if the check period is
+     * <code>0</code>.</p>
+     *
+     * @param libraryName the library name
+     */
+    public void addMissingLibrary(String libraryName) {
+
+        Util.notNull("libraryName", libraryName);
+
+        if (checkPeriod == 0) {
+            return;
+        }
+        if (missingLibraries.size() >= MAX_MISSING_ENTRIES) {
+            missingLibraries.clear();
+        }
+        missingLibraries.put(libraryName, getMissingUntil());
+
+    }
+
+
+    /**
+     * @param libraryName the library name
+     * @return <code>true</code> if the library is known not to exist
+     */
+    public boolean isMissingLibrary(String libraryName) {
+
+        Util.notNull("libraryName", libraryName);
+
+        Long missingUntil = missingLibraries.get(libraryName);
+        if (missingUntil != null && missingUntil < System.currentTimeMillis()) {
+            missingLibraries.remove(libraryName, missingUntil);
+            return false;
+        }
+        return (missingUntil != null);
+
+    }
+
+
     /**
      * <p>Empty the cache.</p>
      */
     public void clear() {
 
         resourceCache.clear();
+        missingResources.clear();
+        missingLibraries.clear();
         if (LOGGER.isLoggable(Level.FINE)) {
             LOGGER.log(Level.FINE, "Cache Cleared");
         }
@@ -161,6 +303,13 @@ public class ResourceCache {
     // --------------------------------------------------------- Private Methods
 
 
+    private long getMissingUntil() {
+
+        return ((checkPeriod > 0) ? System.currentTimeMillis() + checkPeriod : Long.MAX_VALUE);
+
+    }
+
+
     private static Long getCheckPeriod(WebConfiguration webConfig) {
 
         String val = webConfig.getOptionValue(WebContextInitParameter.ResourceUpdateCheckPeriod);
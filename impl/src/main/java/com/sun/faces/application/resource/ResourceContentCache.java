@@ -0,0 +1,496 @@
+/*
+ * Copyright (c) 1997, 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.faces.application.resource;
+
+import static com.sun.faces.config.WebConfiguration.WebContextInitParameter.ResourceContentCacheMaxEntrySize;
+import static com.sun.faces.config.WebConfiguration.WebContextInitParameter.ResourceContentCacheSize;
+import static javax.faces.application.ProjectStage.Development;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+
+import javax.faces.context.FacesContext;
+
+import com.sun.faces.config.WebConfiguration;
+import com.sun.faces.config.WebConfiguration.WebContextInitParameter;
+import com.sun.faces.util.FacesLogger;
+
+/**
+ * <p>
+ * A bounded cache of the bodies of client resources, together with the
+ * response headers that do not change between requests for them, so that a
+ * resource request can be served with a single write and without touching
+ * the underlying file or jar.
+ * </p>
+ *
+ * <p>
+ * The cache is disabled unless its size is configured.  It is bounded by
+ * the total size of the cached bodies
+ * ({@link WebContextInitParameter#ResourceContentCacheSize}); when an entry
+ * takes the cache over that size, the least recently used entries are
+ * evicted, down to nine tenths of the size.  Recency is only tracked to
+ * within the last entry cached, so that a hit takes no lock and writes to
+ * no shared counter.  Bodies larger than
+ * {@link WebContextInitParameter#ResourceContentCacheMaxEntrySize} are not
+ * cached, which is remembered so they are only read once to find out.
+ * Resources that may contain EL expressions, and all resources when the
+ * project stage is <code>Development</code>, are never cached.  Compressable
+ * resources are cached once per content coding negotiated with the
+ * <code>Accept-Encoding</code> request header.
+ * </p>
+ *
+ * <p>
+ * Combined resources ({@link CombinedResource}) are cached by the digest
+ * their name is made of, so their entries never need to be checked for
+ * changes.
+ * </p>
+ *
+ * <p>
+ * An entry is bound to the {@link ResourceInfo} it was read through.  When
+ * the {@link ResourceManager} hands out a different <code>ResourceInfo</code>
+ * for the same resource (for example after its own cache was refreshed) the
+ * entry is only used if the modification time of the resource is unchanged.
+ * </p>
+ */
+final class ResourceContentCache {
+
+    private static final Logger LOGGER = FacesLogger.RESOURCE.getLogger();
+
+    /**
+     * Estimated overhead of an entry in addition to its body, in bytes.
+     */
+    private static final int ENTRY_OVERHEAD = 256;
+
+    private final long capacity;
+    private final int maxEntrySize;
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong weight = new AtomicLong();
+    private final AtomicLong clock = new AtomicLong();
+    private final Object evictionLock = new Object();
+
+
+    // ------------------------------------------------------------ Constructors
+
+
+    /**
+     * @param capacity the maximum total weight of the cached entries in bytes
+     * @param maxEntrySize the maximum size of a cached body in bytes
+     */
+    ResourceContentCache(long capacity, int maxEntrySize) {
+
+        this.capacity = capacity;
+        this.maxEntrySize = maxEntrySize;
+
+    }
+
+
+    // --------------------------------------------------------- Package Methods
+
+
+    /**
+     * @param webConfig the configuration of the application
+     * @return a new cache sized as configured, or <code>null</code> if
+     *  resource content caching is disabled
+     */
+    static ResourceContentCache create(WebConfiguration webConfig) {
+
+        long capacity = parseLong(webConfig, ResourceContentCacheSize);
+        int maxEntrySize = (int) Math.min(Integer.MAX_VALUE,
+                                          parseLong(webConfig, ResourceContentCacheMaxEntrySize));
+        if (capacity <= 0 || maxEntrySize <= 0) {
+            return null;
+        }
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.log(Level.FINE,
+                       "Caching up to {0} bytes of resource content, at most {1} bytes per resource",
+                       new Object[] { capacity, maxEntrySize });
+        }
+        return new ResourceContentCache(capacity, maxEntrySize);
+
+    }
+
+
+    /**
+     * @param context the <code>FacesContext</code> for the current request
+     * @param resource the requested resource
+     * @return the cached body and headers of <code>resource</code>, read and
+     *  cached if necessary, or <code>null</code> if <code>resource</code>
+     *  cannot be served from the cache
+     * @throws IOException if the resource cannot be read
+     */
+    Entry get(FacesContext context, ResourceImpl resource) throws IOException {
+
+        ResourceInfo info = resource.getResourceInfo();
+        if (!isCacheable(context, info)) {
+            return null;
+        }
+        ClientResourceInfo clientInfo = (ClientResourceInfo) info;
+        String encoding = clientInfo.getHelper().getContentEncoding(clientInfo, context);
+        String key = getKey(clientInfo, encoding);
+
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            // Only caching advances the clock; an entry hit since the last
+            // one was cached ranks with the next one to be cached
+            long now = clock.get() + 1;
+            if (entry.lastAccess != now) {
+                entry.lastAccess = now;
+            }
+            if (entry.info != clientInfo) {
+                if (entry.lastModified != clientInfo.getLastModified(context)) {
+                    remove(key, entry);
+                    entry = null;
+                } else {
+                    entry.info = clientInfo;
+                }
+            }
+            if (entry != null) {
+                return (entry.content != null) ? entry : null;
+            }
+        }
+
+        entry = load(context, resource, clientInfo, encoding);
+        if (entry != null) {
+            put(key, entry);
+        }
+        return ((entry != null && entry.content != null) ? entry : null);
+
+    }
+
+
+    /**
+     * @param context the <code>FacesContext</code> for the current request
+     * @param resource the requested combined resource
+     * @return the cached body and headers of <code>resource</code>, read and
+     *  cached if necessary; read but not cached if the resource is not
+     *  cacheable or is too large
+     * @throws IOException if a part of the resource cannot be read
+     */
+    Entry get(FacesContext context, CombinedResource resource) throws IOException {
+
+        String encoding = resource.getContentEncoding(context);
+        if (!resource.isCacheable(context)) {
+            return load(context, resource, encoding);
+        }
+        String key = CombinedResource.LIBRARY_NAME + ':' + resource.getResourceName();
+        if (encoding != null) {
+            key += ';' + encoding;
+        }
+
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            long now = clock.get() + 1;
+            if (entry.lastAccess != now) {
+                entry.lastAccess = now;
+            }
+            return entry;
+        }
+
+        entry = load(context, resource, encoding);
+        if (entry.content.length <= maxEntrySize) {
+            put(key, entry);
+        }
+        return entry;
+
+    }
+
+
+    /**
+     * @param context the <code>FacesContext</code> for the current request
+     * @param resource a combined resource
+     * @param encoding <code>gzip</code> or <code>null</code>, as returned by
+     *  {@link CombinedResource#getContentEncoding(FacesContext)}
+     * @return the body of <code>resource</code> in the given content coding,
+     *  and its headers, not cached
+     * @throws IOException if a part of the resource cannot be read
+     */
+    static Entry load(FacesContext context,
+                      CombinedResource resource,
+                      String encoding) throws IOException {
+
+        byte[] content = resource.getContent(context);
+        if (encoding != null) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(content.length / 4 + 64);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+                gzip.write(content);
+            }
+            content = out.toByteArray();
+        }
+        return new Entry(null,
+                         0,
+                         resource.getContentType(),
+                         encoding,
+                         content,
+                         resource.getCacheableHeaders(context, encoding));
+
+    }
+
+
+    // --------------------------------------------------------- Private Methods
+
+
+    private static boolean isCacheable(FacesContext context, ResourceInfo info) {
+
+        return (info instanceof ClientResourceInfo
+                && !((ClientResourceInfo) info).supportsEL()
+                && !context.isProjectStage(Development));
+
+    }
+
+
+    /*
+     * The path of a resource is made up of its library, the library version,
+     * the locale prefix, the contract, its name and its version.
+     */
+    private static String getKey(ClientResourceInfo info, String encoding) {
+
+        ResourceHelper helper = info.getHelper();
+        String key = ((helper != null) ? helper.getClass().getName() : "") + ':' + info.getPath();
+        return ((encoding != null) ? key + ';' + encoding : key);
+
+    }
+
+
+    /*
+     * Reads the body of the resource and captures its headers; returns an
+     * entry without content if the body is too large, or null if the
+     * resource cannot be found.
+     */
+    private Entry load(FacesContext context,
+                       ResourceImpl resource,
+                       ClientResourceInfo info,
+                       String encoding) throws IOException {
+
+        long lastModified = info.getLastModified(context);
+        InputStream in;
+        if (info.isCompressable()) {
+            // the variant is chosen here, not by the content negotiation
+            // of ResourceImpl.getInputStream()
+            ResourceHelper helper = info.getHelper();
+            in = ((encoding != null) ? helper.getEncodedInputStream(info, encoding, context) : null);
+            if (in == null) {
+                encoding = null;
+                in = helper.getIdentityInputStream(info, context);
+            }
+        } else {
+            in = resource.getInputStream();
+        }
+        if (in == null) {
+            return null;
+        }
+        byte[] content;
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+            byte[] buf = new byte[4096];
+            for (int read = in.read(buf); read != -1; read = in.read(buf)) {
+                if (out.size() + read > maxEntrySize) {
+                    if (LOGGER.isLoggable(Level.FINE)) {
+                        LOGGER.log(Level.FINE,
+                                   "Resource {0} is larger than {1} bytes and will not be cached",
+                                   new Object[] { info.getPath(), maxEntrySize });
+                    }
+                    return new Entry(info, lastModified, resource.getContentType(), null, null, null);
+                }
+                out.write(buf, 0, read);
+            }
+            content = out.toByteArray();
+        } finally {
+            in.close();
+        }
+
+        Map<String, String> headers = new LinkedHashMap<>(resource.getResponseHeaders());
+        // depend on the time and the parameters of the request
+        headers.remove("Expires");
+        headers.remove("Cache-Control");
+        if (headers.containsKey("ETag")) {
+            // the coding negotiated for the headers may not be available
+            String entityTag = resource.getEntityTag(context, encoding);
+            if (entityTag != null) {
+                headers.put("ETag", entityTag);
+            }
+        }
+        return new Entry(info, lastModified, resource.getContentType(), encoding, content, headers);
+
+    }
+
+
+    private void put(String key, Entry entry) {
+
+        entry.lastAccess = clock.incrementAndGet();
+        weight.addAndGet(entry.weight);
+        Entry previous = entries.put(key, entry);
+        if (previous != null) {
+            weight.addAndGet(-previous.weight);
+        }
+        evictIfNeeded();
+
+    }
+
+
+    private boolean remove(String key, Entry entry) {
+
+        if (entries.remove(key, entry)) {
+            weight.addAndGet(-entry.weight);
+            return true;
+        }
+        return false;
+
+    }
+
+
+    private void evictIfNeeded() {
+
+        if (weight.get() <= capacity) {
+            return;
+        }
+        synchronized (evictionLock) {
+            if (weight.get() <= capacity) {
+                return;
+            }
+
+            // snapshot the access times, as they change while sorting
+            List<Candidate> candidates = new ArrayList<>(entries.size());
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                candidates.add(new Candidate(e.getKey(), e.getValue()));
+            }
+            candidates.sort(Comparator.comparingLong(c -> c.lastAccess));
+
+            long target = capacity - capacity / 10;
+            for (Candidate c : candidates) {
+                if (weight.get() <= target) {
+                    break;
+                }
+                remove(c.key, c.entry);
+            }
+        }
+
+    }
+
+
+    private static long parseLong(WebConfiguration webConfig,
+                                  WebContextInitParameter param) {
+
+        try {
+            return Long.parseLong(webConfig.getOptionValue(param));
+        } catch (NumberFormatException nfe) {
+            if (LOGGER.isLoggable(Level.WARNING)) {
+                LOGGER.log(Level.WARNING,
+                           "Unable to parse the value of {0}, using the default value {1}",
+                           new Object[] { param.getQualifiedName(),
+                                          param.getDefaultValue() });
+            }
+            return Long.parseLong(param.getDefaultValue());
+        }
+
+    }
+
+
+    // ----------------------------------------------------------- Inner Classes
+
+
+    /**
+     * <p>The cached body, in the content coding <code>contentEncoding</code>,
+     * and response headers of a resource.</p>
+     */
+    static final class Entry {
+
+        volatile ClientResourceInfo info;
+        final long lastModified;
+        final String contentType;
+        final String contentEncoding;
+        final byte[] content;
+        final String[] headerNames;
+        final String[] headerValues;
+        final int weight;
+        volatile long lastAccess;
+
+        Entry(ClientResourceInfo info,
+              long lastModified,
+              String contentType,
+              String contentEncoding,
+              byte[] content,
+              Map<String, String> headers) {
+
+            this.info = info;
+            this.lastModified = lastModified;
+            this.contentType = contentType;
+            this.contentEncoding = contentEncoding;
+            this.content = content;
+            int size = ((headers != null) ? headers.size() : 0);
+            headerNames = new String[size];
+            headerValues = new String[size];
+            if (headers != null) {
+                int i = 0;
+                for (Map.Entry<String, String> header : headers.entrySet()) {
+                    headerNames[i] = header.getKey();
+                    headerValues[i] = header.getValue();
+                    i++;
+                }
+            }
+            weight = ENTRY_OVERHEAD + ((content != null) ? content.length : 0);
+
+        }
+
+
+        /**
+         * @param name the name of a response header
+         * @return the cached value of the header, or <code>null</code>
+         */
+        String getHeader(String name) {
+
+            for (int i = 0; i < headerNames.length; i++) {
+                if (headerNames[i].equalsIgnoreCase(name)) {
+                    return headerValues[i];
+                }
+            }
+            return null;
+
+        }
+
+    }
+
+
+    private static final class Candidate {
+
+        final String key;
+        final Entry entry;
+        final long lastAccess;
+
+        Candidate(String key, Entry entry) {
+
+            this.key = key;
+            this.entry = entry;
+            this.lastAccess = entry.lastAccess;
+
+        }
+
+    }
+
+}
@@ -18,6 +18,7 @@ package com.sun.faces.application.resource;
 
 import com.sun.faces.application.ApplicationAssociate;
 import com.sun.faces.config.WebConfiguration;
+import static com.sun.faces.config.WebConfiguration.BooleanWebContextInitParameter.CombineResources;
 import static com.sun.faces.config.WebConfiguration.WebContextInitParameter.DefaultResourceMaxAge;
 import static com.sun.faces.config.WebConfiguration.WebContextInitParameter.ResourceBufferSize;
 import static com.sun.faces.config.WebConfiguration.WebContextInitParameter.ResourceExcludes;
@@ -31,14 +32,23 @@ import static com.sun.faces.util.Util.notNegative;
 import static com.sun.faces.util.Util.notNull;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import static java.lang.Boolean.FALSE;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import java.net.URISyntaxException;
+import java.net.URL;
 import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.logging.Level;
 import static java.util.logging.Level.FINE;
 import static java.util.logging.Level.WARNING;
@@ -54,6 +64,8 @@ import javax.faces.context.ExternalContext;
 import javax.faces.context.FacesContext;
 import static javax.servlet.http.HttpServletResponse.SC_NOT_FOUND;
 import static javax.servlet.http.HttpServletResponse.SC_NOT_MODIFIED;
+import static javax.servlet.http.HttpServletResponse.SC_PARTIAL_CONTENT;
+import static javax.servlet.http.HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE;
 
 /**
  * This is the default implementation of {@link ResourceHandler}.
@@ -67,7 +79,9 @@ public class ResourceHandlerImpl extends ResourceHandler {
     List<Pattern> excludePatterns;
     private long creationTime;
     private long maxAge;
+    private int resourceBufferSize;
     private WebConfiguration webconfig;
+    private ResourceContentCache contentCache;
 
     // ------------------------------------------------------------ Constructors
 
@@ -83,6 +97,8 @@ public class ResourceHandlerImpl extends ResourceHandler {
         manager = ApplicationAssociate.getInstance(extContext).getResourceManager();
         initExclusions(extContext.getApplicationMap());
         initMaxAge();
+        initResourceBufferSize();
+        contentCache = ResourceContentCache.create(webconfig);
     }
 
 
@@ -191,15 +207,7 @@ public class ResourceHandlerImpl extends ResourceHandler {
             return false;
         }
         
-        FacesContext context = FacesContext.getCurrentInstance();
-        // PENDING(fcaputo) do we need to iterate over the contracts here? I don't think so.
-        LibraryInfo info = manager.findLibrary(libraryName, null, null, context);
-        if (info == null) {
-            info = manager.findLibraryOnClasspathWithZipDirectoryEntryScan(libraryName, null, null, context, true);
-
-        }
-        
-        return info != null;
+        return manager.libraryExists(libraryName, FacesContext.getCurrentInstance());
     }
     
     /**
@@ -282,12 +290,60 @@ public class ResourceHandlerImpl extends ResourceHandler {
                 createResource = true;
             }
             if (createResource) {
-                resource = context.getApplication().getResourceHandler().createResource(resourceName, libraryName);
+                if (CombinedResource.LIBRARY_NAME.equals(libraryName)) {
+                    resource = createCombinedResource(context, resourceName);
+                } else {
+                    resource = context.getApplication().getResourceHandler().createResource(resourceName, libraryName);
+                }
             }
         }
 
         if (resource != null) {
             if (resource.userAgentNeedsUpdate(context)) {
+                if (resource.getClass() == CombinedResource.class) {
+                    CombinedResource combined = (CombinedResource) resource;
+                    try {
+                        ResourceContentCache.Entry entry;
+                        if (contentCache != null) {
+                            entry = contentCache.get(context, combined);
+                        } else {
+                            entry = ResourceContentCache.load(context, combined,
+                                                              combined.getContentEncoding(context));
+                        }
+                        writeCachedResource(context, entry,
+                                            combined.getEntityTag(context, null),
+                                            combined.isImmutable(context));
+                    } catch (IOException ioe) {
+                        send404(context, resourceName, libraryName, ioe, true);
+                    }
+                    return;
+                }
+                if (contentCache != null && resource.getClass() == ResourceImpl.class) {
+                    ResourceContentCache.Entry entry;
+                    try {
+                        entry = contentCache.get(context, (ResourceImpl) resource);
+                    } catch (IOException ioe) {
+                        send404(context, resourceName, libraryName, ioe, true);
+                        return;
+                    }
+                    if (entry != null) {
+                        ResourceImpl resourceImpl = (ResourceImpl) resource;
+                        writeCachedResource(context, entry,
+                                            resourceImpl.getEntityTag(context, null),
+                                            resourceImpl.isImmutable(context));
+                        return;
+                    }
+                }
+                if (resource.getClass() == ResourceImpl.class) {
+                    try {
+                        if (writeFileResource(context, (ResourceImpl) resource)) {
+                            return;
+                        }
+                    } catch (IOException ioe) {
+                        send404(context, resourceName, libraryName, ioe, true);
+                        return;
+                    }
+                }
                 ReadableByteChannel resourceChannel = null;
                 WritableByteChannel out = null;
                 ByteBuffer buf = allocateByteBuffer();
@@ -339,7 +395,7 @@ public class ResourceHandlerImpl extends ResourceHandler {
                     }
                 }
             } else {
-                send304(context);
+                send304(context, resource);
             }
 
         } else {
@@ -349,6 +405,47 @@ public class ResourceHandlerImpl extends ResourceHandler {
 
     }
     
+    /**
+     * @param context the <code>FacesContext</code> for the current request
+     * @param resourceName the requested name of the combined resource
+     * @return the combination of the resources listed by the request, or
+     *  <code>null</code> if combining resources is disabled, or if a part
+     *  cannot be served or is of a different content type than the
+     *  combined resource
+     */
+    private Resource createCombinedResource(FacesContext context, String resourceName) {
+
+        if (!webconfig.isOptionEnabled(CombineResources)) {
+            return null;
+        }
+        String partsParameter = context.getExternalContext().getRequestParameterMap().get(CombinedResource.PARTS_PARAM);
+        String contentType = getContentType(context, resourceName);
+        List<String[]> names = ((partsParameter != null) ? CombinedResource.parseParts(partsParameter) : null);
+        if (names == null || contentType == null) {
+            return null;
+        }
+        ResourceHandler handler = context.getApplication().getResourceHandler();
+        List<Resource> parts = new ArrayList<>(names.size());
+        for (String[] name : names) {
+            String partLibrary = name[0];
+            String partName = name[1];
+            if ((partLibrary != null && (!libraryNameIsSafe(partLibrary) || CombinedResource.LIBRARY_NAME.equals(partLibrary)))
+                  || isExcluded(RESOURCE_IDENTIFIER + '/' + partName)) {
+                return null;
+            }
+            Resource part = handler.createResource(partName, partLibrary);
+            if (part == null || !contentType.equals(part.getContentType())) {
+                return null;
+            }
+            parts.add(part);
+        }
+        Resource resource = CombinedResource.create(context, parts, maxAge);
+        // the requested name tells if the content may have changed since
+        resource.setResourceName(resourceName);
+        return resource;
+
+    }
+
     private boolean libraryNameIsSafe(String libraryName) {
         assert(null != libraryName);
         boolean result;
@@ -391,8 +488,23 @@ public class ResourceHandlerImpl extends ResourceHandler {
         }
     }
 
-    private void send304(FacesContext ctx) {
-        ctx.getExternalContext().setResponseStatus(SC_NOT_MODIFIED);
+    private void send304(FacesContext ctx, Resource resource) {
+        ExternalContext extContext = ctx.getExternalContext();
+        extContext.setResponseStatus(SC_NOT_MODIFIED);
+        if (resource instanceof ResourceImpl) {
+            String entityTag = ((ResourceImpl) resource).getEntityTag(ctx);
+            if (entityTag != null) {
+                extContext.setResponseHeader("ETag", entityTag);
+            }
+            if (((ResourceImpl) resource).isCompressable()) {
+                extContext.setResponseHeader("Vary", "Accept-Encoding");
+            }
+        } else if (resource instanceof CombinedResource) {
+            extContext.setResponseHeader("ETag", ((CombinedResource) resource).getEntityTag(ctx));
+            if (((CombinedResource) resource).isCompressable()) {
+                extContext.setResponseHeader("Vary", "Accept-Encoding");
+            }
+        }
     }
 
 
@@ -595,7 +707,259 @@ public class ResourceHandlerImpl extends ResourceHandler {
         }
     }
 
+    /**
+     * Writes a resource served from the {@link ResourceContentCache}, or a
+     * combined resource, which is held in memory anyway.  The body is
+     * written with a single write, after the content length has been set.
+     *
+     * @param identityEntityTag the strong entity tag of the uncompressed
+     *  representation, which ranges are served from
+     * @param immutable <code>true</code> if the resource was requested by
+     *  the digest of its content
+     */
+    private void writeCachedResource(FacesContext ctx,
+                                     ResourceContentCache.Entry entry,
+                                     String identityEntityTag,
+                                     boolean immutable)
+    throws IOException {
+
+        ExternalContext extContext = ctx.getExternalContext();
+        if (entry.contentType != null) {
+            extContext.setResponseContentType(entry.contentType);
+        }
+        for (int i = 0; i < entry.headerNames.length; i++) {
+            extContext.setResponseHeader(entry.headerNames[i], entry.headerValues[i]);
+        }
+        if (entry.contentEncoding != null) {
+            extContext.setResponseHeader("Content-Encoding", entry.contentEncoding);
+        }
+        List<long[]> ranges = null;
+        if (entry.contentEncoding == null) {
+            extContext.setResponseHeader("Accept-Ranges", "bytes");
+            ranges = getRanges(ctx, identityEntityTag, entry.getHeader("Last-Modified"), entry.content.length);
+        }
+        if (immutable) {
+            extContext.setResponseHeader("Expires",
+                                         ResourceImpl.formatHttpDate(System.currentTimeMillis() + ResourceImpl.IMMUTABLE_MAX_AGE));
+            extContext.setResponseHeader("Cache-Control", ResourceImpl.IMMUTABLE_CACHE_CONTROL);
+        } else {
+            extContext.setResponseHeader("Expires",
+                                         ResourceImpl.formatHttpDate(System.currentTimeMillis() + maxAge));
+        }
+        if (ranges != null) {
+            byte[] content = entry.content;
+            writeRanges(ctx, entry.contentType, content.length, ranges,
+                        (out, first, length) -> out.write(content, (int) first, (int) length));
+            return;
+        }
+        extContext.setResponseContentLength(entry.content.length);
+        extContext.getResponseOutputStream().write(entry.content);
+    }
+
+    /**
+     * Writes a resource backed by a file with <code>FileChannel.transferTo</code>,
+     * which lets the JDK copy the file without reading it into the heap, or
+     * straight to the socket if the container's response stream is a channel.
+     *
+     * @return <code>false</code> if the resource is not backed by a file that
+     *  can be sent as is, in which case nothing has been written
+     */
+    static boolean writeFileResource(FacesContext ctx, ResourceImpl resource)
+    throws IOException {
+
+        Path file = getFile(ctx, resource);
+        if (file == null) {
+            return false;
+        }
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+        } catch (IOException ioe) {
+            if (LOGGER.isLoggable(FINE)) {
+                LOGGER.log(FINE, "Unable to open " + file + ", serving it as a stream", ioe);
+            }
+            return false;
+        }
+        try {
+            ExternalContext extContext = ctx.getExternalContext();
+            long size = channel.size();
+            String contentType = resource.getContentType();
+            if (contentType != null) {
+                extContext.setResponseContentType(contentType);
+            }
+            Map<String, String> headers = resource.getResponseHeaders();
+            for (Map.Entry<String, String> cur : headers.entrySet()) {
+                extContext.setResponseHeader(cur.getKey(), cur.getValue());
+            }
+            extContext.setResponseHeader("Accept-Ranges", "bytes");
+            List<long[]> ranges = getRanges(ctx, resource.getEntityTag(ctx, null), headers.get("Last-Modified"), size);
+            if (ranges != null) {
+                writeRanges(ctx, contentType, size, ranges,
+                            (out, first, length) -> transfer(channel, first, length, out));
+                return true;
+            }
+            if (size <= Integer.MAX_VALUE) {
+                extContext.setResponseContentLength((int) size);
+            }
+            transfer(channel, 0, size, extContext.getResponseOutputStream());
+        } finally {
+            channel.close();
+        }
+        return true;
+
+    }
+
+    private static void transfer(FileChannel channel, long position, long count, OutputStream os)
+    throws IOException {
+
+        WritableByteChannel out = ((os instanceof WritableByteChannel)
+                                   ? (WritableByteChannel) os
+                                   : Channels.newChannel(os));
+        for (long end = position + count, transferred; position < end; position += transferred) {
+            transferred = channel.transferTo(position, end - position, out);
+            if (transferred <= 0) {
+                // the file was truncated while being sent
+                break;
+            }
+        }
+
+    }
+
+    /*
+     * Returns the ranges of the representation requested with the Range
+     * header, or null if the whole representation is to be sent.  Ranges
+     * are only served from the identity representation, so an If-Range
+     * header must match the strong entity tag of that representation or the
+     * modification date of the resource for the Range header to be honoured.
+     */
+    private static List<long[]> getRanges(FacesContext ctx,
+                                          String identityEntityTag,
+                                          String lastModified,
+                                          long length) {
+
+        Map<String, String> requestHeaders = ctx.getExternalContext().getRequestHeaderMap();
+        String range = requestHeaders.get("Range");
+        if (range == null) {
+            return null;
+        }
+        String ifRange = requestHeaders.get("If-Range");
+        if (ifRange != null) {
+            ifRange = ifRange.trim();
+            if (ifRange.startsWith("\"")) {
+                if (!ifRange.equals(identityEntityTag)) {
+                    return null;
+                }
+            } else if (!ifRange.equals(lastModified)) {
+                // weak entity tags never match
+                return null;
+            }
+        }
+        return ByteRanges.parse(range, length);
+
+    }
+
+    /*
+     * Writes a 206 response with the given ranges, as a multipart/byteranges
+     * body if there is more than one, or a 416 response if there is none.
+     */
+    private static void writeRanges(FacesContext ctx,
+                                    String contentType,
+                                    long length,
+                                    List<long[]> ranges,
+                                    RangeWriter writer)
+    throws IOException {
+
+        ExternalContext extContext = ctx.getExternalContext();
+        if (ranges.isEmpty()) {
+            extContext.setResponseStatus(SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            extContext.setResponseHeader("Content-Range", "bytes */" + length);
+            extContext.setResponseContentLength(0);
+            return;
+        }
+
+        extContext.setResponseStatus(SC_PARTIAL_CONTENT);
+        OutputStream out;
+        if (ranges.size() == 1) {
+            long[] range = ranges.get(0);
+            long rangeLength = range[1] - range[0] + 1;
+            extContext.setResponseHeader("Content-Range", contentRange(range, length));
+            if (rangeLength <= Integer.MAX_VALUE) {
+                extContext.setResponseContentLength((int) rangeLength);
+            }
+            out = extContext.getResponseOutputStream();
+            writer.write(out, range[0], rangeLength);
+            return;
+        }
+
+        String boundary = Long.toHexString(ThreadLocalRandom.current().nextLong())
+                          + Long.toHexString(System.nanoTime());
+        byte[][] partHeaders = new byte[ranges.size()][];
+        byte[] end = ("\r\n--" + boundary + "--\r\n").getBytes(US_ASCII);
+        long contentLength = end.length;
+        for (int i = 0; i < partHeaders.length; i++) {
+            long[] range = ranges.get(i);
+            StringBuilder sb = new StringBuilder(128);
+            sb.append("\r\n--").append(boundary).append("\r\n");
+            if (contentType != null) {
+                sb.append("Content-Type: ").append(contentType).append("\r\n");
+            }
+            sb.append("Content-Range: ").append(contentRange(range, length)).append("\r\n\r\n");
+            partHeaders[i] = sb.toString().getBytes(US_ASCII);
+            contentLength += partHeaders[i].length + range[1] - range[0] + 1;
+        }
+        extContext.setResponseContentType("multipart/byteranges; boundary=" + boundary);
+        if (contentLength <= Integer.MAX_VALUE) {
+            extContext.setResponseContentLength((int) contentLength);
+        }
+        out = extContext.getResponseOutputStream();
+        for (int i = 0; i < partHeaders.length; i++) {
+            long[] range = ranges.get(i);
+            out.write(partHeaders[i]);
+            writer.write(out, range[0], range[1] - range[0] + 1);
+        }
+        out.write(end);
+
+    }
+
+    private static String contentRange(long[] range, long length) {
+        return "bytes " + range[0] + '-' + range[1] + '/' + length;
+    }
+
+    /*
+     * Returns the file backing the resource, if the resource is minified or
+     * read from a file: URL without any transformation, otherwise null.
+     */
+    private static Path getFile(FacesContext ctx, ResourceImpl resource) {
+
+        ResourceInfo info = resource.getResourceInfo();
+        if (!(info instanceof ClientResourceInfo)) {
+            return null;
+        }
+        ClientResourceInfo clientInfo = (ClientResourceInfo) info;
+        if (clientInfo.supportsEL()
+              || clientInfo.getHelper().getContentEncoding(clientInfo, ctx) != null) {
+            return null;
+        }
+        if (clientInfo.getMinifiedFile() != null) {
+            return clientInfo.getMinifiedFile().toPath();
+        }
+        URL url = resource.getURL();
+        if (url == null || !"file".equals(url.getProtocol())) {
+            return null;
+        }
+        try {
+            return Paths.get(url.toURI());
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return null;
+        }
+
+    }
+
     private ByteBuffer allocateByteBuffer() {
+        return ByteBuffer.allocate(resourceBufferSize);
+    }
+
+    private void initResourceBufferSize() {
 
         int size;
         try {
@@ -613,7 +977,21 @@ public class ResourceHandlerImpl extends ResourceHandler {
             size = Integer.parseInt(ResourceBufferSize.getDefaultValue());
         }
         
-        return ByteBuffer.allocate(size);
+        resourceBufferSize = size;
     }
-    
+
+
+    // ----------------------------------------------------------- Inner Classes
+
+
+    /**
+     * Writes a range of the content of a resource.
+     */
+    @FunctionalInterface
+    private interface RangeWriter {
+
+        void write(OutputStream out, long first, long length) throws IOException;
+
+    }
+
 }
@@ -18,18 +18,23 @@ package com.sun.faces.application.resource;
 
 import static javax.faces.application.ResourceHandler.JSF_SCRIPT_LIBRARY_NAME;
 import static javax.faces.application.ResourceHandler.JSF_SCRIPT_RESOURCE_NAME;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
 
 import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -99,6 +104,15 @@ public abstract class ResourceHelper {
     private static final String COMPRESSED_CONTENT_FILENAME =
           "compressed-content";
 
+    static final String GZIP_ENCODING = "gzip";
+
+    static final String BROTLI_ENCODING = "br";
+
+    /**
+     * Extension of the precompressed Brotli variant of a resource.
+     */
+    private static final String BROTLI_EXTENSION = ".br";
+
     private static final String[] EL_CONTENT_TYPES = {
           "text/css",
     };
@@ -177,62 +191,18 @@ public abstract class ResourceHelper {
             FacesContext ctx) throws IOException {
         InputStream in = null;
         
-        if (resource.isCompressable() && clientAcceptsCompression(ctx)) {
-            if (!resource.supportsEL()) {
-                try {
-                    String path = resource.getCompressedPath();
-                    in = new BufferedInputStream(
-                            new FileInputStream(path
-                            + File.separatorChar
-                            + COMPRESSED_CONTENT_FILENAME));
-                } catch (IOException ioe) {
-                    if (LOGGER.isLoggable(Level.SEVERE)) {
-                        LOGGER.log(Level.SEVERE,
-                                ioe.getMessage(),
-                                ioe);
-                    }
-                    // return null so that the override code will try to serve
-                    // the non-compressed content
-                    in = null;
-                }
-            } else {
-                byte[] buf = new byte[512];
-
-                try (InputStream temp = new BufferedInputStream(
-                            new ELEvaluatingInputStream(ctx,
-                                    resource,
-                                    getNonCompressedInputStream(resource,
-                            ctx)));
-                     ByteArrayOutputStream baos = new ByteArrayOutputStream(512);
-                     OutputStream out = new GZIPOutputStream(baos);) {
-                    // using dynamic compression here
-                    
-                    for (int read = temp.read(buf); read != -1; read = temp.read(buf)) {
-                        out.write(buf, 0, read);
-                    }
-                    in = new BufferedInputStream(
-                            new ByteArrayInputStream(baos.toByteArray()));
-                    
-                } catch (IOException ioe) {
-                    if (LOGGER.isLoggable(Level.SEVERE)) {
-                        LOGGER.log(Level.SEVERE,
-                                ioe.getMessage(),
-                                ioe);
-                    }
+        if (resource.isCompressable()) {
+            String encoding = getContentEncoding(resource, ctx);
+            if (encoding != null) {
+                in = getEncodedInputStream(resource, encoding, ctx);
+                if (in != null) {
+                    setContentEncoding(ctx, encoding);
                 }
             }
         }
         
         if (in == null) {
-            if (resource.supportsEL()) {
-                return new BufferedInputStream(
-                        new ELEvaluatingInputStream(ctx,
-                                resource,
-                                getNonCompressedInputStream(resource,
-                        ctx)));
-            } else {
-                in = getNonCompressedInputStream(resource, ctx);
-            }
+            in = getIdentityInputStream(resource, ctx);
         }
         return in;
     }
@@ -372,8 +342,8 @@ public abstract class ResourceHelper {
 
 
     /**
-     * Utility method to compress the content of the original resource
-     * to the temporary directory specified by {@link com.sun.faces.application.resource.ClientResourceInfo#getCompressedPath()}.
+     * Utility method to compress the content of the original resource, or of
+     * its minified content if there is some, to the temporary directory specified by {@link com.sun.faces.application.resource.ClientResourceInfo#getCompressedPath()}.
      *
      * @param info the resource to be compressed
      * @return <code>true</code> if compression succeeded <em>and</em> the compressed
@@ -386,12 +356,17 @@ public abstract class ResourceHelper {
         InputStream source = null;
         OutputStream dest = null;
         try {
-            URL url = info.getHelper()
-                  .getURL(info, FacesContext.getCurrentInstance());
-            URLConnection conn = url.openConnection();
-            conn.setUseCaches(false);
-            conn.connect();
-            source = conn.getInputStream();
+            File minifiedFile = info.getMinifiedFile();
+            if (minifiedFile != null) {
+                source = new FileInputStream(minifiedFile);
+            } else {
+                URL url = info.getHelper()
+                      .getURL(info, FacesContext.getCurrentInstance());
+                URLConnection conn = url.openConnection();
+                conn.setUseCaches(false);
+                conn.connect();
+                source = conn.getInputStream();
+            }
             byte[] buf = new byte[512];
             ByteArrayOutputStream baos = new ByteArrayOutputStream();
             dest = new GZIPOutputStream(baos);
@@ -410,12 +385,20 @@ public abstract class ResourceHelper {
             }
 
             if (baos.size() < totalRead) {
-                String outputFile = info.getCompressedPath()
-                                + File.separatorChar
-                                + COMPRESSED_CONTENT_FILENAME;
-                dest = new FileOutputStream(outputFile);
-                dest.write(baos.toByteArray());
-                dest.flush();                
+                // written aside then moved, as the same file may be
+                // compressed by concurrent lookups and read meanwhile
+                Path outputFile = Paths.get(info.getCompressedPath(), COMPRESSED_CONTENT_FILENAME);
+                Path tempFile = Files.createTempFile(outputFile.getParent(), COMPRESSED_CONTENT_FILENAME, null);
+                try {
+                    Files.write(tempFile, baos.toByteArray());
+                    try {
+                        Files.move(tempFile, outputFile, ATOMIC_MOVE);
+                    } catch (AtomicMoveNotSupportedException amnse) {
+                        Files.move(tempFile, outputFile, REPLACE_EXISTING);
+                    }
+                } finally {
+                    Files.deleteIfExists(tempFile);
+                }
                 return true;
             }
             return false;
@@ -446,19 +429,12 @@ public abstract class ResourceHelper {
      * <p>
      * This method attempt to verify that the user agent can accept a gzip
      * encoded response by interrogating the <code>Accept-Encoding</code>
-     * requester header.  If it is determined safe to send a gzip encoded
-     * response, send the <code>Content-Encoding</code> header with a value
-     * of <code>gzip</code>.</p>
-     *
-     * <p>
-     * See <a href="http://www.w3.org/Protocols/rfc2616/rfc2616-sec14.html>RFC 2616, sec. 14</a>
-     * for details on the accept-encoding header.
+     * requester header.
      * </p>
      *
      * <p>
-     * Implementation Note:  It is safe to cast to a <code>HttpServletResponse</code>
-     * as this method will only be called when handling a resource request.  Resource
-     * serving is outside of the JSF and Portlet lifecycle.
+     * See <a href="https://tools.ietf.org/html/rfc7231#section-5.3.4">RFC 7231, sec. 5.3.4</a>
+     * for details on the accept-encoding header.
      * </p>
      *
      * @param ctx the {@link FacesContext} for the current request
@@ -467,41 +443,7 @@ public abstract class ResourceHelper {
      */
     protected boolean clientAcceptsCompression(FacesContext ctx) {
 
-        ExternalContext extCtx = ctx.getExternalContext();
-        Object response = extCtx.getResponse();
-        if (response instanceof HttpServletResponse) {
-            String[] values =
-                  extCtx.getRequestHeaderValuesMap().get("accept-encoding");
-            boolean gzipFound = false;
-            for (String value : values) {
-                if (value.contains("gzip;q=0")) {
-                    // gzip compression not accepted by the user-agent
-                    return false;
-                }
-                if (value.contains("gzip")) {
-                    // gzip compression explicitly listed as supported
-                    // by the user agent.  Break here as we don't need to continue.
-                    gzipFound = true;
-                    break;
-                }
-                if (value.contains("*")
-                      && (!value.contains("*;q=0,") && !value.endsWith("*;q=0"))) {
-                    // gzip not explictly listed, but client sent *
-                    // meaning gzip is implicitly acceptable
-                    // keep looping to ensure we don't come across a
-                    // *;q=0 value.
-                    gzipFound = true;
-                }
-            }                                               
-            
-            if (gzipFound) {
-                ((HttpServletResponse) response)
-                      .setHeader("Content-Encoding", "gzip");
-                return true;
-            }
-        }
-
-        return false;
+        return clientAcceptsEncoding(ctx, GZIP_ENCODING);
 
     }
 
@@ -566,9 +508,250 @@ public abstract class ResourceHelper {
 
     }
 
+    // --------------------------------------------------------- Package Methods
+
+
+    /**
+     * <p>
+     * Negotiates the content coding in which a compressable resource is sent
+     * to the client of the current request: a precompressed Brotli variant
+     * (a file named after the resource with the extension <code>.br</code>,
+     * next to it) if there is one and the client accepts <code>br</code>,
+     * otherwise gzip if the client accepts <code>gzip</code>.
+     * </p>
+     *
+     * @param resource the requested resource
+     * @param ctx the {@link FacesContext} for the current request
+     * @return <code>br</code>, <code>gzip</code>, or <code>null</code> if
+     *  the resource is sent as is
+     */
+    String getContentEncoding(ClientResourceInfo resource, FacesContext ctx) {
+
+        if (!resource.isCompressable()) {
+            return null;
+        }
+        if (!resource.supportsEL()
+              && clientAcceptsEncoding(ctx, BROTLI_ENCODING)
+              && resource.getBrotliURL(ctx) != null) {
+            return BROTLI_ENCODING;
+        }
+        if (clientAcceptsCompression(ctx)) {
+            return GZIP_ENCODING;
+        }
+        return null;
+
+    }
+
+
+    /**
+     * @param resource the requested resource
+     * @param ctx the {@link FacesContext} for the current request
+     * @return an <code>InputStream</code> to the uncompressed content of the
+     *  resource, with any EL expressions evaluated
+     * @throws IOException if an error occurs obtaining the stream
+     */
+    InputStream getIdentityInputStream(ClientResourceInfo resource,
+                                       FacesContext ctx) throws IOException {
+
+        if (resource.supportsEL()) {
+            return new BufferedInputStream(
+                    new ELEvaluatingInputStream(ctx,
+                            resource,
+                            getSourceInputStream(resource,
+                    ctx)));
+        } else {
+            return getSourceInputStream(resource, ctx);
+        }
+
+    }
+
+
+    /**
+     * @param resource the requested resource
+     * @param encoding the content coding, as returned by
+     *  {@link #getContentEncoding(ClientResourceInfo, FacesContext)}
+     * @param ctx the {@link FacesContext} for the current request
+     * @return an <code>InputStream</code> to the content of the resource in
+     *  the given content coding, or <code>null</code> if it is unavailable
+     */
+    InputStream getEncodedInputStream(ClientResourceInfo resource,
+                                      String encoding,
+                                      FacesContext ctx) {
+
+        InputStream in = null;
+        try {
+            if (BROTLI_ENCODING.equals(encoding)) {
+                URL url = resource.getBrotliURL(ctx);
+                if (url != null) {
+                    URLConnection conn = url.openConnection();
+                    conn.setUseCaches(false);
+                    in = new BufferedInputStream(conn.getInputStream());
+                }
+            } else if (GZIP_ENCODING.equals(encoding)) {
+                if (!resource.supportsEL()) {
+                    in = new BufferedInputStream(
+                            new FileInputStream(resource.getCompressedPath()
+                            + File.separatorChar
+                            + COMPRESSED_CONTENT_FILENAME));
+                } else {
+                    byte[] buf = new byte[512];
+
+                    try (InputStream temp = new BufferedInputStream(
+                                new ELEvaluatingInputStream(ctx,
+                                        resource,
+                                        getSourceInputStream(resource,
+                                ctx)));
+                         ByteArrayOutputStream baos = new ByteArrayOutputStream(512);
+                         OutputStream out = new GZIPOutputStream(baos);) {
+                        // using dynamic compression here
+                        
+                        for (int read = temp.read(buf); read != -1; read = temp.read(buf)) {
+                            out.write(buf, 0, read);
+                        }
+                        out.close();
+                        in = new BufferedInputStream(
+                                new ByteArrayInputStream(baos.toByteArray()));
+                    }
+                }
+            }
+        } catch (IOException ioe) {
+            if (LOGGER.isLoggable(Level.SEVERE)) {
+                LOGGER.log(Level.SEVERE,
+                        ioe.getMessage(),
+                        ioe);
+            }
+            // return null so that the caller will try to serve
+            // the non-compressed content
+            in = null;
+        }
+        return in;
+
+    }
+
+
+    /**
+     * @param resource the resource
+     * @param ctx the {@link FacesContext} for the current request
+     * @return the URL of the precompressed Brotli variant of the resource,
+     *  or <code>null</code> if there is none
+     */
+    URL findBrotliURL(ClientResourceInfo resource, FacesContext ctx) {
+
+        URL url = getURL(resource, ctx);
+        if (url == null) {
+            return null;
+        }
+        String path = url.getPath();
+        try {
+            URL variant = new URL(url, path.substring(path.lastIndexOf('/') + 1)
+                                       + BROTLI_EXTENSION);
+            URLConnection conn = variant.openConnection();
+            conn.setUseCaches(false);
+            conn.getInputStream().close();
+            return variant;
+        } catch (IOException ioe) {
+            // no precompressed variant
+            return null;
+        }
+
+    }
+
+
+    /**
+     * @param acceptEncoding the values of the <code>Accept-Encoding</code>
+     *  request header, may be <code>null</code>
+     * @param encoding a content coding
+     * @return <code>true</code> if <code>encoding</code> is acceptable,
+     *  that is it is listed with a non zero quality value, or it is not
+     *  listed and <code>*</code> is listed with a non zero quality value
+     */
+    static boolean acceptsEncoding(String[] acceptEncoding, String encoding) {
+
+        if (acceptEncoding == null) {
+            return false;
+        }
+        float quality = -1;
+        float anyQuality = -1;
+        for (String value : acceptEncoding) {
+            for (String coding : value.split(",")) {
+                String[] params = coding.split(";");
+                String name = params[0].trim();
+                float q = 1;
+                for (int i = 1; i < params.length; i++) {
+                    String param = params[i].trim();
+                    if (param.startsWith("q=") || param.startsWith("Q=")) {
+                        try {
+                            q = Float.parseFloat(param.substring(2).trim());
+                        } catch (NumberFormatException nfe) {
+                            q = 0;
+                        }
+                    }
+                }
+                if (name.equalsIgnoreCase(encoding)
+                      || (GZIP_ENCODING.equals(encoding) && name.equalsIgnoreCase("x-gzip"))) {
+                    quality = Math.max(quality, q);
+                } else if ("*".equals(name)) {
+                    anyQuality = Math.max(anyQuality, q);
+                }
+            }
+        }
+        return ((quality >= 0) ? quality > 0 : anyQuality > 0);
+
+    }
+
+
+    /**
+     * @param ctx the {@link FacesContext} for the current request
+     * @param encoding a content coding
+     * @return <code>true</code> if the client of the current HTTP request
+     *  accepts <code>encoding</code>
+     * @see #acceptsEncoding(String[], String)
+     */
+    static boolean clientAcceptsEncoding(FacesContext ctx, String encoding) {
+
+        ExternalContext extCtx = ctx.getExternalContext();
+        if (extCtx.getResponse() instanceof HttpServletResponse) {
+            return acceptsEncoding(extCtx.getRequestHeaderValuesMap().get("accept-encoding"),
+                                   encoding);
+        }
+        return false;
+
+    }
+
+
     // --------------------------------------------------------- Private Methods
 
 
+    /*
+     * The content of the resource before EL evaluation and compression: the
+     * minified content if there is some, otherwise the original.
+     */
+    private InputStream getSourceInputStream(ClientResourceInfo resource,
+                                             FacesContext ctx) throws IOException {
+
+        File minifiedFile = resource.getMinifiedFile();
+        if (minifiedFile != null) {
+            return new BufferedInputStream(new FileInputStream(minifiedFile));
+        }
+        return getNonCompressedInputStream(resource, ctx);
+
+    }
+
+
+    /*
+     * It is safe to cast to a HttpServletResponse as this method will only
+     * be called when handling a resource request.
+     */
+    private static void setContentEncoding(FacesContext ctx, String encoding) {
+
+        Object response = ctx.getExternalContext().getResponse();
+        if (response instanceof HttpServletResponse) {
+            ((HttpServletResponse) response).setHeader("Content-Encoding", encoding);
+        }
+
+    }
+
+
     private ClientResourceInfo rebuildAsNonCompressed(ClientResourceInfo resource) {
 
         LibraryInfo library = resource.getLibraryInfo();
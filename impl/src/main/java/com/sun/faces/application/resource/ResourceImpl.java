@@ -16,6 +16,7 @@
 
 package com.sun.faces.application.resource;
 
+import static com.sun.faces.config.WebConfiguration.BooleanWebContextInitParameter.ResourceContentHashInRequestPath;
 import static com.sun.faces.util.Util.getFacesMapping;
 import static com.sun.faces.util.Util.getFirstWildCardMappingToFacesServlet;
 import static com.sun.faces.util.Util.getLastModified;
@@ -40,11 +41,13 @@ import java.net.URL;
 import java.net.URLConnection;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
-import java.util.TimeZone;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -56,6 +59,7 @@ import javax.faces.context.FacesContext;
 import javax.servlet.http.HttpServletRequest;
 
 import com.sun.faces.application.ApplicationAssociate;
+import com.sun.faces.config.WebConfiguration;
 import com.sun.faces.util.FacesLogger;
 
 /**
@@ -76,7 +80,21 @@ public class ResourceImpl extends Resource implements Externalizable {
 
     private static final String IF_MODIFIED_SINCE = "If-Modified-Since";
 
-    private static final TimeZone GMT = TimeZone.getTimeZone("GMT");
+    private static final String IF_NONE_MATCH = "If-None-Match";
+
+    /* Request parameter carrying the content hash of the resource */
+    private static final String CONTENT_HASH_PARAM = "h";
+
+    /* Lifespan of a resource requested by its content hash, one year */
+    static final long IMMUTABLE_MAX_AGE = 365L * 24L * 60L * 60L * 1000L;
+
+    static final String IMMUTABLE_CACHE_CONTROL =
+          "public, max-age=" + (IMMUTABLE_MAX_AGE / 1000L) + ", immutable";
+
+    /* Thread safe equivalent of RFC1123_DATE_PATTERN in GMT */
+    private static final DateTimeFormatter HTTP_DATE_FORMAT =
+          DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", US)
+                           .withZone(ZoneOffset.UTC);
 
 
     /* The meta data on the resource */
@@ -188,16 +206,24 @@ public class ResourceImpl extends Resource implements Externalizable {
                 responseHeaders = new HashMap<>(6, 1.0f);
             }
 
+            FacesContext context = FacesContext.getCurrentInstance();
+            boolean immutable = isImmutable(context);
             long expiresTime;
-            if (FacesContext.getCurrentInstance().isProjectStage(Development)) {
+            if (context.isProjectStage(Development)) {
                 expiresTime = new Date().getTime();
+            } else if (immutable) {
+                expiresTime = new Date().getTime() + IMMUTABLE_MAX_AGE;
             } else {
                 expiresTime = new Date().getTime() + maxAge;
             }
             
-            SimpleDateFormat format = new SimpleDateFormat(RFC1123_DATE_PATTERN, US);
-            format.setTimeZone(GMT);
-            responseHeaders.put("Expires", format.format(new Date(expiresTime)));
+            responseHeaders.put("Expires", formatHttpDate(expiresTime));
+            if (immutable) {
+                responseHeaders.put("Cache-Control", IMMUTABLE_CACHE_CONTROL);
+            }
+            if (isCompressable()) {
+                responseHeaders.put("Vary", "Accept-Encoding");
+            }
 
             URL url = getURL();
             InputStream in = null;
@@ -211,8 +237,11 @@ public class ResourceImpl extends Resource implements Externalizable {
                 if (lastModified == 0) {
                     lastModified = initialTime;
                 }
-                responseHeaders.put("Last-Modified", format.format(new Date(lastModified)));
-                if (lastModified != 0 && contentLength != -1) {
+                responseHeaders.put("Last-Modified", formatHttpDate(lastModified));
+                String entityTag = getEntityTag(context);
+                if (entityTag != null) {
+                    responseHeaders.put("ETag", entityTag);
+                } else if (lastModified != 0 && contentLength != -1) {
                     responseHeaders.put("ETag", "W/\""
                                     + contentLength
                                     + '-'
@@ -248,43 +277,7 @@ public class ResourceImpl extends Resource implements Externalizable {
 
         
         FacesContext context = FacesContext.getCurrentInstance();
-        String facesServletMapping = getFacesMapping(context);
-        
-        String uri = null;
-        
-        // Check for exact mapping first
-        if (isExactMapped(facesServletMapping)) {
-            String resource = RESOURCE_IDENTIFIER + '/' + getResourceName();
-            // Check if the FacesServlet is exact mapped to the resource
-            if (isResourceExactMappedToFacesServlet(context.getExternalContext(), resource)) {
-                uri = facesServletMapping + resource;
-            } else {
-                // No exact mapping for the requested resource, see if Facelets servlet is mapped to 
-                // e.g. /faces/* or *.xhtml and take that mapping
-                String mapping = getFirstWildCardMappingToFacesServlet(context.getExternalContext());
-                
-                if (mapping == null) {
-                    
-                    // If there are only exact mappings and the resource is not exact mapped,
-                    // we can't serve this resource
-                    
-                    throw new IllegalStateException(
-                        "No suitable mapping for FacesServlet found. To serve resources " +
-                        "FacesServlet should have at least one prefix or suffix mapping."
-                    );
-                }
-                facesServletMapping = mapping.replace("*", "");
-            }
-        } 
-        
-        if (uri == null) {
-            // If it is extension mapped
-            if (isPrefixMapped(facesServletMapping)) {
-                uri = facesServletMapping + RESOURCE_IDENTIFIER + '/' + getResourceName();
-            } else {
-                uri = RESOURCE_IDENTIFIER + '/' + getResourceName() + facesServletMapping;
-            }
-        }
+        String uri = getResourceURI(context, getResourceName());
         
         boolean queryStarted = false;
         if (getLibraryName() != null) {
@@ -318,6 +311,17 @@ public class ResourceImpl extends Resource implements Externalizable {
             queryStarted = true;
         }
         
+        if (resourceInfo instanceof ClientResourceInfo
+              && !context.isProjectStage(Development)
+              && WebConfiguration.getInstance(context.getExternalContext())
+                                 .isOptionEnabled(ResourceContentHashInRequestPath)) {
+            String hash = ((ClientResourceInfo) resourceInfo).getContentHash(context);
+            if (hash != null) {
+                uri += ((queryStarted) ? "&" : "?") + CONTENT_HASH_PARAM + '=' + hash;
+                queryStarted = true;
+            }
+        }
+        
         if (JSF_SCRIPT_RESOURCE_NAME.equals(getResourceName()) && JSF_SCRIPT_LIBRARY_NAME.equals(getLibraryName())) {
             ProjectStage stage = context.getApplication().getProjectStage();
             switch (stage) {
@@ -356,6 +360,20 @@ public class ResourceImpl extends Resource implements Externalizable {
             return true;
         }
 
+        Map<String,String> requestHeaders =
+              context.getExternalContext().getRequestHeaderMap();
+
+        // https://tools.ietf.org/html/rfc7232#section-6
+        // If-None-Match takes precedence over If-Modified-Since, which is
+        // only evaluated if the resource has no strong entity tag.
+
+        if (requestHeaders.containsKey(IF_NONE_MATCH)) {
+            String entityTag = getEntityTag(context);
+            if (entityTag != null) {
+                return !matchesEntityTag(requestHeaders.get(IF_NONE_MATCH), entityTag);
+            }
+        }
+
         // http://www.w3.org/Protocols/rfc2616/rfc2616-sec14.html
         // 14.25 If-Modified-Since
 
@@ -367,9 +385,6 @@ public class ResourceImpl extends Resource implements Externalizable {
         // A date which is later than the server's current time is
         // invalid.
 
-        Map<String,String> requestHeaders =
-              context.getExternalContext().getRequestHeaderMap();
-
         if (requestHeaders.containsKey(IF_MODIFIED_SINCE)) {
             initResourceInfo();
             /*
@@ -391,6 +406,172 @@ public class ResourceImpl extends Resource implements Externalizable {
     }
 
 
+    // --------------------------------------------------------- Package Methods
+
+
+    /**
+     * @return the {@link ResourceInfo} backing this resource
+     */
+    ResourceInfo getResourceInfo() {
+        initResourceInfo();
+        return resourceInfo;
+    }
+
+
+    /**
+     * @param context the <code>FacesContext</code> for the current request
+     * @return the strong entity tag of the representation of this resource
+     *  negotiated for the current request, or <code>null</code> if the
+     *  resource has no digest
+     * @see #getEntityTag(FacesContext, String)
+     */
+    String getEntityTag(FacesContext context) {
+        initResourceInfo();
+        if (resourceInfo instanceof ClientResourceInfo) {
+            ClientResourceInfo info = (ClientResourceInfo) resourceInfo;
+            ResourceHelper helper = info.getHelper();
+            return getEntityTag(context, ((helper != null) ? helper.getContentEncoding(info, context) : null));
+        }
+        return null;
+    }
+
+
+    /**
+     * @param context the <code>FacesContext</code> for the current request
+     * @param contentEncoding the content coding of the representation, or
+     *  <code>null</code> for the representation sent as is
+     * @return the strong entity tag of the representation of this resource
+     *  in <code>contentEncoding</code>, built from the digest of its content
+     *  and the coding, such as <code>"hash"</code> or
+     *  <code>"hash-gzip"</code>, or <code>null</code> if the resource has
+     *  no digest
+     */
+    String getEntityTag(FacesContext context, String contentEncoding) {
+        initResourceInfo();
+        if (resourceInfo instanceof ClientResourceInfo) {
+            String hash = ((ClientResourceInfo) resourceInfo).getContentHash(context);
+            if (hash != null) {
+                return '"' + ((contentEncoding != null) ? hash + '-' + contentEncoding : hash) + '"';
+            }
+        }
+        return null;
+    }
+
+
+    /**
+     * @param context the <code>FacesContext</code> for the current request
+     * @return <code>true</code> if the resource was requested by a path that
+     *  contains the current digest of its content, so the response may be
+     *  cached for as long as possible
+     */
+    boolean isImmutable(FacesContext context) {
+        if (context.isProjectStage(Development)) {
+            return false;
+        }
+        String requested = context.getExternalContext()
+                                  .getRequestParameterMap().get(CONTENT_HASH_PARAM);
+        if (requested == null) {
+            return false;
+        }
+        initResourceInfo();
+        return (resourceInfo instanceof ClientResourceInfo
+                && requested.equals(((ClientResourceInfo) resourceInfo).getContentHash(context)));
+    }
+
+
+    /**
+     * @return <code>true</code> if the content of this resource is negotiated
+     *  with the <code>Accept-Encoding</code> request header
+     */
+    boolean isCompressable() {
+        initResourceInfo();
+        return (resourceInfo instanceof ClientResourceInfo
+                && ((ClientResourceInfo) resourceInfo).isCompressable());
+    }
+
+
+    /**
+     * @param context the <code>FacesContext</code> for the current request
+     * @param resourceName the name of a resource
+     * @return the path, without query string, under which the
+     *  <code>FacesServlet</code> serves the resource with the given name
+     */
+    static String getResourceURI(FacesContext context, String resourceName) {
+
+        String facesServletMapping = getFacesMapping(context);
+        
+        String uri = null;
+        
+        // Check for exact mapping first
+        if (isExactMapped(facesServletMapping)) {
+            String resource = RESOURCE_IDENTIFIER + '/' + resourceName;
+            // Check if the FacesServlet is exact mapped to the resource
+            if (isResourceExactMappedToFacesServlet(context.getExternalContext(), resource)) {
+                uri = facesServletMapping + resource;
+            } else {
+                // No exact mapping for the requested resource, see if Facelets servlet is mapped to 
+                // e.g. /faces/* or *.xhtml and take that mapping
+                String mapping = getFirstWildCardMappingToFacesServlet(context.getExternalContext());
+                
+                if (mapping == null) {
+                    
+                    // If there are only exact mappings and the resource is not exact mapped,
+                    // we can't serve this resource
+                    
+                    throw new IllegalStateException(
+                        "No suitable mapping for FacesServlet found. To serve resources " +
+                        "FacesServlet should have at least one prefix or suffix mapping."
+                    );
+                }
+                facesServletMapping = mapping.replace("*", "");
+            }
+        } 
+        
+        if (uri == null) {
+            // If it is extension mapped
+            if (isPrefixMapped(facesServletMapping)) {
+                uri = facesServletMapping + RESOURCE_IDENTIFIER + '/' + resourceName;
+            } else {
+                uri = RESOURCE_IDENTIFIER + '/' + resourceName + facesServletMapping;
+            }
+        }
+        
+        return uri;
+
+    }
+
+
+    /**
+     * @param time the number of milliseconds since January 1, 1970 GMT
+     * @return <code>time</code> formatted as an HTTP date
+     */
+    static String formatHttpDate(long time) {
+        return HTTP_DATE_FORMAT.format(Instant.ofEpochMilli(time));
+    }
+
+
+    /**
+     * @param ifNoneMatch the value of an If-None-Match request header
+     * @param entityTag the current entity tag of a resource
+     * @return <code>true</code> if the header matches the entity tag using
+     *  the weak comparison function
+     */
+    static boolean matchesEntityTag(String ifNoneMatch, String entityTag) {
+
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if ("*".equals(candidate) || entityTag.equals(candidate)) {
+                return true;
+            }
+        }
+        return false;
+
+    }
+
+
     // --------------------------------------------------------- Private Methods
 
 
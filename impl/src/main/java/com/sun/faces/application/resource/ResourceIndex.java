@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) 1997, 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.faces.application.resource;
+
+import static java.util.logging.Level.FINE;
+import static java.util.logging.Level.WARNING;
+
+import java.io.IOException;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import javax.faces.context.ExternalContext;
+import javax.faces.context.FacesContext;
+
+import com.sun.faces.util.FacesLogger;
+import com.sun.faces.util.Util;
+
+/**
+ * <p>
+ * Lists the resources of the web application and of the classpath, within
+ * the resource and contract directories, as <code>[contract, library,
+ * name]</code> entries.
+ * </p>
+ *
+ * <p>
+ * Library and resource version directories are folded into their library
+ * and resource, so that looking up an entry resolves the latest version of
+ * it, as a request would.  Locale prefix directories are not recognized, and
+ * are listed as libraries.
+ * </p>
+ */
+final class ResourceIndex {
+
+    private static final Logger LOGGER = FacesLogger.RESOURCE.getLogger();
+
+    /**
+     * Upper bound of the number of entries, so that a misplaced directory
+     * does not hold up the application initialization.
+     */
+    static final int MAX_ENTRIES = 10000;
+
+    private static final Pattern LIBRARY_VERSION_PATTERN = Pattern.compile("\\d+(_\\d+)+");
+    private static final Pattern RESOURCE_VERSION_PATTERN = Pattern.compile("\\d+(_\\d+)+(\\.\\w+)?");
+
+    private final Set<List<String>> entries = new LinkedHashSet<>();
+
+
+    // ------------------------------------------------------------ Constructors
+
+
+    /**
+     * @param ctx the {@link FacesContext} for the application initialization
+     * @param webapp the helper of the web application resources
+     * @param classpath the helper of the classpath resources
+     */
+    ResourceIndex(FacesContext ctx, ResourceHelper webapp, ResourceHelper classpath) {
+
+        ExternalContext extContext = ctx.getExternalContext();
+        addWebappPaths(extContext, webapp.getBaseResourcePath(), false);
+        addWebappPaths(extContext, webapp.getBaseContractsPath(), true);
+        addClasspathPaths(classpath.getBaseResourcePath(), false);
+        addClasspathPaths(classpath.getBaseContractsPath(), true);
+
+        if (entries.size() >= MAX_ENTRIES && LOGGER.isLoggable(WARNING)) {
+            LOGGER.log(WARNING,
+                       "Only the first {0} resources will be indexed",
+                       MAX_ENTRIES);
+        }
+
+    }
+
+
+    // ---------------------------------------------------------- Package Methods
+
+
+    /**
+     * @return the <code>[contract, library, name]</code> entries, where
+     *  <code>contract</code> and <code>library</code> may be <code>null</code>
+     */
+    Set<List<String>> getEntries() {
+
+        return Collections.unmodifiableSet(entries);
+
+    }
+
+
+    /**
+     * @param path the path of a resource, relative to the resource or
+     *  contract directory
+     * @param inContract <code>true</code> if the path is relative to the
+     *  contract directory
+     * @return the <code>[contract, library, name]</code> entry of the
+     *  resource, or <code>null</code> if the path does not denote one
+     */
+    static List<String> toEntry(String path, boolean inContract) {
+
+        List<String> segments = new LinkedList<>(Arrays.asList(path.split("/")));
+        segments.removeIf(String::isEmpty);
+
+        String contract = null;
+        if (inContract) {
+            if (segments.size() < 2) {
+                return null;
+            }
+            contract = segments.remove(0);
+        }
+
+        if (segments.size() > 1 && RESOURCE_VERSION_PATTERN.matcher(segments.get(segments.size() - 1)).matches()) {
+            segments.remove(segments.size() - 1);
+        }
+        String library = null;
+        if (segments.size() > 1) {
+            library = segments.remove(0);
+            if (segments.size() > 1 && LIBRARY_VERSION_PATTERN.matcher(segments.get(0)).matches()) {
+                segments.remove(0);
+            }
+        }
+        if (segments.isEmpty() || segments.get(0).startsWith(".")) {
+            return null;
+        }
+
+        return Arrays.asList(contract, library, String.join("/", segments));
+
+    }
+
+
+    // --------------------------------------------------------- Private Methods
+
+
+    private void addWebappPaths(ExternalContext extContext, String basePath, boolean inContract) {
+
+        if (basePath != null) {
+            addWebappPaths(extContext, basePath, basePath.endsWith("/") ? basePath : basePath + '/', inContract);
+        }
+
+    }
+
+
+    private void addWebappPaths(ExternalContext extContext, String basePath, String dir, boolean inContract) {
+
+        Set<String> paths = extContext.getResourcePaths(dir);
+        if (paths == null) {
+            return;
+        }
+        for (String path : paths) {
+            if (entries.size() >= MAX_ENTRIES) {
+                return;
+            }
+            if (path.endsWith("/")) {
+                addWebappPaths(extContext, basePath, path, inContract);
+            } else {
+                add(path.substring(basePath.length()), inContract);
+            }
+        }
+
+    }
+
+
+    private void addClasspathPaths(String basePath, boolean inContract) {
+
+        if (basePath == null) {
+            return;
+        }
+        ClassLoader loader = Util.getCurrentLoader(this);
+        Enumeration<URL> urls;
+        try {
+            urls = loader.getResources(basePath);
+        } catch (IOException ioe) {
+            if (LOGGER.isLoggable(WARNING)) {
+                LOGGER.log(WARNING, "Unable to list the classpath resources in " + basePath, ioe);
+            }
+            return;
+        }
+        while (urls.hasMoreElements() && entries.size() < MAX_ENTRIES) {
+            URL url = urls.nextElement();
+            try {
+                if ("file".equals(url.getProtocol())) {
+                    addDirectoryPaths(Paths.get(url.toURI()), inContract);
+                } else {
+                    URLConnection conn = url.openConnection();
+                    if (conn instanceof JarURLConnection) {
+                        addJarPaths((JarURLConnection) conn, inContract);
+                    } else if (LOGGER.isLoggable(FINE)) {
+                        LOGGER.log(FINE, "Unable to list the resources in {0}", url);
+                    }
+                }
+            } catch (IOException | URISyntaxException | RuntimeException e) {
+                if (LOGGER.isLoggable(WARNING)) {
+                    LOGGER.log(WARNING, "Unable to list the resources in " + url, e);
+                }
+            }
+        }
+
+    }
+
+
+    private void addDirectoryPaths(Path dir, boolean inContract) throws IOException {
+
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.filter(Files::isRegularFile)
+                 .limit(MAX_ENTRIES)
+                 .forEach(path -> add(dir.relativize(path).toString().replace('\\', '/'), inContract));
+        }
+
+    }
+
+
+    private void addJarPaths(JarURLConnection conn, boolean inContract) throws IOException {
+
+        // An uncached JarFile is ours to close
+        conn.setUseCaches(false);
+        String prefix = conn.getEntryName() + '/';
+        try (JarFile jar = conn.getJarFile()) {
+            Enumeration<JarEntry> jarEntries = jar.entries();
+            while (jarEntries.hasMoreElements() && entries.size() < MAX_ENTRIES) {
+                JarEntry entry = jarEntries.nextElement();
+                String name = entry.getName();
+                if (!entry.isDirectory() && name.startsWith(prefix)) {
+                    add(name.substring(prefix.length()), inContract);
+                }
+            }
+        }
+
+    }
+
+
+    private void add(String path, boolean inContract) {
+
+        if (entries.size() < MAX_ENTRIES) {
+            List<String> entry = toEntry(path, inContract);
+            if (entry != null) {
+                entries.add(entry);
+            }
+        }
+
+    }
+
+}
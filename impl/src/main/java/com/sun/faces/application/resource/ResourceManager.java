@@ -16,22 +16,31 @@
 
 package com.sun.faces.application.resource;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.MissingResourceException;
 import java.util.ResourceBundle;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 import java.util.stream.Stream;
 
+import javax.faces.FacesException;
+import javax.faces.application.Application;
 import javax.faces.application.ProjectStage;
 import javax.faces.application.ResourceHandler;
 import javax.faces.application.ResourceVisitOption;
@@ -83,11 +92,17 @@ public class ResourceManager {
     private List<Pattern> compressableTypes;
 
     /**
-     * This lock is used to ensure the lookup of compressable {@link ResourceInfo}
-     * instances are atomic to prevent theading issues when writing the compressed
-     * content during a lookup.
+     * The lookups of compressable {@link ResourceInfo} instances in progress.
+     * Concurrent requests for the same resource wait for the same lookup,
+     * so the content is compressed once, while lookups of other resources
+     * proceed in parallel.
      */
-    private ReentrantLock lock = new ReentrantLock();
+    private final ConcurrentMap<List<Object>, FutureTask<ResourceInfo>> pendingLookups = new ConcurrentHashMap<>();
+
+    /**
+     * Minifies scripts and stylesheets, if enabled.
+     */
+    private ResourceMinifier minifier;
 
 
     // ------------------------------------------------------------ Constructors
@@ -110,6 +125,7 @@ public class ResourceManager {
     public ResourceManager(Map<String, Object> appMap, ResourceCache cache) {
         this.cache = cache;
         initCompressableTypes(appMap);
+        initMinifier();
     }
 
 
@@ -123,9 +139,9 @@ public class ResourceManager {
      * </p>
      *
      * <p>
-     * Implementation Note:  Synchronization is necessary when looking up
-     * compressed resources.  This ensures the atomicity of the content
-     * being compressed.  As such, the cost of doing this is low as once
+     * Implementation Note:  Concurrent lookups of the same compressed
+     * resource are coalesced, so that the content is compressed only once.
+     * As such, the cost of doing this is low as once
      * the resource is in the cache, the lookup won't be performed again
      * until the cache is cleared.  That said, it's not a good idea
      * to have caching disabled in a production environment if leveraging
@@ -133,6 +149,10 @@ public class ResourceManager {
      *
      * If the resource isn't compressable, then we don't worry about creating
      * a few extra copies of ResourceInfo until the cache is populated.
+     *
+     * Resources that cannot be found are remembered by the cache, so that
+     * requests for them do not search the webapp and the classpath again
+     * until the next resource update check.
      * </p>
      *
      * @param libraryName the name of the library (if any)
@@ -174,11 +194,17 @@ public class ResourceManager {
         ResourceInfo info = getFromCache(resourceName, libraryName, localePrefix, contracts);
         
         if (info == null) {
+            if (!isViewResource && isMissing(resourceName, libraryName, localePrefix, contracts)) {
+                return null;
+            }
             if (isCompressable(contentType, ctx)) {
                 info = findResourceCompressed(libraryName, resourceName, isViewResource, localePrefix, contracts, ctx);
             } else {
                info = findResourceNonCompressed(libraryName, resourceName, isViewResource, localePrefix, contracts, ctx);
             }
+            if (info == null && !isViewResource) {
+                addMissing(resourceName, libraryName, localePrefix, contracts);
+            }
         }
 
         return info;
@@ -188,27 +214,146 @@ public class ResourceManager {
         return faceletWebappResourceHelper.getViewResources(facesContext, path, maxDepth, options);
     }
 
+    /**
+     * <p>
+     * Look up every resource of the web application and of the classpath,
+     * so that the {@link ResourceCache} is populated, and the library versions
+     * resolved, before the first request.
+     * </p>
+     *
+     * <p>
+     * Each resource is looked up under the keys resource requests use: with
+     * no locale prefix, and with every locale prefix the message bundle of
+     * the application gives for its default and supported locales.  Resources
+     * within a contract are looked up for that contract alone, as requests
+     * naming the contract with the <code>con</code> parameter do.  Lookups
+     * made while rendering a view that uses contracts are keyed by the list
+     * of contracts of the view, which is only known once the application has
+     * started, and are not warmed.
+     * </p>
+     *
+     * @param ctx the {@link FacesContext} for the application initialization
+     *
+     * @return the number of resources cached, <code>0</code> if caching is
+     *  disabled
+     */
+    public int warmCache(FacesContext ctx) {
+
+        if (cache == null) {
+            return 0;
+        }
+
+        Set<String> localePrefixes = getLocalePrefixes(ctx);
+        int count = 0;
+        for (List<String> entry : new ResourceIndex(ctx, webappResourceHelper, classpathResourceHelper).getEntries()) {
+            String contract = entry.get(0);
+            String libraryName = entry.get(1);
+            String resourceName = entry.get(2);
+            String contentType = ctx.getExternalContext().getMimeType(resourceName);
+            if (contentType == null
+                  || nameContainsForbiddenSequence(libraryName)
+                  || nameContainsForbiddenSequence(resourceName)) {
+                continue;
+            }
+
+            List<String> contracts = (contract != null) ? Collections.singletonList(contract) : Collections.emptyList();
+            boolean found = false;
+            for (String localePrefix : localePrefixes) {
+                ResourceInfo info = getFromCache(resourceName, libraryName, localePrefix, contracts);
+                if (info == null) {
+                    if (isCompressable(contentType, ctx)) {
+                        info = findResourceCompressed(libraryName, resourceName, false, localePrefix, contracts, ctx);
+                    } else {
+                        info = findResourceNonCompressed(libraryName, resourceName, false, localePrefix, contracts, ctx);
+                    }
+                }
+                found |= (info != null);
+            }
+            if (found) {
+                count++;
+            }
+        }
+
+        return count;
+
+    }
+
+
+    /**
+     * <p>
+     * List the composite components of the web application and of the
+     * classpath, that is the <code>.xhtml</code> resources at the top of a
+     * resource library.  Resources within a contract are not listed.
+     * </p>
+     *
+     * @param ctx the {@link FacesContext} for the application initialization
+     *
+     * @return the <code>[library, name]</code> of each composite component,
+     *  where <code>name</code> includes the <code>.xhtml</code> extension
+     */
+    public List<List<String>> getCompositeComponentResources(FacesContext ctx) {
+
+        List<List<String>> result = new ArrayList<>();
+        for (List<String> entry : new ResourceIndex(ctx, webappResourceHelper, classpathResourceHelper).getEntries()) {
+            String libraryName = entry.get(1);
+            String resourceName = entry.get(2);
+            if (entry.get(0) == null
+                  && libraryName != null
+                  && resourceName.endsWith(".xhtml")
+                  && resourceName.indexOf('/') == -1
+                  && !nameContainsForbiddenSequence(libraryName)
+                  && !nameContainsForbiddenSequence(resourceName)) {
+                result.add(Arrays.asList(libraryName, resourceName));
+            }
+        }
+
+        return result;
+
+    }
+
 
     // ----------------------------------------------------- Private Methods
 
     private ResourceInfo findResourceCompressed(String libraryName, String resourceName, boolean isViewResource, String localePrefix, List<String> contracts, FacesContext ctx) {
         
-        ResourceInfo info = null;
-        
-        lock.lock();
-        try {
-            info = getFromCache(resourceName, libraryName, localePrefix, contracts);
+        List<Object> key = Arrays.asList(libraryName, resourceName, isViewResource, localePrefix, contracts);
+        FutureTask<ResourceInfo> lookup = new FutureTask<>(() -> {
+            ResourceInfo info = getFromCache(resourceName, libraryName, localePrefix, contracts);
             if (info == null) {
                 info = doLookup(libraryName, resourceName, localePrefix, true, isViewResource, contracts, ctx);
                 if (info != null) {
-                    addToCache(info, contracts);
+                    minify(info, ctx);
+                    addToCache(info, localePrefix, contracts);
                 }
             }
-        } finally {
-            lock.unlock();
+            return info;
+        });
+        
+        FutureTask<ResourceInfo> pending = pendingLookups.putIfAbsent(key, lookup);
+        if (pending == null) {
+            try {
+                lookup.run();
+            } finally {
+                pendingLookups.remove(key, lookup);
+            }
+            pending = lookup;
         }
         
-        return info;
+        try {
+            return pending.get();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException ee) {
+            Throwable cause = ee.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new FacesException(cause);
+        }
     }
     
     private ResourceInfo findResourceNonCompressed(String libraryName, String resourceName, boolean isViewResource, String localePrefix, List<String> contracts, FacesContext ctx) {
@@ -218,8 +363,11 @@ public class ResourceManager {
             info = doLookup(libraryNameFromContracts(libraryName, contracts), resourceName, localePrefix, false, isViewResource, contracts, ctx);
         }
         
-        if (info != null && !info.isDoNotCache()) {
-            addToCache(info, contracts);
+        if (info != null) {
+            minify(info, ctx);
+            if (!info.isDoNotCache()) {
+                addToCache(info, localePrefix, contracts);
+            }
         }
         
         return info;
@@ -400,17 +548,36 @@ public class ResourceManager {
     }
 
 
+    private boolean isMissing(String name, String library, String localePrefix, List<String> contracts) {
+        if (cache == null) {
+            return false;
+        }
+        
+        return cache.isMissing(name, library, localePrefix, contracts);
+    }
+
+
+    private void addMissing(String name, String library, String localePrefix, List<String> contracts) {
+        if (cache == null) {
+            return;
+        }
+        
+        cache.addMissing(name, library, localePrefix, contracts);
+    }
+
+
     /**
      * Adds the the specified {@link ResourceInfo} to the cache.
      * @param info the @{link ResourceInfo} to add.
+     * @param localePrefix the locale prefix <code>info</code> was looked up with
      * @param contracts the contracts
      */
-    private void addToCache(ResourceInfo info, List<String> contracts) {
+    private void addToCache(ResourceInfo info, String localePrefix, List<String> contracts) {
         if (cache == null) {
             return;
         }
         
-        cache.add(info, contracts);
+        cache.add(info, localePrefix, contracts);
     }
 
     /**
@@ -451,6 +618,33 @@ public class ResourceManager {
         return library;
     }
 
+    /**
+     * <p> Determine if a library exists, looking for it as
+     * {@link #findLibrary(String, String, String, FacesContext)} does, then
+     * scanning the classpath.  Libraries that cannot be found are remembered
+     * by the cache until the next resource update check.</p>
+     *
+     * @param libraryName the library to find
+     * @param ctx the {@link javax.faces.context.FacesContext} for the current request
+     * @return <code>true</code> if the library exists, otherwise
+     *  <code>false</code>
+     */
+     boolean libraryExists(String libraryName, FacesContext ctx) {
+
+         if (cache != null && cache.isMissingLibrary(libraryName)) {
+             return false;
+         }
+         // PENDING(fcaputo) do we need to iterate over the contracts here? I don't think so.
+         LibraryInfo info = findLibrary(libraryName, null, null, ctx);
+         if (info == null) {
+             info = findLibraryOnClasspathWithZipDirectoryEntryScan(libraryName, null, null, ctx, true);
+         }
+         if (info == null && cache != null) {
+             cache.addMissingLibrary(libraryName);
+         }
+         return info != null;
+     }
+
      LibraryInfo findLibraryOnClasspathWithZipDirectoryEntryScan(String libraryName,
                                                                  String localePrefix,
                                                                  String contract, FacesContext ctx, boolean forceScan) {
@@ -597,6 +791,47 @@ public class ResourceManager {
 
     }
 
+    /**
+     * @param context the {@link FacesContext} for the application initialization
+     * @return <code>null</code> followed by the locale prefixes
+     *  {@link #getLocalePrefix(FacesContext)} may return for the default and
+     *  supported locales of the application
+     */
+    private Set<String> getLocalePrefixes(FacesContext context) {
+
+        Set<String> localePrefixes = new LinkedHashSet<>();
+        localePrefixes.add(null);
+        Application application = context.getApplication();
+        String appBundleName = application.getMessageBundle();
+        if (appBundleName == null) {
+            return localePrefixes;
+        }
+
+        List<Locale> locales = new ArrayList<>();
+        locales.add((application.getDefaultLocale() != null) ? application.getDefaultLocale() : Locale.getDefault());
+        for (Iterator<Locale> i = application.getSupportedLocales(); i.hasNext(); ) {
+            locales.add(i.next());
+        }
+        for (Locale locale : locales) {
+            try {
+                ResourceBundle appBundle =
+                      ResourceBundle.getBundle(appBundleName,
+                                               locale,
+                                               Util.getCurrentLoader(ResourceManager.class));
+                String localePrefix = appBundle.getString(ResourceHandler.LOCALE_PREFIX);
+                if (!nameContainsForbiddenSequence(localePrefix)) {
+                    localePrefixes.add(localePrefix);
+                }
+            } catch (MissingResourceException mre) {
+                if (LOGGER.isLoggable(Level.FINEST)) {
+                    LOGGER.log(Level.FINEST, "Ignoring missing resource", mre);
+                }
+            }
+        }
+        return localePrefixes;
+
+    }
+
     private List<String> getResourceLibraryContracts(FacesContext context) {
         UIViewRoot viewRoot = context.getViewRoot();
         if(viewRoot == null) {
@@ -643,6 +878,54 @@ public class ResourceManager {
     }
 
 
+    /**
+     * Associate a newly found script or stylesheet with its minified
+     * content, and compress that content instead of the original if the
+     * resource is compressable.
+     *
+     * @param info the resource that has been found
+     * @param ctx the @{link FacesContext} for the current request
+     */
+    private void minify(ResourceInfo info, FacesContext ctx) {
+
+        if (minifier == null || !(info instanceof ClientResourceInfo)) {
+            return;
+        }
+        ClientResourceInfo clientInfo = (ClientResourceInfo) info;
+        String contentType = ctx.getExternalContext().getMimeType(clientInfo.getName());
+        if (!ResourceMinifier.isMinifiable(contentType)) {
+            return;
+        }
+        minifier.minify(clientInfo, contentType, ctx);
+        if (clientInfo.getMinifiedFile() != null
+              && clientInfo.isCompressable()
+              && !clientInfo.supportsEL()) {
+            try {
+                clientInfo.getHelper().compressContent(clientInfo);
+            } catch (IOException ioe) {
+                if (LOGGER.isLoggable(Level.WARNING)) {
+                    LOGGER.log(Level.WARNING, ioe.getMessage(), ioe);
+                }
+            }
+        }
+
+    }
+
+
+    /**
+     * Init <code>minifier</code> from the configuration.
+     */
+    private void initMinifier() {
+
+        WebConfiguration config = WebConfiguration.getInstance();
+        FacesContext ctx = FacesContext.getCurrentInstance();
+        if (ctx != null && config.isOptionEnabled(WebConfiguration.BooleanWebContextInitParameter.MinifyResources)) {
+            minifier = ResourceMinifier.create(ctx);
+        }
+
+    }
+
+
     /**
      * Init <code>compressableTypes</code> from the configuration.
      */
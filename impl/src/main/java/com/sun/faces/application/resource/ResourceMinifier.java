@@ -0,0 +1,614 @@
+/*
+ * Copyright (c) 1997, 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.faces.application.resource;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.faces.FacesException;
+import javax.faces.application.ProjectStage;
+import javax.faces.context.FacesContext;
+
+import com.sun.faces.util.FacesLogger;
+
+/**
+ * <p>
+ * Removes comments and insignificant whitespace from scripts and stylesheets.
+ * The minified content of a resource is written once to a directory below
+ * <code>javax.servlet.context.tempdir</code>, in a file named after a digest
+ * of the original content, so that it is shared by all the
+ * {@link ClientResourceInfo} instances of the same content and survives a
+ * restart of the application.
+ * </p>
+ *
+ * <p>
+ * Minification works on bytes, not characters, so that it does not depend on
+ * the encoding of the resource.  It is conservative: comments starting with
+ * <code>/*!</code> are kept, as are EL expressions, and scripts containing
+ * template literals are left as they are.
+ * </p>
+ */
+final class ResourceMinifier {
+
+    private static final Logger LOGGER = FacesLogger.RESOURCE.getLogger();
+
+    private static final String MINIFIED_CONTENT_DIRECTORY = "jsf-minified";
+
+    /*
+     * Characters after which a slash starts a regular expression literal
+     * rather than a division.
+     */
+    private static final String REGEXP_PRECEDERS = "(,=:[!&|?{};+-*%<>~^}";
+
+    /*
+     * Keywords after which a slash starts a regular expression literal.
+     */
+    private static final String[] REGEXP_KEYWORDS = {
+          "await", "case", "delete", "do", "else", "in", "instanceof",
+          "new", "return", "throw", "typeof", "void", "yield"
+    };
+
+    private static final int MAX_KEYWORD_LENGTH = 10;
+
+    /*
+     * Characters after which a line break cannot end a statement.
+     */
+    private static final String CONTINUATORS = "{;,([=:?&|";
+
+    /*
+     * Characters before which a line break can be dropped.
+     */
+    private static final String TERMINATORS = "}),;]";
+
+    /*
+     * Characters around which whitespace is insignificant in a stylesheet.
+     */
+    private static final String CSS_SEPARATORS = "{};,>";
+
+    private final File directory;
+
+
+    // ------------------------------------------------------------ Constructors
+
+
+    private ResourceMinifier(File directory) {
+
+        this.directory = directory;
+
+    }
+
+
+    // --------------------------------------------------------- Package Methods
+
+
+    /**
+     * @param context the <code>FacesContext</code> of the application
+     * @return a <code>ResourceMinifier</code> writing to the temporary
+     *  directory of the application, or <code>null</code> when resources are
+     *  not minified in the current project stage, or if there is no usable
+     *  temporary directory
+     */
+    static ResourceMinifier create(FacesContext context) {
+
+        if (context.isProjectStage(ProjectStage.Development)) {
+            return null;
+        }
+        File servletTmpDir = (File) context.getExternalContext()
+              .getApplicationMap().get("javax.servlet.context.tempdir");
+        if (servletTmpDir == null || !servletTmpDir.isDirectory()) {
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.log(Level.FINE,
+                           "File ({0}) referenced by javax.servlet.context.tempdir attribute is null, or was is not a directory.  Minification will be unavailable.",
+                           servletTmpDir);
+            }
+            return null;
+        }
+        File directory = new File(servletTmpDir, MINIFIED_CONTENT_DIRECTORY);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            if (LOGGER.isLoggable(Level.WARNING)) {
+                LOGGER.log(Level.WARNING,
+                           "Unable to create directory {0}.  Minification will be unavailable.",
+                           directory);
+            }
+            return null;
+        }
+        return new ResourceMinifier(directory);
+
+    }
+
+
+    /**
+     * @param contentType the content type of a resource
+     * @return <code>true</code> if resources of that type can be minified
+     */
+    static boolean isMinifiable(String contentType) {
+
+        return (contentType != null
+                && (isStylesheet(contentType) || contentType.contains("javascript")));
+
+    }
+
+
+    /**
+     * <p>
+     * Associates the given resource with its minified content, minifying it
+     * if this has not been done before.  Failures are logged and leave the
+     * resource as it is.
+     * </p>
+     *
+     * @param info the resource
+     * @param contentType the content type of the resource, as accepted by
+     *  {@link #isMinifiable(String)}
+     * @param ctx the {@link FacesContext} for the current request
+     */
+    void minify(ClientResourceInfo info, String contentType, FacesContext ctx) {
+
+        try {
+            byte[] source;
+            try (InputStream in = info.getHelper().getNonCompressedInputStream(info, ctx)) {
+                if (in == null) {
+                    return;
+                }
+                source = readFully(in);
+            }
+            String extension = (isStylesheet(contentType) ? ".css" : ".js");
+            Path file = new File(directory, digest(source) + extension).toPath();
+            if (!Files.isRegularFile(file)) {
+                byte[] minified = (isStylesheet(contentType)
+                                   ? minifyStylesheet(source)
+                                   : minifyScript(source));
+                if (minified.length >= source.length) {
+                    return;
+                }
+                Path temp = Files.createTempFile(directory.toPath(), null, extension);
+                try {
+                    Files.write(temp, minified);
+                    try {
+                        Files.move(temp, file, ATOMIC_MOVE);
+                    } catch (AtomicMoveNotSupportedException amnse) {
+                        Files.move(temp, file, REPLACE_EXISTING);
+                    }
+                } finally {
+                    Files.deleteIfExists(temp);
+                }
+                if (LOGGER.isLoggable(Level.FINE)) {
+                    LOGGER.log(Level.FINE,
+                               "Minified {0} from {1} to {2} bytes",
+                               new Object[] { info.getName(), source.length, minified.length });
+                }
+            }
+            info.setMinifiedFile(file.toFile());
+        } catch (IOException ioe) {
+            if (LOGGER.isLoggable(Level.WARNING)) {
+                LOGGER.log(Level.WARNING,
+                           "Unable to minify " + info.getName(),
+                           ioe);
+            }
+        }
+
+    }
+
+
+    /**
+     * @param source the content of a script
+     * @return the content without comments and insignificant whitespace, or
+     *  the content unchanged if it contains template literals
+     */
+    static byte[] minifyScript(byte[] source) {
+
+        if (indexOf(source, (byte) '`', 0) != -1) {
+            return source;
+        }
+        Output out = new Output(source.length);
+        int length = source.length;
+        int last = -1;          // last byte written, other than whitespace
+        boolean space = false;  // whitespace pending
+        boolean newline = false; // line break pending
+        int i = 0;
+        while (i < length) {
+            int c = source[i] & 0xFF;
+            if (c == '/' && i + 1 < length && source[i + 1] == '/') {
+                i = indexOf(source, (byte) '\n', i);
+                if (i == -1) {
+                    break;
+                }
+                continue;
+            }
+            if (c == '/' && i + 1 < length && source[i + 1] == '*') {
+                int end = indexOfCommentEnd(source, i + 2);
+                if (i + 2 < length && source[i + 2] == '!') {
+                    last = flushScriptWhitespace(out, last, space, newline, c);
+                    space = newline = false;
+                    out.write(source, i, end - i);
+                    last = '/';
+                } else {
+                    space = true;
+                    newline |= indexOf(source, (byte) '\n', i, end) != -1;
+                }
+                i = end;
+                continue;
+            }
+            if (c == ' ' || c == '\t' || c == '\r' || c == '\f' || c == 0x0B) {
+                space = true;
+                i++;
+                continue;
+            }
+            if (c == '\n') {
+                space = newline = true;
+                i++;
+                continue;
+            }
+
+            boolean regexp = (c == '/' && isRegExpContext(out, last));
+            last = flushScriptWhitespace(out, last, space, newline, c);
+            space = newline = false;
+            int end;
+            if (c == '\'' || c == '"') {
+                end = skipString(source, i);
+            } else if (c == '#' && i + 1 < length && source[i + 1] == '{') {
+                end = skipExpression(source, i);
+            } else if (regexp) {
+                end = skipRegExp(source, i);
+            } else {
+                end = i + 1;
+            }
+            out.write(source, i, end - i);
+            last = source[end - 1] & 0xFF;
+            i = end;
+        }
+        return out.toByteArray();
+
+    }
+
+
+    /**
+     * @param source the content of a stylesheet
+     * @return the content without comments and insignificant whitespace
+     */
+    static byte[] minifyStylesheet(byte[] source) {
+
+        Output out = new Output(source.length);
+        int length = source.length;
+        int last = -1;
+        boolean space = false;
+        int i = 0;
+        while (i < length) {
+            int c = source[i] & 0xFF;
+            if (c == '/' && i + 1 < length && source[i + 1] == '*') {
+                int end = indexOfCommentEnd(source, i + 2);
+                if (i + 2 < length && source[i + 2] == '!') {
+                    if (space && last != -1) {
+                        out.write(' ');
+                    }
+                    space = false;
+                    out.write(source, i, end - i);
+                    last = '/';
+                } else {
+                    space = true;
+                }
+                i = end;
+                continue;
+            }
+            if (c == ' ' || c == '\t' || c == '\r' || c == '\n' || c == '\f') {
+                space = true;
+                i++;
+                continue;
+            }
+            if (c == '}' && last == ';') {
+                // the last declaration of a block needs no semicolon
+                out.truncate(1);
+            }
+            if (space
+                  && last != -1
+                  && CSS_SEPARATORS.indexOf(last) == -1
+                  && last != ':'
+                  && CSS_SEPARATORS.indexOf(c) == -1) {
+                out.write(' ');
+            }
+            space = false;
+            int end;
+            if (c == '\'' || c == '"') {
+                end = skipString(source, i);
+            } else if (c == '#' && i + 1 < length && source[i + 1] == '{') {
+                end = skipExpression(source, i);
+            } else {
+                end = i + 1;
+            }
+            out.write(source, i, end - i);
+            last = source[end - 1] & 0xFF;
+            i = end;
+        }
+        return out.toByteArray();
+
+    }
+
+
+    // --------------------------------------------------------- Private Methods
+
+
+    private static boolean isStylesheet(String contentType) {
+
+        return contentType.startsWith("text/css");
+
+    }
+
+
+    /*
+     * Writes the whitespace preceding the byte c, if it is significant, and
+     * returns the last byte written.
+     */
+    private static int flushScriptWhitespace(Output out,
+                                             int last,
+                                             boolean space,
+                                             boolean newline,
+                                             int c) {
+
+        if (last == -1 || !space) {
+            return last;
+        }
+        if (newline) {
+            if (CONTINUATORS.indexOf(last) == -1 && TERMINATORS.indexOf(c) == -1) {
+                out.write('\n');
+                return '\n';
+            }
+            return last;
+        }
+        if ((isIdentifierPart(last) && isIdentifierPart(c))
+              || ((last == '+' || last == '-') && c == last)
+              || (last == '/' && (c == '/' || c == '*'))
+              || (isDigit(last) && c == '.')) {
+            out.write(' ');
+            return ' ';
+        }
+        return last;
+
+    }
+
+
+    /*
+     * A slash starts a regular expression after an operator or punctuator,
+     * at the beginning of a statement, or after some keywords.
+     */
+    private static boolean isRegExpContext(Output out, int last) {
+
+        if (last == -1 || last == '\n' || REGEXP_PRECEDERS.indexOf(last) != -1) {
+            return true;
+        }
+        if (!isIdentifierPart(last)) {
+            return false;
+        }
+        int end = out.size();
+        int start = end;
+        while (start > 0 && end - start <= MAX_KEYWORD_LENGTH && isIdentifierPart(out.byteAt(start - 1))) {
+            start--;
+        }
+        if (end - start > MAX_KEYWORD_LENGTH || (start > 0 && out.byteAt(start - 1) == '.')) {
+            return false;
+        }
+        return (Arrays.binarySearch(REGEXP_KEYWORDS, out.toString(start, end)) >= 0);
+
+    }
+
+
+    private static boolean isIdentifierPart(int c) {
+
+        return ((c >= 'a' && c <= 'z')
+                || (c >= 'A' && c <= 'Z')
+                || isDigit(c)
+                || c == '_'
+                || c == '$'
+                || c == '\\'
+                || c > 126);
+
+    }
+
+
+    private static boolean isDigit(int c) {
+
+        return (c >= '0' && c <= '9');
+
+    }
+
+
+    /*
+     * Returns the index following the string literal starting at start.
+     */
+    private static int skipString(byte[] source, int start) {
+
+        byte quote = source[start];
+        int i = start + 1;
+        while (i < source.length) {
+            byte b = source[i];
+            if (b == '\\') {
+                i += 2;
+                continue;
+            }
+            i++;
+            if (b == quote) {
+                break;
+            }
+        }
+        return Math.min(i, source.length);
+
+    }
+
+
+    /*
+     * Returns the index following the EL expression starting at start.
+     */
+    private static int skipExpression(byte[] source, int start) {
+
+        int i = start + 2;
+        while (i < source.length) {
+            byte b = source[i];
+            if (b == '\'' || b == '"') {
+                i = skipString(source, i);
+                continue;
+            }
+            i++;
+            if (b == '}') {
+                break;
+            }
+        }
+        return i;
+
+    }
+
+
+    /*
+     * Returns the index following the regular expression literal starting
+     * at start, or start + 1 if there is none, in which case the slash is a
+     * division after all.
+     */
+    private static int skipRegExp(byte[] source, int start) {
+
+        boolean inClass = false;
+        int i = start + 1;
+        while (i < source.length) {
+            byte b = source[i];
+            if (b == '\n' || b == '\r') {
+                return start + 1;
+            }
+            if (b == '\\') {
+                i += 2;
+                continue;
+            }
+            i++;
+            if (b == '[') {
+                inClass = true;
+            } else if (b == ']') {
+                inClass = false;
+            } else if (b == '/' && !inClass) {
+                return i;
+            }
+        }
+        return start + 1;
+
+    }
+
+
+    /*
+     * Returns the index following the end of the comment whose content
+     * starts at start, or the length of the source if it is not closed.
+     */
+    private static int indexOfCommentEnd(byte[] source, int start) {
+
+        for (int i = start; i + 1 < source.length; i++) {
+            if (source[i] == '*' && source[i + 1] == '/') {
+                return i + 2;
+            }
+        }
+        return source.length;
+
+    }
+
+
+    private static int indexOf(byte[] source, byte b, int start) {
+
+        return indexOf(source, b, start, source.length);
+
+    }
+
+
+    private static int indexOf(byte[] source, byte b, int start, int end) {
+
+        for (int i = start; i < end; i++) {
+            if (source[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+
+    }
+
+
+    private static byte[] readFully(InputStream in) throws IOException {
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+        byte[] buf = new byte[4096];
+        for (int read = in.read(buf); read != -1; read = in.read(buf)) {
+            out.write(buf, 0, read);
+        }
+        return out.toByteArray();
+
+    }
+
+
+    private static String digest(byte[] content) {
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest.digest(content));
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new FacesException(nsae);
+        }
+
+    }
+
+
+
+    // ----------------------------------------------------------- Inner Classes
+
+
+    /**
+     * <p>A <code>ByteArrayOutputStream</code> giving access to what has been
+     * written, to look back at the last token.</p>
+     */
+    private static final class Output extends ByteArrayOutputStream {
+
+        Output(int size) {
+
+            super(Math.max(size, 32));
+
+        }
+
+        int byteAt(int index) {
+
+            return (buf[index] & 0xFF);
+
+        }
+
+        String toString(int start, int end) {
+
+            return new String(buf, start, end - start, ISO_8859_1);
+
+        }
+
+        void truncate(int length) {
+
+            count -= length;
+
+        }
+
+    }
+
+}
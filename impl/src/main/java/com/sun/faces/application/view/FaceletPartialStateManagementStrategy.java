@@ -31,6 +31,7 @@ import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -348,7 +349,16 @@ public class FaceletPartialStateManagementStrategy extends StateManagementStrate
         final Map<String, Object> state = (Map<String, Object>) rawState[1];
         final StateContext stateContext = StateContext.getStateContext(context);
 
-        if (state != null) {
+        if (state != null && state.containsKey(ViewStateBaseline.BASELINE_STATE)) {
+            try {
+                stateContext.setTrackViewModifications(false);
+                if (!restoreBaselineState(context, viewRoot, state)) {
+                    viewRoot = null;
+                }
+            } finally {
+                stateContext.setTrackViewModifications(true);
+            }
+        } else if (state != null) {
             try {
                 stateContext.setTrackViewModifications(false);
 
@@ -396,6 +406,103 @@ public class FaceletPartialStateManagementStrategy extends StateManagementStrate
         return viewRoot;
     }
 
+    /**
+     * Restore state that was saved by {@link #saveBaselineState}.
+     *
+     * @param context the Faces context.
+     * @param viewRoot the view root.
+     * @param state the state.
+     * @return <code>true</code> if the state could be applied to the view.
+     */
+    private boolean restoreBaselineState(FacesContext context, UIViewRoot viewRoot, Map<String, Object> state) {
+        if (LOGGER.isLoggable(FINEST)) {
+            LOGGER.finest("FaceletPartialStateManagementStrategy.restoreBaselineState");
+        }
+
+        if (!ViewStateBaseline.restoreState(context, viewRoot,
+                                            (Object[]) state.get(ViewStateBaseline.BASELINE_STATE))) {
+            return false;
+        }
+
+        // the view root and its metadata are outside of the baseline
+        for (UIComponent target : getComponentsOutsideBaseline(viewRoot)) {
+            String cid = target.getClientId(context);
+            Object stateObj = state.get(cid);
+            if (stateObj != null) {
+                try {
+                    target.restoreState(context, stateObj);
+                } catch (Exception e) {
+                    String msg = MessageUtils.getExceptionMessageString(
+                            MessageUtils.PARTIAL_STATE_ERROR_RESTORING_ID,
+                            cid,
+                            e.toString());
+                    throw new FacesException(msg, e);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Save the view as deltas keyed by position within the baseline of the
+     * view, if it has one and the view still has the same structure.
+     *
+     * @param context the Faces context.
+     * @param viewRoot the view root.
+     * @param stateContext the state context.
+     * @param stateMap the state.
+     * @return <code>true</code> if the view was saved.
+     */
+    private boolean saveBaselineState(FacesContext context, UIViewRoot viewRoot, StateContext stateContext, Map<String, Object> stateMap) {
+        if (!stateContext.isBaselineStateSaving(viewRoot.getViewId()) || !isEmpty(stateContext.getDynamicActions())) {
+            return false;
+        }
+        ViewStateBaseline baseline = ViewStateBaseline.getBaseline(context, viewRoot.getViewId());
+        if (baseline == null) {
+            return false;
+        }
+        Object[] baselineState = baseline.saveState(context, viewRoot);
+        if (baselineState == null) {
+            return false;
+        }
+
+        if (LOGGER.isLoggable(FINEST)) {
+            LOGGER.finest("FaceletPartialStateManagementStrategy.saveBaselineState");
+        }
+
+        for (UIComponent target : getComponentsOutsideBaseline(viewRoot)) {
+            Object stateObj = target.saveState(context);
+            if (stateObj != null) {
+                stateMap.put(target.getClientId(context), stateObj);
+            }
+        }
+        stateMap.put(ViewStateBaseline.BASELINE_STATE, baselineState);
+        return true;
+    }
+
+    /**
+     * @param viewRoot the view root.
+     * @return the view root and the non-transient components of its
+     *  metadata facet.
+     */
+    private List<UIComponent> getComponentsOutsideBaseline(UIViewRoot viewRoot) {
+        List<UIComponent> result = new ArrayList<>();
+        result.add(viewRoot);
+        UIComponent metadata = viewRoot.getFacet(UIViewRoot.METADATA_FACET_NAME);
+        if (metadata != null && !metadata.isTransient()) {
+            result.add(metadata);
+            for (int i = 1; i < result.size(); i++) {
+                for (Iterator<UIComponent> it = result.get(i).getFacetsAndChildren(); it.hasNext(); ) {
+                    UIComponent c = it.next();
+                    if (!c.isTransient()) {
+                        result.add(c);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
     /**
      * Save the dynamic actions.
      *
@@ -455,6 +562,11 @@ public class FaceletPartialStateManagementStrategy extends StateManagementStrate
         final Map<String, Object> stateMap = new HashMap<>();
         final StateContext stateContext = StateContext.getStateContext(context);
 
+        if (saveBaselineState(context, viewRoot, stateContext, stateMap)) {
+            StateContext.release(context);
+            return new Object[]{null, stateMap};
+        }
+
         context.getAttributes().put(SKIP_ITERATION_HINT, true);
         Set<VisitHint> hints = EnumSet.of(VisitHint.SKIP_ITERATION);
         VisitContext visitContext = VisitContext.createVisitContext(context, null, hints);
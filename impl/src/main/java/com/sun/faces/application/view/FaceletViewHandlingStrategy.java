@@ -135,6 +135,7 @@ import com.sun.faces.facelets.tag.composite.CompositeComponentBeanInfo;
 import com.sun.faces.facelets.tag.jsf.CompositeComponentTagHandler;
 import com.sun.faces.facelets.tag.ui.UIDebug;
 import com.sun.faces.renderkit.RenderKitUtils;
+import com.sun.faces.renderkit.html_basic.ResourcePreloadHints;
 import com.sun.faces.util.Cache;
 import com.sun.faces.util.Cache.Factory;
 import com.sun.faces.util.ComponentStruct;
@@ -261,7 +262,9 @@ public class FaceletViewHandlingStrategy extends ViewHandlingStrategy {
                 }
 
                 context.setProcessingEvents(true);
-                vdl.buildView(context, viewRoot);
+                if (!restoreFromBaseline(context, viewRoot, rawState)) {
+                    vdl.buildView(context, viewRoot);
+                }
             } catch (IOException ioe) {
                 throw new FacesException(ioe);
             }
@@ -380,6 +383,10 @@ public class FaceletViewHandlingStrategy extends ViewHandlingStrategy {
         ctx.getApplication().publishEvent(ctx, PostAddToViewEvent.class, UIViewRoot.class, view);
         markInitialState(ctx, view);
 
+        if (stateCtx.isBaselineStateSaving(view.getViewId()) && !view.isTransient()) {
+            ViewStateBaseline.capture(ctx, view, facelet);
+        }
+
         setViewPopulated(ctx, view);
     }
 
@@ -407,6 +414,11 @@ public class FaceletViewHandlingStrategy extends ViewHandlingStrategy {
                 vdl.buildView(ctx, viewToRender);
             }
 
+            // Announce the view's scripts and stylesheets before any content is written
+            if (!ctx.getPartialViewContext().isPartialRequest()) {
+                ResourcePreloadHints.send(ctx, viewToRender);
+            }
+
             // Setup writer and assign it to the ctx
             ResponseWriter origWriter = ctx.getResponseWriter();
             if (origWriter == null) {
@@ -624,6 +636,47 @@ public class FaceletViewHandlingStrategy extends ViewHandlingStrategy {
         return (CompositeComponentBeanInfo) tmp.getAttributes().get(BEANINFO_KEY);
     }
 
+    /**
+     * Compile the Facelet of a view, and its metadata Facelet, into the
+     * <code>FaceletCache</code> ahead of the first request for the view.
+     *
+     * @param context the <code>FacesContext</code> to compile with, whose
+     *  attributes are not shared with another thread
+     * @param viewId the view ID
+     * @throws IOException if the Facelet cannot be read
+     */
+    public void precompileView(FacesContext context, String viewId) throws IOException {
+        DefaultFaceletFactory factory = getFaceletFactory();
+        factory.getFacelet(context, viewId);
+        factory.getMetadataFacelet(context, viewId);
+    }
+
+    /**
+     * Compile the Facelet of a composite component into the
+     * <code>FaceletCache</code>, and its metadata into the metadata cache,
+     * ahead of the first view using the composite component.
+     *
+     * @param context the <code>FacesContext</code> to compile with, whose
+     *  attributes are not shared with another thread
+     * @param ccResource the composite component resource
+     * @throws IOException if the Facelet cannot be read
+     */
+    public void precompileCompositeComponent(FacesContext context, Resource ccResource) throws IOException {
+        DefaultFaceletFactory factory = getFaceletFactory();
+        Facelet facelet = factory.getFacelet(context, ccResource.getURL());
+
+        // createComponentMetadata() runs within the FaceletContext of the
+        // view being built, which the new context stands in for.
+        RequestStateManager.set(context, FACELET_FACTORY, factory);
+        factory.createFaceletContext(context, facelet);
+        try {
+            getComponentMetadata(context, ccResource);
+        } finally {
+            context.getAttributes().remove(FACELET_CONTEXT_KEY);
+            RequestStateManager.remove(context, FACELET_FACTORY);
+        }
+    }
+
     /**
      * @see javax.faces.view.ViewDeclarationLanguage#getScriptComponentResource(javax.faces.context.FacesContext, javax.faces.application.Resource)
      */
@@ -1280,6 +1333,49 @@ public class FaceletViewHandlingStrategy extends ViewHandlingStrategy {
     }
 
 
+    /**
+     * If the state being restored was saved against the baseline of the view,
+     * populate <code>root</code> from that baseline instead of building it
+     * from the Facelet.
+     *
+     * @return <code>true</code> if <code>root</code> was populated
+     * @throws IOException if the Facelet of the view cannot be loaded
+     */
+    private boolean restoreFromBaseline(FacesContext ctx, UIViewRoot root, Object[] rawState) throws IOException {
+        if (rawState == null || !(rawState[1] instanceof Map)) {
+            return false;
+        }
+        Object[] baselineState = (Object[]) ((Map<?, ?>) rawState[1]).get(ViewStateBaseline.BASELINE_STATE);
+        if (baselineState == null) {
+            return false;
+        }
+        // a baseline captured before the Facelet was recompiled is dropped
+        Facelet facelet = getFaceletFactory().getFacelet(ctx, root.getViewId());
+        ViewStateBaseline baseline = ViewStateBaseline.getBaseline(ctx, root.getViewId(), facelet);
+        if (baseline == null || !baseline.matches(baselineState)) {
+            return false;
+        }
+
+        if (LOGGER.isLoggable(FINE)) {
+            LOGGER.fine("Restoring View from baseline: " + root.getViewId());
+        }
+
+        StateContext stateCtx = StateContext.getStateContext(ctx);
+        try {
+            stateCtx.setTrackViewModifications(false);
+            baseline.instantiate(ctx, root);
+        } finally {
+            stateCtx.setTrackViewModifications(true);
+        }
+        doPostBuildActions(ctx, root);
+        ctx.getApplication().publishEvent(ctx, PostAddToViewEvent.class, UIViewRoot.class, root);
+        markInitialState(ctx, root);
+
+        setViewPopulated(ctx, root);
+        return true;
+    }
+
+
     private void doPostBuildActions(FacesContext ctx, UIViewRoot root) {
         StateContext stateCtx = StateContext.getStateContext(ctx);
 //        if (stateCtx.isPartialStateSaving(ctx, root.getViewId())) {
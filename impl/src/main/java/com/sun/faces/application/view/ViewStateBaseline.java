@@ -0,0 +1,751 @@
+/*
+ * Copyright (c) 1997, 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.faces.application.view;
+
+import static java.util.logging.Level.FINE;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Constructor;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Logger;
+
+import javax.el.MethodExpression;
+import javax.el.ValueExpression;
+import javax.faces.FacesException;
+import javax.faces.application.Application;
+import javax.faces.component.UIComponent;
+import javax.faces.component.UIViewRoot;
+import javax.faces.context.FacesContext;
+import javax.faces.event.PostAddToViewEvent;
+import javax.faces.view.facelets.Facelet;
+
+import com.sun.faces.renderkit.ApplicationObjectInputStream;
+import com.sun.faces.util.FacesLogger;
+import com.sun.faces.util.MessageUtils;
+
+/**
+ * <p>
+ * An immutable snapshot of the component tree of a view as it is right after
+ * it has been built from its Facelet, shared by all requests for that view.
+ * </p>
+ *
+ * <p>
+ * The snapshot records, in a fixed depth first order, the class, id and
+ * position of every non-transient component below the view root (the
+ * metadata facet excepted) together with its full state.  When the tree
+ * being saved has exactly the same structure the partial state can be keyed
+ * by position within the snapshot rather than by client id, and when such
+ * state is restored the tree is instantiated from the snapshot instead of
+ * re-executing the Facelet.  The saved state identifies the structure it
+ * was saved against by its number of components and the SHA-256 digest of
+ * its classes, ids and positions.
+ * </p>
+ *
+ * <p>
+ * Every request gets components, attached objects and attribute values of
+ * its own.  Captured state made of nothing but immutable values is handed
+ * out with its arrays and collections copied; any other state, such as that
+ * of converters, validators and listeners, is serialized when captured and
+ * deserialized for each request.  No baseline is taken of a view whose
+ * state cannot be serialized.
+ * </p>
+ *
+ * <p>
+ * Only views listed in the <code>com.sun.faces.baselineStateSavingViewIds</code>
+ * context parameter use a baseline.  This is only correct if the initial state
+ * of such views depends on nothing but their structure: values evaluated while
+ * the view is built (for example, converter attributes) are taken from the
+ * first build and reused for everyone.
+ * </p>
+ *
+ * <p>
+ * A baseline belongs to the <code>Facelet</code> the view was built from.
+ * Once that Facelet has been recompiled, for example because its source
+ * changed and Facelets are refreshed, the baseline is dropped the next time
+ * the view is built or restored, and captured anew from the recompiled
+ * Facelet.
+ * </p>
+ */
+final class ViewStateBaseline {
+
+    private static final Logger LOGGER = FacesLogger.APPLICATION_VIEW.getLogger();
+
+    /**
+     * The key, within the state map, of the state stored against a baseline.
+     */
+    static final String BASELINE_STATE = "com.sun.faces.application.view.BASELINE_STATE";
+
+    private static final String BASELINES_KEY = ViewStateBaseline.class.getName();
+
+    private static final String RESTORED_COMPONENTS_KEY =
+          ViewStateBaseline.class.getName() + ".RESTORED_COMPONENTS";
+
+    private final Node[] nodes;
+    private final byte[] digest;
+
+    /**
+     * The serialized states of the nodes whose state is not copyable,
+     * indexed like the nodes, or <code>null</code> if there are none.
+     */
+    private final byte[] serializedStates;
+
+    /**
+     * <code>false</code> if this stands in for a view whose tree could not
+     * be captured, so that capture is not attempted again on every request.
+     */
+    private final boolean usable;
+
+    /**
+     * The Facelet the view was built from; not kept from being collected
+     * should the Facelet cache evict it.
+     */
+    private final WeakReference<Facelet> facelet;
+
+
+    // ------------------------------------------------------------ Constructors
+
+
+    private ViewStateBaseline(Node[] nodes, byte[] serializedStates, boolean usable, Facelet facelet) {
+
+        this.nodes = nodes;
+        this.digest = digest(Arrays.asList(nodes));
+        this.serializedStates = serializedStates;
+        this.usable = usable;
+        this.facelet = new WeakReference<>(facelet);
+
+    }
+
+
+    // --------------------------------------------------------- Package Methods
+
+
+    /**
+     * @param context the <code>FacesContext</code> for the current request
+     * @param viewId the view ID
+     * @return the baseline of <code>viewId</code>, or <code>null</code> if
+     *  none has been captured
+     */
+    static ViewStateBaseline getBaseline(FacesContext context, String viewId) {
+
+        ViewStateBaseline baseline = getBaselines(context).get(viewId);
+        return ((baseline != null && baseline.usable) ? baseline : null);
+
+    }
+
+
+    /**
+     * <p>
+     * Like {@link #getBaseline(FacesContext, String)}, but drops the
+     * baseline if it was not captured from a view built by
+     * <code>facelet</code>.
+     * </p>
+     *
+     * @param context the <code>FacesContext</code> for the current request
+     * @param viewId the view ID
+     * @param facelet the current Facelet of the view
+     * @return the baseline of <code>viewId</code>, or <code>null</code> if
+     *  none has been captured from <code>facelet</code>
+     */
+    static ViewStateBaseline getBaseline(FacesContext context, String viewId, Facelet facelet) {
+
+        ConcurrentMap<String, ViewStateBaseline> baselines = getBaselines(context);
+        ViewStateBaseline baseline = baselines.get(viewId);
+        if (baseline != null && !baseline.isBuiltFrom(facelet)) {
+            // the Facelet has been recompiled since the baseline was captured
+            baselines.remove(viewId, baseline);
+            return null;
+        }
+        return ((baseline != null && baseline.usable) ? baseline : null);
+
+    }
+
+
+    /**
+     * <p>
+     * Captures the baseline of <code>root</code> unless one built from
+     * <code>facelet</code> already exists for its view ID.  A baseline
+     * built from another Facelet is replaced.  Must be called right after
+     * the view has been built and its initial state has been marked.
+     * </p>
+     *
+     * @param context the <code>FacesContext</code> for the current request
+     * @param root the freshly built view
+     * @param facelet the Facelet <code>root</code> was built from
+     */
+    static void capture(FacesContext context, UIViewRoot root, Facelet facelet) {
+
+        ConcurrentMap<String, ViewStateBaseline> baselines = getBaselines(context);
+        String viewId = root.getViewId();
+        ViewStateBaseline existing = baselines.get(viewId);
+        if (existing != null && existing.isBuiltFrom(facelet)) {
+            return;
+        }
+
+        ViewStateBaseline baseline;
+        try {
+            List<UIComponent> components = new ArrayList<>();
+            List<Node> nodes = new ArrayList<>();
+            walk(root, components, nodes);
+            Object[] serialized = null;
+            for (int i = 0, len = components.size(); i < len; i++) {
+                UIComponent c = components.get(i);
+                Node node = nodes.get(i);
+                node.constructor = node.type.getConstructor();
+                // the full state is the initial state, as there are no deltas yet
+                c.clearInitialState();
+                Object state;
+                try {
+                    state = c.saveState(context);
+                } finally {
+                    c.markInitialState();
+                }
+                if (isCopyable(state)) {
+                    node.state = state;
+                } else {
+                    if (serialized == null) {
+                        serialized = new Object[len];
+                    }
+                    serialized[i] = state;
+                    node.serialized = true;
+                }
+            }
+            baseline = new ViewStateBaseline(nodes.toArray(new Node[nodes.size()]),
+                                             ((serialized != null) ? serialize(serialized) : null),
+                                             true,
+                                             facelet);
+        } catch (Exception e) {
+            if (LOGGER.isLoggable(FINE)) {
+                LOGGER.log(FINE, "Unable to capture the baseline state of view " + viewId, e);
+            }
+            baseline = new ViewStateBaseline(new Node[0], null, false, facelet);
+        }
+
+        boolean stored = ((existing != null)
+                          ? baselines.replace(viewId, existing, baseline)
+                          : baselines.putIfAbsent(viewId, baseline) == null);
+        if (stored && LOGGER.isLoggable(FINE)) {
+            LOGGER.log(FINE,
+                       "Captured baseline state of view {0}: {1} components",
+                       new Object[] { viewId, baseline.nodes.length });
+        }
+
+    }
+
+
+    /**
+     * @param context the <code>FacesContext</code> for the current request
+     * @return the components instantiated by {@link #instantiate} during
+     *  the current request, in baseline order, or <code>null</code>; they
+     *  are only returned once
+     */
+    static UIComponent[] getRestoredComponents(FacesContext context) {
+
+        return (UIComponent[]) context.getAttributes().remove(RESTORED_COMPONENTS_KEY);
+
+    }
+
+
+    /**
+     * @param baselineState state returned by {@link #saveState}
+     * @return <code>true</code> if <code>baselineState</code> was saved
+     *  against a tree with the same structure as this baseline
+     */
+    boolean matches(Object[] baselineState) {
+
+        return nodes.length == (Integer) baselineState[0]
+               && MessageDigest.isEqual(digest, (byte[]) baselineState[1]);
+
+    }
+
+
+    /**
+     * <p>
+     * Saves the deltas of <code>root</code> keyed by position within this
+     * baseline.  The view root and its metadata facet are not saved.
+     * </p>
+     *
+     * @param context the <code>FacesContext</code> for the current request
+     * @param root the view to save
+     * @return the state, or <code>null</code> if <code>root</code> does not
+     *  have the structure of this baseline anymore
+     */
+    Object[] saveState(FacesContext context, UIViewRoot root) {
+
+        List<UIComponent> components = new ArrayList<>(nodes.length);
+        List<Node> current = new ArrayList<>(nodes.length);
+        walk(root, components, current);
+        if (current.size() != nodes.length) {
+            return null;
+        }
+        for (int i = 0; i < nodes.length; i++) {
+            if (!nodes[i].hasSameShape(current.get(i))) {
+                return null;
+            }
+        }
+
+        int[] indices = new int[nodes.length];
+        Object[] states = new Object[nodes.length];
+        int count = 0;
+        for (int i = 0; i < nodes.length; i++) {
+            Object stateObj = components.get(i).saveState(context);
+            if (stateObj != null) {
+                indices[count] = i;
+                states[count++] = stateObj;
+            }
+        }
+        return new Object[] {
+              nodes.length,
+              digest,
+              Arrays.copyOf(indices, count),
+              Arrays.copyOf(states, count) };
+
+    }
+
+
+    /**
+     * <p>
+     * Applies state saved by {@link #saveState} to <code>root</code>.  If the
+     * components of <code>root</code> were instantiated from a baseline
+     * during the current request, that baseline is known to match.
+     * Otherwise <code>root</code> was built from its Facelet, and its
+     * structure is checked against the one the state was saved with.
+     * </p>
+     *
+     * @param context the <code>FacesContext</code> for the current request
+     * @param root the view to restore
+     * @param baselineState state returned by {@link #saveState}
+     * @return <code>true</code> if the state was applied, <code>false</code>
+     *  if <code>root</code> does not have the structure it was saved with
+     */
+    static boolean restoreState(FacesContext context, UIViewRoot root, Object[] baselineState) {
+
+        UIComponent[] components = getRestoredComponents(context);
+        if (components == null) {
+            List<UIComponent> built = new ArrayList<>();
+            List<Node> nodes = new ArrayList<>();
+            walk(root, built, nodes);
+            if (nodes.size() != (Integer) baselineState[0]
+                || !MessageDigest.isEqual(digest(nodes), (byte[]) baselineState[1])) {
+                if (LOGGER.isLoggable(FINE)) {
+                    LOGGER.log(FINE,
+                               "The structure of view {0} does not match its saved baseline state",
+                               root.getViewId());
+                }
+                return false;
+            }
+            components = built.toArray(new UIComponent[built.size()]);
+        }
+
+        int[] indices = (int[]) baselineState[2];
+        Object[] states = (Object[]) baselineState[3];
+        for (int i = 0; i < indices.length; i++) {
+            UIComponent target = components[indices[i]];
+            try {
+                target.restoreState(context, states[i]);
+            } catch (Exception e) {
+                String msg = MessageUtils.getExceptionMessageString(
+                      MessageUtils.PARTIAL_STATE_ERROR_RESTORING_ID,
+                      target.getClientId(context),
+                      e.toString());
+                throw new FacesException(msg, e);
+            }
+        }
+        return true;
+
+    }
+
+
+    /**
+     * <p>
+     * Adds a copy of the captured tree to <code>root</code>, restoring each
+     * component to its captured state and setting its <code>binding</code>,
+     * if any.  Events are disabled while the tree is assembled; then, if
+     * events are being processed, a <code>PostAddToViewEvent</code> is
+     * published for every component added, parents before their children,
+     * as if the tree had been built from its Facelet.  The caller is
+     * responsible for marking the initial state of the result.
+     * </p>
+     *
+     * @param context the <code>FacesContext</code> for the current request
+     * @param root a view root that has no children or facets other than the
+     *  view metadata facet
+     */
+    void instantiate(FacesContext context, UIViewRoot root) {
+
+        Object[] serialized = deserializeStates();
+        UIComponent[] components = new UIComponent[nodes.length];
+        boolean processingEvents = context.isProcessingEvents();
+        context.setProcessingEvents(false);
+        try {
+            for (int i = 0; i < nodes.length; i++) {
+                Node node = nodes[i];
+                UIComponent c;
+                try {
+                    c = node.constructor.newInstance();
+                } catch (ReflectiveOperationException roe) {
+                    throw new IllegalStateException(roe);
+                }
+                // a component listening to its own events is restored as the current component
+                c.pushComponentToEL(context, c);
+                try {
+                    c.restoreState(context, (node.serialized ? serialized[i] : copy(node.state)));
+                } finally {
+                    c.popComponentFromEL(context);
+                }
+                if (c.getId() == null) {
+                    c.setId(node.id);
+                }
+
+                UIComponent parent = ((node.parent < 0) ? root : components[node.parent]);
+                if (node.facetName != null) {
+                    parent.getFacets().put(node.facetName, c);
+                } else {
+                    parent.getChildren().add(c);
+                }
+
+                ValueExpression binding = c.getValueExpression("binding");
+                if (binding != null) {
+                    binding.setValue(context.getELContext(), c);
+                }
+                components[i] = c;
+            }
+        } finally {
+            context.setProcessingEvents(processingEvents);
+        }
+        context.getAttributes().put(RESTORED_COMPONENTS_KEY, components);
+
+        if (processingEvents) {
+            Application application = context.getApplication();
+            for (int i = 0; i < nodes.length; i++) {
+                if (nodes[i].parent < 0) {
+                    publishPostAddToViewEvents(context, application, components[i]);
+                }
+            }
+        }
+
+    }
+
+
+    // --------------------------------------------------------- Private Methods
+
+
+    private boolean isBuiltFrom(Facelet facelet) {
+
+        return (this.facelet.get() == facelet);
+
+    }
+
+
+    @SuppressWarnings("unchecked")
+    private static ConcurrentMap<String, ViewStateBaseline> getBaselines(FacesContext context) {
+
+        Map<String, Object> appMap = context.getExternalContext().getApplicationMap();
+        ConcurrentMap<String, ViewStateBaseline> baselines =
+              (ConcurrentMap<String, ViewStateBaseline>) appMap.get(BASELINES_KEY);
+        if (baselines == null) {
+            synchronized (ViewStateBaseline.class) {
+                baselines = (ConcurrentMap<String, ViewStateBaseline>) appMap.get(BASELINES_KEY);
+                if (baselines == null) {
+                    baselines = new ConcurrentHashMap<>();
+                    appMap.put(BASELINES_KEY, baselines);
+                }
+            }
+        }
+        return baselines;
+
+    }
+
+
+    /*
+     * Depth first, facets (sorted by name, so the order does not depend on
+     * the facet map's iteration order) before children, skipping transient
+     * components and the metadata facet of the root.
+     */
+    private static void walk(UIViewRoot root, List<UIComponent> components, List<Node> nodes) {
+
+        walk(root, -1, root, components, nodes);
+
+    }
+
+
+    private static void walk(UIViewRoot root,
+                             int parentIndex,
+                             UIComponent parent,
+                             List<UIComponent> components,
+                             List<Node> nodes) {
+
+        if (parent.getFacetCount() > 0) {
+            Map<String, UIComponent> facets = parent.getFacets();
+            String[] names = facets.keySet().toArray(new String[facets.size()]);
+            Arrays.sort(names);
+            for (String name : names) {
+                if (parent == root && UIViewRoot.METADATA_FACET_NAME.equals(name)) {
+                    continue;
+                }
+                visit(root, parentIndex, name, facets.get(name), components, nodes);
+            }
+        }
+        if (parent.getChildCount() > 0) {
+            for (UIComponent child : parent.getChildren()) {
+                visit(root, parentIndex, null, child, components, nodes);
+            }
+        }
+
+    }
+
+
+    private static void visit(UIViewRoot root,
+                              int parentIndex,
+                              String facetName,
+                              UIComponent c,
+                              List<UIComponent> components,
+                              List<Node> nodes) {
+
+        if (c.isTransient()) {
+            return;
+        }
+        int index = components.size();
+        components.add(c);
+        nodes.add(new Node(c, parentIndex, facetName));
+        walk(root, index, c, components, nodes);
+
+    }
+
+
+    private static byte[] digest(List<Node> nodes) {
+
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(nodes.size() * 64);
+            DataOutputStream out = new DataOutputStream(bytes);
+            for (Node node : nodes) {
+                out.writeInt(node.parent);
+                writeNullable(out, node.facetName);
+                out.writeUTF(node.type.getName());
+                writeNullable(out, node.id);
+            }
+            out.flush();
+            return MessageDigest.getInstance("SHA-256").digest(bytes.toByteArray());
+        } catch (IOException | NoSuchAlgorithmException e) {
+            throw new FacesException(e);
+        }
+
+    }
+
+
+    private static void writeNullable(DataOutputStream out, String s) throws IOException {
+
+        out.writeBoolean(s != null);
+        if (s != null) {
+            out.writeUTF(s);
+        }
+
+    }
+
+
+    /*
+     * Depth first, children before facets, as UIComponentBase publishes
+     * the event for a component added to the view.
+     */
+    private static void publishPostAddToViewEvents(FacesContext context,
+                                                   Application application,
+                                                   UIComponent c) {
+
+        c.pushComponentToEL(context, c);
+        try {
+            application.publishEvent(context, PostAddToViewEvent.class, c);
+            if (c.getChildCount() > 0) {
+                for (UIComponent child : new ArrayList<>(c.getChildren())) {
+                    publishPostAddToViewEvents(context, application, child);
+                }
+            }
+            if (c.getFacetCount() > 0) {
+                for (UIComponent facet : new ArrayList<>(c.getFacets().values())) {
+                    publishPostAddToViewEvents(context, application, facet);
+                }
+            }
+        } finally {
+            c.popComponentFromEL(context);
+        }
+
+    }
+
+
+    /*
+     * Whether the state holds nothing but immutable values, within arrays
+     * and collections that copy() copies.  Expressions count as immutable,
+     * Facelets shares them between views already.  Anything else, such as
+     * the state of an attached object, may be an instance that restoring
+     * hands to the component as is.
+     */
+    private static boolean isCopyable(Object state) {
+
+        if (state == null
+              || state instanceof String
+              || state instanceof Boolean
+              || state instanceof Character
+              || state instanceof Integer
+              || state instanceof Long
+              || state instanceof Short
+              || state instanceof Byte
+              || state instanceof Double
+              || state instanceof Float
+              || state instanceof Enum
+              || state instanceof Class
+              || state instanceof ValueExpression
+              || state instanceof MethodExpression) {
+            return true;
+        } else if (state instanceof Object[]) {
+            for (Object o : (Object[]) state) {
+                if (!isCopyable(o)) {
+                    return false;
+                }
+            }
+            return true;
+        } else if (state.getClass() == HashMap.class) {
+            for (Map.Entry<?, ?> entry : ((HashMap<?, ?>) state).entrySet()) {
+                if (!isCopyable(entry.getKey()) || !isCopyable(entry.getValue())) {
+                    return false;
+                }
+            }
+            return true;
+        } else if (state.getClass() == ArrayList.class) {
+            for (Object o : (ArrayList<?>) state) {
+                if (!isCopyable(o)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+
+    }
+
+
+    /*
+     * Restoring state may keep references to the arrays and collections it
+     * is given; hand out copies of those so the captured state stays intact.
+     */
+    private static Object copy(Object state) {
+
+        if (state instanceof Object[]) {
+            Object[] array = ((Object[]) state).clone();
+            for (int i = 0; i < array.length; i++) {
+                array[i] = copy(array[i]);
+            }
+            return array;
+        } else if (state instanceof HashMap) {
+            HashMap<Object, Object> map = new HashMap<>();
+            for (Map.Entry<?, ?> entry : ((HashMap<?, ?>) state).entrySet()) {
+                map.put(entry.getKey(), copy(entry.getValue()));
+            }
+            return map;
+        } else if (state instanceof ArrayList) {
+            ArrayList<?> list = (ArrayList<?>) state;
+            ArrayList<Object> result = new ArrayList<>(list.size());
+            for (Object o : list) {
+                result.add(copy(o));
+            }
+            return result;
+        }
+        return state;
+
+    }
+
+
+    private static byte[] serialize(Object[] states) throws IOException {
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(states);
+        }
+        return bytes.toByteArray();
+
+    }
+
+
+    /*
+     * A fresh copy of the states that are not copyable, for one request.
+     */
+    private Object[] deserializeStates() {
+
+        if (serializedStates == null) {
+            return null;
+        }
+        try (ObjectInputStream in =
+                   new ApplicationObjectInputStream(new ByteArrayInputStream(serializedStates))) {
+            return (Object[]) in.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            throw new FacesException(e);
+        }
+
+    }
+
+
+    // ----------------------------------------------------------- Inner Classes
+
+
+    private static final class Node {
+
+        final Class<? extends UIComponent> type;
+        final String id;
+        final int parent;
+        final String facetName;
+        Constructor<? extends UIComponent> constructor;
+
+        /**
+         * The captured state, if copyable; otherwise <code>null</code> and
+         * the state is in {@link ViewStateBaseline#serializedStates}.
+         */
+        Object state;
+        boolean serialized;
+
+        Node(UIComponent c, int parent, String facetName) {
+
+            this.type = c.getClass();
+            this.id = c.getId();
+            this.parent = parent;
+            this.facetName = facetName;
+
+        }
+
+        boolean hasSameShape(Node other) {
+
+            return type == other.type
+                   && parent == other.parent
+                   && Objects.equals(id, other.id)
+                   && Objects.equals(facetName, other.facetName);
+
+        }
+
+    }
+
+}
@@ -18,7 +18,9 @@ package com.sun.faces.config;
 
 import static com.sun.faces.RIConstants.FACES_PREFIX;
 import static com.sun.faces.config.WebConfiguration.BooleanWebContextInitParameter.EnableThreading;
+import static com.sun.faces.config.WebConfiguration.BooleanWebContextInitParameter.PrecompileFacelets;
 import static com.sun.faces.config.WebConfiguration.BooleanWebContextInitParameter.ValidateFacesConfigFiles;
+import static com.sun.faces.config.WebConfiguration.BooleanWebContextInitParameter.WarmResourceCache;
 import static com.sun.faces.config.manager.Documents.getProgrammaticDocuments;
 import static com.sun.faces.config.manager.Documents.getXMLDocuments;
 import static com.sun.faces.config.manager.Documents.mergeDocuments;
@@ -30,6 +32,7 @@ import static java.util.Arrays.asList;
 import static java.util.Collections.emptyMap;
 import static java.util.Collections.unmodifiableList;
 import static java.util.logging.Level.FINE;
+import static java.util.logging.Level.WARNING;
 
 import java.lang.annotation.Annotation;
 import java.util.ArrayList;
@@ -70,7 +73,9 @@ import com.sun.faces.config.manager.DbfFactory;
 import com.sun.faces.config.manager.FacesConfigInfo;
 import com.sun.faces.config.manager.documents.DocumentInfo;
 import com.sun.faces.config.manager.tasks.FindAnnotatedConfigClasses;
+import com.sun.faces.config.manager.tasks.PrecompileFaceletsTask;
 import com.sun.faces.config.manager.tasks.ProvideMetadataToAnnotationScanTask;
+import com.sun.faces.config.manager.tasks.WarmResourceCacheTask;
 import com.sun.faces.config.processor.ApplicationConfigProcessor;
 import com.sun.faces.config.processor.BehaviorConfigProcessor;
 import com.sun.faces.config.processor.ComponentConfigProcessor;
@@ -331,6 +336,11 @@ public class ConfigManager {
                     }
                 });
 
+                Future<Integer> resourceCacheWarming = null;
+                if (webConfig.isOptionEnabled(WarmResourceCache)) {
+                    resourceCacheWarming = warmResourceCache(facesContext, executor);
+                }
+
                 faceletTaglibConfigProcessor.process(
                       servletContext,
                       facesContext,
@@ -339,6 +349,10 @@ public class ConfigManager {
                           getFaceletConfigResourceProviders(),
                           executor,
                           validating));
+
+                if (resourceCacheWarming != null) {
+                    awaitResourceCache(resourceCacheWarming);
+                }
             } catch (Exception e) {
                 // Clear out any configured factories
                 releaseFactories();
@@ -360,6 +374,43 @@ public class ConfigManager {
         DbfFactory.removeSchemaMap(servletContext);
     }
 
+    /**
+     * <p>
+     *   Compile the Facelets of the application, when
+     *   {@link WebConfiguration.BooleanWebContextInitParameter#PrecompileFacelets}
+     *   is enabled.  This requires the Facelets runtime, so it is to be called
+     *   once {@link #publishPostConfigEvent()} has initialized it.
+     * </p>
+     *
+     * @param servletContext the <code>ServletContext</code> for the application
+     * @param facesContext the <code>InitFacesContext</code> for the application
+     */
+    public void precompileFacelets(ServletContext servletContext, InitFacesContext facesContext) {
+
+        if (!WebConfiguration.getInstance(servletContext).isOptionEnabled(PrecompileFacelets)) {
+            return;
+        }
+
+        // The executor of initialize() has been shut down by now
+        ExecutorService executor = null;
+        if (useThreads(servletContext)) {
+            executor = createExecutorService();
+        }
+
+        try {
+            new PrecompileFaceletsTask(facesContext, executor).call();
+        } catch (Exception e) {
+            // Facelets are still compiled on demand
+            if (LOGGER.isLoggable(WARNING)) {
+                LOGGER.log(WARNING, "Unable to precompile the Facelets", e);
+            }
+        } finally {
+            if (executor != null) {
+                executor.shutdown();
+            }
+        }
+    }
+
     /**
      * @param servletContext
      *            the <code>ServletContext</code> for the application in question
@@ -395,6 +446,38 @@ public class ConfigManager {
         pushTaskToContext(servletContext, annotationScan);
     }
 
+    /**
+     * Execute the Task responsible for warming the resource cache, in parallel
+     * with the remaining configuration when threading is enabled.
+     */
+    private Future<Integer> warmResourceCache(InitFacesContext context, ExecutorService executor) {
+
+        if (executor != null) {
+            return executor.submit(new WarmResourceCacheTask(context));
+        }
+
+        FutureTask<Integer> resourceCacheWarming = new FutureTask<>(new WarmResourceCacheTask(context));
+        resourceCacheWarming.run();
+
+        return resourceCacheWarming;
+    }
+
+    /**
+     * Wait for the resource cache to be warmed.  A failure is logged but does
+     * not fail the initialization, as resources are still looked up on demand.
+     */
+    private void awaitResourceCache(Future<Integer> resourceCacheWarming) {
+        try {
+            resourceCacheWarming.get();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ee) {
+            if (LOGGER.isLoggable(WARNING)) {
+                LOGGER.log(WARNING, "Unable to warm the resource cache", ee.getCause());
+            }
+        }
+    }
+
     /**
      * Push the provided <code>Future</code> to the specified <code>ServletContext</code>.
      */
@@ -252,6 +252,7 @@ public class ConfigureListener implements ServletRequestListener, HttpSessionLis
 
             webConfig.doPostBringupActions();
             configManager.publishPostConfigEvent();
+            configManager.precompileFacelets(context, initContext);
 
         } catch (Throwable t) {
             LOGGER.log(SEVERE, "Critical error during deployment: ", t);
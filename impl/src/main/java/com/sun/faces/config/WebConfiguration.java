@@ -916,6 +916,38 @@ public class WebConfiguration {
               true,
               NumberOfLogicalViews
         ),
+        NumberOfStateBytesInSession(
+              "com.sun.faces.numberOfStateBytesInSession",
+              "0"
+        ),
+        ViewStateStoreClass(
+              "com.sun.faces.viewStateStore",
+              ""
+        ),
+        ViewStateStoreDirectory(
+              "com.sun.faces.viewStateStoreDirectory",
+              ""
+        ),
+        ViewStateStoreSlabSize(
+              "com.sun.faces.viewStateStoreSlabSize",
+              "4194304"
+        ),
+        ViewStateStoreMaxOffHeapBytes(
+              "com.sun.faces.viewStateStoreMaxOffHeapBytes",
+              "268435456"
+        ),
+        ViewStateDictionary(
+              "com.sun.faces.viewStateDictionary",
+              ""
+        ),
+        ViewStateDictionaryMaxInflatedBytes(
+              "com.sun.faces.viewStateDictionaryMaxInflatedBytes",
+              "16777216"
+        ),
+        ViewStateDictionaryMaxViews(
+              "com.sun.faces.viewStateDictionaryMaxViews",
+              "512"
+        ),
         NumberOfConcurrentFlashUsers(
               "com.sun.faces.numberOfConcerrentFlashUsers",
               "5000"
@@ -955,6 +987,14 @@ public class WebConfiguration {
             "com.sun.faces.resourceBufferSize",
             "2048"
         ),
+        ResourceContentCacheSize(
+              "com.sun.faces.resourceContentCacheSize",
+              "0" // in bytes, 0 disables the cache
+        ),
+        ResourceContentCacheMaxEntrySize(
+              "com.sun.faces.resourceContentCacheMaxEntrySize",
+              "1048576" // in bytes
+        ),
         ExpressionFactory(
               "com.sun.faces.expressionFactory",
               "com.sun.el.ExpressionFactoryImpl"
@@ -975,6 +1015,10 @@ public class WebConfiguration {
               "com.sun.faces.compressableMimeTypes",
               ""
         ),
+        ResourcePreloadHints(
+              "com.sun.faces.resourcePreloadHints",
+              "none" // none, link or earlyHints
+        ),
         DisableUnicodeEscaping(
             "com.sun.faces.disableUnicodeEscaping",
             "auto"
@@ -1046,6 +1090,10 @@ public class WebConfiguration {
               StateManager.FULL_STATE_SAVING_VIEW_IDS_PARAM_NAME,
               ""
         ),
+        BaselineStateSavingViewIds(
+              "com.sun.faces.baselineStateSavingViewIds",
+              ""
+        ),
         AnnotationScanPackages(
               "com.sun.faces.annotationScanPackages",
               ""
@@ -1054,6 +1102,26 @@ public class WebConfiguration {
             "com.sun.faces.faceletCache",
             ""
         ),
+        FaceletsRefreshMode(
+            "com.sun.faces.faceletsRefreshMode",
+            "poll"
+        ),
+        FaceletCacheMaxEntries(
+            "com.sun.faces.faceletCacheMaxEntries",
+            "0"
+        ),
+        FaceletCacheMaxWeight(
+            "com.sun.faces.faceletCacheMaxWeight",
+            "0"
+        ),
+        FaceletCacheContractQuota(
+            "com.sun.faces.faceletCacheContractQuota",
+            "100"
+        ),
+        FaceletsCompilationCacheDirectory(
+            "com.sun.faces.faceletsCompilationCacheDirectory",
+            ""
+        ),
         FaceletsProcessingFileExtensionProcessAs(
                 "",
                 ""
@@ -1236,6 +1304,10 @@ public class WebConfiguration {
               true,
               CompressViewState
         ),
+        CompressViewStateWithDictionary(
+              "com.sun.faces.compressViewStateWithDictionary",
+              false
+        ),
         CompressJavaScript(
             "com.sun.faces.compressJavaScript",
             true
@@ -1330,6 +1402,34 @@ public class WebConfiguration {
               "com.sun.faces.cacheResourceModificationTimestamp",
               false
         ),
+        ResourceContentHashInRequestPath(
+              "com.sun.faces.resourceContentHashInRequestPath",
+              false
+        ),
+        CombineResources(
+              "com.sun.faces.combineResources",
+              false
+        ),
+        MinifyResources(
+              "com.sun.faces.minifyResources",
+              false
+        ),
+        WarmResourceCache(
+              "com.sun.faces.warmResourceCache",
+              false
+        ),
+        CacheTagAttributeExpressions(
+              "com.sun.faces.cacheTagAttributeExpressions",
+              false
+        ),
+        PrecompileFacelets(
+              "com.sun.faces.precompileFacelets",
+              false
+        ),
+        RegisterFaceletCacheMBean(
+              "com.sun.faces.registerFaceletCacheMBean",
+              false
+        ),
         EnableAgressiveSessionDirtying(
               "com.sun.faces.enableAgressiveSessionDirtying",
               false
@@ -0,0 +1,260 @@
+/*
+ * Copyright (c) 1997, 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.faces.config.manager.tasks;
+
+import static java.util.logging.Level.INFO;
+import static java.util.logging.Level.WARNING;
+import static java.util.stream.Collectors.toList;
+import static javax.faces.FactoryFinder.VIEW_DECLARATION_LANGUAGE_FACTORY;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.logging.Logger;
+
+import javax.el.ELContext;
+import javax.el.ExpressionFactory;
+import javax.faces.FactoryFinder;
+import javax.faces.application.Resource;
+import javax.faces.context.FacesContext;
+import javax.faces.context.FacesContextWrapper;
+import javax.faces.view.ViewDeclarationLanguage;
+import javax.faces.view.ViewDeclarationLanguageFactory;
+
+import com.sun.faces.application.ApplicationAssociate;
+import com.sun.faces.application.resource.ResourceManager;
+import com.sun.faces.application.view.FaceletViewHandlingStrategy;
+import com.sun.faces.config.InitFacesContext;
+import com.sun.faces.el.ELContextImpl;
+import com.sun.faces.util.FacesLogger;
+import com.sun.faces.util.Timer;
+
+/**
+ * Compiles the Facelets of the views and of the composite components of the
+ * application, and the composite component metadata, so that the first
+ * requests after a deployment find them in the caches.
+ *
+ * <p>
+ * Each Facelet is compiled by a task of its own, in parallel when an
+ * <code>ExecutorService</code> is provided.  As compilation passes state
+ * through the attributes of the <code>FacesContext</code>, each task uses a
+ * <code>FacesContext</code> of its own, wrapping the
+ * <code>InitFacesContext</code>.  A Facelet failing to compile is logged and
+ * left to be compiled, and to fail, on demand.
+ * </p>
+ *
+ * @see FaceletViewHandlingStrategy#precompileView(FacesContext, String)
+ * @see FaceletViewHandlingStrategy#precompileCompositeComponent(FacesContext, Resource)
+ */
+public class PrecompileFaceletsTask implements Callable<Integer> {
+
+    private static final Logger LOGGER = FacesLogger.CONFIG.getLogger();
+
+    private final InitFacesContext facesContext;
+    private final ExecutorService executor;
+    private final Thread parentThread;
+    private final ClassLoader parentContextClassLoader;
+
+    // -------------------------------------------------------- Constructors
+
+    /**
+     * @param facesContext the <code>InitFacesContext</code> of the application
+     * @param executor the <code>ExecutorService</code> to compile with, or
+     *  <code>null</code> to compile on the calling thread
+     */
+    public PrecompileFaceletsTask(InitFacesContext facesContext, ExecutorService executor) {
+        this.facesContext = facesContext;
+        this.executor = executor;
+        this.parentThread = Thread.currentThread();
+        this.parentContextClassLoader = parentThread.getContextClassLoader();
+    }
+
+    // ----------------------------------------------- Methods from Callable
+
+    @Override
+    public Integer call() throws Exception {
+
+        Timer t = Timer.getInstance(INFO);
+        if (t != null) {
+            t.startTiming();
+        }
+
+        FaceletViewHandlingStrategy strategy = getFaceletViewHandlingStrategy();
+        if (strategy == null) {
+            return 0;
+        }
+
+        List<String> viewIds = strategy.getViews(facesContext, "/").collect(toList());
+        ResourceManager resourceManager = ApplicationAssociate.getInstance(facesContext.getExternalContext()).getResourceManager();
+        List<List<String>> compositeComponents = (resourceManager != null)
+                                                 ? resourceManager.getCompositeComponentResources(facesContext)
+                                                 : new ArrayList<>();
+
+        List<Future<Boolean>> compilations = new ArrayList<>(viewIds.size() + compositeComponents.size());
+        for (String viewId : viewIds) {
+            compilations.add(submit(new Compilation(viewId) {
+                @Override
+                void compile(FacesContext context) throws Exception {
+                    strategy.precompileView(context, viewId);
+                }
+            }));
+        }
+        for (List<String> compositeComponent : compositeComponents) {
+            String libraryName = compositeComponent.get(0);
+            String resourceName = compositeComponent.get(1);
+            compilations.add(submit(new Compilation(libraryName + '/' + resourceName) {
+                @Override
+                void compile(FacesContext context) throws Exception {
+                    Resource ccResource = context.getApplication().getResourceHandler().createResource(resourceName, libraryName);
+                    if (ccResource != null) {
+                        strategy.precompileCompositeComponent(context, ccResource);
+                    }
+                }
+            }));
+        }
+
+        int count = 0;
+        for (Future<Boolean> compilation : compilations) {
+            if (compilation.get()) {
+                count++;
+            }
+        }
+
+        if (t != null) {
+            t.stopTiming();
+            t.logResult("Precompiled " + count + " of " + compilations.size() + " Facelets.");
+        }
+
+        return count;
+    }
+
+    // ----------------------------------------------------- Private Methods
+
+    private FaceletViewHandlingStrategy getFaceletViewHandlingStrategy() {
+
+        ViewDeclarationLanguageFactory vdlFactory = (ViewDeclarationLanguageFactory)
+              FactoryFinder.getFactory(VIEW_DECLARATION_LANGUAGE_FACTORY);
+        for (ViewDeclarationLanguage vdl : vdlFactory.getAllViewDeclarationLanguages()) {
+            if (vdl instanceof FaceletViewHandlingStrategy) {
+                return (FaceletViewHandlingStrategy) vdl;
+            }
+        }
+
+        return null;
+    }
+
+    private Future<Boolean> submit(Compilation compilation) {
+
+        if (executor != null) {
+            return executor.submit(compilation);
+        }
+
+        FutureTask<Boolean> result = new FutureTask<>(compilation);
+        result.run();
+
+        return result;
+    }
+
+    // ----------------------------------------------------- Nested Classes
+
+    private abstract class Compilation implements Callable<Boolean> {
+
+        private final String name;
+
+        Compilation(String name) {
+            this.name = name;
+        }
+
+        abstract void compile(FacesContext context) throws Exception;
+
+        @Override
+        public Boolean call() {
+
+            boolean childThread = Thread.currentThread() != parentThread;
+            if (childThread) {
+                // We are executing on a different thread.
+                Thread.currentThread().setContextClassLoader(parentContextClassLoader);
+                facesContext.addInitContextEntryForCurrentThread();
+            }
+
+            CompilationContext context = new CompilationContext(facesContext);
+            try {
+                compile(context);
+                return true;
+            } catch (Exception e) {
+                if (LOGGER.isLoggable(WARNING)) {
+                    LOGGER.log(WARNING, "Unable to precompile " + name, e);
+                }
+                return false;
+            } finally {
+                context.release();
+                if (childThread) {
+                    facesContext.removeInitContextEntryForCurrentThread();
+                    Thread.currentThread().setContextClassLoader(null);
+                }
+            }
+        }
+
+    }
+
+
+    /**
+     * The <code>FacesContext</code> of a single compilation: the
+     * <code>InitFacesContext</code> with attributes, and an
+     * <code>ELContext</code>, of its own.  It is the current instance until
+     * released, which leaves the <code>InitFacesContext</code> as is.
+     */
+    private static final class CompilationContext extends FacesContextWrapper {
+
+        private final Map<Object, Object> attributes = new HashMap<>();
+        private final ELContext elContext;
+
+        CompilationContext(InitFacesContext wrapped) {
+            super(wrapped);
+            elContext = new ELContextImpl(wrapped.getApplication().getELResolver());
+            elContext.putContext(FacesContext.class, this);
+            ExpressionFactory exFactory = (ExpressionFactory) wrapped.getELContext().getContext(ExpressionFactory.class);
+            if (exFactory != null) {
+                elContext.putContext(ExpressionFactory.class, exFactory);
+            }
+            setCurrentInstance(this);
+        }
+
+        @Override
+        public Map<Object, Object> getAttributes() {
+            return attributes;
+        }
+
+        @Override
+        public ELContext getELContext() {
+            return elContext;
+        }
+
+        @Override
+        public void release() {
+            setCurrentInstance(null);
+        }
+
+    }
+
+}
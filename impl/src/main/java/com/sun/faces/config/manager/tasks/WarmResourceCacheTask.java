@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 1997, 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.faces.config.manager.tasks;
+
+import static java.util.logging.Level.INFO;
+
+import java.util.concurrent.Callable;
+
+import com.sun.faces.application.ApplicationAssociate;
+import com.sun.faces.application.resource.ResourceManager;
+import com.sun.faces.config.InitFacesContext;
+import com.sun.faces.util.Timer;
+
+/**
+ * Looks up the resources of the web application and of the classpath, so that
+ * the first requests after a deployment find them in the resource cache.
+ *
+ * @see ResourceManager#warmCache(javax.faces.context.FacesContext)
+ */
+public class WarmResourceCacheTask implements Callable<Integer> {
+
+    private final InitFacesContext facesContext;
+    private final Thread parentThread;
+    private final ClassLoader parentContextClassLoader;
+
+    // -------------------------------------------------------- Constructors
+
+    public WarmResourceCacheTask(InitFacesContext facesContext) {
+        this.facesContext = facesContext;
+        this.parentThread = Thread.currentThread();
+        this.parentContextClassLoader = parentThread.getContextClassLoader();
+    }
+
+    // ----------------------------------------------- Methods from Callable
+
+    @Override
+    public Integer call() throws Exception {
+
+        Timer t = Timer.getInstance(INFO);
+        if (t != null) {
+            t.startTiming();
+        }
+
+        boolean childThread = Thread.currentThread() != parentThread;
+        if (childThread) {
+            // We are executing on a different thread.
+            Thread.currentThread().setContextClassLoader(parentContextClassLoader);
+            facesContext.addInitContextEntryForCurrentThread();
+        }
+
+        int count = 0;
+        try {
+            ResourceManager resourceManager = ApplicationAssociate.getInstance(facesContext.getExternalContext()).getResourceManager();
+            if (resourceManager != null) {
+                count = resourceManager.warmCache(facesContext);
+            }
+        } finally {
+            if (childThread) {
+                facesContext.removeInitContextEntryForCurrentThread();
+                Thread.currentThread().setContextClassLoader(null);
+            }
+        }
+
+        if (t != null) {
+            t.stopTiming();
+            t.logResult("Resource cache warmed with " + count + " resources.");
+        }
+
+        return count;
+    }
+
+}
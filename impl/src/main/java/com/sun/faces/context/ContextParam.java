@@ -31,6 +31,11 @@ public enum ContextParam {
      * Send the "X-Powered-By" header.
      */
     SendPoweredByHeader("com.sun.faces.sendPoweredByHeader", Boolean.class, false),
+    /**
+     * Encode UTF-8 responses to bytes in a single pass, bypassing the
+     * container's writer.
+     */
+    ByteOrientedResponseWriter("com.sun.faces.byteOrientedResponseWriter", Boolean.class, false),
     /**
      * The websocket endpoint port (default 0 means the code will take the port from the request)
      */
@@ -19,6 +19,7 @@ package com.sun.faces.context;
 import com.sun.faces.RIConstants;
 import com.sun.faces.application.ApplicationAssociate;
 import com.sun.faces.context.flash.ELFlash;
+import com.sun.faces.io.Utf8OutputStreamWriter;
 import com.sun.faces.util.FacesLogger;
 import com.sun.faces.util.MessageUtils;
 
@@ -84,6 +85,8 @@ public class ExternalContextImpl extends ExternalContext {
     
     private static final String PUSH_SUPPORTED_ATTRIBUTE_NAME = FACES_PREFIX + "ExternalContextImpl.PUSH_SUPPORTED";
 
+    private static final String RESPONSE_OUTPUT_WRITER_KEY = FACES_PREFIX + "ExternalContextImpl.RESPONSE_OUTPUT_WRITER";
+
     private ServletContext servletContext = null;
     private ServletRequest request = null;
     private ServletResponse response = null;
@@ -101,6 +104,7 @@ public class ExternalContextImpl extends ExternalContext {
     private Map<String,String> fallbackContentTypeMap = null;
     private Flash flash;
     private boolean distributable;
+    private Utf8OutputStreamWriter responseOutputWriter;
    
 
     private enum ALLOWABLE_COOKIE_PROPERTIES {
@@ -246,6 +250,14 @@ public class ExternalContextImpl extends ExternalContext {
     @Override
     public void setResponse(Object response) {
         if (response instanceof ServletResponse) {
+            if (responseOutputWriter != null && this.response != response) {
+                try {
+                    responseOutputWriter.drain();
+                } catch (IOException ioe) {
+                    throw new FacesException(ioe);
+                }
+                responseOutputWriter = null;
+            }
             this.response = (ServletResponse) response;
         }
     }
@@ -900,6 +912,10 @@ public class ExternalContextImpl extends ExternalContext {
      */
     @Override
     public OutputStream getResponseOutputStream() throws IOException {
+        if (responseOutputWriter != null) {
+            // keep whatever has been written so far in order
+            responseOutputWriter.drain();
+        }
         return response.getOutputStream();
     }
 
@@ -909,6 +925,20 @@ public class ExternalContextImpl extends ExternalContext {
      */
     @Override
     public Writer getResponseOutputWriter() throws IOException {
+        if (responseOutputWriter != null) {
+            return responseOutputWriter;
+        }
+        if (useUtf8OutputStreamWriter()) {
+            FacesContext context = FacesContext.getCurrentInstance();
+            try {
+                responseOutputWriter = new Utf8OutputStreamWriter(response.getOutputStream());
+            } catch (IllegalStateException ise) {
+                // getWriter() has already been called
+                return response.getWriter();
+            }
+            context.getAttributes().put(RESPONSE_OUTPUT_WRITER_KEY, responseOutputWriter);
+            return responseOutputWriter;
+        }
         return response.getWriter();
     }
 
@@ -989,6 +1019,9 @@ public class ExternalContextImpl extends ExternalContext {
      */
     @Override
     public void responseReset() {
+        if (responseOutputWriter != null) {
+            responseOutputWriter.reset();
+        }
         response.reset();
     }
 
@@ -1025,6 +1058,9 @@ public class ExternalContextImpl extends ExternalContext {
             doLastPhaseActions(facesContext, false);
         }
 
+        if (responseOutputWriter != null) {
+            responseOutputWriter.drain();
+        }
         response.flushBuffer();
     }
 
@@ -1231,9 +1267,48 @@ public class ExternalContextImpl extends ExternalContext {
     }
 
 
+    // --------------------------------------------------------- Package Methods
+
+
+    /**
+     * <p>Writes out and releases the {@link Utf8OutputStreamWriter} handed
+     * out by {@link #getResponseOutputWriter()} during the request of
+     * <code>context</code>, if any.  The response is not flushed, so it
+     * can still be reset by the container.</p>
+     *
+     * @param context the <code>FacesContext</code> being released
+     */
+    static void releaseResponseOutputWriter(FacesContext context) {
+        Utf8OutputStreamWriter writer =
+              (Utf8OutputStreamWriter) context.getAttributes().remove(RESPONSE_OUTPUT_WRITER_KEY);
+        if (writer != null) {
+            try {
+                writer.release();
+            } catch (IOException ioe) {
+                if (LOGGER.isLoggable(Level.FINE)) {
+                    LOGGER.log(Level.FINE, "Unable to write the end of the response", ioe);
+                }
+            }
+        }
+    }
+
+
     // --------------------------------------------------------- Private Methods
 
 
+    /*
+     * The response writer encodes to bytes itself only if enabled, if the
+     * response is UTF-8 encoded and if there is a FacesContext to release
+     * it at the end of the request.
+     */
+    private boolean useUtf8OutputStreamWriter() {
+        return ContextParamUtils.getValue(servletContext, ContextParam.ByteOrientedResponseWriter, Boolean.class)
+               && "UTF-8".equalsIgnoreCase(response.getCharacterEncoding())
+               && FacesContext.getCurrentInstance() != null;
+    }
+
+
+
     public String getFallbackMimeType(String file) {
 
         if (file == null || file.length() == 0) {
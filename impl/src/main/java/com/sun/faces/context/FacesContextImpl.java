@@ -555,6 +555,9 @@ public class FacesContextImpl extends FacesContext {
     @Override
     public void release() {
 
+        if (attributes != null) {
+            ExternalContextImpl.releaseResponseOutputWriter(this);
+        }
         released = true;
         externalContext = null;
         responseStream = null;
@@ -157,6 +157,19 @@ public class StateContext {
     }
 
 
+    /**
+     * @param viewId the view ID to check
+     * @return <code>true</code> if partial state for the specified view ID
+     *  should be saved against a baseline shared by all requests, otherwise
+     *  <code>false</code>
+     */
+    public boolean isBaselineStateSaving(String viewId) {
+
+        return viewId != null && stateInfo.useBaselineStateSaving(viewId);
+
+    }
+
+
     /**
      * @return <code>true</code> if view modifications outside of the initial
      *  construction of the view are being tracked.
@@ -194,6 +194,14 @@ final class CompilationManager {
         }
     }
 
+    /**
+     * @return the number of units compiled so far, an estimate of the size
+     *  of the handler tree
+     */
+    public int getUnitCount() {
+        return this.tagId;
+    }
+
     private String nextTagId() {
         return Integer.toHexString(Math.abs(this.alias.hashCode() ^ 13 * this.tagId++));
     }
@@ -29,12 +29,19 @@ public class EncodingHandler implements FaceletHandler {
     private final FaceletHandler next;
     private final String encoding;
     private final CompilationMessageHolder messageHolder;
+    private final int unitCount;
     
     public EncodingHandler(FaceletHandler next, String encoding,
             CompilationMessageHolder messageHolder) {
+        this(next, encoding, messageHolder, 0);
+    }
+
+    public EncodingHandler(FaceletHandler next, String encoding,
+            CompilationMessageHolder messageHolder, int unitCount) {
         this.next = next;
         this.encoding = encoding;
         this.messageHolder = messageHolder;
+        this.unitCount = unitCount;
     }
 
     @Override
@@ -51,6 +58,14 @@ public class EncodingHandler implements FaceletHandler {
         }
     }
     
+    /**
+     * @return the number of units the document was compiled into, an
+     *  estimate of the size of the handler tree
+     */
+    public int getUnitCount() {
+        return this.unitCount;
+    }
+
     public static CompilationMessageHolder getCompilationMessageHolder(FaceletContext ctx) {
 
         return (CompilationMessageHolder) ctx.getFacesContext().getAttributes().get("facelets.compilationMessages");
@@ -62,6 +62,15 @@ final class EndElementInstruction implements Instruction {
         return true;
     }
 
+    /**
+     * @return <code>true</code> if writing this instruction does more than
+     *  ending the element
+     */
+    boolean isHeadOrBody() {
+        return HEAD_ELEMENT.equalsIgnoreCase(this.element)
+               || BODY_ELEMENT.equalsIgnoreCase(this.element);
+    }
+
 
     // --------------------------------------------------------- Private Methods
 
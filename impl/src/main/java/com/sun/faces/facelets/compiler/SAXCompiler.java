@@ -17,6 +17,9 @@
 package com.sun.faces.facelets.compiler;
 
 import static com.sun.faces.config.WebConfiguration.BooleanWebContextInitParameter.DisallowDoctypeDecl;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
 
 import com.sun.faces.RIConstants;
 import com.sun.faces.config.FaceletsConfiguration;
@@ -34,12 +37,32 @@ import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import javax.faces.FacesException;
 import javax.faces.context.ExternalContext;
 import javax.faces.context.FacesContext;
 
@@ -406,10 +429,237 @@ public final class SAXCompiler extends Compiler {
 
     }
 
+    /*
+     * Records the events of the parser while passing them on to the
+     * compilation handler.
+     */
+    private static class RecordingCompilationHandler extends CompilationHandler {
+
+        private final CompilationHandler target;
+        private final SAXEvents events = new SAXEvents();
+
+
+        // -------------------------------------------------------- Constructors
+
+
+        public RecordingCompilationHandler(CompilationHandler target) {
+
+            super(target.unit, target.alias);
+            this.target = target;
+
+        }
+
+
+        // ------------------------------------- Methods from CompilationHandler
+
+
+        @Override
+        public void characters(char[] ch, int start, int length)
+        throws SAXException {
+            events.characters(ch, start, length);
+            target.characters(ch, start, length);
+        }
+
+        @Override
+        public void comment(char[] ch, int start, int length)
+        throws SAXException {
+            events.comment(ch, start, length);
+            target.comment(ch, start, length);
+        }
+
+        @Override
+        public void endCDATA() throws SAXException {
+            events.endCDATA();
+            target.endCDATA();
+        }
+
+        @Override
+        public void endDocument() throws SAXException {
+            events.endDocument();
+            target.endDocument();
+        }
+
+        @Override
+        public void endDTD() throws SAXException {
+            events.endDTD();
+            target.endDTD();
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName)
+        throws SAXException {
+            events.endElement(uri, localName, qName);
+            target.endElement(uri, localName, qName);
+        }
+
+        @Override
+        public void endEntity(String name) throws SAXException {
+            target.endEntity(name);
+        }
+
+        @Override
+        public void endPrefixMapping(String prefix) throws SAXException {
+            events.endPrefixMapping(prefix);
+            target.endPrefixMapping(prefix);
+        }
+
+        @Override
+        public void error(SAXParseException e) throws SAXException {
+            target.error(e);
+        }
+
+        @Override
+        public void fatalError(SAXParseException e) throws SAXException {
+            target.fatalError(e);
+        }
+
+        @Override
+        public void ignorableWhitespace(char[] ch, int start, int length)
+        throws SAXException {
+            events.ignorableWhitespace(ch, start, length);
+            target.ignorableWhitespace(ch, start, length);
+        }
+
+        @Override
+        public InputSource resolveEntity(String publicId, String systemId)
+        throws SAXException {
+            return target.resolveEntity(publicId, systemId);
+        }
+
+        @Override
+        public void setDocumentLocator(Locator locator) {
+            super.setDocumentLocator(locator);
+            target.setDocumentLocator(locator);
+        }
+
+        @Override
+        public void startCDATA() throws SAXException {
+            events.startCDATA();
+            target.startCDATA();
+        }
+
+        @Override
+        public void startDocument() throws SAXException {
+            events.startDocument();
+            target.startDocument();
+        }
+
+        @Override
+        public void startDTD(String name, String publicId, String systemId)
+        throws SAXException {
+            events.startDTD(name, publicId, systemId);
+            target.startDTD(name, publicId, systemId);
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes)
+        throws SAXException {
+            if (this.locator != null) {
+                events.startElement(this.locator.getLineNumber(), this.locator.getColumnNumber(),
+                                    uri, localName, qName, attributes);
+            } else {
+                events.startElement(-1, -1, uri, localName, qName, attributes);
+            }
+            target.startElement(uri, localName, qName, attributes);
+        }
+
+        @Override
+        public void startEntity(String name) throws SAXException {
+            target.startEntity(name);
+        }
+
+        @Override
+        public void startPrefixMapping(String prefix, String uri)
+        throws SAXException {
+            events.startPrefixMapping(prefix, uri);
+            target.startPrefixMapping(prefix, uri);
+        }
+
+        @Override
+        public void processingInstruction(String target, String data)
+        throws SAXException {
+            events.processingInstruction(target, data);
+            this.target.processingInstruction(target, data);
+        }
+
+        @Override
+        public void warning(SAXParseException e) throws SAXException {
+            target.warning(e);
+        }
+
+        byte[] getEvents() {
+            return events.toByteArray();
+        }
+
+    }
+
+
+    /*
+     * The events file a document was last compiled from, and the last
+     * modified time the document had then.
+     */
+    private static final class KnownEvents {
+
+        final long lastModified;
+        final Path eventsFile;
+
+        KnownEvents(long lastModified, Path eventsFile) {
+            this.lastModified = lastModified;
+            this.eventsFile = eventsFile;
+        }
+
+    }
+
+
+    /**
+     * The number of events files the events directory is pruned to, oldest
+     * first, so that the events of documents that changed or went away
+     * don't pile up across deployments.
+     */
+    static final int MAX_EVENTS_FILES = 4096;
+
+    /**
+     * The directory the events of parsed documents are kept in, if any.
+     */
+    private File eventsDirectory;
+
+    /**
+     * The events file of each document compiled from the events directory,
+     * by its URL and parser features, so that the document needn't be read
+     * and hashed again while it is not modified.
+     */
+    private final ConcurrentMap<String, KnownEvents> knownEvents = new ConcurrentHashMap<>();
+
+    /**
+     * The events files written since the events directory was last pruned.
+     */
+    private final AtomicInteger eventsWritten = new AtomicInteger();
+
+
     public SAXCompiler() {
         super();
     }
 
+    /**
+     * <p>
+     * Keep the SAX events each document is parsed into in the given
+     * directory, so that the document is compiled again from them, rather
+     * than parsed, as long as its content is the same.  The directory is
+     * kept to at most {@link #MAX_EVENTS_FILES} events files, the least
+     * recently used being deleted first.
+     * </p>
+     *
+     * @param eventsDirectory an existing directory, or <code>null</code> to
+     *  always parse documents
+     */
+    public void setEventsDirectory(File eventsDirectory) {
+        this.eventsDirectory = eventsDirectory;
+        knownEvents.clear();
+        if (eventsDirectory != null) {
+            pruneEventsDirectory();
+        }
+    }
+
     @Override
     public FaceletHandler doCompile(URL src, String alias) throws IOException {
 
@@ -435,11 +685,17 @@ public final class SAXCompiler extends Compiler {
     throws IOException {
 
         String encoding = getEncoding();
-        try (InputStream is = new BufferedInputStream(src.openStream(), 1024);) {
-            
-            writeXmlDecl(is, encoding, mngr);
-            SAXParser parser = this.createSAXParser(handler);
-            parser.parse(is, handler);
+        try {
+            if (eventsDirectory != null) {
+                compileWithEvents(mngr, handler, src, encoding);
+            } else {
+                try (InputStream is = new BufferedInputStream(src.openStream(), 1024);) {
+
+                    writeXmlDecl(is, encoding, mngr);
+                    SAXParser parser = this.createSAXParser(handler);
+                    parser.parse(is, handler);
+                }
+            }
         } catch (SAXException e) {
             throw new FaceletException("Error Parsing " + alias + ": "
                     + e.getMessage(), e.getCause());
@@ -450,13 +706,233 @@ public final class SAXCompiler extends Compiler {
             throw e;
         }
         FaceletHandler result = new EncodingHandler(mngr.createFaceletHandler(), encoding,
-                mngr.getCompilationMessageHolder());
+                mngr.getCompilationMessageHolder(), mngr.getUnitCount());
         mngr.setCompilationMessageHolder(null);
 
         return result;
 
     }
     
+    /*
+     * Compile from the events the document was parsed into before, if its
+     * content is the same, otherwise parse it and keep its events.  As long
+     * as the document has the last modified time it had when its events
+     * were last used, they are used again without reading the whole
+     * document.
+     */
+    private void compileWithEvents(CompilationManager mngr,
+                                   CompilationHandler handler,
+                                   URL src,
+                                   String encoding)
+    throws IOException, SAXException, ParserConfigurationException {
+
+        String features = getFeatures(handler);
+        String sourceKey = src.toExternalForm() + ';' + features;
+        long lastModified = getLastModified(src);
+
+        KnownEvents known = knownEvents.get(sourceKey);
+        if (known != null && lastModified != 0 && known.lastModified == lastModified) {
+            byte[] events = readEvents(known.eventsFile);
+            if (events != null) {
+                try (InputStream is = new BufferedInputStream(src.openStream(), 1024)) {
+                    writeXmlDecl(is, encoding, mngr);
+                }
+                SAXEvents.replay(events, handler);
+                return;
+            }
+        }
+
+        byte[] source;
+        try (InputStream is = src.openStream()) {
+            source = readFully(is);
+        }
+        writeXmlDecl(new BufferedInputStream(new ByteArrayInputStream(source), 1024), encoding, mngr);
+
+        Path eventsFile = new File(eventsDirectory, getEventsKey(source, features) + ".events").toPath();
+        byte[] events = readEvents(eventsFile);
+        if (events != null) {
+            SAXEvents.replay(events, handler);
+            touch(eventsFile);
+            remember(sourceKey, lastModified, eventsFile, known);
+            return;
+        }
+
+        RecordingCompilationHandler recorder = new RecordingCompilationHandler(handler);
+        SAXParser parser = this.createSAXParser(recorder);
+        parser.parse(new ByteArrayInputStream(source), recorder);
+
+        try {
+            Path temp = Files.createTempFile(eventsDirectory.toPath(), null, ".tmp");
+            try {
+                Files.write(temp, recorder.getEvents());
+                try {
+                    Files.move(temp, eventsFile, ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException amnse) {
+                    Files.move(temp, eventsFile, REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException ioe) {
+            if (log.isLoggable(Level.WARNING)) {
+                log.log(Level.WARNING, "Unable to write " + eventsFile, ioe);
+            }
+            return;
+        }
+        remember(sourceKey, lastModified, eventsFile, known);
+        if (eventsWritten.incrementAndGet() >= MAX_EVENTS_FILES / 10) {
+            pruneEventsDirectory();
+        }
+
+    }
+
+    /*
+     * Remember the events file of a document, deleting the one it had
+     * before, which is of content the document no longer has.
+     */
+    private void remember(String sourceKey, long lastModified, Path eventsFile, KnownEvents previous) {
+
+        if (lastModified != 0) {
+            knownEvents.put(sourceKey, new KnownEvents(lastModified, eventsFile));
+        } else {
+            knownEvents.remove(sourceKey);
+        }
+        if (previous != null && !previous.eventsFile.equals(eventsFile)) {
+            try {
+                Files.deleteIfExists(previous.eventsFile);
+            } catch (IOException ioe) {
+                if (log.isLoggable(Level.FINE)) {
+                    log.log(Level.FINE, "Unable to delete " + previous.eventsFile, ioe);
+                }
+            }
+        }
+
+    }
+
+    /*
+     * The events in the given file, or null if there are none, or they are
+     * not valid.
+     */
+    private static byte[] readEvents(Path eventsFile) {
+
+        if (!Files.isRegularFile(eventsFile)) {
+            return null;
+        }
+        try {
+            byte[] events = Files.readAllBytes(eventsFile);
+            return SAXEvents.isValid(events) ? events : null;
+        } catch (IOException ioe) {
+            if (log.isLoggable(Level.FINE)) {
+                log.log(Level.FINE, "Unable to read " + eventsFile, ioe);
+            }
+            return null;
+        }
+
+    }
+
+    private static long getLastModified(URL src) {
+
+        try {
+            return Util.getLastModified(src);
+        } catch (FacesException fe) {
+            return 0;
+        }
+
+    }
+
+    /*
+     * Mark the events file as used, so that pruning keeps it over the ones
+     * that are not.
+     */
+    private static void touch(Path eventsFile) {
+
+        try {
+            Files.setLastModifiedTime(eventsFile, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException ioe) {
+            if (log.isLoggable(Level.FINE)) {
+                log.log(Level.FINE, "Unable to touch " + eventsFile, ioe);
+            }
+        }
+
+    }
+
+    /*
+     * Delete the least recently used events files, and temporary files left
+     * behind, beyond MAX_EVENTS_FILES.
+     */
+    private void pruneEventsDirectory() {
+
+        eventsWritten.set(0);
+        File[] files = eventsDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        List<File> events = new ArrayList<>(files.length);
+        for (File file : files) {
+            if (file.getName().endsWith(".events")) {
+                events.add(file);
+            } else if (file.getName().endsWith(".tmp")
+                       && file.lastModified() < System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1)) {
+                file.delete();
+            }
+        }
+        if (events.size() <= MAX_EVENTS_FILES) {
+            return;
+        }
+
+        Map<File, Long> lastModified = new HashMap<>(events.size() * 2);
+        for (File file : events) {
+            lastModified.put(file, file.lastModified());
+        }
+        events.sort(Comparator.comparing(lastModified::get));
+        for (File file : events.subList(0, events.size() - MAX_EVENTS_FILES)) {
+            if (!file.delete() && log.isLoggable(Level.FINE)) {
+                log.log(Level.FINE, "Unable to delete {0}", file);
+            }
+        }
+
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+        byte[] buf = new byte[4096];
+        for (int read = in.read(buf); read != -1; read = in.read(buf)) {
+            out.write(buf, 0, read);
+        }
+        return out.toByteArray();
+
+    }
+
+    /*
+     * The events of a document depend on its content, and on the parser
+     * features the content is parsed with.
+     */
+    private static String getEventsKey(byte[] source, String features) {
+
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new IllegalStateException(nsae);
+        }
+        digest.update(features.getBytes(UTF_8));
+        digest.update(source);
+
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(digest.digest());
+
+    }
+
+    private String getFeatures(CompilationHandler handler) {
+
+        return SAXEvents.VERSION
+               + ";validating=" + isValidating()
+               + ";disallowDoctypeDecl=" + (handler.isDisallowDoctypeDeclSet() ? handler.isDisallowDoctypeDecl() : null)
+               + ';';
+
+    }
+
     private String getEncoding() {
         String result;
         String encodingFromRequest = null;
@@ -0,0 +1,349 @@
+/*
+ * Copyright (c) 1997, 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.faces.facelets.compiler;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.ext.LexicalHandler;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
+import org.xml.sax.helpers.LocatorImpl;
+
+/**
+ * <p>
+ * The SAX events a Facelet document was parsed into, in a compact binary
+ * form, so that the document can be compiled again from them without being
+ * parsed.
+ * </p>
+ *
+ * <p>
+ * Only the events the compilation handlers act upon are kept, with the
+ * position of each element, which is all they use of the
+ * <code>Locator</code>.  The binary form starts with a format version and a
+ * checksum, so that a stale or damaged copy is never replayed.
+ * </p>
+ */
+final class SAXEvents {
+
+    /**
+     * Version of the binary form, to be incremented whenever it, or the
+     * events recorded, change.
+     */
+    static final int VERSION = 1;
+
+    private static final int MAGIC = 0x46414345; // FACE
+    private static final int HEADER_LENGTH = 16;
+
+    private static final byte START_DOCUMENT = 1;
+    private static final byte END_DOCUMENT = 2;
+    private static final byte START_DTD = 3;
+    private static final byte END_DTD = 4;
+    private static final byte START_ELEMENT = 5;
+    private static final byte END_ELEMENT = 6;
+    private static final byte START_PREFIX_MAPPING = 7;
+    private static final byte END_PREFIX_MAPPING = 8;
+    private static final byte CHARACTERS = 9;
+    private static final byte IGNORABLE_WHITESPACE = 10;
+    private static final byte COMMENT = 11;
+    private static final byte START_CDATA = 12;
+    private static final byte END_CDATA = 13;
+    private static final byte PROCESSING_INSTRUCTION = 14;
+
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+    private final DataOutputStream out = new DataOutputStream(bytes);
+
+
+    // ------------------------------------------------------------ Constructors
+
+
+    SAXEvents() {
+
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(0L); // checksum, see toByteArray()
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+
+    }
+
+
+    // ---------------------------------------------------------- Package Methods
+
+
+    void startDocument() throws SAXException {
+        write(START_DOCUMENT);
+    }
+
+    void endDocument() throws SAXException {
+        write(END_DOCUMENT);
+    }
+
+    void startDTD(String name, String publicId, String systemId) throws SAXException {
+        write(START_DTD, name, publicId, systemId);
+    }
+
+    void endDTD() throws SAXException {
+        write(END_DTD);
+    }
+
+    void startElement(int line, int column, String uri, String localName, String qName, Attributes attributes)
+    throws SAXException {
+
+        try {
+            out.writeByte(START_ELEMENT);
+            out.writeInt(line);
+            out.writeInt(column);
+            writeString(uri);
+            writeString(localName);
+            writeString(qName);
+            int length = attributes.getLength();
+            out.writeInt(length);
+            for (int i = 0; i < length; i++) {
+                writeString(attributes.getURI(i));
+                writeString(attributes.getLocalName(i));
+                writeString(attributes.getQName(i));
+                writeString(attributes.getType(i));
+                writeString(attributes.getValue(i));
+            }
+        } catch (IOException ioe) {
+            throw new SAXException(ioe);
+        }
+
+    }
+
+    void endElement(String uri, String localName, String qName) throws SAXException {
+        write(END_ELEMENT, uri, localName, qName);
+    }
+
+    void startPrefixMapping(String prefix, String uri) throws SAXException {
+        write(START_PREFIX_MAPPING, prefix, uri);
+    }
+
+    void endPrefixMapping(String prefix) throws SAXException {
+        write(END_PREFIX_MAPPING, prefix);
+    }
+
+    void characters(char[] ch, int start, int length) throws SAXException {
+        write(CHARACTERS, new String(ch, start, length));
+    }
+
+    void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+        write(IGNORABLE_WHITESPACE, new String(ch, start, length));
+    }
+
+    void comment(char[] ch, int start, int length) throws SAXException {
+        write(COMMENT, new String(ch, start, length));
+    }
+
+    void startCDATA() throws SAXException {
+        write(START_CDATA);
+    }
+
+    void endCDATA() throws SAXException {
+        write(END_CDATA);
+    }
+
+    void processingInstruction(String target, String data) throws SAXException {
+        write(PROCESSING_INSTRUCTION, target, data);
+    }
+
+
+    /**
+     * @return the binary form of the events recorded so far
+     */
+    byte[] toByteArray() {
+
+        byte[] result = bytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(result, HEADER_LENGTH, result.length - HEADER_LENGTH);
+        ByteBuffer.wrap(result, 8, 8).putLong(crc.getValue());
+
+        return result;
+
+    }
+
+
+    /**
+     * @param data the binary form of some events
+     * @return <code>true</code> if the events are in the current version of
+     *  the binary form, and intact
+     */
+    static boolean isValid(byte[] data) {
+
+        if (data.length < HEADER_LENGTH) {
+            return false;
+        }
+        ByteBuffer header = ByteBuffer.wrap(data, 0, HEADER_LENGTH);
+        if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+            return false;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(data, HEADER_LENGTH, data.length - HEADER_LENGTH);
+
+        return header.getLong() == crc.getValue();
+
+    }
+
+
+    /**
+     * Send the events to the handler, in the order they were recorded, as
+     * the parser did.
+     *
+     * @param data the binary form of the events, accepted by
+     *  {@link #isValid(byte[])}
+     * @param handler the handler to send the events to
+     * @throws SAXException if the handler does
+     * @throws IOException if the events are malformed
+     */
+    static <H extends DefaultHandler & LexicalHandler> void replay(byte[] data, H handler)
+    throws SAXException, IOException {
+
+        DataInputStream in = new DataInputStream(
+              new ByteArrayInputStream(data, HEADER_LENGTH, data.length - HEADER_LENGTH));
+        LocatorImpl locator = new LocatorImpl();
+        handler.setDocumentLocator(locator);
+        char[] text;
+        int event;
+        while ((event = in.read()) != -1) {
+            switch (event) {
+                case START_DOCUMENT:
+                    handler.startDocument();
+                    break;
+                case END_DOCUMENT:
+                    handler.endDocument();
+                    break;
+                case START_DTD:
+                    handler.startDTD(readString(in), readString(in), readString(in));
+                    break;
+                case END_DTD:
+                    handler.endDTD();
+                    break;
+                case START_ELEMENT:
+                    locator.setLineNumber(in.readInt());
+                    locator.setColumnNumber(in.readInt());
+                    String uri = readString(in);
+                    String localName = readString(in);
+                    String qName = readString(in);
+                    int length = in.readInt();
+                    AttributesImpl attributes = new AttributesImpl();
+                    for (int i = 0; i < length; i++) {
+                        attributes.addAttribute(readString(in),
+                                                readString(in),
+                                                readString(in),
+                                                readString(in),
+                                                readString(in));
+                    }
+                    handler.startElement(uri, localName, qName, attributes);
+                    break;
+                case END_ELEMENT:
+                    handler.endElement(readString(in), readString(in), readString(in));
+                    break;
+                case START_PREFIX_MAPPING:
+                    handler.startPrefixMapping(readString(in), readString(in));
+                    break;
+                case END_PREFIX_MAPPING:
+                    handler.endPrefixMapping(readString(in));
+                    break;
+                case CHARACTERS:
+                    text = readString(in).toCharArray();
+                    handler.characters(text, 0, text.length);
+                    break;
+                case IGNORABLE_WHITESPACE:
+                    text = readString(in).toCharArray();
+                    handler.ignorableWhitespace(text, 0, text.length);
+                    break;
+                case COMMENT:
+                    text = readString(in).toCharArray();
+                    handler.comment(text, 0, text.length);
+                    break;
+                case START_CDATA:
+                    handler.startCDATA();
+                    break;
+                case END_CDATA:
+                    handler.endCDATA();
+                    break;
+                case PROCESSING_INSTRUCTION:
+                    handler.processingInstruction(readString(in), readString(in));
+                    break;
+                default:
+                    throw new IOException("Unknown event " + event);
+            }
+        }
+
+    }
+
+
+    // --------------------------------------------------------- Private Methods
+
+
+    private void write(byte event, String... values) throws SAXException {
+
+        try {
+            out.writeByte(event);
+            for (String value : values) {
+                writeString(value);
+            }
+        } catch (IOException ioe) {
+            throw new SAXException(ioe);
+        }
+
+    }
+
+
+    /*
+     * Strings are written char by char, as the text of an event may end
+     * with half a surrogate pair, which no charset would preserve.
+     */
+    private void writeString(String value) throws IOException {
+
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(value.length());
+            out.writeChars(value);
+        }
+
+    }
+
+
+    private static String readString(DataInputStream in) throws IOException {
+
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = in.readChar();
+        }
+
+        return new String(chars);
+
+    }
+
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 1997, 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.faces.facelets.compiler;
+
+import com.sun.faces.config.FaceletsConfiguration;
+import com.sun.faces.io.FastStringWriter;
+import com.sun.faces.renderkit.html_basic.HtmlResponseWriter;
+
+import javax.el.ELContext;
+import javax.el.ExpressionFactory;
+import javax.faces.context.FacesContext;
+import javax.faces.context.ResponseWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p>
+ * A run of literal instructions that leaves no element open.  The first
+ * time the run is written through an {@link HtmlResponseWriter} it is
+ * encoded once into a <code>char[]</code>, which is then written in bulk,
+ * without any escaping, every time the run is written through a writer with
+ * the same encoding.  Through any other writer, or when the writer is in a
+ * state in which the run would be encoded differently, the instructions are
+ * written one by one.
+ * </p>
+ *
+ * <p>
+ * Instances are shared by every view built from the same Facelet.
+ * </p>
+ */
+final class StaticMarkupInstruction implements Instruction {
+
+    private final Instruction[] instructions;
+
+    private volatile Markup markup;
+
+
+    // ------------------------------------------------------------ Constructors
+
+
+    StaticMarkupInstruction(Instruction[] instructions) {
+        this.instructions = instructions;
+    }
+
+
+    // ---------------------------------------------------- Methods from Instruction
+
+
+    @Override
+    public void write(FacesContext context) throws IOException {
+        ResponseWriter writer = context.getResponseWriter();
+        if (writer.getClass() == HtmlResponseWriter.class) {
+            HtmlResponseWriter rw = (HtmlResponseWriter) writer;
+            if (rw.canWritePreEncoded()) {
+                rw.writePreEncoded(getMarkup(context, rw));
+                return;
+            }
+        }
+        for (Instruction instruction : instructions) {
+            instruction.write(context);
+        }
+    }
+
+    @Override
+    public Instruction apply(ExpressionFactory factory, ELContext ctx) {
+        return this;
+    }
+
+    @Override
+    public boolean isLiteral() {
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "StaticMarkupInstruction" + Arrays.asList(instructions);
+    }
+
+
+    // --------------------------------------------------------- Package Methods
+
+
+    /**
+     * <p>
+     * Replaces every longest run of at least two literal instructions that
+     * leaves no element open, and does not end the <code>head</code> or
+     * <code>body</code> element, by a <code>StaticMarkupInstruction</code>.
+     * </p>
+     *
+     * @param instructions the instructions of a text unit
+     * @return the coalesced instructions
+     */
+    static Instruction[] coalesce(List<Instruction> instructions) {
+        int size = instructions.size();
+        List<Instruction> result = new ArrayList<>(size);
+        int i = 0;
+        while (i < size) {
+            int end = runEnd(instructions, i);
+            if (end > i) {
+                Instruction[] run = instructions.subList(i, end + 1)
+                        .toArray(new Instruction[end + 1 - i]);
+                result.add(new StaticMarkupInstruction(run));
+                i = end + 1;
+            } else {
+                result.add(instructions.get(i));
+                i++;
+            }
+        }
+        return result.toArray(new Instruction[result.size()]);
+    }
+
+
+    // --------------------------------------------------------- Private Methods
+
+
+    /*
+     * Returns the index of the last instruction of the longest balanced run
+     * starting at start, or -1.
+     */
+    private static int runEnd(List<Instruction> instructions, int start) {
+        int depth = 0;
+        int end = -1;
+        for (int i = start, size = instructions.size(); i < size; i++) {
+            Instruction ins = instructions.get(i);
+            if (ins instanceof StartElementInstruction) {
+                depth++;
+            } else if (ins instanceof EndElementInstruction) {
+                if (((EndElementInstruction) ins).isHeadOrBody() || --depth < 0) {
+                    break;
+                }
+            } else if (ins instanceof LiteralAttributeInstruction) {
+                if (depth == 0) {
+                    // would belong to an element started by a component
+                    break;
+                }
+            } else if (!(ins instanceof LiteralTextInstruction
+                         || ins instanceof LiteralCommentInstruction
+                         || ins instanceof LiteralXMLInstruction)) {
+                break;
+            }
+            if (depth == 0) {
+                end = i;
+            }
+        }
+        return end;
+    }
+
+
+    private char[] getMarkup(FacesContext context, HtmlResponseWriter rw)
+    throws IOException {
+        String encodingKey = rw.getEncodingKey();
+        boolean escapeInlineText =
+              FaceletsConfiguration.getInstance(context).isEscapeInlineText(context);
+        Markup m = markup;
+        if (m == null || m.escapeInlineText != escapeInlineText
+              || !m.encodingKey.equals(encodingKey)) {
+            m = new Markup(encodingKey, escapeInlineText, encode(context, rw));
+            markup = m;
+        }
+        return m.chars;
+    }
+
+
+    private char[] encode(FacesContext context, HtmlResponseWriter rw)
+    throws IOException {
+        FastStringWriter out = new FastStringWriter(256);
+        ResponseWriter encoder = rw.cloneWithWriter(out);
+        context.setResponseWriter(encoder);
+        try {
+            for (Instruction instruction : instructions) {
+                instruction.write(context);
+            }
+            encoder.flush();
+        } finally {
+            context.setResponseWriter(rw);
+        }
+        return out.toString().toCharArray();
+    }
+
+
+    // ----------------------------------------------------------- Inner Classes
+
+
+    private static final class Markup {
+
+        final String encodingKey;
+        final boolean escapeInlineText;
+        final char[] chars;
+
+        Markup(String encodingKey, boolean escapeInlineText, char[] chars) {
+            this.encodingKey = encodingKey;
+            this.escapeInlineText = escapeInlineText;
+            this.chars = chars;
+        }
+
+    }
+
+}
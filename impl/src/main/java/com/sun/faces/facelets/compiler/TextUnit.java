@@ -224,8 +224,8 @@ final class TextUnit extends CompilationUnit {
                         s = trimRight(s);
                     ELText txt = ELText.parse(s);
                     if (txt != null) {
-                        Instruction[] instructions = (Instruction[]) this.instructionBuffer
-                                .toArray(new Instruction[size]);
+                        Instruction[] instructions = StaticMarkupInstruction
+                                .coalesce(this.instructionBuffer);
                         this.children.add(new UIInstructionHandler(this.alias,
                                                                    this.id,
                                                                    instructions,
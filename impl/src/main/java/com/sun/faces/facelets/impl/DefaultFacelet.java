@@ -17,6 +17,7 @@
 package com.sun.faces.facelets.impl;
 
 import javax.faces.view.facelets.Facelet;
+import com.sun.faces.facelets.compiler.EncodingHandler;
 import com.sun.faces.facelets.tag.jsf.ComponentSupport;
 import com.sun.faces.util.FacesLogger;
 import com.sun.faces.util.Util;
@@ -228,6 +229,19 @@ final class DefaultFacelet extends Facelet implements XMLFrontMatterSaver {
         return this.createTime;
     }
 
+    /**
+     * The weight of this Facelet in a bounded cache: the number of units its
+     * source was compiled into, or 1 if unknown.
+     *
+     * @return the weight of this Facelet
+     */
+    public int getWeight() {
+        if (this.root instanceof EncodingHandler) {
+            return Math.max(1, ((EncodingHandler) this.root).getUnitCount());
+        }
+        return 1;
+    }
+
     /**
      * Delegates resolution to DefaultFaceletFactory reference. Also, caches
      * URLs for relative paths.
@@ -18,6 +18,7 @@ package com.sun.faces.facelets.impl;
 
 
 import javax.faces.view.facelets.FaceletCache;
+import com.sun.faces.util.BoundedConcurrentCache;
 import com.sun.faces.util.ConcurrentCache;
 import com.sun.faces.util.ExpiringConcurrentCache;
 import com.sun.faces.util.FacesLogger;
@@ -29,14 +30,21 @@ import java.io.IOException;
 import java.net.URL;
 
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 
 
 /**
  * Default FaceletCache implementation.
+ *
+ * <p>
+ * Facelets, and metadata Facelets, may be bounded in number and in weight,
+ * the weight of a Facelet being the number of units it was compiled into.
+ * The least recently used ones are evicted when a bound is exceeded.
+ * </p>
  */
-final class DefaultFaceletCache extends FaceletCache<DefaultFacelet> {
+final class DefaultFaceletCache extends FaceletCache<DefaultFacelet> implements FaceletCacheMXBean {
 
     private final static Logger LOGGER = FacesLogger.FACELETS_FACTORY.getLogger();
     
@@ -46,12 +54,43 @@ final class DefaultFaceletCache extends FaceletCache<DefaultFacelet> {
      * 0 means 'always refresh', negative value means 'never refresh'
      */
     DefaultFaceletCache(final long refreshPeriod) {
+        this(refreshPeriod, null);
+    }
+
+    /**
+     *Constructor
+     * @param refreshPeriod cache refresh period (in milliseconds).
+     * 0 means 'always refresh', negative value means 'never refresh'
+     * @param watcher the watcher telling when a Facelet is to be refreshed,
+     * instead of its last modified time, or <code>null</code>
+     */
+    DefaultFaceletCache(final long refreshPeriod, final FaceletSourceWatcher watcher) {
+        this(refreshPeriod, watcher, "", 0, 0);
+    }
+
+    /**
+     *Constructor
+     * @param refreshPeriod cache refresh period (in milliseconds).
+     * 0 means 'always refresh', negative value means 'never refresh'
+     * @param watcher the watcher telling when a Facelet is to be refreshed,
+     * instead of its last modified time, or <code>null</code>
+     * @param contracts the resource library contracts the cache is for
+     * @param maxEntries the maximum number of Facelets, and of metadata
+     * Facelets, not positive for no maximum
+     * @param maxWeight the maximum weight of the Facelets, and of the metadata
+     * Facelets, not positive for no maximum
+     */
+    DefaultFaceletCache(final long refreshPeriod, final FaceletSourceWatcher watcher,
+                        String contracts, int maxEntries, long maxWeight) {
+
+        _contracts = contracts;
 
         // We will be delegating object storage to the ExpiringCocurrentCache
         // Create Factory objects here for the cache. The objects will be delegating to our
         // own instance factories
         
-        final boolean checkExpiry = (refreshPeriod > 0);
+        final boolean checkExpiry = (refreshPeriod > 0) && (watcher == null);
+        final boolean watch = (refreshPeriod > 0) && (watcher != null);
 
         ConcurrentCache.Factory<URL, Record> faceletFactory =
             new ConcurrentCache.Factory<URL, Record>() {
@@ -60,7 +99,9 @@ final class DefaultFaceletCache extends FaceletCache<DefaultFacelet> {
                 // Make sure that the expensive timestamp retrieval is not done
                 // if no expiry check is going to be performed
                 long lastModified = checkExpiry ? Util.getLastModified(key) : 0;
-                return new Record(System.currentTimeMillis(), lastModified,
+                // Watch the source before it is read, so that no change is missed
+                FaceletSourceWatcher.Source source = watch ? watcher.watch(key) : null;
+                return new Record(System.currentTimeMillis(), lastModified, source,
                                   getMemberFactory().newInstance(key), refreshPeriod);
             }
         };
@@ -72,7 +113,9 @@ final class DefaultFaceletCache extends FaceletCache<DefaultFacelet> {
                 // Make sure that the expensive timestamp retrieval is not done
                 // if no expiry check is going to be performed
                 long lastModified = checkExpiry ? Util.getLastModified(key) : 0;
-                return new Record(System.currentTimeMillis(), lastModified,
+                // Watch the source before it is read, so that no change is missed
+                FaceletSourceWatcher.Source source = watch ? watcher.watch(key) : null;
+                return new Record(System.currentTimeMillis(), lastModified, source,
                                   getMetadataMemberFactory().newInstance(key), refreshPeriod);
             }
         };
@@ -82,14 +125,25 @@ final class DefaultFaceletCache extends FaceletCache<DefaultFacelet> {
             _faceletCache = new NoCache(faceletFactory);
             _metadataFaceletCache = new NoCache(metadataFaceletFactory);
         } else {
-            ExpiringConcurrentCache.ExpiryChecker<URL, Record> checker = 
-                (refreshPeriod > 0) ? new ExpiryChecker() : new NeverExpired();
+            ExpiringConcurrentCache.ExpiryChecker<URL, Record> checker;
+            if (watch) {
+                checker = new WatchedExpiryChecker();
+            } else {
+                checker = (refreshPeriod > 0) ? new ExpiryChecker() : new NeverExpired();
+            }
+            BoundedConcurrentCache.Weigher<Record> weigher = record -> record.getFacelet().getWeight();
             _faceletCache =
-                    new ExpiringConcurrentCache<>(faceletFactory,
-                                                             checker);
+                    new BoundedConcurrentCache<>(faceletFactory,
+                                                 checker,
+                                                 weigher,
+                                                 maxEntries,
+                                                 maxWeight);
             _metadataFaceletCache =
-                    new ExpiringConcurrentCache<>(metadataFaceletFactory,
-                                                             checker);
+                    new BoundedConcurrentCache<>(metadataFaceletFactory,
+                                                 checker,
+                                                 weigher,
+                                                 maxEntries,
+                                                 maxWeight);
         }
     }
 
@@ -135,6 +189,70 @@ final class DefaultFaceletCache extends FaceletCache<DefaultFacelet> {
         return _metadataFaceletCache.containsKey(url);
     }
 
+    // ----------------------------------------- Methods from FaceletCacheMXBean
+
+    @Override
+    public String getContracts() {
+        return _contracts;
+    }
+
+    @Override
+    public int getEntryCount() {
+        return _bounded(_faceletCache).size() + _bounded(_metadataFaceletCache).size();
+    }
+
+    @Override
+    public int getMaxEntries() {
+        return Math.max(0, _bounded(_faceletCache).getMaxEntries());
+    }
+
+    @Override
+    public long getWeight() {
+        return _bounded(_faceletCache).getWeight() + _bounded(_metadataFaceletCache).getWeight();
+    }
+
+    @Override
+    public long getMaxWeight() {
+        return Math.max(0, _bounded(_faceletCache).getMaxWeight());
+    }
+
+    @Override
+    public long getHitCount() {
+        return _bounded(_faceletCache).getHitCount() + _bounded(_metadataFaceletCache).getHitCount();
+    }
+
+    @Override
+    public long getMissCount() {
+        return _bounded(_faceletCache).getMissCount() + _bounded(_metadataFaceletCache).getMissCount();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return _bounded(_faceletCache).getEvictionCount() + _bounded(_metadataFaceletCache).getEvictionCount();
+    }
+
+    @Override
+    public long getTotalLoadTime() {
+        return TimeUnit.NANOSECONDS.toMillis(_totalLoadTime());
+    }
+
+    @Override
+    public double getAverageLoadTime() {
+        long misses = getMissCount();
+        return (misses == 0) ? 0 : _totalLoadTime() / 1e6 / misses;
+    }
+
+    private long _totalLoadTime() {
+        return _bounded(_faceletCache).getTotalLoadTime() + _bounded(_metadataFaceletCache).getTotalLoadTime();
+    }
+
+    /*
+     * Without caching, there is nothing to count.
+     */
+    private static BoundedConcurrentCache<URL, Record> _bounded(ConcurrentCache<URL, Record> cache) {
+        return (cache instanceof BoundedConcurrentCache) ? (BoundedConcurrentCache<URL, Record>) cache : NOT_CACHED;
+    }
+
     private void _unwrapIOException(ExecutionException e) throws IOException {
         Throwable t = e.getCause();
         if (t instanceof IOException) {
@@ -151,16 +269,21 @@ final class DefaultFaceletCache extends FaceletCache<DefaultFacelet> {
     
     private final ConcurrentCache<URL, Record> _faceletCache;
     private final ConcurrentCache<URL, Record> _metadataFaceletCache;
+    private final String _contracts;
+
+    private static final BoundedConcurrentCache<URL, Record> NOT_CACHED =
+        new BoundedConcurrentCache<>(key -> null, new NeverExpired(), record -> 1, 0, 0);
 
     /**
      * This class holds the Facelet instance and its original URL's last modified time. It also produces
      * the time when the next expiry check should be performed
      */
     private static class Record {
-        Record(long creationTime, long lastModified, DefaultFacelet facelet, long refreshInterval) {
+        Record(long creationTime, long lastModified, FaceletSourceWatcher.Source source, DefaultFacelet facelet, long refreshInterval) {
             _facelet = facelet;
             _creationTime = creationTime;
             _lastModified = lastModified;
+            _source = source;
             _refreshInterval = refreshInterval;
             
             // There is no point in calculating the next refresh time if we are refreshing always/never
@@ -174,6 +297,10 @@ final class DefaultFaceletCache extends FaceletCache<DefaultFacelet> {
         long getLastModified() {
             return _lastModified;
         }
+
+        FaceletSourceWatcher.Source getSource() {
+            return _source;
+        }
         
         long getNextRefreshTime() {
             // There is no point in calculating the next refresh time if we are refreshing always/never
@@ -186,6 +313,7 @@ final class DefaultFaceletCache extends FaceletCache<DefaultFacelet> {
         }
         
         private final long _lastModified;
+        private final FaceletSourceWatcher.Source _source;
         private final long _refreshInterval;
         private final long _creationTime;
         private final AtomicLong _nextRefreshTime;
@@ -207,6 +335,18 @@ final class DefaultFaceletCache extends FaceletCache<DefaultFacelet> {
         }
     }
     
+    /**
+     * Expiry checker relying on a {@link FaceletSourceWatcher}, so that no
+     * I/O is performed on the request thread.
+     */
+    private static class WatchedExpiryChecker implements ExpiringConcurrentCache.ExpiryChecker<URL, Record> {
+
+        @Override
+        public boolean isExpired(URL url, Record record) {
+            return record.getSource().isModified();
+        }
+    }
+
     private static class NeverExpired implements ExpiringConcurrentCache.ExpiryChecker<URL, Record> {
         @Override
         public boolean isExpired(URL key, Record value) {
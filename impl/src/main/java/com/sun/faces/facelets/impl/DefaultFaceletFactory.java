@@ -24,6 +24,7 @@ import javax.faces.component.UIComponent;
 import javax.faces.view.facelets.Facelet;
 import javax.faces.view.facelets.FaceletCache;
 import com.sun.faces.facelets.compiler.Compiler;
+import com.sun.faces.renderkit.DictionaryStateCompressor;
 import com.sun.faces.util.Cache;
 import com.sun.faces.util.FacesLogger;
 import com.sun.faces.util.Util;
@@ -31,6 +32,7 @@ import com.sun.faces.util.Util;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import javax.faces.view.facelets.FaceletCacheFactory;
+import javax.faces.view.facelets.FaceletContext;
 import javax.faces.view.facelets.FaceletHandler;
 import javax.faces.view.facelets.ResourceResolver;
 import java.io.FileNotFoundException;
@@ -268,6 +270,19 @@ public class DefaultFaceletFactory {
         return getCache(context).getViewMetadataFacelet(url);
     }
 
+    /**
+     * Create a <code>FaceletContext</code> for a Facelet of this factory, and
+     * make it the current one of the <code>FacesContext</code>, for code
+     * that runs within the building of a view to run outside of it.
+     *
+     * @param context the <code>FacesContext</code>
+     * @param facelet a Facelet returned by this factory
+     * @return the <code>FaceletContext</code>
+     */
+    public FaceletContext createFaceletContext(FacesContext context, Facelet facelet) {
+        return new DefaultFaceletContext(context, (DefaultFacelet) facelet);
+    }
+
     public boolean needsToBeRefreshed(URL url) {
         if(!cache.isFaceletCached(url)) {
             return true;
@@ -295,14 +310,9 @@ public class DefaultFaceletFactory {
                 }
             }
             String contractsKey = builder.toString();
-            FaceletCache<DefaultFacelet> faceletCache = cachePerContract.get(contractsKey);
-            if(faceletCache == null) {
-                // PENDING(FCAPUTO) we don't support com.sun.faces.config.WebConfiguration.WebContextInitParameter#FaceletCache for contracts
-                faceletCache = initCache(null);
-                cachePerContract.putIfAbsent(contractsKey, faceletCache);
-                faceletCache = cachePerContract.get(contractsKey);
-            }
-            return faceletCache;
+            // PENDING(FCAPUTO) we don't support com.sun.faces.config.WebConfiguration.WebContextInitParameter#FaceletCache for contracts
+            // A single cache is created per contracts, as the FaceletCacheFactory may keep track of them
+            return cachePerContract.computeIfAbsent(contractsKey, key -> initCache(null));
         }
         return this.cache;
     }
@@ -431,6 +441,11 @@ public class DefaultFaceletFactory {
         String alias = '/' + url.getFile().replaceFirst(escapedBaseURL, "");
         try {
             FaceletHandler h = this.compiler.compile(url, alias);
+            // a view whose Facelet is (re)compiled may have a new structure
+            FacesContext context = FacesContext.getCurrentInstance();
+            if (context != null) {
+                DictionaryStateCompressor.viewCompiled(context.getExternalContext(), alias);
+            }
             return new DefaultFacelet(this,
                                       this.compiler.createExpressionFactory(),
                                       url,
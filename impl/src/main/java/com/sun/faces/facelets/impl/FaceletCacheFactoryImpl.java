@@ -16,16 +16,54 @@
 
 package com.sun.faces.facelets.impl;
 
+import static com.sun.faces.config.WebConfiguration.BooleanWebContextInitParameter.RegisterFaceletCacheMBean;
+import static com.sun.faces.config.WebConfiguration.WebContextInitParameter.FaceletCacheContractQuota;
+import static com.sun.faces.config.WebConfiguration.WebContextInitParameter.FaceletCacheMaxEntries;
+import static com.sun.faces.config.WebConfiguration.WebContextInitParameter.FaceletCacheMaxWeight;
+import static com.sun.faces.config.WebConfiguration.WebContextInitParameter.FaceletsRefreshMode;
+import static java.util.logging.Level.FINE;
+import static java.util.logging.Level.WARNING;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+import javax.faces.application.Application;
+import javax.faces.context.FacesContext;
+import javax.faces.event.PreDestroyApplicationEvent;
+import javax.faces.event.SystemEvent;
+import javax.faces.event.SystemEventListener;
 import javax.faces.view.facelets.FaceletCache;
 import javax.faces.view.facelets.FaceletCacheFactory;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
+import com.sun.faces.application.ApplicationAssociate;
 import com.sun.faces.config.WebConfiguration;
+import com.sun.faces.config.WebConfiguration.WebContextInitParameter;
+import com.sun.faces.util.FacesLogger;
 
 /**
  * Default implementation of {@link FaceletCacheFactory}.
+ *
+ * <p>
+ * A cache is requested for each set of resource library contracts in use,
+ * see {@link DefaultFaceletFactory}, and is given the
+ * {@link WebContextInitParameter#FaceletCacheContractQuota} of the bounds
+ * if there are any contracts.
+ * </p>
  */
 public class FaceletCacheFactoryImpl extends FaceletCacheFactory {
 
+    private static final Logger LOGGER = FacesLogger.FACELETS_FACTORY.getLogger();
+
+    private FaceletSourceWatcher watcher;
+    private final List<ObjectName> registeredMBeans = new ArrayList<>();
+    private boolean destroyListenerSubscribed;
+
     public FaceletCacheFactoryImpl() {
         super(null);
     }
@@ -35,11 +73,151 @@ public class FaceletCacheFactoryImpl extends FaceletCacheFactory {
         WebConfiguration webConfig = WebConfiguration.getInstance();
         String refreshPeriod = webConfig.getOptionValue(WebConfiguration.WebContextInitParameter.FaceletsDefaultRefreshPeriod);
         long period = Long.parseLong(refreshPeriod) * 1000;
-        FaceletCache<DefaultFacelet> result = new DefaultFaceletCache(period);
+        FaceletSourceWatcher sourceWatcher = null;
+        if (period > 0 && "watch".equals(webConfig.getOptionValue(FaceletsRefreshMode))) {
+            sourceWatcher = getWatcher(period);
+        }
+
+        FacesContext context = FacesContext.getCurrentInstance();
+        List<String> contracts = (context != null) ? context.getResourceLibraryContracts() : null;
+        int maxEntries = (int) getLongOption(webConfig, FaceletCacheMaxEntries);
+        long maxWeight = getLongOption(webConfig, FaceletCacheMaxWeight);
+        if (contracts != null && !contracts.isEmpty()) {
+            long quota = getLongOption(webConfig, FaceletCacheContractQuota);
+            maxEntries = (int) applyQuota(maxEntries, quota);
+            maxWeight = applyQuota(maxWeight, quota);
+        }
+
+        DefaultFaceletCache result = new DefaultFaceletCache(period,
+                                                             sourceWatcher,
+                                                             (contracts != null) ? String.join(",", contracts) : "",
+                                                             maxEntries,
+                                                             maxWeight);
+        if (webConfig.isOptionEnabled(RegisterFaceletCacheMBean)) {
+            registerMBean(context, result);
+        }
         return result;
 
     }
 
 
+    /**
+     * The watcher is shared by the caches of all contracts, and stops with
+     * the application.
+     */
+    private synchronized FaceletSourceWatcher getWatcher(long period) {
+
+        if (watcher == null) {
+            watcher = new FaceletSourceWatcher(period);
+            subscribeDestroyListener();
+        }
+
+        return watcher;
+
+    }
+
+
+    private synchronized void registerMBean(FacesContext context, DefaultFaceletCache cache) {
+
+        String contextName = null;
+        if (context != null) {
+            ApplicationAssociate associate = ApplicationAssociate.getInstance(context.getExternalContext());
+            if (associate != null) {
+                contextName = associate.getContextName();
+            }
+        }
+
+        try {
+            ObjectName name = new ObjectName("com.sun.faces:type=FaceletCache"
+                                             + ",application=" + ObjectName.quote((contextName != null) ? contextName : "")
+                                             + ",contracts=" + ObjectName.quote(cache.getContracts()));
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(cache, name);
+            registeredMBeans.add(name);
+            subscribeDestroyListener();
+        } catch (InstanceAlreadyExistsException iaee) {
+            if (LOGGER.isLoggable(FINE)) {
+                LOGGER.log(FINE, "A FaceletCache MBean is already registered for contracts \"{0}\"", cache.getContracts());
+            }
+        } catch (JMException | RuntimeException e) {
+            if (LOGGER.isLoggable(WARNING)) {
+                LOGGER.log(WARNING, "Unable to register the FaceletCache MBean", e);
+            }
+        }
+
+    }
+
+
+    private void subscribeDestroyListener() {
+
+        FacesContext context = FacesContext.getCurrentInstance();
+        if (destroyListenerSubscribed || context == null) {
+            return;
+        }
+        context.getApplication().subscribeToEvent(PreDestroyApplicationEvent.class, Application.class, new SystemEventListener() {
+
+            @Override
+            public boolean isListenerForSource(Object source) {
+                return source instanceof Application;
+            }
+
+            @Override
+            public void processEvent(SystemEvent event) {
+                destroy();
+            }
+        });
+        destroyListenerSubscribed = true;
+
+    }
+
+
+    private synchronized void destroy() {
+
+        if (watcher != null) {
+            watcher.close();
+            watcher = null;
+        }
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName name : registeredMBeans) {
+            try {
+                server.unregisterMBean(name);
+            } catch (JMException e) {
+                if (LOGGER.isLoggable(FINE)) {
+                    LOGGER.log(FINE, "Unable to unregister " + name, e);
+                }
+            }
+        }
+        registeredMBeans.clear();
+
+    }
+
+
+    private static long getLongOption(WebConfiguration webConfig, WebContextInitParameter param) {
+
+        try {
+            return Long.parseLong(webConfig.getOptionValue(param));
+        } catch (NumberFormatException nfe) {
+            if (LOGGER.isLoggable(WARNING)) {
+                LOGGER.log(WARNING, "Invalid value for {0}, using {1}", new Object[] { param.getQualifiedName(), param.getDefaultValue() });
+            }
+            return Long.parseLong(param.getDefaultValue());
+        }
+
+    }
+
+
+    /*
+     * A bound given a quota keeps room for one Facelet at least.
+     */
+    private static long applyQuota(long bound, long quota) {
+
+        if (bound <= 0) {
+            return bound;
+        }
+
+        return Math.max(1, bound * quota / 100);
+
+    }
 
 }
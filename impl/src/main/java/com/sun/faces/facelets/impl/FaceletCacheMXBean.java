@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 1997, 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.faces.facelets.impl;
+
+/**
+ * The statistics of a Facelet cache, as exposed through JMX.  Facelets and
+ * metadata Facelets are counted together.
+ *
+ * @see com.sun.faces.config.WebConfiguration.BooleanWebContextInitParameter#RegisterFaceletCacheMBean
+ */
+public interface FaceletCacheMXBean {
+
+    /**
+     * @return the resource library contracts the cache is for, separated by
+     *  commas, empty for the cache used without contracts
+     */
+    String getContracts();
+
+    /**
+     * @return the number of Facelets in the cache
+     */
+    int getEntryCount();
+
+    /**
+     * @return the maximum number of Facelets, and of metadata Facelets, in
+     *  the cache, <code>0</code> if unbounded
+     */
+    int getMaxEntries();
+
+    /**
+     * @return the total weight of the Facelets in the cache, that is the
+     *  number of units they were compiled into
+     */
+    long getWeight();
+
+    /**
+     * @return the maximum weight of the Facelets, and of the metadata
+     *  Facelets, in the cache, <code>0</code> if unbounded
+     */
+    long getMaxWeight();
+
+    /**
+     * @return the number of times a cached Facelet was returned
+     */
+    long getHitCount();
+
+    /**
+     * @return the number of times a Facelet was compiled
+     */
+    long getMissCount();
+
+    /**
+     * @return the number of Facelets evicted to keep the cache within its
+     *  bounds
+     */
+    long getEvictionCount();
+
+    /**
+     * @return the total time spent compiling Facelets, in milliseconds
+     */
+    long getTotalLoadTime();
+
+    /**
+     * @return the average time spent compiling a Facelet, in milliseconds
+     */
+    double getAverageLoadTime();
+
+}
@@ -0,0 +1,340 @@
+/*
+ * Copyright (c) 1997, 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.faces.facelets.impl;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.logging.Level.FINE;
+import static java.util.logging.Level.WARNING;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.logging.Logger;
+
+import javax.faces.FacesException;
+
+import com.sun.faces.util.FacesLogger;
+import com.sun.faces.util.MojarraThreadFactory;
+import com.sun.faces.util.Util;
+
+/**
+ * <p>
+ * Watches the sources of Facelets in the background, so that a cached
+ * Facelet can be known to be out of date without any I/O.
+ * </p>
+ *
+ * <p>
+ * Files are watched with a <code>WatchService</code> on their directory.
+ * Entries of a jar file are considered modified whenever the jar file is,
+ * which is checked once per refresh period for each jar file.  Sources of
+ * any other kind, or files the <code>WatchService</code> does not support,
+ * have their last modified time checked once per refresh period.
+ * </p>
+ */
+final class FaceletSourceWatcher {
+
+    private static final Logger LOGGER = FacesLogger.FACELETS_FACTORY.getLogger();
+
+    private final ConcurrentMap<URL, Source> sources = new ConcurrentHashMap<>();
+    private final Set<URL> registered = ConcurrentHashMap.newKeySet();
+    private final ConcurrentMap<Path, URL> files = new ConcurrentHashMap<>();
+    private final Set<Path> directories = ConcurrentHashMap.newKeySet();
+    private final ConcurrentMap<URL, Path> jarEntries = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Path, Long> jars = new ConcurrentHashMap<>();
+    private final ConcurrentMap<URL, Long> polled = new ConcurrentHashMap<>();
+    private final ScheduledThreadPoolExecutor executor;
+    private final WatchService watchService;
+
+
+    // ------------------------------------------------------------ Constructors
+
+
+    /**
+     * @param refreshPeriod the period, in milliseconds, at which jar files
+     *  and sources that cannot be watched are checked
+     */
+    FaceletSourceWatcher(long refreshPeriod) {
+
+        WatchService service = null;
+        try {
+            service = FileSystems.getDefault().newWatchService();
+        } catch (IOException | UnsupportedOperationException e) {
+            if (LOGGER.isLoggable(WARNING)) {
+                LOGGER.log(WARNING, "Unable to watch the Facelet files, their last modified time will be checked instead", e);
+            }
+        }
+        watchService = service;
+
+        executor = new ScheduledThreadPoolExecutor(2, new MojarraThreadFactory("FaceletSourceWatcher"));
+        executor.scheduleWithFixedDelay(this::scan, refreshPeriod, refreshPeriod, MILLISECONDS);
+        if (watchService != null) {
+            executor.execute(this::watch);
+        }
+
+    }
+
+
+    // ---------------------------------------------------------- Package Methods
+
+
+    /**
+     * <p>
+     * Start watching a source, before it is read.
+     * </p>
+     *
+     * <p>
+     * There is one <code>Source</code> per URL, shared by all the readers
+     * of the source until it is modified, so that reading a source again
+     * (for example once its Facelet was evicted from a bounded cache) does
+     * not hold on to more memory.
+     * </p>
+     *
+     * @param url the URL of the source
+     * @return the state of the source as of this call
+     */
+    Source watch(URL url) {
+
+        Source source = sources.computeIfAbsent(url, key -> new Source());
+        if (registered.add(url)) {
+            try {
+                register(url);
+            } catch (RuntimeException e) {
+                registered.remove(url);
+                throw e;
+            }
+        }
+
+        return source;
+
+    }
+
+
+    /**
+     * Stop watching all sources.
+     */
+    void close() {
+
+        executor.shutdownNow();
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException ioe) {
+                if (LOGGER.isLoggable(FINE)) {
+                    LOGGER.log(FINE, "Unable to close the WatchService", ioe);
+                }
+            }
+        }
+
+    }
+
+
+    /**
+     * Check the jar files, and the sources that cannot be watched.
+     */
+    void scan() {
+
+        for (Map.Entry<Path, Long> jar : jars.entrySet()) {
+            long lastModified = getLastModified(jar.getKey());
+            if (lastModified != jar.getValue() && jars.replace(jar.getKey(), jar.getValue(), lastModified)) {
+                jarEntries.forEach((url, path) -> {
+                    if (path.equals(jar.getKey())) {
+                        modified(url);
+                    }
+                });
+            }
+        }
+
+        for (Map.Entry<URL, Long> source : polled.entrySet()) {
+            try {
+                long lastModified = Util.getLastModified(source.getKey());
+                if (lastModified != source.getValue() && polled.replace(source.getKey(), source.getValue(), lastModified)) {
+                    modified(source.getKey());
+                }
+            } catch (FacesException fe) {
+                // Gone, to be registered again if read again
+                if (polled.remove(source.getKey(), source.getValue())) {
+                    registered.remove(source.getKey());
+                    modified(source.getKey());
+                }
+            }
+        }
+
+    }
+
+
+    // --------------------------------------------------------- Private Methods
+
+
+    private void register(URL url) {
+
+        try {
+            if ("file".equals(url.getProtocol()) && watchService != null) {
+                Path file = Paths.get(url.toURI()).toAbsolutePath();
+                Path directory = file.getParent();
+                if (directories.add(directory)) {
+                    try {
+                        directory.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+                    } catch (IOException | UnsupportedOperationException e) {
+                        directories.remove(directory);
+                        throw e;
+                    }
+                }
+                files.put(file, url);
+                return;
+            }
+            if ("jar".equals(url.getProtocol())) {
+                Path jar = getJarFile(url);
+                if (jar != null) {
+                    jars.computeIfAbsent(jar, FaceletSourceWatcher::getLastModified);
+                    jarEntries.put(url, jar);
+                    return;
+                }
+            }
+        } catch (IOException | URISyntaxException | RuntimeException e) {
+            if (LOGGER.isLoggable(FINE)) {
+                LOGGER.log(FINE, "Unable to watch " + url + ", its last modified time will be checked instead", e);
+            }
+        }
+
+        polled.putIfAbsent(url, Util.getLastModified(url));
+
+    }
+
+
+    private void watch() {
+
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                Path directory = (Path) key.watchable();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == OVERFLOW) {
+                        files.forEach((file, url) -> {
+                            if (directory.equals(file.getParent())) {
+                                modified(url);
+                            }
+                        });
+                    } else {
+                        URL url = files.get(directory.resolve((Path) event.context()));
+                        if (url != null) {
+                            modified(url);
+                        }
+                    }
+                }
+                if (!key.reset()) {
+                    // Gone, to be registered again if read again
+                    directories.remove(directory);
+                    files.forEach((file, url) -> {
+                        if (directory.equals(file.getParent()) && files.remove(file, url)) {
+                            registered.remove(url);
+                            modified(url);
+                        }
+                    });
+                }
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException cwse) {
+            // closed
+        }
+
+    }
+
+
+    private void modified(URL url) {
+
+        // Removed first, so that a source watched from now on is a new one
+        Source source = sources.remove(url);
+        if (source != null) {
+            source.modified = true;
+        }
+
+        if (LOGGER.isLoggable(FINE)) {
+            LOGGER.log(FINE, "Facelet source modified: {0}", url);
+        }
+
+    }
+
+
+    private static Path getJarFile(URL url) throws MalformedURLException, URISyntaxException {
+
+        // jar:<url of the jar file>!/<entry>
+        String spec = url.getPath();
+        int separator = spec.indexOf("!/");
+        if (separator == -1) {
+            return null;
+        }
+        URL jarUrl = new URL(spec.substring(0, separator));
+        if (!"file".equals(jarUrl.getProtocol())) {
+            return null;
+        }
+
+        return Paths.get(jarUrl.toURI());
+
+    }
+
+
+    private static long getLastModified(Path path) {
+
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException ioe) {
+            return 0;
+        }
+
+    }
+
+
+    // ---------------------------------------------------------- Nested Classes
+
+
+    /**
+     * The state of a source, as of the time it started to be watched.
+     */
+    static final class Source {
+
+        private volatile boolean modified;
+
+        /**
+         * @return <code>true</code> if the source has been modified since
+         *  it started to be watched
+         */
+        boolean isModified() {
+            return modified;
+        }
+
+    }
+
+}
@@ -0,0 +1,325 @@
+/*
+ * Copyright (c) 1997, 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.faces.facelets.tag;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.el.ExpressionFactory;
+import javax.el.FunctionMapper;
+import javax.el.ValueExpression;
+import javax.el.VariableMapper;
+import javax.faces.view.facelets.FaceletContext;
+
+import com.sun.faces.facelets.el.TagValueExpression;
+
+/**
+ * <p>
+ * An expression created by the {@link ExpressionFactory} of a
+ * {@link FaceletContext}, together with the variables and functions its
+ * creation resolved through the <code>VariableMapper</code> and
+ * <code>FunctionMapper</code> of that context.
+ * </p>
+ *
+ * <p>
+ * The expression may be reused in place of a new one for as long as those
+ * variables and functions resolve to the same values, as the expression
+ * would then capture the same ones.  Variables that resolved to
+ * <code>null</code> must still resolve to <code>null</code>.
+ * </p>
+ *
+ * <p>
+ * A variable resolves to the same value if it resolves to the very same
+ * expression, once unwrapped from the {@link TagValueExpression} that is
+ * created anew each time a tag attribute is evaluated, or to an equal
+ * literal.  Other expressions cannot be compared with <code>equals</code>:
+ * the EL considers expressions with the same expression string equal,
+ * whatever variables they captured, and the
+ * <code>IndexedValueExpression</code> of <code>c:forEach</code> ignores
+ * its index.  A <code>ui:param</code> evaluated from the same attribute
+ * yields the same unwrapped expression for as long as that expression is
+ * itself reused, so chained parameters are reused only while every link
+ * resolves alike.
+ * </p>
+ */
+final class CachedExpression {
+
+    private static final LongAdder HITS = new LongAdder();
+    private static final LongAdder MISSES = new LongAdder();
+
+    private final ExpressionFactory factory;
+    private final Class<?> type;
+    private final Class<?>[] paramTypes;
+    private final Object expression;
+    private final String[] variables;
+    private final ValueExpression[] variableValues;
+    private final String[] functions;
+    private final Method[] functionValues;
+
+
+    // ------------------------------------------------------------ Constructors
+
+
+    private CachedExpression(Recorder recorder, Class<?> type, Class<?>[] paramTypes, Object expression) {
+
+        this.factory = recorder.factory;
+        this.type = type;
+        this.paramTypes = (paramTypes != null) ? paramTypes.clone() : null;
+        this.expression = expression;
+        this.variables = recorder.variableMapper.names.toArray(new String[0]);
+        this.variableValues = recorder.variableMapper.values.toArray(new ValueExpression[0]);
+        if (recorder.functionMapper != null) {
+            this.functions = recorder.functionMapper.names.toArray(new String[0]);
+            this.functionValues = recorder.functionMapper.values.toArray(new Method[0]);
+        } else {
+            this.functions = new String[0];
+            this.functionValues = new Method[0];
+        }
+
+    }
+
+
+    // ---------------------------------------------------------- Package Methods
+
+
+    /**
+     * @return the expression created by the factory
+     */
+    Object getExpression() {
+
+        return expression;
+
+    }
+
+
+    /**
+     * @param ctx the <code>FaceletContext</code> an expression is needed for
+     * @param type the expected type of the expression
+     * @param paramTypes the expected parameter types of a method expression,
+     *  <code>null</code> for a value expression
+     * @return <code>true</code> if this expression may be used in place of a
+     *  new one created with the arguments
+     */
+    boolean isReusable(FaceletContext ctx, Class<?> type, Class<?>[] paramTypes) {
+
+        boolean reusable = factory == ctx.getExpressionFactory()
+                           && Objects.equals(this.type, type)
+                           && Arrays.equals(this.paramTypes, paramTypes)
+                           && resolveAlike(ctx.getVariableMapper())
+                           && resolveAlike(ctx.getFunctionMapper());
+        (reusable ? HITS : MISSES).increment();
+
+        return reusable;
+
+    }
+
+
+    /**
+     * Record the variables and functions resolved while creating an
+     * expression, by replacing the mappers of the context until
+     * {@link Recorder#restore()}.
+     *
+     * @param ctx the <code>FaceletContext</code> the expression is created
+     *  with
+     * @return the recorder
+     */
+    static Recorder record(FaceletContext ctx) {
+
+        return new Recorder(ctx);
+
+    }
+
+
+    static long getHitCount() {
+
+        return HITS.sum();
+
+    }
+
+
+    static long getMissCount() {
+
+        return MISSES.sum();
+
+    }
+
+
+    // --------------------------------------------------------- Private Methods
+
+
+    private boolean resolveAlike(VariableMapper variableMapper) {
+
+        for (int i = 0; i < variables.length; i++) {
+            ValueExpression value = (variableMapper != null) ? variableMapper.resolveVariable(variables[i]) : null;
+            if (!isSame(variableValues[i], value)) {
+                return false;
+            }
+        }
+
+        return true;
+
+    }
+
+
+    private static boolean isSame(ValueExpression recorded, ValueExpression value) {
+
+        if (recorded == value) {
+            return true;
+        }
+        if (recorded == null || value == null) {
+            return false;
+        }
+        ValueExpression unwrappedRecorded = unwrap(recorded);
+        ValueExpression unwrappedValue = unwrap(value);
+        return (unwrappedRecorded == unwrappedValue
+                || (unwrappedRecorded.isLiteralText()
+                    && unwrappedValue.isLiteralText()
+                    && unwrappedRecorded.equals(unwrappedValue)));
+
+    }
+
+
+    private static ValueExpression unwrap(ValueExpression expression) {
+
+        while (expression instanceof TagValueExpression) {
+            expression = ((TagValueExpression) expression).getWrapped();
+        }
+        return expression;
+
+    }
+
+
+    private boolean resolveAlike(FunctionMapper functionMapper) {
+
+        for (int i = 0; i < functions.length; i++) {
+            String function = functions[i];
+            int colon = function.indexOf(':');
+            Method value = (functionMapper != null)
+                           ? functionMapper.resolveFunction(function.substring(0, colon), function.substring(colon + 1))
+                           : null;
+            if (!Objects.equals(functionValues[i], value)) {
+                return false;
+            }
+        }
+
+        return true;
+
+    }
+
+
+    // ---------------------------------------------------------- Nested Classes
+
+
+    static final class Recorder {
+
+        private final FaceletContext ctx;
+        private final ExpressionFactory factory;
+        private final VariableMapper originalVariableMapper;
+        private final FunctionMapper originalFunctionMapper;
+        private final RecordingVariableMapper variableMapper;
+        private final RecordingFunctionMapper functionMapper;
+
+        private Recorder(FaceletContext ctx) {
+            this.ctx = ctx;
+            this.factory = ctx.getExpressionFactory();
+            this.originalVariableMapper = ctx.getVariableMapper();
+            this.originalFunctionMapper = ctx.getFunctionMapper();
+            // Variables are recorded even without a mapper, as a later
+            // context may map them.  Without a function mapper no
+            // functions can be resolved, so there is nothing to record.
+            this.variableMapper = new RecordingVariableMapper(originalVariableMapper);
+            this.functionMapper = (originalFunctionMapper != null) ? new RecordingFunctionMapper(originalFunctionMapper) : null;
+            ctx.setVariableMapper(variableMapper);
+            if (functionMapper != null) {
+                ctx.setFunctionMapper(functionMapper);
+            }
+        }
+
+        /**
+         * Restore the mappers of the context.
+         */
+        void restore() {
+            ctx.setVariableMapper(originalVariableMapper);
+            if (functionMapper != null) {
+                ctx.setFunctionMapper(originalFunctionMapper);
+            }
+        }
+
+        /**
+         * @return the expression, with what its creation resolved
+         */
+        CachedExpression toCachedExpression(Class<?> type, Class<?>[] paramTypes, Object expression) {
+            return new CachedExpression(this, type, paramTypes, expression);
+        }
+
+    }
+
+
+    private static final class RecordingVariableMapper extends VariableMapper {
+
+        private final VariableMapper target;
+        private final List<String> names = new ArrayList<>(4);
+        private final List<ValueExpression> values = new ArrayList<>(4);
+
+        RecordingVariableMapper(VariableMapper target) {
+            this.target = target;
+        }
+
+        @Override
+        public ValueExpression resolveVariable(String variable) {
+            ValueExpression value = (target != null) ? target.resolveVariable(variable) : null;
+            names.add(variable);
+            values.add(value);
+            return value;
+        }
+
+        @Override
+        public ValueExpression setVariable(String variable, ValueExpression expression) {
+            if (target == null) {
+                throw new UnsupportedOperationException();
+            }
+            return target.setVariable(variable, expression);
+        }
+
+    }
+
+
+    private static final class RecordingFunctionMapper extends FunctionMapper {
+
+        private final FunctionMapper target;
+        private final List<String> names = new ArrayList<>(2);
+        private final List<Method> values = new ArrayList<>(2);
+
+        RecordingFunctionMapper(FunctionMapper target) {
+            this.target = target;
+        }
+
+        @Override
+        public Method resolveFunction(String prefix, String localName) {
+            Method value = target.resolveFunction(prefix, localName);
+            names.add(prefix + ':' + localName);
+            values.add(value);
+            return value;
+        }
+
+    }
+
+}
@@ -16,6 +16,7 @@
 
 package com.sun.faces.facelets.tag;
 
+import com.sun.faces.config.WebConfiguration;
 import com.sun.faces.el.ELUtils;
 import com.sun.faces.facelets.el.ContextualCompositeMethodExpression;
 import com.sun.faces.facelets.el.ELText;
@@ -23,6 +24,7 @@ import com.sun.faces.facelets.el.TagMethodExpression;
 import com.sun.faces.facelets.el.TagValueExpression;
 import com.sun.faces.facelets.el.ContextualCompositeValueExpression;
 import com.sun.faces.util.MessageUtils;
+import static com.sun.faces.config.WebConfiguration.BooleanWebContextInitParameter.CacheTagAttributeExpressions;
 import static com.sun.faces.util.MessageUtils.ARGUMENTS_NOT_LEGAL_CC_ATTRS_EXPR;
 import com.sun.faces.util.Util;
 
@@ -32,6 +34,7 @@ import javax.el.MethodExpression;
 import javax.el.ValueExpression;
 import javax.el.MethodInfo;
 import javax.el.ELContext;
+import javax.faces.context.FacesContext;
 import javax.faces.view.Location;
 import javax.faces.view.facelets.FaceletContext;
 import javax.faces.view.facelets.Tag;
@@ -62,8 +65,21 @@ public class TagAttributeImpl extends TagAttribute {
     private String string;
     
     private Tag tag;
+
+    /**
+     * The last expression created from our value, reused while what its
+     * creation resolved resolves alike.
+     */
+    private volatile CachedExpression cachedExpression;
+
+    /**
+     * Whether expressions are cached, as configured when this attribute was
+     * compiled.
+     */
+    private final boolean cacheExpressions;
     
     public TagAttributeImpl() {
+        this.cacheExpressions = false;
         this.literal = false;
         this.localName = null;
         this.location = null;
@@ -81,6 +97,7 @@ public class TagAttributeImpl extends TagAttribute {
         this.localName = (null == localName || 0 == localName.length()) ? qName : localName;
         this.qName = qName;
         this.value = value;
+        this.cacheExpressions = isCacheExpressions();
         try {
             this.literal = ELText.isLiteral(this.value);
         } catch (ELException e) {
@@ -190,17 +207,17 @@ public class TagAttributeImpl extends TagAttribute {
                 result = new AttributeLookupMethodExpression(getValueExpression(ctx, MethodExpression.class));
             } else if (ELUtils.isCompositeComponentExpr(this.value)) {
                 MethodExpression delegate = new TagMethodExpression(this,
-                                                 f.createMethodExpression(ctx,
-                                                                          this.value,
-                                                                          type,
-                                                                          paramTypes));
+                                                 createMethodExpression(ctx,
+                                                                        f,
+                                                                        type,
+                                                                        paramTypes));
                 result = new ContextualCompositeMethodExpression(getLocation(), delegate);
             } else {
                 result = new TagMethodExpression(this,
-                                                 f.createMethodExpression(ctx,
-                                                                          this.value,
-                                                                          type,
-                                                                          paramTypes));
+                                                 createMethodExpression(ctx,
+                                                                        f,
+                                                                        type,
+                                                                        paramTypes));
             }
         } catch (Exception e) {
             if (e instanceof TagAttributeException) {
@@ -369,9 +386,10 @@ public class TagAttributeImpl extends TagAttribute {
     public ValueExpression getValueExpression(FaceletContext ctx, String expr, Class type) {
         try {
             ExpressionFactory f = ctx.getExpressionFactory();
-            ValueExpression delegate = f.createValueExpression(ctx,
-                                                               expr,
-                                                               type);
+            ValueExpression delegate = createValueExpression(ctx,
+                                                             f,
+                                                             expr,
+                                                             type);
             if (ELUtils.isCompositeComponentExpr(expr)) {
                 if (ELUtils.isCompositeComponentLookupWithArgs(expr)) {
                     String message =
@@ -390,6 +408,87 @@ public class TagAttributeImpl extends TagAttribute {
     }
 
 
+    /**
+     * @return the number of times an expression was reused, across all
+     *  attributes
+     */
+    public static long getCachedExpressionHits() {
+        return CachedExpression.getHitCount();
+    }
+
+    /**
+     * @return the number of times an expression could not be reused, because
+     *  its variables, functions or expected type differed
+     */
+    public static long getCachedExpressionMisses() {
+        return CachedExpression.getMissCount();
+    }
+
+
+    private ValueExpression createValueExpression(FaceletContext ctx,
+                                                  ExpressionFactory f,
+                                                  String expr,
+                                                  Class type) {
+
+        if (expr == null || !expr.equals(this.value) || !this.cacheExpressions) {
+            return f.createValueExpression(ctx, expr, type);
+        }
+
+        CachedExpression cached = this.cachedExpression;
+        if (cached != null
+              && cached.getExpression() instanceof ValueExpression
+              && cached.isReusable(ctx, type, null)) {
+            return (ValueExpression) cached.getExpression();
+        }
+
+        CachedExpression.Recorder recorder = CachedExpression.record(ctx);
+        try {
+            ValueExpression result = f.createValueExpression(ctx, expr, type);
+            this.cachedExpression = recorder.toCachedExpression(type, null, result);
+            return result;
+        } finally {
+            recorder.restore();
+        }
+
+    }
+
+
+    private MethodExpression createMethodExpression(FaceletContext ctx,
+                                                    ExpressionFactory f,
+                                                    Class type,
+                                                    Class[] paramTypes) {
+
+        if (!this.cacheExpressions) {
+            return f.createMethodExpression(ctx, this.value, type, paramTypes);
+        }
+
+        CachedExpression cached = this.cachedExpression;
+        if (cached != null
+              && cached.getExpression() instanceof MethodExpression
+              && cached.isReusable(ctx, type, paramTypes)) {
+            return (MethodExpression) cached.getExpression();
+        }
+
+        CachedExpression.Recorder recorder = CachedExpression.record(ctx);
+        try {
+            MethodExpression result = f.createMethodExpression(ctx, this.value, type, paramTypes);
+            this.cachedExpression = recorder.toCachedExpression(type, paramTypes, result);
+            return result;
+        } finally {
+            recorder.restore();
+        }
+
+    }
+
+
+    private static boolean isCacheExpressions() {
+        FacesContext ctx = FacesContext.getCurrentInstance();
+        return (ctx != null
+                && WebConfiguration.getInstance(ctx.getExternalContext())
+                                   .isOptionEnabled(CacheTagAttributeExpressions));
+    }
+
+
     // ---------------------------------------------------------- Nested Classes
 
 
@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 1997, 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.faces.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * <p>A <code>Writer</code> that encodes characters as UTF-8 directly into a
+ * byte buffer, which is written to an <code>OutputStream</code> when it is
+ * full, drained or flushed.  Runs of ASCII characters are copied without
+ * any per character branching.  Characters that cannot be encoded (unpaired
+ * surrogates) are written as <code>'?'</code>, as the JDK encoders do.</p>
+ *
+ * <p>Buffers are pooled per thread; an instance must be {@link #release()
+ * released} by the thread that created it once it is no longer used.</p>
+ *
+ * <p>This class is not thread safe.</p>
+ */
+public final class Utf8OutputStreamWriter extends Writer {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final ThreadLocal<byte[]> BUFFERS = new ThreadLocal<>();
+
+    private final OutputStream out;
+    private byte[] buf;
+    private int count;
+    private char pendingHighSurrogate;
+    private char[] chars;
+
+    // ------------------------------------------------------------ Constructors
+
+    /**
+     * <p>Constructs a new <code>Utf8OutputStreamWriter</code> writing to
+     * <code>out</code>.</p>
+     *
+     * @param out the stream the encoded characters are written to
+     */
+    public Utf8OutputStreamWriter(OutputStream out) {
+        this.out = out;
+        buf = BUFFERS.get();
+        if (buf != null) {
+            BUFFERS.remove();
+        } else {
+            buf = new byte[BUFFER_SIZE];
+        }
+    }
+
+    // ----------------------------------------------------- Methods from Writer
+
+    @Override
+    public void write(int c) throws IOException {
+        ensureOpen();
+        if (c < 0x80 && pendingHighSurrogate == 0 && count < buf.length) {
+            buf[count++] = (byte) c;
+        } else {
+            encode((char) c);
+        }
+    }
+
+    @Override
+    public void write(char cbuf[], int off, int len) throws IOException {
+        if ((off < 0) || (off > cbuf.length) || (len < 0) ||
+            ((off + len) > cbuf.length) || ((off + len) < 0)) {
+            throw new IndexOutOfBoundsException();
+        }
+        ensureOpen();
+        int end = off + len;
+        int i = off;
+        while (i < end) {
+            if (pendingHighSurrogate == 0) {
+                // copy the longest ASCII run that fits in the buffer
+                byte[] b = buf;
+                int n = count;
+                int limit = Math.min(end, i + (b.length - n));
+                char c;
+                while (i < limit && (c = cbuf[i]) < 0x80) {
+                    b[n++] = (byte) c;
+                    i++;
+                }
+                count = n;
+                if (i == end) {
+                    break;
+                }
+                if (n == b.length) {
+                    drain();
+                    continue;
+                }
+            }
+            encode(cbuf[i++]);
+        }
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        ensureOpen();
+        if (chars == null) {
+            chars = new char[1024];
+        }
+        while (len > 0) {
+            int n = Math.min(len, chars.length);
+            str.getChars(off, off + n, chars, 0);
+            write(chars, 0, n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * <p>Writes the buffered bytes to, and flushes, the underlying
+     * stream.</p>
+     *
+     * @throws IOException if an input/output error occurs
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        drain();
+        out.flush();
+    }
+
+    /**
+     * <p>Writes the buffered bytes to, and closes, the underlying
+     * stream.</p>
+     *
+     * @throws IOException if an input/output error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        if (buf != null) {
+            drain();
+        }
+        out.close();
+    }
+
+    // ---------------------------------------------------------- Public Methods
+
+    /**
+     * <p>Writes the buffered bytes to the underlying stream without
+     * flushing it.  A dangling high surrogate is kept, as its low surrogate
+     * may still be written.</p>
+     *
+     * @throws IOException if an input/output error occurs, or if the
+     *  writer has been released
+     */
+    public void drain() throws IOException {
+        ensureOpen();
+        if (count > 0) {
+            out.write(buf, 0, count);
+            count = 0;
+        }
+    }
+
+    /**
+     * <p>Discards the buffered bytes.</p>
+     */
+    public void reset() {
+        count = 0;
+        pendingHighSurrogate = 0;
+    }
+
+    /**
+     * <p>Writes the buffered bytes to the underlying stream and returns the
+     * buffer to the pool of the current thread.  Writing to, flushing or
+     * draining the writer afterwards fails with an <code>IOException</code>;
+     * closing it only closes the underlying stream.</p>
+     *
+     * @throws IOException if an input/output error occurs
+     */
+    public void release() throws IOException {
+        if (buf == null) {
+            return;
+        }
+        if (pendingHighSurrogate != 0) {
+            pendingHighSurrogate = 0;
+            encode('?');
+        }
+        try {
+            drain();
+        } finally {
+            BUFFERS.set(buf);
+            buf = null;
+        }
+    }
+
+    // --------------------------------------------------------- Private Methods
+
+    private void ensureOpen() throws IOException {
+        if (buf == null) {
+            throw new IOException("stream closed");
+        }
+    }
+
+    private void encode(char c) throws IOException {
+        if (buf.length - count < 4) {
+            drain();
+        }
+        byte[] b = buf;
+        if (pendingHighSurrogate != 0) {
+            char high = pendingHighSurrogate;
+            pendingHighSurrogate = 0;
+            if (Character.isLowSurrogate(c)) {
+                int cp = Character.toCodePoint(high, c);
+                b[count++] = (byte) (0xF0 | (cp >> 18));
+                b[count++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                b[count++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                b[count++] = (byte) (0x80 | (cp & 0x3F));
+                return;
+            }
+            b[count++] = '?';
+            if (buf.length - count < 3) {
+                drain();
+            }
+        }
+        if (c < 0x80) {
+            b[count++] = (byte) c;
+        } else if (c < 0x800) {
+            b[count++] = (byte) (0xC0 | (c >> 6));
+            b[count++] = (byte) (0x80 | (c & 0x3F));
+        } else if (Character.isHighSurrogate(c)) {
+            pendingHighSurrogate = c;
+        } else if (Character.isLowSurrogate(c)) {
+            b[count++] = '?';
+        } else {
+            b[count++] = (byte) (0xE0 | (c >> 12));
+            b[count++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            b[count++] = (byte) (0x80 | (c & 0x3F));
+        }
+    }
+
+}
@@ -33,7 +33,7 @@ import java.util.Map;
 public class ApplicationObjectInputStream extends ObjectInputStream {
 
     // Taken from ObjectInputStream to resolve primitive types
-    private static final Map<String,Class<?>> PRIMITIVE_CLASSES =
+    static final Map<String,Class<?>> PRIMITIVE_CLASSES =
           new HashMap<>(9, 1.0F);
 
     static {
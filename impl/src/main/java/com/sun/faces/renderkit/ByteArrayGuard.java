@@ -34,11 +34,13 @@ import com.sun.faces.RIConstants;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
 import java.util.Base64;
 
 import javax.crypto.BadPaddingException;
 import javax.crypto.IllegalBlockSizeException;
 import javax.crypto.NoSuchPaddingException;
+import javax.crypto.ShortBufferException;
 import javax.crypto.spec.SecretKeySpec;
 import javax.naming.InitialContext;
 import javax.naming.NamingException;
@@ -70,6 +72,35 @@ public final class ByteArrayGuard {
     private static final String SK_SESSION_KEY = RIConstants.FACES_PREFIX + "SK"; 
     private SecretKey sk;
 
+    /**
+     * <code>Cipher.getInstance</code> and <code>Mac.getInstance</code> involve
+     * a provider lookup, so each thread keeps its own instances and merely
+     * re-initializes them per use.
+     */
+    private static final ThreadLocal<Cipher> CIPHER = new ThreadLocal<Cipher>() {
+        @Override
+        protected Cipher initialValue() {
+            try {
+                return Cipher.getInstance(CIPHER_CODE);
+            } catch (NoSuchAlgorithmException | NoSuchPaddingException e) {
+                throw new FacesException(e);
+            }
+        }
+    };
+
+    private static final ThreadLocal<Mac> MAC = new ThreadLocal<Mac>() {
+        @Override
+        protected Mac initialValue() {
+            try {
+                return Mac.getInstance(MAC_CODE);
+            } catch (NoSuchAlgorithmException e) {
+                throw new FacesException(e);
+            }
+        }
+    };
+
+    private final SecureRandom random = new SecureRandom();
+
     // ------------------------------------------------------------ Constructors
 
     public ByteArrayGuard() {
@@ -100,25 +131,45 @@ public final class ByteArrayGuard {
      * @return the encrypted byte array.
      */
     public byte[] encrypt(FacesContext facesContext, byte[] bytes) {
-        byte[] securedata = null;
+        return encrypt(facesContext, bytes, 0, bytes.length);
+    }
+
+
+    /**
+     * Same as {@link #encrypt(FacesContext, byte[])}, but only encrypts
+     * <code>length</code> bytes of <code>bytes</code> starting at
+     * <code>offset</code>.  This allows callers to pass the internal
+     * buffer of a stream without copying it first.
+     * @param bytes The byte array containing the data to be encrypted.
+     * @param offset the offset of the data within <code>bytes</code>
+     * @param length the number of bytes to encrypt
+     * @return the encrypted byte array.
+     */
+    public byte[] encrypt(FacesContext facesContext, byte[] bytes, int offset, int length) {
         try {
             // Generate IV
-            SecureRandom rand = new SecureRandom();
-            byte[] iv = new byte[16];
-            rand.nextBytes(iv);
+            byte[] iv = new byte[IV_LENGTH];
+            random.nextBytes(iv);
             IvParameterSpec ivspec = new IvParameterSpec(iv);
-            Cipher encryptCipher = Cipher.getInstance(CIPHER_CODE);
+            Cipher encryptCipher = CIPHER.get();
             SecretKey secKey = getSecretKey(facesContext);
             encryptCipher.init(Cipher.ENCRYPT_MODE, secKey, ivspec);
-            Mac encryptMac = Mac.getInstance(MAC_CODE);
+            Mac encryptMac = MAC.get();
             encryptMac.init(secKey);
             encryptMac.update(iv);
-            // encrypt the plaintext
-            byte[] encdata = encryptCipher.doFinal(bytes);
-            byte[] macBytes = encryptMac.doFinal(encdata);
-            byte[] tmp = concatBytes(macBytes, iv);
-            securedata = concatBytes(tmp, encdata);
-        } catch (NoSuchAlgorithmException | NoSuchPaddingException | InvalidKeyException | InvalidAlgorithmParameterException | IllegalStateException | IllegalBlockSizeException | BadPaddingException e) {
+
+            // encrypt the plaintext directly behind the MAC and IV
+            byte[] securedata =
+                  new byte[MAC_LENGTH + IV_LENGTH + encryptCipher.getOutputSize(length)];
+            int encLength = encryptCipher.doFinal(bytes, offset, length, securedata, MAC_LENGTH + IV_LENGTH);
+            encryptMac.update(securedata, MAC_LENGTH + IV_LENGTH, encLength);
+            encryptMac.doFinal(securedata, 0);
+            System.arraycopy(iv, 0, securedata, MAC_LENGTH, IV_LENGTH);
+            if (MAC_LENGTH + IV_LENGTH + encLength != securedata.length) {
+                securedata = Arrays.copyOf(securedata, MAC_LENGTH + IV_LENGTH + encLength);
+            }
+            return securedata;
+        } catch (InvalidKeyException | InvalidAlgorithmParameterException | IllegalStateException | IllegalBlockSizeException | BadPaddingException | ShortBufferException e) {
             if (LOGGER.isLoggable(Level.SEVERE)) {
                 LOGGER.log(Level.SEVERE,
                            "Unexpected exception initializing encryption."
@@ -127,7 +178,6 @@ public final class ByteArrayGuard {
             }
             return null;
         }
-        return securedata;
     }
 
 
@@ -139,49 +189,52 @@ public final class ByteArrayGuard {
      * @return Decrypted byte array.
      */
     public byte[] decrypt(FacesContext facesContext, byte[] bytes) {
+        if (bytes.length < MAC_LENGTH + IV_LENGTH) {
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.log(Level.FINE, "Encrypted state of {0} bytes is too short to hold a MAC and an IV",
+                           bytes.length);
+            }
+            return null;
+        }
         try {
-            // Extract MAC
-            byte[] macBytes = new byte[MAC_LENGTH];
-            System.arraycopy(bytes, 0, macBytes, 0, macBytes.length);
+            // The MAC, IV and encrypted data are used in place
+            int encOffset = MAC_LENGTH + IV_LENGTH;
+            int encLength = bytes.length - encOffset;
 
-            // Extract IV
-            byte[] iv = new byte[IV_LENGTH];
-            System.arraycopy(bytes, macBytes.length, iv, 0, iv.length);
-
-            // Extract encrypted data
-            byte[] encdata = new byte[bytes.length - macBytes.length - iv.length];
-            System.arraycopy(bytes, macBytes.length + iv.length, encdata, 0, encdata.length);
-
-            IvParameterSpec ivspec = new IvParameterSpec(iv);
+            IvParameterSpec ivspec = new IvParameterSpec(bytes, MAC_LENGTH, IV_LENGTH);
             SecretKey secKey =  getSecretKey(facesContext);
-            Cipher decryptCipher = Cipher.getInstance(CIPHER_CODE);
+            Cipher decryptCipher = CIPHER.get();
             decryptCipher.init(Cipher.DECRYPT_MODE, secKey, ivspec);
 
             // verify MAC by regenerating it and comparing it with the received value
-            Mac decryptMac = Mac.getInstance(MAC_CODE);
+            Mac decryptMac = MAC.get();
             decryptMac.init(secKey);
-            decryptMac.update(iv);
-            decryptMac.update(encdata);
+            decryptMac.update(bytes, MAC_LENGTH, IV_LENGTH);
+            decryptMac.update(bytes, encOffset, encLength);
             byte[] macBytesCalculated = decryptMac.doFinal();
-            if (areArrayEqualsConstantTime(macBytes, macBytesCalculated)) {
+            if (areArrayEqualsConstantTime(bytes, macBytesCalculated)) {
                 // continue only if the MAC was valid
                 // System.out.println("Valid MAC found!");
-                byte[] plaindata = decryptCipher.doFinal(encdata);
+                byte[] plaindata = decryptCipher.doFinal(bytes, encOffset, encLength);
                 return plaindata;
             } else {
                 System.err.println("ERROR: MAC did not verify!");
                 return null;
             }
-        } catch (NoSuchAlgorithmException | NoSuchPaddingException | InvalidKeyException | InvalidAlgorithmParameterException | IllegalStateException | IllegalBlockSizeException | BadPaddingException e) {
+        } catch (InvalidKeyException | InvalidAlgorithmParameterException | IllegalStateException | IllegalBlockSizeException | BadPaddingException e) {
             System.err.println("ERROR: Decrypting:"+e.getCause());
             return null; // Signal to JSF runtime
         }
     }
 
-    private boolean areArrayEqualsConstantTime(byte[] array1, byte[] array2) {
+    /*
+     * Compares the leading MAC_LENGTH bytes of the received data with the
+     * calculated MAC without short-circuiting.
+     */
+    private boolean areArrayEqualsConstantTime(byte[] received, byte[] calculated) {
         boolean result = true;
-        for(int i=0; i<array1.length; i++) {
-            if (array1[i] != array2[i]) {
+        for(int i=0; i<calculated.length; i++) {
+            if (received[i] != calculated[i]) {
                 result = false;
             }
         }
@@ -225,23 +278,6 @@ public final class ByteArrayGuard {
         }
     }
 
-    /**
-     * This method concatenates two byte arrays
-     * @return a byte array of array1||array2
-     * @param array1 first byte array to be concatenated
-     * @param array2 second byte array to be concatenated
-     */
-    private static byte[] concatBytes(byte[] array1, byte[] array2) {
-        byte[] cBytes = new byte[array1.length + array2.length];
-        try {
-            System.arraycopy(array1, 0, cBytes, 0, array1.length);
-            System.arraycopy(array2, 0, cBytes, array1.length, array2.length);
-        } catch(Exception e) {
-            throw new FacesException(e);
-        }
-        return cBytes;
-    }  
-    
     private SecretKey getSecretKey(FacesContext facesContext) {
 
         SecretKey result = sk;
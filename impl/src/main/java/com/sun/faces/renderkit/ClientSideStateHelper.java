@@ -17,6 +17,7 @@
 package com.sun.faces.renderkit;
 
 import static com.sun.faces.config.WebConfiguration.BooleanWebContextInitParameter.AutoCompleteOffOnViewState;
+import static com.sun.faces.config.WebConfiguration.BooleanWebContextInitParameter.CompressViewStateWithDictionary;
 import static com.sun.faces.config.WebConfiguration.BooleanWebContextInitParameter.EnableViewStateIdRendering;
 import static com.sun.faces.config.WebConfiguration.WebContextInitParameter.ClientStateTimeout;
 import static com.sun.faces.config.WebConfiguration.WebContextInitParameter.ClientStateWriteBufferSize;
@@ -36,13 +37,11 @@ import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 
 import javax.faces.FacesException;
 import javax.faces.context.FacesContext;
 import javax.faces.context.ResponseWriter;
 
-import com.sun.faces.RIConstants;
 import com.sun.faces.config.WebConfiguration.BooleanWebContextInitParameter;
 import com.sun.faces.util.DebugObjectOutputStream;
 import com.sun.faces.util.DebugUtil;
@@ -113,6 +112,24 @@ public class ClientSideStateHelper extends StateHelper {
     private boolean debugSerializedState;
 
 
+    /**
+     * If not <code>null</code>, compressed view state is written using a
+     * preset dictionary rather than as GZIP.  Only set when
+     * <code>compressViewState</code> is <code>true</code>.
+     */
+    private DictionaryStateCompressor stateCompressor;
+
+
+    /**
+     * The number of Base64 characters written to the <code>Writer</code>
+     * at once; must be a multiple of four.
+     */
+    private static final int BASE64_CHUNK_SIZE = 4096;
+
+    private static final char[] BASE64_CHARS =
+          "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+
+
     // ------------------------------------------------------------ Constructors
 
 
@@ -162,7 +179,7 @@ public class ClientSideStateHelper extends StateHelper {
                 String viewStateId = Util.getViewStateId(ctx);
                 writer.writeAttribute("id", viewStateId, null);
             }
-            StringBuilder stateBuilder = new StringBuilder();
+            StringBuilder stateBuilder = new StringBuilder(csBuffSize);
             doWriteState(ctx, state, new StringBuilderWriter(stateBuilder));
             writer.writeAttribute("value", stateBuilder.toString(), null);
             if (webConfig.isOptionEnabled(AutoCompleteOffOnViewState)) {
@@ -199,7 +216,7 @@ public class ClientSideStateHelper extends StateHelper {
             return "stateless";
         }
 
-        return doGetState(ctx, stateString);
+        return doGetState(ctx, viewId, stateString);
     }
 
 
@@ -215,16 +232,32 @@ public class ClientSideStateHelper extends StateHelper {
      */
     protected Object doGetState(FacesContext ctx, String stateString) {
 
+        return doGetState(ctx, null, stateString);
+
+    }
+
+
+    /**
+     * Rebuilds the view state from the Base64 included String included
+     * with the request.
+     *
+     * @param viewId the id of the view whose state is rebuilt, used to
+     *  find the dictionary if state was compressed with one
+     * @param stateString the Base64 encoded view state
+     * @return the view state reconstructed from <code>stateString</code>
+     */
+    protected Object doGetState(FacesContext ctx, String viewId, String stateString) {
+
         if ("stateless".equals(stateString)) {
             return null;
         }
 
         ObjectInputStream ois = null;
         InputStream bis = null;
+        byte[] bytes = null;
         try {
             if (guard != null) {
-                byte[] bytes = stateString.getBytes(RIConstants.CHAR_ENCODING);
-                byte[] decodedBytes = Base64.getDecoder().decode(bytes);
+                byte[] decodedBytes = Base64.getDecoder().decode(stateString);
 
                 bytes = guard.decrypt(ctx, decodedBytes);
                 if (bytes == null) return null;
@@ -233,7 +266,13 @@ public class ClientSideStateHelper extends StateHelper {
 
 
             if (null != bis && compressViewState) {
-                bis = new GZIPInputStream(bis);
+                if (stateCompressor != null) {
+                    // only decrypted, and so authenticated, state gets here
+                    bis = stateCompressor.decompress(viewId, bytes, bytes.length);
+                    if (bis == null) return null;
+                } else {
+                    bis = new GZIPInputStream(bis);
+                }
             }
 
             if (null == bis) {
@@ -324,10 +363,10 @@ public class ClientSideStateHelper extends StateHelper {
             return;
         }
 
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        StateOutputStream baos = new StateOutputStream(csBuffSize);
         OutputStream base = null;
-        if (compressViewState) {
-            base = new GZIPOutputStream(baos, csBuffSize);
+        if (compressViewState && stateCompressor == null) {
+            base = new PooledGZIPOutputStream(baos, csBuffSize);
         } else {
             base = baos;
         }
@@ -386,22 +425,30 @@ public class ClientSideStateHelper extends StateHelper {
             oos.close();
             oos = null;
 
-            // get bytes for encrypting
-            byte[] bytes = baos.toByteArray();
+            // encrypt straight from the stream's buffer
+            byte[] bytes = baos.getBuffer();
+            int length = baos.size();
+
+            if (compressViewState && stateCompressor != null) {
+                bytes = stateCompressor.compress(facesContext.getViewRoot().getViewId(),
+                                                 bytes,
+                                                 length);
+                length = bytes.length;
+            }
 
             if (guard != null) {
                 // this will MAC
-                bytes = guard.encrypt(facesContext, bytes);
+                bytes = guard.encrypt(facesContext, bytes, 0, length);
+                length = bytes.length;
             }
 
-            // Base 64 encode
-            String encodedBytes = new String(Base64.getEncoder().encode(bytes));
-            writer.write(encodedBytes);
+            // Base 64 encode into the writer
+            int written = writeBase64(bytes, length, writer);
 
             if (LOGGER.isLoggable(Level.FINE)) {
                 LOGGER.log(Level.FINE,
                            "Client State: total number of characters written: {0}",
-                           encodedBytes.length());
+                           written);
             }
         } finally {
             if (oos != null) {
@@ -416,6 +463,62 @@ public class ClientSideStateHelper extends StateHelper {
         }
     }
 
+    /**
+     * Base64 encodes <code>length</code> bytes of <code>bytes</code> to
+     * <code>writer</code> in chunks, without creating an intermediate
+     * encoded <code>byte[]</code> or <code>String</code>.
+     *
+     * @param bytes the data to encode
+     * @param length the number of bytes of <code>bytes</code> to encode
+     * @param writer the <code>Writer</code> to write the encoded content to
+     * @return the number of characters written
+     * @throws IOException if an error occurs writing to <code>writer</code>
+     */
+    protected int writeBase64(byte[] bytes, int length, Writer writer)
+    throws IOException {
+
+        char[] chunk = new char[Math.min(((length + 2) / 3) * 4, BASE64_CHUNK_SIZE)];
+        int pos = 0;
+        int written = 0;
+        int i = 0;
+        for (int full = length - (length % 3); i < full; i += 3) {
+            int bits = ((bytes[i] & 0xff) << 16)
+                       | ((bytes[i + 1] & 0xff) << 8)
+                       | (bytes[i + 2] & 0xff);
+            chunk[pos++] = BASE64_CHARS[(bits >>> 18) & 0x3f];
+            chunk[pos++] = BASE64_CHARS[(bits >>> 12) & 0x3f];
+            chunk[pos++] = BASE64_CHARS[(bits >>> 6) & 0x3f];
+            chunk[pos++] = BASE64_CHARS[bits & 0x3f];
+            if (pos == chunk.length) {
+                writer.write(chunk, 0, pos);
+                written += pos;
+                pos = 0;
+            }
+        }
+        if (i < length) {
+            if (pos + 4 > chunk.length) {
+                writer.write(chunk, 0, pos);
+                written += pos;
+                pos = 0;
+            }
+            int bits = (bytes[i] & 0xff) << 16;
+            if (i + 1 < length) {
+                bits |= (bytes[i + 1] & 0xff) << 8;
+            }
+            chunk[pos++] = BASE64_CHARS[(bits >>> 18) & 0x3f];
+            chunk[pos++] = BASE64_CHARS[(bits >>> 12) & 0x3f];
+            chunk[pos++] = ((i + 1 < length) ? BASE64_CHARS[(bits >>> 6) & 0x3f] : '=');
+            chunk[pos++] = '=';
+        }
+        if (pos > 0) {
+            writer.write(chunk, 0, pos);
+            written += pos;
+        }
+        return written;
+
+    }
+
+
     /**
      * <p>If the {@link com.sun.faces.config.WebConfiguration.WebContextInitParameter#ClientStateTimeout} init parameter
      * is set, calculate the elapsed time between the time the client state was
@@ -457,6 +560,12 @@ public class ClientSideStateHelper extends StateHelper {
 
         }
 
+        if (compressViewState && webConfig.isOptionEnabled(CompressViewStateWithDictionary)) {
+            stateCompressor = DictionaryStateCompressor.getInstance(
+                  FacesContext.getCurrentInstance().getExternalContext(),
+                  serialProvider);
+        }
+
         stateTimeoutEnabled = webConfig.isSet(ClientStateTimeout);
         if (stateTimeoutEnabled) {
             String timeout = webConfig.getOptionValue(ClientStateTimeout);
@@ -538,6 +647,28 @@ public class ClientSideStateHelper extends StateHelper {
     // ----------------------------------------------------------- Inner Classes
 
 
+    /**
+     * A <code>ByteArrayOutputStream</code> that exposes its buffer so that
+     * the serialized state can be encrypted or encoded without copying it.
+     */
+    private static final class StateOutputStream extends ByteArrayOutputStream {
+
+        StateOutputStream(int size) {
+
+            super(size);
+
+        }
+
+
+        byte[] getBuffer() {
+
+            return buf;
+
+        }
+
+    }
+
+
     /**
      * A simple <code>Writer</code> implementation to encapsulate a
      * <code>StringBuilder</code> instance.
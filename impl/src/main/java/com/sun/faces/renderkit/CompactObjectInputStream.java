@@ -0,0 +1,456 @@
+/*
+ * Copyright (c) 1997, 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.faces.renderkit;
+
+import static com.sun.faces.renderkit.CompactStateFormat.*;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.StreamCorruptedException;
+import java.lang.reflect.Array;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * <p>
+ * Reads state written by {@link CompactObjectOutputStream}.  Classes are
+ * resolved relative to the current application's class loader, the same
+ * way {@link ApplicationObjectInputStream} does it, but are not
+ * initialized when they are loaded.
+ * </p>
+ *
+ * <p>
+ * State may come from the client, so no length read from the stream is
+ * trusted.  The number of bytes remaining is not known when the source is
+ * being decompressed, so arrays, collections and byte buffers are grown as
+ * their content is actually read instead of being allocated up front.
+ * </p>
+ */
+class CompactObjectInputStream extends ObjectInputStream {
+
+    /**
+     * The number of elements allocated before any of them has been read.
+     */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * The number of bytes allocated before any of them has been read.
+     */
+    private static final int MAX_CHUNK = 8192;
+
+    private final DataInputStream in;
+    private final List<String> strings = new ArrayList<>();
+    private final FrameInputStream frames = new FrameInputStream();
+    private ObjectInputStream serialized;
+
+
+    // ------------------------------------------------------------ Constructors
+
+
+    CompactObjectInputStream(InputStream source) throws IOException {
+
+        super();
+        in = new DataInputStream(new BufferedInputStream(source, 1024));
+        int magic = in.read();
+        int version = in.read();
+        if (magic != MAGIC || version != VERSION) {
+            throw new StreamCorruptedException("Unsupported state format: "
+                                               + magic + '/' + version);
+        }
+
+    }
+
+
+    // -------------------------------------------- Methods from ObjectInputStream
+
+
+    @Override
+    protected Object readObjectOverride() throws IOException, ClassNotFoundException {
+
+        return readValue();
+
+    }
+
+
+    @Override
+    public int read() throws IOException {
+        return in.read();
+    }
+
+    @Override
+    public int read(byte[] buf, int off, int len) throws IOException {
+        return in.read(buf, off, len);
+    }
+
+    @Override
+    public int available() throws IOException {
+        return in.available();
+    }
+
+    @Override
+    public boolean readBoolean() throws IOException {
+        return in.readBoolean();
+    }
+
+    @Override
+    public byte readByte() throws IOException {
+        return in.readByte();
+    }
+
+    @Override
+    public int readUnsignedByte() throws IOException {
+        return in.readUnsignedByte();
+    }
+
+    @Override
+    public short readShort() throws IOException {
+        return in.readShort();
+    }
+
+    @Override
+    public int readUnsignedShort() throws IOException {
+        return in.readUnsignedShort();
+    }
+
+    @Override
+    public char readChar() throws IOException {
+        return in.readChar();
+    }
+
+    @Override
+    public int readInt() throws IOException {
+        return in.readInt();
+    }
+
+    @Override
+    public long readLong() throws IOException {
+        return in.readLong();
+    }
+
+    @Override
+    public float readFloat() throws IOException {
+        return in.readFloat();
+    }
+
+    @Override
+    public double readDouble() throws IOException {
+        return in.readDouble();
+    }
+
+    @Override
+    public void readFully(byte[] buf) throws IOException {
+        in.readFully(buf);
+    }
+
+    @Override
+    public void readFully(byte[] buf, int off, int len) throws IOException {
+        in.readFully(buf, off, len);
+    }
+
+    @Override
+    public int skipBytes(int len) throws IOException {
+        return in.skipBytes(len);
+    }
+
+    @Override
+    public String readUTF() throws IOException {
+        return in.readUTF();
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+
+    // --------------------------------------------------------- Private Methods
+
+
+    private Object readValue() throws IOException, ClassNotFoundException {
+
+        int tag = in.readUnsignedByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case STRING:
+            case STRING_REF:
+            case STRING_CONST:
+                return readString(tag);
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case INTEGER:
+                return (int) readVarLong();
+            case LONG:
+                return readVarLong();
+            case SHORT:
+                return (short) readVarLong();
+            case BYTE:
+                return in.readByte();
+            case CHARACTER:
+                return (char) readVarInt();
+            case DOUBLE:
+                return in.readDouble();
+            case FLOAT:
+                return in.readFloat();
+            case OBJECT_ARRAY:
+                return readElements(readLength());
+            case TYPED_ARRAY: {
+                Class<?> componentType = loadClass(readString(in.readUnsignedByte()));
+                Object[] elements = readElements(readLength());
+                Object[] array = (Object[]) Array.newInstance(componentType, elements.length);
+                try {
+                    System.arraycopy(elements, 0, array, 0, elements.length);
+                } catch (ArrayStoreException ase) {
+                    throw new StreamCorruptedException("Element is not a " + componentType.getName());
+                }
+                return array;
+            }
+            case HASH_MAP: {
+                int size = readLength();
+                HashMap<Object, Object> map =
+                      new HashMap<>(Math.max((int) (Math.min(size, INITIAL_CAPACITY) / .75f) + 1, 16));
+                for (int i = 0; i < size; i++) {
+                    map.put(readValue(), readValue());
+                }
+                return map;
+            }
+            case ARRAY_LIST: {
+                int size = readLength();
+                ArrayList<Object> list = new ArrayList<>(Math.min(size, INITIAL_CAPACITY));
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue());
+                }
+                return list;
+            }
+            case ENUM:
+                return readEnum();
+            case CLASS:
+                return loadClass(readString(in.readUnsignedByte()));
+            case STATE_HOLDER_SAVER: {
+                Object saver = newStateHolderSaver();
+                try {
+                    STATE_HOLDER_SAVER_CLASS_NAME.set(saver, readValue());
+                    STATE_HOLDER_SAVER_SAVED_STATE.set(saver, readValue());
+                } catch (IllegalAccessException iae) {
+                    throw new IOException(iae);
+                }
+                return saver;
+            }
+            case SERIALIZED:
+                frames.set(readBytes(readLength()));
+                if (serialized == null) {
+                    serialized = new ApplicationObjectInputStream(frames);
+                }
+                return serialized.readObject();
+            default:
+                throw new StreamCorruptedException("Unknown type tag: " + tag);
+        }
+
+    }
+
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private Object readEnum() throws IOException, ClassNotFoundException {
+
+        Class enumType = loadClass(readString(in.readUnsignedByte()));
+        String name = readString(in.readUnsignedByte());
+        if (!enumType.isEnum()) {
+            throw new StreamCorruptedException(enumType.getName() + " is not an enum");
+        }
+        return Enum.valueOf(enumType, name);
+
+    }
+
+
+    private String readString(int tag) throws IOException {
+
+        switch (tag) {
+            case STRING: {
+                String s = new String(readBytes(readLength()), StandardCharsets.UTF_8);
+                strings.add(s);
+                return s;
+            }
+            case STRING_REF: {
+                int idx = readVarInt();
+                if (idx < 0 || idx >= strings.size()) {
+                    throw new StreamCorruptedException("Unknown string reference: " + idx);
+                }
+                return strings.get(idx);
+            }
+            case STRING_CONST: {
+                int idx = readVarInt();
+                if (idx < 0 || idx >= DICTIONARY.length) {
+                    throw new StreamCorruptedException("Unknown string constant: " + idx);
+                }
+                return DICTIONARY[idx];
+            }
+            default:
+                throw new StreamCorruptedException("Expected a string, found type tag: " + tag);
+        }
+
+    }
+
+
+    private static Class<?> loadClass(String name) throws ClassNotFoundException {
+
+        // Class.getName() of a primitive type cannot be loaded by name
+        Class<?> c = ApplicationObjectInputStream.PRIMITIVE_CLASSES.get(name);
+        if (c != null) {
+            return c;
+        }
+        return Class.forName(name,
+                             false,
+                             Thread.currentThread().getContextClassLoader());
+
+    }
+
+
+    /*
+     * Every element takes at least one byte, so the array only grows as
+     * elements are actually read.
+     */
+    private Object[] readElements(int length) throws IOException, ClassNotFoundException {
+
+        Object[] array = new Object[Math.min(length, INITIAL_CAPACITY)];
+        for (int i = 0; i < length; i++) {
+            if (i == array.length) {
+                array = Arrays.copyOf(array, (int) Math.min(length, 2L * array.length));
+            }
+            array[i] = readValue();
+        }
+        return array;
+
+    }
+
+
+    private byte[] readBytes(int length) throws IOException {
+
+        if (length <= MAX_CHUNK) {
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            return bytes;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(MAX_CHUNK);
+        byte[] chunk = new byte[MAX_CHUNK];
+        for (int remaining = length; remaining > 0; ) {
+            int n = Math.min(remaining, MAX_CHUNK);
+            in.readFully(chunk, 0, n);
+            bytes.write(chunk, 0, n);
+            remaining -= n;
+        }
+        return bytes.toByteArray();
+
+    }
+
+
+    private int readLength() throws IOException {
+
+        int length = readVarInt();
+        if (length < 0) {
+            throw new StreamCorruptedException("Invalid length: " + length);
+        }
+        return length;
+
+    }
+
+
+    private int readVarInt() throws IOException {
+
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new StreamCorruptedException("Malformed varint");
+
+    }
+
+
+    private long readVarLong() throws IOException {
+
+        long zigzag = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            int b = in.readUnsignedByte();
+            zigzag |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (zigzag >>> 1) ^ -(zigzag & 1);
+            }
+        }
+        throw new StreamCorruptedException("Malformed varint");
+
+    }
+
+
+
+    // ----------------------------------------------------------- Inner Classes
+
+
+    /**
+     * Supplies the frames written by {@link CompactObjectOutputStream} for
+     * serialized objects, one at a time, to the nested
+     * <code>ObjectInputStream</code>.  The end of a frame reads as end of
+     * stream.
+     */
+    private static final class FrameInputStream extends InputStream {
+
+        private byte[] frame = new byte[0];
+        private int pos;
+
+        void set(byte[] frame) {
+            this.frame = frame;
+            pos = 0;
+        }
+
+        @Override
+        public int read() {
+            return (pos < frame.length) ? (frame[pos++] & 0xFF) : -1;
+        }
+
+        @Override
+        public int read(byte[] buf, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (pos >= frame.length) {
+                return -1;
+            }
+            int n = Math.min(len, frame.length - pos);
+            System.arraycopy(frame, pos, buf, off, n);
+            pos += n;
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return frame.length - pos;
+        }
+
+    }
+
+}
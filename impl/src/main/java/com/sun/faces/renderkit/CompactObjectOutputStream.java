@@ -0,0 +1,320 @@
+/*
+ * Copyright (c) 1997, 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.faces.renderkit;
+
+import static com.sun.faces.renderkit.CompactStateFormat.*;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <p>
+ * An <code>ObjectOutputStream</code> that writes the object graphs produced
+ * by component state saving (nested <code>Object[]</code>s, <code>HashMap</code>s,
+ * <code>ArrayList</code>s, property key enums, boxed primitives, strings and
+ * <code>StateHolderSaver</code>s) in the compact form described by
+ * {@link CompactStateFormat}.  Any other object is written using standard
+ * Java serialization.
+ * </p>
+ *
+ * <p>
+ * Objects that fall back to Java serialization are all written by one
+ * nested <code>ObjectOutputStream</code>, so that class descriptors are
+ * only written once per stream.  The nested stream is reset before each
+ * top level object is written, so object identity is only preserved among
+ * the serialized objects of the same top level object; state saving does
+ * not rely on shared references between the structures handled natively.
+ * </p>
+ */
+class CompactObjectOutputStream extends ObjectOutputStream {
+
+    private final DataOutputStream out;
+    private final Map<String, Integer> strings = new HashMap<>();
+    private ByteArrayOutputStream serializedBuffer;
+    private ObjectOutputStream serialized;
+    private boolean resetSerialized;
+
+
+    // ------------------------------------------------------------ Constructors
+
+
+    CompactObjectOutputStream(OutputStream destination) throws IOException {
+
+        super();
+        out = new DataOutputStream(new BufferedOutputStream(destination, 1024));
+        out.write(MAGIC);
+        out.write(VERSION);
+
+    }
+
+
+    // ------------------------------------------- Methods from ObjectOutputStream
+
+
+    @Override
+    protected void writeObjectOverride(Object obj) throws IOException {
+
+        resetSerialized = true;
+        writeValue(obj);
+
+    }
+
+
+    @Override
+    public void write(int val) throws IOException {
+        out.write(val);
+    }
+
+    @Override
+    public void write(byte[] buf) throws IOException {
+        out.write(buf, 0, buf.length);
+    }
+
+    @Override
+    public void write(byte[] buf, int off, int len) throws IOException {
+        out.write(buf, off, len);
+    }
+
+    @Override
+    public void writeBoolean(boolean val) throws IOException {
+        out.writeBoolean(val);
+    }
+
+    @Override
+    public void writeByte(int val) throws IOException {
+        out.writeByte(val);
+    }
+
+    @Override
+    public void writeShort(int val) throws IOException {
+        out.writeShort(val);
+    }
+
+    @Override
+    public void writeChar(int val) throws IOException {
+        out.writeChar(val);
+    }
+
+    @Override
+    public void writeInt(int val) throws IOException {
+        out.writeInt(val);
+    }
+
+    @Override
+    public void writeLong(long val) throws IOException {
+        out.writeLong(val);
+    }
+
+    @Override
+    public void writeFloat(float val) throws IOException {
+        out.writeFloat(val);
+    }
+
+    @Override
+    public void writeDouble(double val) throws IOException {
+        out.writeDouble(val);
+    }
+
+    @Override
+    public void writeUTF(String str) throws IOException {
+        out.writeUTF(str);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+
+    // --------------------------------------------------------- Private Methods
+
+
+    private void writeValue(Object obj) throws IOException {
+
+        if (obj == null) {
+            out.write(NULL);
+            return;
+        }
+
+        Class<?> type = obj.getClass();
+        if (type == String.class) {
+            writeString((String) obj);
+        } else if (type == Object[].class) {
+            Object[] array = (Object[]) obj;
+            out.write(OBJECT_ARRAY);
+            writeVarInt(array.length);
+            for (Object o : array) {
+                writeValue(o);
+            }
+        } else if (type == HashMap.class) {
+            Map<?, ?> map = (Map<?, ?>) obj;
+            out.write(HASH_MAP);
+            writeVarInt(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                writeValue(entry.getKey());
+                writeValue(entry.getValue());
+            }
+        } else if (type == ArrayList.class) {
+            ArrayList<?> list = (ArrayList<?>) obj;
+            out.write(ARRAY_LIST);
+            writeVarInt(list.size());
+            for (Object o : list) {
+                writeValue(o);
+            }
+        } else if (type == Boolean.class) {
+            out.write(((Boolean) obj) ? TRUE : FALSE);
+        } else if (type == Integer.class) {
+            out.write(INTEGER);
+            writeVarLong((Integer) obj);
+        } else if (type == Long.class) {
+            out.write(LONG);
+            writeVarLong((Long) obj);
+        } else if (type == Short.class) {
+            out.write(SHORT);
+            writeVarLong((Short) obj);
+        } else if (type == Byte.class) {
+            out.write(BYTE);
+            out.write((Byte) obj);
+        } else if (type == Character.class) {
+            out.write(CHARACTER);
+            writeVarInt((Character) obj);
+        } else if (type == Double.class) {
+            out.write(DOUBLE);
+            out.writeDouble((Double) obj);
+        } else if (type == Float.class) {
+            out.write(FLOAT);
+            out.writeFloat((Float) obj);
+        } else if (obj instanceof Enum) {
+            out.write(ENUM);
+            writeString(((Enum<?>) obj).getDeclaringClass().getName());
+            writeString(((Enum<?>) obj).name());
+        } else if (type == STATE_HOLDER_SAVER_TYPE) {
+            out.write(STATE_HOLDER_SAVER);
+            try {
+                writeValue(STATE_HOLDER_SAVER_CLASS_NAME.get(obj));
+                writeValue(STATE_HOLDER_SAVER_SAVED_STATE.get(obj));
+            } catch (IllegalAccessException iae) {
+                throw new IOException(iae);
+            }
+        } else if (type == Class.class) {
+            out.write(CLASS);
+            writeString(((Class<?>) obj).getName());
+        } else if (type.isArray() && !type.getComponentType().isPrimitive()) {
+            Object[] array = (Object[]) obj;
+            out.write(TYPED_ARRAY);
+            writeString(type.getComponentType().getName());
+            writeVarInt(array.length);
+            for (Object o : array) {
+                writeValue(o);
+            }
+        } else {
+            writeSerialized(obj);
+        }
+
+    }
+
+
+    private void writeString(String s) throws IOException {
+
+        int idx = dictionaryIndex(s);
+        if (idx != -1) {
+            out.write(STRING_CONST);
+            writeVarInt(idx);
+            return;
+        }
+        Integer ref = strings.get(s);
+        if (ref != null) {
+            out.write(STRING_REF);
+            writeVarInt(ref);
+            return;
+        }
+        strings.put(s, strings.size());
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.write(STRING);
+        writeVarInt(bytes.length);
+        out.write(bytes);
+
+    }
+
+
+    private void writeSerialized(Object obj) throws IOException {
+
+        if (!(obj instanceof java.io.Serializable)) {
+            throw new NotSerializableException(obj.getClass().getName());
+        }
+        if (serialized == null) {
+            serializedBuffer = new ByteArrayOutputStream(256);
+            serialized = new ObjectOutputStream(serializedBuffer);
+        } else if (resetSerialized) {
+            serialized.reset();
+        }
+        resetSerialized = false;
+        //noinspection NonSerializableObjectPassedToObjectStream
+        serialized.writeObject(obj);
+        serialized.flush();
+
+        // each frame holds exactly the bytes written for one object (and
+        // the stream header or a pending reset), so that the reader can
+        // feed them to a single nested ObjectInputStream
+        out.write(SERIALIZED);
+        writeVarInt(serializedBuffer.size());
+        serializedBuffer.writeTo(out);
+        serializedBuffer.reset();
+
+    }
+
+
+    private void writeVarInt(int value) throws IOException {
+
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+
+    }
+
+
+    /*
+     * Zig-zag encoded, so that small negative values stay small.
+     */
+    private void writeVarLong(long value) throws IOException {
+
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            out.write((int) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        out.write((int) zigzag);
+
+    }
+
+}
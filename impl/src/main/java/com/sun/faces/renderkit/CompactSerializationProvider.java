@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 1997, 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.faces.renderkit;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+
+import com.sun.faces.spi.SerializationProvider;
+
+/**
+ * <p>
+ * A <code>SerializationProvider</code> that writes view state in a compact
+ * binary format instead of standard Java serialization.  The shapes produced
+ * by <code>UIComponentBase.saveState</code>, <code>ComponentStateHelper</code>
+ * and <code>StateHolderSaver</code> are encoded natively using type tags,
+ * varints and a string table (see {@link CompactStateFormat}); everything
+ * else falls back to Java serialization.
+ * </p>
+ *
+ * <p>
+ * To enable it, set the <code>com.sun.faces.serializationProvider</code>
+ * context parameter to the name of this class.  It applies to both client
+ * and server side state saving.  State written with one provider cannot be
+ * read with another.
+ * </p>
+ */
+public class CompactSerializationProvider implements SerializationProvider {
+
+
+    // --------------------------------------- Methods from SerializationProvider
+
+
+    @Override
+    public ObjectInputStream createObjectInputStream(InputStream source)
+    throws IOException {
+
+        return new CompactObjectInputStream(source);
+
+    }
+
+
+    @Override
+    public ObjectOutputStream createObjectOutputStream(OutputStream destination)
+    throws IOException {
+
+        return new CompactObjectOutputStream(destination);
+
+    }
+
+}
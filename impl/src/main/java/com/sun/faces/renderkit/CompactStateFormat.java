@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) 1997, 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.faces.renderkit;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.faces.FacesException;
+import javax.faces.context.FacesContext;
+
+/**
+ * <p>
+ * Constants shared by {@link CompactObjectOutputStream} and
+ * {@link CompactObjectInputStream}.
+ * </p>
+ *
+ * <p>
+ * Every value is written as a one byte type tag followed by its payload.
+ * Integral values are written as zig-zag encoded varints, strings are
+ * written once per stream and referenced by index afterwards, and strings
+ * that commonly occur in component state (property keys, attribute names,
+ * class names of standard components and attached objects) are referenced
+ * by their index in {@link #DICTIONARY} and never written at all.
+ * </p>
+ */
+final class CompactStateFormat {
+
+    /**
+     * Leading byte of every stream.
+     */
+    static final int MAGIC = 0xC5;
+
+    /**
+     * Format version; must be incremented whenever the encoding or the
+     * {@link #DICTIONARY} changes in an incompatible way.
+     */
+    static final int VERSION = 2;
+
+    static final int NULL = 0;
+    static final int STRING = 1;
+    static final int STRING_REF = 2;
+    static final int STRING_CONST = 3;
+    static final int TRUE = 4;
+    static final int FALSE = 5;
+    static final int INTEGER = 6;
+    static final int LONG = 7;
+    static final int DOUBLE = 8;
+    static final int FLOAT = 9;
+    static final int SHORT = 10;
+    static final int BYTE = 11;
+    static final int CHARACTER = 12;
+    static final int OBJECT_ARRAY = 13;
+    static final int TYPED_ARRAY = 14;
+    static final int HASH_MAP = 15;
+    static final int ARRAY_LIST = 16;
+    static final int ENUM = 17;
+    static final int CLASS = 18;
+    static final int STATE_HOLDER_SAVER = 19;
+    static final int SERIALIZED = 20;
+
+    /**
+     * Strings that are encoded by index only.  This list is part of the
+     * format: entries may only ever be appended (together with a
+     * {@link #VERSION} change if state written by a newer version must not
+     * be read by an older one).
+     */
+    static final String[] DICTIONARY = {
+          // class names
+          "javax.faces.component.UIComponent$PropertyKeys",
+          "javax.faces.component.UIComponent$PropertyKeysPrivate",
+          "javax.faces.component.UIOutput$PropertyKeys",
+          "javax.faces.component.UIInput$PropertyKeys",
+          "javax.faces.component.UICommand$PropertyKeys",
+          "javax.faces.component.UIData$PropertyKeys",
+          "javax.faces.component.UIForm$PropertyKeys",
+          "javax.faces.component.UIViewRoot$PropertyKeys",
+          "javax.faces.component.UISelectItem$PropertyKeys",
+          "javax.faces.component.UISelectItems$PropertyKeys",
+          "javax.faces.component.UIGraphic$PropertyKeys",
+          "javax.faces.component.UIMessage$PropertyKeys",
+          "javax.faces.component.UIMessages$PropertyKeys",
+          "javax.faces.component.UIParameter$PropertyKeys",
+          "javax.faces.component.UIViewParameter$PropertyKeys",
+          "javax.faces.component.UIOutcomeTarget$PropertyKeys",
+          "javax.faces.component.html.HtmlInputText$PropertyKeys",
+          "javax.faces.component.html.HtmlInputSecret$PropertyKeys",
+          "javax.faces.component.html.HtmlInputTextarea$PropertyKeys",
+          "javax.faces.component.html.HtmlInputHidden$PropertyKeys",
+          "javax.faces.component.html.HtmlOutputText$PropertyKeys",
+          "javax.faces.component.html.HtmlOutputLabel$PropertyKeys",
+          "javax.faces.component.html.HtmlOutputLink$PropertyKeys",
+          "javax.faces.component.html.HtmlCommandButton$PropertyKeys",
+          "javax.faces.component.html.HtmlCommandLink$PropertyKeys",
+          "javax.faces.component.html.HtmlForm$PropertyKeys",
+          "javax.faces.component.html.HtmlPanelGrid$PropertyKeys",
+          "javax.faces.component.html.HtmlPanelGroup$PropertyKeys",
+          "javax.faces.component.html.HtmlDataTable$PropertyKeys",
+          "javax.faces.component.html.HtmlColumn$PropertyKeys",
+          "javax.faces.component.html.HtmlMessage$PropertyKeys",
+          "javax.faces.component.html.HtmlMessages$PropertyKeys",
+          "javax.faces.component.html.HtmlGraphicImage$PropertyKeys",
+          "javax.faces.component.html.HtmlSelectOneMenu$PropertyKeys",
+          "javax.faces.component.html.HtmlSelectOneListbox$PropertyKeys",
+          "javax.faces.component.html.HtmlSelectOneRadio$PropertyKeys",
+          "javax.faces.component.html.HtmlSelectManyMenu$PropertyKeys",
+          "javax.faces.component.html.HtmlSelectManyListbox$PropertyKeys",
+          "javax.faces.component.html.HtmlSelectManyCheckbox$PropertyKeys",
+          "javax.faces.component.html.HtmlSelectBooleanCheckbox$PropertyKeys",
+          "javax.faces.component.behavior.AjaxBehavior",
+          "javax.faces.component.behavior.AjaxBehavior$PropertyKeys",
+          "javax.faces.convert.DateTimeConverter",
+          "javax.faces.convert.NumberConverter",
+          "javax.faces.convert.IntegerConverter",
+          "javax.faces.convert.LongConverter",
+          "javax.faces.convert.BigDecimalConverter",
+          "javax.faces.convert.EnumConverter",
+          "javax.faces.validator.BeanValidator",
+          "javax.faces.validator.LengthValidator",
+          "javax.faces.validator.LongRangeValidator",
+          "javax.faces.validator.DoubleRangeValidator",
+          "javax.faces.validator.RegexValidator",
+          "javax.faces.validator.RequiredValidator",
+          "javax.faces.event.MethodExpressionActionListener",
+          "javax.faces.event.MethodExpressionValueChangeListener",
+          "com.sun.faces.facelets.el.TagValueExpression",
+          "com.sun.faces.facelets.el.TagMethodExpression",
+          "com.sun.faces.facelets.el.ContextualCompositeValueExpression",
+          "com.sun.faces.facelets.el.ContextualCompositeMethodExpression",
+          "com.sun.faces.DynamicComponent",
+          "com.sun.faces.facelets.MARK_ID",
+          "javax.faces.component.VIEW_RESOURCE_LISTENERS",
+          "javax.faces.component.UIViewRoot.FACES_CONTEXT_ATTRS_KEY",
+          // property keys and attribute names
+          "attributes", "bindings", "rendered", "rendererType",
+          "systemEventListeners", "behaviors", "passThroughAttributes",
+          "attributesThatAreSet", "value", "converter", "localValueSet",
+          "required", "requiredMessage", "converterMessage",
+          "validatorMessage", "valid", "immediate", "submittedValue",
+          "methodBindingActionListener", "actionExpression", "first",
+          "rowIndex", "rows", "saved", "var", "prependId", "itemDescription",
+          "itemDisabled", "itemEscaped", "itemLabel", "itemValue",
+          "noSelectionOption", "forValue", "for", "showDetail",
+          "showSummary", "redisplay", "globalOnly", "name", "disable",
+          "includeViewParams", "outcome", "disableClientWindow", "id",
+          "label", "title", "style", "styleClass", "disabled", "readonly",
+          "size", "maxlength", "tabindex", "accesskey", "alt", "dir",
+          "lang", "role", "type", "escape", "layout", "columns",
+          "columnClasses", "rowClasses", "headerClass", "footerClass",
+          "captionClass", "captionStyle", "width", "height", "border",
+          "cellpadding", "cellspacing", "summary", "autocomplete",
+          "onblur", "onchange", "onclick", "ondblclick", "onfocus",
+          "onkeydown", "onkeypress", "onkeyup", "onmousedown",
+          "onmousemove", "onmouseout", "onmouseover", "onmouseup",
+          "onselect", "onsubmit", "onreset", "onevent", "onerror",
+          "execute", "render", "resetValues", "delay", "listener",
+          "image", "url", "library", "target", "enabledClass",
+          "disabledClass", "selectedClass", "unselectedClass",
+          "errorClass", "errorStyle", "fatalClass", "fatalStyle",
+          "infoClass", "infoStyle", "warnClass", "warnStyle", "tooltip",
+          "pattern", "locale", "timeZone", "dateStyle", "timeStyle",
+          "currencyCode", "currencySymbol", "groupingUsed", "integerOnly",
+          "maxFractionDigits", "minFractionDigits", "maxIntegerDigits",
+          "minIntegerDigits", "minimum", "maximum", "validationGroups",
+          "action", "actionListener", "valueChangeListener", "validator",
+          "click", "change", "valueChange", "blur", "keyup",
+          "javax.faces.Text", "javax.faces.Form", "javax.faces.Button",
+          "javax.faces.Link", "javax.faces.Group", "javax.faces.Grid",
+          "javax.faces.Table", "javax.faces.Menu", "javax.faces.Listbox",
+          "javax.faces.Checkbox", "javax.faces.Radio", "javax.faces.Hidden",
+          "javax.faces.Secret", "javax.faces.Textarea", "javax.faces.Label",
+          "javax.faces.Message", "javax.faces.Messages", "javax.faces.Image",
+          "javax.faces.Body", "javax.faces.Head", "javax.faces.resource.Script",
+          "javax.faces.resource.Stylesheet", "javax.faces.Composite",
+          "javax.faces.CompositeFacet", "javax.faces.CompositeComponentParent"
+    };
+
+    private static final Map<String, Integer> DICTIONARY_INDEX =
+          new HashMap<>(DICTIONARY.length * 2);
+
+    static {
+        for (int i = 0; i < DICTIONARY.length; i++) {
+            if (!DICTIONARY_INDEX.containsKey(DICTIONARY[i])) {
+                DICTIONARY_INDEX.put(DICTIONARY[i], i);
+            }
+        }
+    }
+
+    /**
+     * <code>javax.faces.component.StateHolderSaver</code> is not visible
+     * outside of its package, so it is read and written reflectively.
+     */
+    static final Class<?> STATE_HOLDER_SAVER_TYPE;
+    private static final Constructor<?> STATE_HOLDER_SAVER_CTOR;
+    static final Field STATE_HOLDER_SAVER_CLASS_NAME;
+    static final Field STATE_HOLDER_SAVER_SAVED_STATE;
+
+    static {
+        try {
+            STATE_HOLDER_SAVER_TYPE = Class.forName("javax.faces.component.StateHolderSaver");
+            STATE_HOLDER_SAVER_CTOR =
+                  STATE_HOLDER_SAVER_TYPE.getConstructor(FacesContext.class, Object.class);
+            STATE_HOLDER_SAVER_CTOR.setAccessible(true);
+            STATE_HOLDER_SAVER_CLASS_NAME = STATE_HOLDER_SAVER_TYPE.getDeclaredField("className");
+            STATE_HOLDER_SAVER_CLASS_NAME.setAccessible(true);
+            STATE_HOLDER_SAVER_SAVED_STATE = STATE_HOLDER_SAVER_TYPE.getDeclaredField("savedState");
+            STATE_HOLDER_SAVER_SAVED_STATE.setAccessible(true);
+        } catch (ClassNotFoundException | NoSuchMethodException | NoSuchFieldException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+
+    // ------------------------------------------------------------ Constructors
+
+
+    private CompactStateFormat() { }
+
+
+    // --------------------------------------------------------- Package Methods
+
+
+    /**
+     * @param s the string to look up
+     * @return the index of <code>s</code> within {@link #DICTIONARY}, or
+     *  <code>-1</code>
+     */
+    static int dictionaryIndex(String s) {
+
+        Integer idx = DICTIONARY_INDEX.get(s);
+        return ((idx != null) ? idx : -1);
+
+    }
+
+
+    /**
+     * @return a <code>StateHolderSaver</code> for which both fields are
+     *  <code>null</code>
+     */
+    static Object newStateHolderSaver() {
+
+        try {
+            return STATE_HOLDER_SAVER_CTOR.newInstance(null, null);
+        } catch (ReflectiveOperationException e) {
+            throw new FacesException(e);
+        }
+
+    }
+
+}
@@ -0,0 +1,665 @@
+/*
+ * Copyright (c) 1997, 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.faces.renderkit;
+
+import static com.sun.faces.config.WebConfiguration.WebContextInitParameter.NumberOfLogicalViews;
+import static com.sun.faces.config.WebConfiguration.WebContextInitParameter.NumberOfStateBytesInSession;
+import static com.sun.faces.config.WebConfiguration.WebContextInitParameter.NumberOfViews;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.faces.context.ExternalContext;
+import javax.faces.context.FacesContext;
+
+import com.sun.faces.config.WebConfiguration;
+import com.sun.faces.config.WebConfiguration.WebContextInitParameter;
+import com.sun.faces.spi.ViewStateStore;
+import com.sun.faces.util.FacesLogger;
+
+/**
+ * <p>
+ * The default {@link ViewStateStore}.  State is kept in the session in a
+ * {@link SessionViewStates} instance, which is built on top of
+ * <code>ConcurrentHashMap</code>s so that concurrent requests from the
+ * same session never contend on a session wide lock.
+ * </p>
+ *
+ * <p>
+ * Eviction is an approximation of LRU: every access stamps the logical and
+ * actual view with a per-session tick, and whenever a bound is exceeded the
+ * entry with the oldest tick is removed.  Three bounds are enforced:
+ * {@link WebContextInitParameter#NumberOfLogicalViews} logical views per session,
+ * {@link WebContextInitParameter#NumberOfViews} actual views per logical view and,
+ * if greater than zero, {@link WebContextInitParameter#NumberOfStateBytesInSession}
+ * bytes of serialized state per session.  The byte bound only applies to state
+ * that has been serialized, i.e. when
+ * {@link com.sun.faces.config.WebConfiguration.BooleanWebContextInitParameter#SerializeServerState}
+ * is enabled.
+ * </p>
+ */
+public class ConcurrentViewStateStore implements ViewStateStore {
+
+    private static final Logger LOGGER = FacesLogger.APPLICATION.getLogger();
+
+    private final int numberOfLogicalViews;
+    private final int numberOfViews;
+    private final long numberOfStateBytes;
+
+
+    // ------------------------------------------------------------ Constructors
+
+
+    /**
+     * Construct a new <code>ConcurrentViewStateStore</code> using the
+     * bounds configured for the current application.
+     */
+    public ConcurrentViewStateStore() {
+
+        WebConfiguration webConfig = WebConfiguration.getInstance();
+        numberOfLogicalViews = (int) getLongConfigValue(webConfig, NumberOfLogicalViews);
+        numberOfViews = (int) getLongConfigValue(webConfig, NumberOfViews);
+        numberOfStateBytes = getLongConfigValue(webConfig, NumberOfStateBytesInSession);
+
+    }
+
+
+    /**
+     * Construct a new <code>ConcurrentViewStateStore</code> using the
+     * specified bounds.
+     *
+     * @param numberOfLogicalViews the maximum number of logical views per session
+     * @param numberOfViews the maximum number of actual views per logical view
+     * @param numberOfStateBytes the maximum number of serialized state bytes
+     *  per session, or a value less than one for no limit
+     */
+    public ConcurrentViewStateStore(int numberOfLogicalViews,
+                                    int numberOfViews,
+                                    long numberOfStateBytes) {
+
+        this.numberOfLogicalViews = numberOfLogicalViews;
+        this.numberOfViews = numberOfViews;
+        this.numberOfStateBytes = numberOfStateBytes;
+
+    }
+
+
+    // ---------------------------------------------- Methods from ViewStateStore
+
+
+    @Override
+    public void put(FacesContext context,
+                    String logicalViewId,
+                    String actualViewId,
+                    Object[] state) {
+
+        SessionViewStates states = getSessionViewStates(context, true);
+        states.put(logicalViewId,
+                   actualViewId,
+                   state[0],
+                   state[1],
+                   getWeight(state[1]));
+        states.evict(logicalViewId,
+                     actualViewId,
+                     Math.max(numberOfLogicalViews, 1),
+                     Math.max(numberOfViews, 1),
+                     numberOfStateBytes);
+
+        // always call put/setAttribute as we may be in a clustered environment.
+        context.getExternalContext().getSessionMap()
+              .put(ServerSideStateHelper.LOGICAL_VIEW_MAP, states);
+
+    }
+
+
+    @Override
+    public Object[] get(FacesContext context,
+                        String logicalViewId,
+                        String actualViewId) {
+
+        SessionViewStates states = getSessionViewStates(context, false);
+        return ((states != null)
+                ? states.get(logicalViewId, actualViewId)
+                : null);
+
+    }
+
+
+    @Override
+    public boolean containsLogicalView(FacesContext context,
+                                       String logicalViewId) {
+
+        SessionViewStates states = getSessionViewStates(context, false);
+        return (states != null && states.containsLogicalView(logicalViewId));
+
+    }
+
+
+    // ------------------------------------------------------- Protected Methods
+
+
+    /**
+     * @param state the component state as it will be stored
+     * @return the number of bytes <code>state</code> accounts for against
+     *  the per-session byte bound.  Only serialized state has a weight.
+     */
+    protected int getWeight(Object state) {
+
+        return ((state instanceof byte[]) ? ((byte[]) state).length : 0);
+
+    }
+
+
+    // --------------------------------------------------------- Private Methods
+
+
+    private static SessionViewStates getSessionViewStates(FacesContext context,
+                                                          boolean create) {
+
+        ExternalContext externalContext = context.getExternalContext();
+        Map<String, Object> sessionMap = externalContext.getSessionMap();
+        Object value = sessionMap.get(ServerSideStateHelper.LOGICAL_VIEW_MAP);
+        if (value instanceof SessionViewStates || !create) {
+            return ((value instanceof SessionViewStates)
+                    ? (SessionViewStates) value
+                    : null);
+        }
+
+        // Creating the per-session structure is the only step that requires
+        // mutual exclusion; it happens once per session.
+        Object sessionObj = externalContext.getSession(true);
+        //noinspection SynchronizationOnLocalVariableOrMethodParameter
+        synchronized (sessionObj) {
+            value = sessionMap.get(ServerSideStateHelper.LOGICAL_VIEW_MAP);
+            if (!(value instanceof SessionViewStates)) {
+                value = new SessionViewStates();
+                sessionMap.put(ServerSideStateHelper.LOGICAL_VIEW_MAP, value);
+            }
+        }
+        return (SessionViewStates) value;
+
+    }
+
+
+    private static long getLongConfigValue(WebConfiguration webConfig,
+                                           WebContextInitParameter param) {
+
+        String value = webConfig.getOptionValue(param);
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException nfe) {
+            if (LOGGER.isLoggable(Level.WARNING)) {
+                LOGGER.log(Level.WARNING,
+                           "jsf.state.server.cannot.parse.int.option",
+                           new Object[] { param.getQualifiedName(),
+                                          param.getDefaultValue() });
+            }
+            return Long.parseLong(param.getDefaultValue());
+        }
+
+    }
+
+
+    // ----------------------------------------------------------- Inner Classes
+
+
+    /**
+     * <p>
+     * The per-session view state structure.  Logical views map to actual
+     * views, which map to the stored state.  All mutations are lock free;
+     * eviction uses <code>remove(key, value)</code> so that concurrent
+     * evictions never account for the same entry twice.
+     * </p>
+     *
+     * <p>
+     * As the session attribute {@link ServerSideStateHelper#LOGICAL_VIEW_MAP}
+     * has always been a <code>Map</code> of logical view ids to
+     * <code>Map</code>s of actual view ids to state, this class is such a
+     * <code>Map</code>.  The actual view <code>Map</code>s are read only
+     * views, whose values are the <code>Object[] { structure, state }</code>
+     * arrays returned by {@link ViewStateStore#get}; removing a logical view
+     * removes all of its state.
+     * </p>
+     */
+    public static final class SessionViewStates
+          extends AbstractMap<String, Map<String, Object[]>>
+          implements Serializable {
+
+        private static final long serialVersionUID = 2585213925491637745L;
+
+        private final ConcurrentMap<String, LogicalView> logicalViews =
+              new ConcurrentHashMap<>();
+        private final AtomicLong clock = new AtomicLong();
+        private final AtomicLong totalBytes = new AtomicLong();
+
+
+        // ------------------------------------------------------ Public Methods
+
+
+        /**
+         * @param logicalViewId the id of the logical view
+         * @return <code>true</code> if state for the logical view is present
+         */
+        public boolean containsLogicalView(String logicalViewId) {
+
+            LogicalView logicalView = logicalViews.get(logicalViewId);
+            if (logicalView == null) {
+                return false;
+            }
+            logicalView.lastAccess = clock.incrementAndGet();
+            return true;
+
+        }
+
+
+        /**
+         * @return the number of logical views currently held
+         */
+        public int getNumberOfLogicalViews() {
+
+            return logicalViews.size();
+
+        }
+
+
+        // ------------------------------------------------- Methods from Map
+
+
+        @Override
+        public int size() {
+
+            return logicalViews.size();
+
+        }
+
+
+        @Override
+        public boolean containsKey(Object key) {
+
+            return (key != null && logicalViews.containsKey(key));
+
+        }
+
+
+        @Override
+        public Map<String, Object[]> get(Object key) {
+
+            LogicalView logicalView = ((key != null) ? logicalViews.get(key) : null);
+            return ((logicalView != null) ? new ActualViews(logicalView) : null);
+
+        }
+
+
+        @Override
+        public Map<String, Object[]> remove(Object key) {
+
+            LogicalView logicalView = ((key != null) ? logicalViews.remove(key) : null);
+            if (logicalView == null) {
+                return null;
+            }
+            retire(logicalView);
+            return new ActualViews(logicalView);
+
+        }
+
+
+        @Override
+        public Set<Map.Entry<String, Map<String, Object[]>>> entrySet() {
+
+            return new AbstractSet<Map.Entry<String, Map<String, Object[]>>>() {
+
+                @Override
+                public int size() {
+                    return logicalViews.size();
+                }
+
+                @Override
+                public Iterator<Map.Entry<String, Map<String, Object[]>>> iterator() {
+                    final Iterator<Map.Entry<String, LogicalView>> it =
+                          logicalViews.entrySet().iterator();
+                    return new Iterator<Map.Entry<String, Map<String, Object[]>>>() {
+
+                        private String current;
+
+                        @Override
+                        public boolean hasNext() {
+                            return it.hasNext();
+                        }
+
+                        @Override
+                        public Map.Entry<String, Map<String, Object[]>> next() {
+                            Map.Entry<String, LogicalView> e = it.next();
+                            current = e.getKey();
+                            return new SimpleImmutableEntry<String, Map<String, Object[]>>(
+                                  e.getKey(), new ActualViews(e.getValue()));
+                        }
+
+                        @Override
+                        public void remove() {
+                            if (current == null) {
+                                throw new IllegalStateException();
+                            }
+                            SessionViewStates.this.remove(current);
+                            current = null;
+                        }
+
+                    };
+                }
+
+            };
+
+        }
+
+
+        /**
+         * @return the total weight, in bytes, of all serialized state
+         *  currently held
+         */
+        public long getTotalBytes() {
+
+            return totalBytes.get();
+
+        }
+
+
+        // --------------------------------------------- Package Private Methods
+
+
+        Object[] get(String logicalViewId, String actualViewId) {
+
+            LogicalView logicalView = logicalViews.get(logicalViewId);
+            if (logicalView == null) {
+                return null;
+            }
+            StateEntry entry = logicalView.views.get(actualViewId);
+            if (entry == null) {
+                return null;
+            }
+            long tick = clock.incrementAndGet();
+            logicalView.lastAccess = tick;
+            entry.lastAccess = tick;
+            return new Object[] { entry.structure, entry.state };
+
+        }
+
+
+        void put(String logicalViewId,
+                 String actualViewId,
+                 Object structure,
+                 Object state,
+                 int weight) {
+
+            while (true) {
+                long tick = clock.incrementAndGet();
+                LogicalView logicalView = logicalViews.get(logicalViewId);
+                if (logicalView == null) {
+                    LogicalView created = new LogicalView();
+                    logicalView = logicalViews.putIfAbsent(logicalViewId, created);
+                    if (logicalView == null) {
+                        logicalView = created;
+                    }
+                }
+                logicalView.lastAccess = tick;
+
+                StateEntry entry = new StateEntry(structure, state, weight, tick);
+                StateEntry previous = logicalView.views.put(actualViewId, entry);
+                totalBytes.addAndGet(weight - ((previous != null) ? previous.weight : 0));
+
+                if (!logicalView.retired) {
+                    return;
+                }
+
+                // The logical view was evicted while we were writing to it.
+                // Whatever the evicting thread did not drain is removed here,
+                // then the write is retried against a fresh logical view.
+                if (logicalView.views.remove(actualViewId, entry)) {
+                    totalBytes.addAndGet(-weight);
+                }
+            }
+
+        }
+
+
+        void evict(String logicalViewId,
+                   String actualViewId,
+                   int maxLogicalViews,
+                   int maxViews,
+                   long maxBytes) {
+
+            while (logicalViews.size() > maxLogicalViews) {
+                if (!evictEldestLogicalView(logicalViewId)) {
+                    break;
+                }
+            }
+
+            LogicalView current = logicalViews.get(logicalViewId);
+            if (current != null) {
+                while (current.views.size() > maxViews) {
+                    if (!evictEldestView(current, logicalViewId, actualViewId)) {
+                        break;
+                    }
+                }
+            }
+
+            if (maxBytes > 0) {
+                while (totalBytes.get() > maxBytes) {
+                    if (!evictEldestView(null, logicalViewId, actualViewId)) {
+                        break;
+                    }
+                }
+            }
+
+        }
+
+
+        // ----------------------------------------------------- Private Methods
+
+
+        private boolean evictEldestLogicalView(String keep) {
+
+            String eldestKey = null;
+            LogicalView eldest = null;
+            for (Map.Entry<String, LogicalView> e : logicalViews.entrySet()) {
+                if (e.getKey().equals(keep)) {
+                    continue;
+                }
+                if (eldest == null || e.getValue().lastAccess < eldest.lastAccess) {
+                    eldestKey = e.getKey();
+                    eldest = e.getValue();
+                }
+            }
+            if (eldest == null) {
+                return false;
+            }
+            if (logicalViews.remove(eldestKey, eldest)) {
+                retire(eldest);
+            }
+            return true;
+
+        }
+
+
+        /*
+         * Removes the least recently used actual view, either within the
+         * provided logical view or, if null, across the whole session.  The
+         * view identified by 'keepLogical' and 'keep' (the one just written)
+         * is never evicted.
+         */
+        private boolean evictEldestView(LogicalView scope, String keepLogical, String keep) {
+
+            LogicalView owner = null;
+            String eldestKey = null;
+            StateEntry eldest = null;
+            for (Map.Entry<String, LogicalView> lv : logicalViews.entrySet()) {
+                LogicalView logicalView = lv.getValue();
+                if (scope != null && logicalView != scope) {
+                    continue;
+                }
+                boolean written = lv.getKey().equals(keepLogical);
+                for (Map.Entry<String, StateEntry> e : logicalView.views.entrySet()) {
+                    if (written && e.getKey().equals(keep)) {
+                        continue;
+                    }
+                    if (eldest == null || e.getValue().lastAccess < eldest.lastAccess) {
+                        owner = logicalView;
+                        eldestKey = e.getKey();
+                        eldest = e.getValue();
+                    }
+                }
+            }
+            if (eldest == null) {
+                return false;
+            }
+            if (owner.views.remove(eldestKey, eldest)) {
+                totalBytes.addAndGet(-eldest.weight);
+            }
+            return true;
+
+        }
+
+
+        private void retire(LogicalView logicalView) {
+
+            logicalView.retired = true;
+            for (Map.Entry<String, StateEntry> e : logicalView.views.entrySet()) {
+                if (logicalView.views.remove(e.getKey(), e.getValue())) {
+                    totalBytes.addAndGet(-e.getValue().weight);
+                }
+            }
+
+        }
+
+    } // END SessionViewStates
+
+
+    /*
+     * A read only Map view of the actual views of a logical view.
+     */
+    private static final class ActualViews extends AbstractMap<String, Object[]> {
+
+        private final LogicalView logicalView;
+
+        ActualViews(LogicalView logicalView) {
+
+            this.logicalView = logicalView;
+
+        }
+
+        @Override
+        public int size() {
+
+            return logicalView.views.size();
+
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+
+            return (key != null && logicalView.views.containsKey(key));
+
+        }
+
+        @Override
+        public Object[] get(Object key) {
+
+            StateEntry entry = ((key != null) ? logicalView.views.get(key) : null);
+            return ((entry != null) ? new Object[] { entry.structure, entry.state } : null);
+
+        }
+
+        @Override
+        public Set<Map.Entry<String, Object[]>> entrySet() {
+
+            return new AbstractSet<Map.Entry<String, Object[]>>() {
+
+                @Override
+                public int size() {
+                    return logicalView.views.size();
+                }
+
+                @Override
+                public Iterator<Map.Entry<String, Object[]>> iterator() {
+                    final Iterator<Map.Entry<String, StateEntry>> it =
+                          logicalView.views.entrySet().iterator();
+                    return new Iterator<Map.Entry<String, Object[]>>() {
+
+                        @Override
+                        public boolean hasNext() {
+                            return it.hasNext();
+                        }
+
+                        @Override
+                        public Map.Entry<String, Object[]> next() {
+                            Map.Entry<String, StateEntry> e = it.next();
+                            return new SimpleImmutableEntry<>(
+                                  e.getKey(),
+                                  new Object[] { e.getValue().structure, e.getValue().state });
+                        }
+
+                    };
+                }
+
+            };
+
+        }
+
+    } // END ActualViews
+
+
+    private static final class LogicalView implements Serializable {
+
+        private static final long serialVersionUID = -1750563858003436815L;
+
+        private final ConcurrentMap<String, StateEntry> views =
+              new ConcurrentHashMap<>();
+        private volatile long lastAccess;
+        private volatile boolean retired;
+
+    } // END LogicalView
+
+
+    private static final class StateEntry implements Serializable {
+
+        private static final long serialVersionUID = 6377651862466447093L;
+
+        private final Object structure;
+        private final Object state;
+        private final int weight;
+        private volatile long lastAccess;
+
+
+        StateEntry(Object structure, Object state, int weight, long lastAccess) {
+
+            this.structure = structure;
+            this.state = state;
+            this.weight = weight;
+            this.lastAccess = lastAccess;
+
+        }
+
+    } // END StateEntry
+
+}
@@ -0,0 +1,689 @@
+/*
+ * Copyright (c) 1997, 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.faces.renderkit;
+
+import static com.sun.faces.config.WebConfiguration.WebContextInitParameter.ViewStateDictionary;
+import static com.sun.faces.config.WebConfiguration.WebContextInitParameter.ViewStateDictionaryMaxInflatedBytes;
+import static com.sun.faces.config.WebConfiguration.WebContextInitParameter.ViewStateDictionaryMaxViews;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectOutputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+import javax.faces.FacesException;
+import javax.faces.application.ViewResource;
+import javax.faces.context.ExternalContext;
+import javax.faces.context.FacesContext;
+
+import com.sun.faces.config.WebConfiguration;
+import com.sun.faces.spi.SerializationProvider;
+import com.sun.faces.util.FacesLogger;
+
+/**
+ * <p>
+ * Compresses serialized view state using a deflate preset dictionary.  Most
+ * of the bytes of a serialized state are the same from one request to the
+ * next (class descriptors, property keys, client ids and expressions), so
+ * having them in the dictionary saves their first occurrence in each state.
+ * </p>
+ *
+ * <p>
+ * The dictionaries never contain any request data, so the size of a
+ * compressed state tells nothing about the state of other users.  The shared
+ * dictionary is either read from the web application resource named by
+ * {@link WebConfiguration.WebContextInitParameter#ViewStateDictionary}, or
+ * built by serializing a fixed sample of component state with the
+ * <code>SerializationProvider</code> of the application.  Each view then has
+ * a dictionary of its own: the shared dictionary followed by the structural
+ * strings of the source of the view, that is its id, the values of its
+ * <code>id</code> attributes and its EL expressions.  Text, comments and
+ * other attribute values of the source are left out.  Every node of a
+ * cluster running the same application therefore has the same dictionaries,
+ * and state written on one node can be read on another, or after a restart.
+ * Up to {@link WebConfiguration.WebContextInitParameter#ViewStateDictionaryMaxViews}
+ * view dictionaries are kept; state of other views is compressed with the
+ * shared dictionary.  The dictionary of a view is dropped whenever its
+ * Facelet is compiled, so that it is built again from the current source
+ * of the view once the view is refreshed.
+ * </p>
+ *
+ * <p>
+ * Each compressed state starts with the SHA-256 digest of the dictionary it
+ * was written with, which also versions the dictionary of a view: once the
+ * source of a view changes, so does its digest.  State written with a
+ * dictionary other than the shared one or the one of its view (for example
+ * by a different version of the application) cannot be read, and is
+ * reported as <code>null</code> so that a <code>ViewExpiredException</code>
+ * results.  GZIP compressed state, as written when this compressor is
+ * disabled, is still accepted.  The size of the decompressed state is
+ * limited by
+ * {@link WebConfiguration.WebContextInitParameter#ViewStateDictionaryMaxInflatedBytes}.
+ * </p>
+ *
+ * <p>
+ * Both server side and client side state are compressed this way.  Client
+ * side state is compressed before it is encrypted, and decompressed only
+ * once it has been decrypted and its MAC checked.
+ * </p>
+ *
+ * <p>
+ * There is one instance per application, which also collects the hit rate
+ * and compression ratio; see {@link #getInstance(ExternalContext, SerializationProvider)}.
+ * </p>
+ */
+public final class DictionaryStateCompressor {
+
+    private static final Logger LOGGER = FacesLogger.RENDERKIT.getLogger();
+
+    private static final String INSTANCE_KEY = DictionaryStateCompressor.class.getName();
+
+    /**
+     * The first byte of state written by this compressor; neither zlib nor
+     * GZIP output can start with it.
+     */
+    private static final byte FORMAT = 0x01;
+
+    private static final int DIGEST_LENGTH = 32;
+
+    /**
+     * The deflate window; dictionary content further back than this is
+     * never referenced.
+     */
+    private static final int MAX_DICTIONARY_SIZE = 32 * 1024;
+
+    /*
+     * The components whose property keys make up the built-in dictionary.
+     */
+    private static final String[] PROPERTY_KEYS = {
+          "javax.faces.component.UIComponent$PropertyKeys",
+          "javax.faces.component.UIOutput$PropertyKeys",
+          "javax.faces.component.UIInput$PropertyKeys",
+          "javax.faces.component.UICommand$PropertyKeys",
+          "javax.faces.component.UIForm$PropertyKeys",
+          "javax.faces.component.UIData$PropertyKeys",
+          "javax.faces.component.UIViewRoot$PropertyKeys",
+          "javax.faces.component.html.HtmlInputText$PropertyKeys",
+          "javax.faces.component.html.HtmlOutputText$PropertyKeys",
+          "javax.faces.component.html.HtmlCommandButton$PropertyKeys",
+          "javax.faces.component.html.HtmlPanelGroup$PropertyKeys",
+          "javax.faces.component.html.HtmlForm$PropertyKeys"
+    };
+
+    /*
+     * The structural strings of a view source: the values of id attributes
+     * and EL expressions.
+     */
+    private static final Pattern STRUCTURAL_STRINGS =
+          Pattern.compile("\\sid\\s*=\\s*(?:\"([^\"]*)\"|'([^']*)')|([#$]\\{[^}]*\\})");
+
+    private static final Pattern COMMENTS = Pattern.compile("<!--.*?-->", Pattern.DOTALL);
+
+    private static final ThreadLocal<Deflater> DEFLATER = new ThreadLocal<Deflater>() {
+        @Override
+        protected Deflater initialValue() {
+            return new Deflater(Deflater.DEFAULT_COMPRESSION);
+        }
+    };
+
+    private static final ThreadLocal<Inflater> INFLATER = new ThreadLocal<Inflater>() {
+        @Override
+        protected Inflater initialValue() {
+            return new Inflater();
+        }
+    };
+
+    private final Dictionary shared;
+    private final int maxInflatedBytes;
+    private final int maxViews;
+    private final Function<String, byte[]> viewSources;
+
+    private final ConcurrentMap<String, Dictionary> views = new ConcurrentHashMap<>();
+
+    private final LongAdder compressions = new LongAdder();
+    private final LongAdder dictionaryHits = new LongAdder();
+    private final LongAdder uncompressedBytes = new LongAdder();
+    private final LongAdder compressedBytes = new LongAdder();
+    private final LongAdder unknownDictionaries = new LongAdder();
+
+
+    // ------------------------------------------------------------ Constructors
+
+
+    /**
+     * @param dictionary the shared preset dictionary, only its last 32KB are used
+     * @param maxInflatedBytes the maximum size of a decompressed state,
+     *  unlimited if not positive
+     */
+    DictionaryStateCompressor(byte[] dictionary, int maxInflatedBytes) {
+
+        this(dictionary, maxInflatedBytes, 0, null);
+
+    }
+
+
+    /**
+     * @param dictionary the shared preset dictionary, only its last 32KB are used
+     * @param maxInflatedBytes the maximum size of a decompressed state,
+     *  unlimited if not positive
+     * @param maxViews the maximum number of view dictionaries to keep
+     * @param viewSources returns the source of a view given its id, or
+     *  <code>null</code> if it cannot be found; if <code>null</code>, views
+     *  have no dictionary of their own
+     */
+    DictionaryStateCompressor(byte[] dictionary,
+                              int maxInflatedBytes,
+                              int maxViews,
+                              Function<String, byte[]> viewSources) {
+
+        this.shared = new Dictionary(dictionary);
+        this.maxInflatedBytes = ((maxInflatedBytes > 0) ? maxInflatedBytes : Integer.MAX_VALUE);
+        this.maxViews = maxViews;
+        this.viewSources = viewSources;
+
+    }
+
+
+    // ---------------------------------------------------------- Public Methods
+
+
+    /**
+     * @param extContext the <code>ExternalContext</code> for the current application
+     * @param serialProvider the <code>SerializationProvider</code> used to
+     *  build the dictionary, if the application does not provide one
+     * @return the <code>DictionaryStateCompressor</code> of the current
+     *  application, creating it if necessary
+     */
+    public static DictionaryStateCompressor getInstance(ExternalContext extContext,
+                                                        SerializationProvider serialProvider) {
+
+        Map<String, Object> appMap = extContext.getApplicationMap();
+        DictionaryStateCompressor compressor = (DictionaryStateCompressor) appMap.get(INSTANCE_KEY);
+        if (compressor == null) {
+            synchronized (DictionaryStateCompressor.class) {
+                compressor = (DictionaryStateCompressor) appMap.get(INSTANCE_KEY);
+                if (compressor == null) {
+                    WebConfiguration webConfig = WebConfiguration.getInstance(extContext);
+                    byte[] dictionary = readDictionary(extContext,
+                                                       webConfig.getOptionValue(ViewStateDictionary));
+                    if (dictionary == null) {
+                        dictionary = buildDictionary(serialProvider);
+                    }
+                    compressor = new DictionaryStateCompressor(
+                          dictionary,
+                          parseInt(webConfig, ViewStateDictionaryMaxInflatedBytes),
+                          parseInt(webConfig, ViewStateDictionaryMaxViews),
+                          DictionaryStateCompressor::readViewSource);
+                    appMap.put(INSTANCE_KEY, compressor);
+                }
+            }
+        }
+        return compressor;
+
+    }
+
+
+    /**
+     * <p>
+     * Drops the dictionary of <code>viewId</code>, if the compressor of the
+     * current application has been created and keeps one, so that it is
+     * built again from the current source of the view when next needed.
+     * </p>
+     *
+     * @param extContext the <code>ExternalContext</code> for the current application
+     * @param viewId the id of the view whose Facelet has been compiled
+     */
+    public static void viewCompiled(ExternalContext extContext, String viewId) {
+
+        DictionaryStateCompressor compressor =
+              (DictionaryStateCompressor) extContext.getApplicationMap().get(INSTANCE_KEY);
+        if (compressor != null) {
+            compressor.dropViewDictionary(viewId);
+        }
+
+    }
+
+
+    /**
+     * @return the fraction of compressed states that were compressed using
+     *  the dictionary of their view rather than the shared dictionary
+     */
+    public double getHitRate() {
+
+        long total = compressions.sum();
+        return ((total == 0) ? 0.0 : (double) dictionaryHits.sum() / total);
+
+    }
+
+
+    /**
+     * @return the total number of uncompressed bytes divided by the total
+     *  number of compressed bytes written so far
+     */
+    public double getCompressionRatio() {
+
+        long compressed = compressedBytes.sum();
+        return ((compressed == 0) ? 0.0 : (double) uncompressedBytes.sum() / compressed);
+
+    }
+
+
+    /**
+     * @return the number of states that have been compressed
+     */
+    public long getCompressionCount() {
+
+        return compressions.sum();
+
+    }
+
+
+    /**
+     * @return the number of states that could not be decompressed because
+     *  the dictionary they were written with is not known
+     */
+    public long getUnknownDictionaryCount() {
+
+        return unknownDictionaries.sum();
+
+    }
+
+
+    /**
+     * @return the number of views whose dictionary is kept
+     */
+    public int getDictionaryCount() {
+
+        return views.size();
+
+    }
+
+
+    // --------------------------------------------------------- Package Methods
+
+
+    /**
+     * @param viewId the id of the view whose dictionary is to be built again
+     *  from the source of the view when next needed
+     */
+    void dropViewDictionary(String viewId) {
+
+        views.remove(viewId);
+
+    }
+
+
+    /**
+     * @param viewId the id of the view the state belongs to, or
+     *  <code>null</code> to use the shared dictionary
+     * @param state the serialized state
+     * @param length the number of bytes of <code>state</code> to compress
+     * @return the compressed state
+     */
+    byte[] compress(String viewId, byte[] state, int length) {
+
+        Dictionary dictionary = getViewDictionary(viewId, false);
+        Deflater deflater = DEFLATER.get();
+        deflater.reset();
+        deflater.setDictionary(dictionary.bytes);
+        deflater.setInput(state, 0, length);
+        deflater.finish();
+        byte[] result = new byte[Math.max(64, length / 2) + 1 + DIGEST_LENGTH];
+        result[0] = FORMAT;
+        System.arraycopy(dictionary.digest, 0, result, 1, DIGEST_LENGTH);
+        int size = 1 + DIGEST_LENGTH;
+        while (!deflater.finished()) {
+            if (size == result.length) {
+                result = Arrays.copyOf(result, result.length * 2);
+            }
+            size += deflater.deflate(result, size, result.length - size);
+        }
+
+        compressions.increment();
+        if (dictionary != shared) {
+            dictionaryHits.increment();
+        }
+        uncompressedBytes.add(length);
+        compressedBytes.add(size);
+        return Arrays.copyOf(result, size);
+
+    }
+
+
+    /**
+     * @param viewId the id of the view the state belongs to, or
+     *  <code>null</code> if not known
+     * @param state the compressed state
+     * @param length the number of bytes of <code>state</code> to decompress
+     * @return a stream over the decompressed state, or <code>null</code>
+     *  if <code>state</code> was written with another dictionary
+     * @throws IOException if <code>state</code> is not valid compressed data,
+     *  or is larger than allowed once decompressed
+     */
+    InputStream decompress(String viewId, byte[] state, int length) throws IOException {
+
+        if (length > 1 && state[0] == (byte) 0x1f && state[1] == (byte) 0x8b) {
+            return new GZIPInputStream(new ByteArrayInputStream(state, 0, length), 1024);
+        }
+        if (length <= DIGEST_LENGTH || state[0] != FORMAT) {
+            throw new IOException("Unknown view state compression format");
+        }
+        byte[] digest = Arrays.copyOfRange(state, 1, 1 + DIGEST_LENGTH);
+        Dictionary dictionary = shared;
+        if (!MessageDigest.isEqual(shared.digest, digest)) {
+            dictionary = getViewDictionary(viewId, true);
+            if (!MessageDigest.isEqual(dictionary.digest, digest)) {
+                unknownDictionaries.increment();
+                if (LOGGER.isLoggable(Level.FINE)) {
+                    LOGGER.log(Level.FINE,
+                               "View state of {0} was compressed with an unknown dictionary",
+                               viewId);
+                }
+                return null;
+            }
+        }
+
+        Inflater inflater = INFLATER.get();
+        inflater.reset();
+        inflater.setInput(state, 1 + DIGEST_LENGTH, length - 1 - DIGEST_LENGTH);
+        byte[] result = new byte[Math.min(Math.max(256, length * 4), maxInflatedBytes)];
+        int size = 0;
+        try {
+            while (!inflater.finished()) {
+                if (size == result.length) {
+                    if (size >= maxInflatedBytes) {
+                        throw new IOException("Decompressed view state exceeds "
+                                              + maxInflatedBytes + " bytes");
+                    }
+                    result = Arrays.copyOf(result, (int) Math.min((long) result.length * 2, maxInflatedBytes));
+                }
+                int n = inflater.inflate(result, size, result.length - size);
+                size += n;
+                if (n == 0) {
+                    if (inflater.needsDictionary()) {
+                        inflater.setDictionary(dictionary.bytes);
+                    } else if (inflater.needsInput()) {
+                        throw new IOException("Unexpected end of compressed view state");
+                    }
+                }
+            }
+        } catch (DataFormatException | IllegalArgumentException e) {
+            // IllegalArgumentException: the dictionary does not match the stream
+            throw new IOException(e);
+        }
+        return new ByteArrayInputStream(result, 0, size);
+
+    }
+
+
+    /**
+     * <p>
+     * Builds the default dictionary: a serialized sample of component state,
+     * followed by the names of common properties.  The sample only depends
+     * on the classes of the application and on <code>serialProvider</code>,
+     * so it is the same on every node running the application.
+     * </p>
+     *
+     * @param serialProvider the provider used to serialize view state
+     * @return the dictionary
+     */
+    static byte[] buildDictionary(SerializationProvider serialProvider) {
+
+        List<Object> keys = new ArrayList<>();
+        StringBuilder names = new StringBuilder();
+        for (String className : PROPERTY_KEYS) {
+            try {
+                for (Object key : Class.forName(className).getEnumConstants()) {
+                    keys.add(key);
+                    names.append(key).append(' ');
+                }
+            } catch (ClassNotFoundException cnfe) {
+                // not part of the sample
+            }
+        }
+
+        HashMap<Object, Object> components = new HashMap<>();
+        components.put("j_idt1:j_idt2", new Object[] {
+              new Object[] { keys.toArray(), Boolean.TRUE, Integer.valueOf(1), "" },
+              CompactStateFormat.newStateHolderSaver(),
+              new ArrayList<Object>()
+        });
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(4096);
+        try (ObjectOutputStream out = serialProvider.createObjectOutputStream(baos)) {
+            out.writeObject(new Object[] { components, null });
+        } catch (IOException ioe) {
+            throw new FacesException(ioe);
+        }
+        baos.write(names.toString().getBytes(StandardCharsets.US_ASCII), 0, names.length());
+        return baos.toByteArray();
+
+    }
+
+
+    /**
+     * <p>
+     * Builds the dictionary of a view: <code>shared</code> followed by the
+     * view id, and by the values of the <code>id</code> attributes and the
+     * EL expressions found in <code>source</code>, each once and in the
+     * order they first appear.  Comments are skipped.
+     * </p>
+     *
+     * @param shared the shared dictionary
+     * @param viewId the id of the view
+     * @param source the source of the view
+     * @return the dictionary
+     */
+    static byte[] buildViewDictionary(byte[] shared, String viewId, byte[] source) {
+
+        String text = COMMENTS.matcher(new String(source, StandardCharsets.UTF_8)).replaceAll("");
+        Set<String> strings = new LinkedHashSet<>();
+        strings.add(viewId);
+        for (Matcher m = STRUCTURAL_STRINGS.matcher(text); m.find(); ) {
+            for (int i = 1; i <= m.groupCount(); i++) {
+                if (m.group(i) != null && m.group(i).length() > 0) {
+                    strings.add(m.group(i));
+                }
+            }
+        }
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(shared.length + text.length() / 4);
+        baos.write(shared, 0, shared.length);
+        for (String string : strings) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            baos.write(bytes, 0, bytes.length);
+            baos.write(' ');
+        }
+        return baos.toByteArray();
+
+    }
+
+
+    // --------------------------------------------------------- Private Methods
+
+
+    /**
+     * @param viewId the id of a view, or <code>null</code>
+     * @param always <code>true</code> to build the dictionary of the view
+     *  even if no more view dictionaries can be kept
+     * @return the dictionary of the view, or the shared dictionary if the
+     *  view has none
+     */
+    private Dictionary getViewDictionary(String viewId, boolean always) {
+
+        if (viewId == null || viewSources == null) {
+            return shared;
+        }
+        Dictionary dictionary = views.get(viewId);
+        if (dictionary == null) {
+            boolean full = (views.size() >= maxViews);
+            if (full && !always) {
+                return shared;
+            }
+            byte[] source = viewSources.apply(viewId);
+            dictionary = ((source != null)
+                          ? new Dictionary(buildViewDictionary(shared.bytes, viewId, source))
+                          : shared);
+            if (!full) {
+                Dictionary existing = views.putIfAbsent(viewId, dictionary);
+                if (existing != null) {
+                    dictionary = existing;
+                }
+            }
+        }
+        return dictionary;
+
+    }
+
+
+    private static byte[] readViewSource(String viewId) {
+
+        FacesContext ctx = FacesContext.getCurrentInstance();
+        if (ctx == null) {
+            return null;
+        }
+        ViewResource resource = ctx.getApplication().getResourceHandler().createViewResource(ctx, viewId);
+        URL url = ((resource != null) ? resource.getURL() : null);
+        if (url == null) {
+            return null;
+        }
+        try (InputStream in = url.openStream()) {
+            return readFully(in);
+        } catch (IOException ioe) {
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.log(Level.FINE, "Unable to read the source of view " + viewId, ioe);
+            }
+            return null;
+        }
+
+    }
+
+
+    private static byte[] readDictionary(ExternalContext extContext, String path) {
+
+        if (path == null || path.length() == 0) {
+            return null;
+        }
+        try (InputStream in = extContext.getResourceAsStream(path)) {
+            if (in != null) {
+                return readFully(in);
+            }
+        } catch (IOException ioe) {
+            if (LOGGER.isLoggable(Level.WARNING)) {
+                LOGGER.log(Level.WARNING, "Unable to read view state dictionary " + path, ioe);
+            }
+            return null;
+        }
+        if (LOGGER.isLoggable(Level.WARNING)) {
+            LOGGER.log(Level.WARNING,
+                       "View state dictionary {0} not found, using the default dictionary",
+                       path);
+        }
+        return null;
+
+    }
+
+
+    private static byte[] readFully(InputStream in) throws IOException {
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(MAX_DICTIONARY_SIZE);
+        byte[] buf = new byte[4096];
+        for (int n; (n = in.read(buf)) != -1; ) {
+            out.write(buf, 0, n);
+        }
+        return out.toByteArray();
+
+    }
+
+
+    private static byte[] sha256(byte[] bytes) {
+
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(bytes);
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new FacesException(nsae);
+        }
+
+    }
+
+
+    private static int parseInt(WebConfiguration webConfig,
+                                WebConfiguration.WebContextInitParameter param) {
+
+        String value = webConfig.getOptionValue(param);
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException nfe) {
+            if (LOGGER.isLoggable(Level.WARNING)) {
+                LOGGER.log(Level.WARNING,
+                           "Invalid value ''{0}'' for {1}, using {2}",
+                           new Object[] { value, param.getQualifiedName(), param.getDefaultValue() });
+            }
+            return Integer.parseInt(param.getDefaultValue());
+        }
+
+    }
+
+
+
+    // ----------------------------------------------------------- Inner Classes
+
+
+    /*
+     * A preset dictionary and its digest.
+     */
+    private static final class Dictionary {
+
+        final byte[] bytes;
+        final byte[] digest;
+
+        Dictionary(byte[] dictionary) {
+
+            bytes = Arrays.copyOfRange(dictionary,
+                                       Math.max(0, dictionary.length - MAX_DICTIONARY_SIZE),
+                                       dictionary.length);
+            digest = sha256(bytes);
+
+        }
+
+    }
+
+}
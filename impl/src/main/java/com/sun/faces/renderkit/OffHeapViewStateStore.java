@@ -0,0 +1,482 @@
+/*
+ * Copyright (c) 1997, 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.faces.renderkit;
+
+import static com.sun.faces.config.WebConfiguration.BooleanWebContextInitParameter.SerializeServerState;
+import static com.sun.faces.config.WebConfiguration.BooleanWebContextInitParameter.SerializeServerStateDeprecated;
+import static com.sun.faces.config.WebConfiguration.WebContextInitParameter.ViewStateStoreDirectory;
+import static com.sun.faces.config.WebConfiguration.WebContextInitParameter.ViewStateStoreMaxOffHeapBytes;
+import static com.sun.faces.config.WebConfiguration.WebContextInitParameter.ViewStateStoreSlabSize;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectStreamException;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.faces.context.FacesContext;
+
+import com.sun.faces.config.WebConfiguration;
+import com.sun.faces.config.WebConfiguration.WebContextInitParameter;
+import com.sun.faces.util.FacesLogger;
+
+/**
+ * <p>
+ * A {@link ConcurrentViewStateStore} that keeps serialized view state
+ * outside of the Java heap.  The session only holds a small handle per view;
+ * the state bytes live in fixed size blocks carved out of large slabs that
+ * are either direct <code>ByteBuffer</code>s or, if
+ * {@link WebContextInitParameter#ViewStateStoreDirectory} is set, memory
+ * mapped files within that directory.
+ * </p>
+ *
+ * <p>
+ * Blocks are returned to the free list once their handle is no longer
+ * reachable, which covers both eviction from the session and session
+ * expiry without any additional bookkeeping.  When a session is
+ * serialized (passivation or replication) the handles are replaced with
+ * the plain <code>byte[]</code> state.
+ * </p>
+ *
+ * <p>
+ * This store only has an effect if server state is serialized (see
+ * {@link com.sun.faces.config.WebConfiguration.BooleanWebContextInitParameter#SerializeServerState});
+ * otherwise the state tree is kept on the heap as usual.  If the off-heap
+ * capacity ({@link WebContextInitParameter#ViewStateStoreMaxOffHeapBytes}) is
+ * exhausted, state is kept on the heap until blocks become available again.
+ * </p>
+ */
+public class OffHeapViewStateStore extends ConcurrentViewStateStore {
+
+    private static final Logger LOGGER = FacesLogger.APPLICATION.getLogger();
+
+    /**
+     * The size of a single block within a slab.
+     */
+    private static final int BLOCK_SIZE = 4096;
+
+    private final Slabs slabs;
+
+
+    // ------------------------------------------------------------ Constructors
+
+
+    /**
+     * Construct a new <code>OffHeapViewStateStore</code> using the
+     * configuration of the current application.
+     */
+    public OffHeapViewStateStore() {
+
+        WebConfiguration webConfig = WebConfiguration.getInstance();
+        if (LOGGER.isLoggable(Level.WARNING)
+              && !webConfig.isOptionEnabled(SerializeServerState)
+              && !webConfig.isOptionEnabled(SerializeServerStateDeprecated)) {
+            LOGGER.log(Level.WARNING,
+                       "{0} requires {1} to be enabled, view state will be kept on the heap",
+                       new Object[] { getClass().getName(),
+                                      SerializeServerState.getQualifiedName() });
+        }
+        String directory = webConfig.getOptionValue(ViewStateStoreDirectory);
+        slabs = new Slabs(parseInt(webConfig, ViewStateStoreSlabSize),
+                          parseLong(webConfig, ViewStateStoreMaxOffHeapBytes),
+                          ((directory != null && directory.length() > 0)
+                           ? new File(directory)
+                           : null));
+
+    }
+
+
+    /**
+     * Construct a new <code>OffHeapViewStateStore</code> using the
+     * specified bounds.
+     *
+     * @param numberOfLogicalViews the maximum number of logical views per session
+     * @param numberOfViews the maximum number of actual views per logical view
+     * @param numberOfStateBytes the maximum number of serialized state bytes
+     *  per session, or a value less than one for no limit
+     * @param slabSize the size of each slab in bytes
+     * @param maxOffHeapBytes the maximum number of bytes held off-heap
+     * @param directory the directory for memory mapped slabs, or
+     *  <code>null</code> to use direct buffers
+     */
+    public OffHeapViewStateStore(int numberOfLogicalViews,
+                                 int numberOfViews,
+                                 long numberOfStateBytes,
+                                 int slabSize,
+                                 long maxOffHeapBytes,
+                                 File directory) {
+
+        super(numberOfLogicalViews, numberOfViews, numberOfStateBytes);
+        slabs = new Slabs(slabSize, maxOffHeapBytes, directory);
+
+    }
+
+
+    // ---------------------------------------------------------- Public Methods
+
+
+    /**
+     * @return the number of bytes currently held off-heap, rounded up to
+     *  whole blocks
+     */
+    public long getOffHeapBytes() {
+
+        return slabs.getUsedBytes();
+
+    }
+
+
+    // ---------------------------------------------- Methods from ViewStateStore
+
+
+    @Override
+    public void put(FacesContext context,
+                    String logicalViewId,
+                    String actualViewId,
+                    Object[] state) {
+
+        Object savedState = state[1];
+        if (savedState instanceof byte[]) {
+            OffHeapState handle = slabs.store((byte[]) savedState);
+            if (handle != null) {
+                savedState = handle;
+            }
+        }
+        super.put(context,
+                  logicalViewId,
+                  actualViewId,
+                  new Object[] { state[0], savedState });
+
+    }
+
+
+    @Override
+    public Object[] get(FacesContext context,
+                        String logicalViewId,
+                        String actualViewId) {
+
+        Object[] state = super.get(context, logicalViewId, actualViewId);
+        if (state != null && state[1] instanceof OffHeapState) {
+            state[1] = ((OffHeapState) state[1]).getBytes();
+        }
+        return state;
+
+    }
+
+
+    // ------------------------------------------------------- Protected Methods
+
+
+    @Override
+    protected int getWeight(Object state) {
+
+        if (state instanceof OffHeapState) {
+            return ((OffHeapState) state).length;
+        }
+        return super.getWeight(state);
+
+    }
+
+
+    // --------------------------------------------------------- Private Methods
+
+
+    private static int parseInt(WebConfiguration webConfig,
+                                WebContextInitParameter param) {
+
+        return (int) Math.min(parseLong(webConfig, param), Integer.MAX_VALUE);
+
+    }
+
+
+    private static long parseLong(WebConfiguration webConfig,
+                                  WebContextInitParameter param) {
+
+        try {
+            return Long.parseLong(webConfig.getOptionValue(param));
+        } catch (NumberFormatException nfe) {
+            if (LOGGER.isLoggable(Level.WARNING)) {
+                LOGGER.log(Level.WARNING,
+                           "jsf.state.server.cannot.parse.int.option",
+                           new Object[] { param.getQualifiedName(),
+                                          param.getDefaultValue() });
+            }
+            return Long.parseLong(param.getDefaultValue());
+        }
+
+    }
+
+
+    // ----------------------------------------------------------- Inner Classes
+
+
+    /**
+     * <p>
+     * The handle kept in the session in place of the serialized state.
+     * </p>
+     */
+    static final class OffHeapState implements Serializable {
+
+        private static final long serialVersionUID = -4319402683711581329L;
+
+        private final transient Slabs slabs;
+        private final transient int[] blocks;
+        private final int length;
+
+
+        OffHeapState(Slabs slabs, int[] blocks, int length) {
+
+            this.slabs = slabs;
+            this.blocks = blocks;
+            this.length = length;
+
+        }
+
+
+        byte[] getBytes() {
+
+            // Keeps this handle reachable, so that its blocks cannot be
+            // released and reused by another store() while being copied
+            synchronized (this) {
+                return slabs.read(blocks, length);
+            }
+
+        }
+
+
+        /*
+         * Slabs are local to this JVM; anything that leaves it carries
+         * the state itself.
+         */
+        private Object writeReplace() throws ObjectStreamException {
+
+            return getBytes();
+
+        }
+
+    } // END OffHeapState
+
+
+    /**
+     * <p>
+     * Tracks an <code>OffHeapState</code> so that its blocks can be
+     * released once the handle has been collected.
+     * </p>
+     */
+    private static final class BlockReference extends PhantomReference<OffHeapState> {
+
+        private final int[] blocks;
+
+
+        BlockReference(OffHeapState referent,
+                       ReferenceQueue<? super OffHeapState> queue) {
+
+            super(referent, queue);
+            this.blocks = referent.blocks;
+
+        }
+
+    } // END BlockReference
+
+
+    /**
+     * <p>
+     * Fixed size block allocator on top of off-heap slabs.  Allocation
+     * and release only hold the allocator's monitor for the duration of
+     * a few array operations; copying the state in and out happens
+     * outside of it on private views of the slabs.
+     * </p>
+     */
+    static final class Slabs {
+
+        private final int blocksPerSlab;
+        private final int maxSlabs;
+        private final File directory;
+        private final ReferenceQueue<OffHeapState> queue = new ReferenceQueue<>();
+        private final Set<BlockReference> references =
+              Collections.newSetFromMap(new ConcurrentHashMap<BlockReference, Boolean>());
+
+        private volatile ByteBuffer[] slabs = new ByteBuffer[0];
+        private int[] freeBlocks = new int[0];
+        private int freeCount;
+        private long usedBlocks;
+
+
+        Slabs(int slabSize, long maxBytes, File directory) {
+
+            this.blocksPerSlab = Math.max(slabSize / BLOCK_SIZE, 1);
+            this.maxSlabs = (int) Math.max(maxBytes / ((long) blocksPerSlab * BLOCK_SIZE), 0);
+            this.directory = directory;
+
+        }
+
+
+        OffHeapState store(byte[] bytes) {
+
+            expungeStaleReferences();
+            int[] blocks = allocate((bytes.length + BLOCK_SIZE - 1) / BLOCK_SIZE);
+            if (blocks == null) {
+                return null;
+            }
+            ByteBuffer[] current = slabs;
+            for (int i = 0, offset = 0; i < blocks.length; i++, offset += BLOCK_SIZE) {
+                ByteBuffer block = view(current, blocks[i]);
+                block.put(bytes, offset, Math.min(BLOCK_SIZE, bytes.length - offset));
+            }
+            OffHeapState handle = new OffHeapState(this, blocks, bytes.length);
+            references.add(new BlockReference(handle, queue));
+            return handle;
+
+        }
+
+
+        byte[] read(int[] blocks, int length) {
+
+            byte[] bytes = new byte[length];
+            ByteBuffer[] current = slabs;
+            for (int i = 0, offset = 0; i < blocks.length; i++, offset += BLOCK_SIZE) {
+                ByteBuffer block = view(current, blocks[i]);
+                block.get(bytes, offset, Math.min(BLOCK_SIZE, length - offset));
+            }
+            return bytes;
+
+        }
+
+
+        long getUsedBytes() {
+
+            expungeStaleReferences();
+            synchronized (this) {
+                return usedBlocks * BLOCK_SIZE;
+            }
+
+        }
+
+
+        private ByteBuffer view(ByteBuffer[] current, int block) {
+
+            ByteBuffer slab = current[block / blocksPerSlab].duplicate();
+            int position = (block % blocksPerSlab) * BLOCK_SIZE;
+            slab.limit(position + BLOCK_SIZE);
+            slab.position(position);
+            return slab;
+
+        }
+
+
+        private void expungeStaleReferences() {
+
+            Reference<? extends OffHeapState> ref;
+            while ((ref = queue.poll()) != null) {
+                BlockReference blockRef = (BlockReference) ref;
+                references.remove(blockRef);
+                release(blockRef.blocks);
+            }
+
+        }
+
+
+        private synchronized int[] allocate(int count) {
+
+            while (freeCount < count) {
+                if (!addSlab()) {
+                    return null;
+                }
+            }
+            int[] blocks = Arrays.copyOfRange(freeBlocks, freeCount - count, freeCount);
+            freeCount -= count;
+            usedBlocks += count;
+            return blocks;
+
+        }
+
+
+        private synchronized void release(int[] blocks) {
+
+            System.arraycopy(blocks, 0, freeBlocks, freeCount, blocks.length);
+            freeCount += blocks.length;
+            usedBlocks -= blocks.length;
+
+        }
+
+
+        private boolean addSlab() {
+
+            ByteBuffer[] current = slabs;
+            if (current.length >= maxSlabs) {
+                return false;
+            }
+            ByteBuffer slab;
+            try {
+                slab = allocateSlab();
+            } catch (IOException | OutOfMemoryError e) {
+                if (LOGGER.isLoggable(Level.WARNING)) {
+                    LOGGER.log(Level.WARNING,
+                               "Unable to allocate off-heap view state slab, view state will be kept on the heap",
+                               e);
+                }
+                return false;
+            }
+
+            int first = current.length * blocksPerSlab;
+            int[] free = Arrays.copyOf(freeBlocks, first + blocksPerSlab);
+            for (int i = blocksPerSlab - 1; i >= 0; i--) {
+                free[freeCount++] = first + i;
+            }
+            freeBlocks = free;
+            ByteBuffer[] grown = Arrays.copyOf(current, current.length + 1);
+            grown[current.length] = slab;
+            slabs = grown;
+            return true;
+
+        }
+
+
+        private ByteBuffer allocateSlab() throws IOException {
+
+            int size = blocksPerSlab * BLOCK_SIZE;
+            if (directory == null) {
+                return ByteBuffer.allocateDirect(size);
+            }
+
+            File file = File.createTempFile("mojarra-viewstate", ".slab", directory);
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+                 FileChannel channel = raf.getChannel()) {
+                // the mapping stays valid after the channel has been closed
+                return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            } finally {
+                if (!file.delete()) {
+                    file.deleteOnExit();
+                }
+            }
+
+        }
+
+    } // END Slabs
+
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 1997, 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.faces.renderkit;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * <p>
+ * Writes the same GZIP format as <code>java.util.zip.GZIPOutputStream</code>,
+ * so the result can be read by <code>GZIPInputStream</code>, but uses a
+ * <code>Deflater</code> that is kept per thread rather than allocating (and
+ * later finalizing) a new native deflater for every state save.
+ * </p>
+ */
+final class PooledGZIPOutputStream extends DeflaterOutputStream {
+
+    private static final ThreadLocal<Deflater> DEFLATER = new ThreadLocal<Deflater>() {
+        @Override
+        protected Deflater initialValue() {
+            return new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        }
+    };
+
+    private static final byte[] HEADER = {
+          (byte) 0x1f, (byte) 0x8b,  // magic
+          Deflater.DEFLATED,         // compression method
+          0,                         // flags
+          0, 0, 0, 0,                // modification time
+          0,                         // extra flags
+          0                          // operating system
+    };
+
+    private final CRC32 crc = new CRC32();
+    private boolean finished;
+
+
+    // ------------------------------------------------------------ Constructors
+
+
+    PooledGZIPOutputStream(OutputStream out, int size) throws IOException {
+
+        super(out, resetDeflater(), size);
+        out.write(HEADER);
+
+    }
+
+
+    // ------------------------------------------- Methods from DeflaterOutputStream
+
+
+    @Override
+    public synchronized void write(byte[] buf, int off, int len) throws IOException {
+
+        super.write(buf, off, len);
+        crc.update(buf, off, len);
+
+    }
+
+
+    @Override
+    public void finish() throws IOException {
+
+        if (finished) {
+            return;
+        }
+        super.finish();
+        writeInt((int) crc.getValue());
+        writeInt((int) def.getBytesRead());
+        finished = true;
+
+    }
+
+
+    // --------------------------------------------------------- Private Methods
+
+
+    private static Deflater resetDeflater() {
+
+        Deflater deflater = DEFLATER.get();
+        deflater.reset();
+        return deflater;
+
+    }
+
+
+    private void writeInt(int i) throws IOException {
+
+        out.write(i & 0xff);
+        out.write((i >> 8) & 0xff);
+        out.write((i >> 16) & 0xff);
+        out.write((i >> 24) & 0xff);
+
+    }
+
+}
@@ -17,6 +17,7 @@
 package com.sun.faces.renderkit;
 
 import static com.sun.faces.config.WebConfiguration.BooleanWebContextInitParameter.AutoCompleteOffOnViewState;
+import static com.sun.faces.config.WebConfiguration.BooleanWebContextInitParameter.CompressViewStateWithDictionary;
 import static com.sun.faces.config.WebConfiguration.BooleanWebContextInitParameter.EnableViewStateIdRendering;
 import static com.sun.faces.config.WebConfiguration.BooleanWebContextInitParameter.GenerateUniqueServerStateIds;
 import static com.sun.faces.config.WebConfiguration.BooleanWebContextInitParameter.SerializeServerState;
@@ -28,16 +29,15 @@ import static com.sun.faces.renderkit.RenderKitUtils.PredefinedPostbackParameter
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
-import java.util.Collections;
 import java.util.Map;
 import java.security.SecureRandom;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 
 import javax.faces.FacesException;
 import javax.faces.component.UIViewRoot;
@@ -48,9 +48,9 @@ import javax.faces.context.ResponseWriter;
 import com.sun.faces.config.WebConfiguration;
 import com.sun.faces.config.WebConfiguration.WebContextInitParameter;
 import com.sun.faces.util.FacesLogger;
-import com.sun.faces.util.LRUMap;
+import com.sun.faces.spi.ViewStateStore;
+import com.sun.faces.spi.ViewStateStoreFactory;
 import com.sun.faces.util.RequestStateManager;
-import com.sun.faces.util.TypedCollections;
 import com.sun.faces.util.Util;
 
 /**
@@ -101,6 +101,20 @@ public class ServerSideStateHelper extends StateHelper {
     protected final SecureRandom random;
 
 
+    /**
+     * The store holding the state of all views.
+     */
+    protected final ViewStateStore stateStore;
+
+
+    /**
+     * If not <code>null</code>, compressed view state is written using a
+     * preset dictionary rather than as GZIP.  Only set when
+     * <code>compressViewState</code> is <code>true</code>.
+     */
+    protected final DictionaryStateCompressor stateCompressor;
+
+
     // ------------------------------------------------------------ Constructors
 
 
@@ -124,6 +138,13 @@ public class ServerSideStateHelper extends StateHelper {
         } else {
             random = null;
         }
+        stateStore = ViewStateStoreFactory.createInstance(
+              FacesContext.getCurrentInstance().getExternalContext());
+        stateCompressor = ((compressViewState && webConfig.isOptionEnabled(CompressViewStateWithDictionary))
+                           ? DictionaryStateCompressor.getInstance(
+                                 FacesContext.getCurrentInstance().getExternalContext(),
+                                 serialProvider)
+                           : null);
 
     }
 
@@ -162,63 +183,34 @@ public class ServerSideStateHelper extends StateHelper {
             if (!ctx.getAttributes().containsKey("com.sun.faces.ViewStateValue")) {
                 Util.notNull("state", state);
                 Object[] stateToWrite = (Object[]) state;
-                ExternalContext externalContext = ctx.getExternalContext();
-                Object sessionObj = externalContext.getSession(true);
-                Map<String, Object> sessionMap = externalContext.getSessionMap();
-
-                //noinspection SynchronizationOnLocalVariableOrMethodParameter
-                synchronized (sessionObj) {
-                    Map<String, Map> logicalMap = TypedCollections.dynamicallyCastMap(
-                          (Map) sessionMap
-                                .get(LOGICAL_VIEW_MAP), String.class, Map.class);
-                    if (logicalMap == null) {
-                        logicalMap = Collections.synchronizedMap(new LRUMap<String, Map>(numberOfLogicalViews));
-                        sessionMap.put(LOGICAL_VIEW_MAP, logicalMap);
-                    }
-
-                    Object structure = stateToWrite[0];
-                    Object savedState = handleSaveState(stateToWrite[1]);
-
-                    String idInLogicalMap = (String)
-                              RequestStateManager.get(ctx, RequestStateManager.LOGICAL_VIEW_MAP);
-                    if (idInLogicalMap == null) {
-                        idInLogicalMap = ((generateUniqueStateIds)
-                                              ? createRandomId()
-                                              : createIncrementalRequestId(ctx));
-                    }
-                    String idInActualMap = null;
-                    if(ctx.getPartialViewContext().isPartialRequest()){
-                        // If partial request, do not change actual view Id, because page not actually changed.
-                        // Otherwise partial requests will soon overflow cache with values that would be never used.
-                        idInActualMap = (String) RequestStateManager.get(ctx, RequestStateManager.ACTUAL_VIEW_MAP);
-                    }
-                    if (null == idInActualMap) {
-                            idInActualMap = ((generateUniqueStateIds) ? createRandomId()
-                                                        : createIncrementalRequestId(ctx));
-                    }
-                    Map<String, Object[]> actualMap =
-                          TypedCollections.dynamicallyCastMap(
-                                logicalMap.get(idInLogicalMap), String.class, Object[].class);
-                    if (actualMap == null) {
-                        actualMap = new LRUMap<>(numberOfViews);
-                        logicalMap.put(idInLogicalMap, actualMap);
-                    }
-
-                    id = idInLogicalMap + ':' + idInActualMap;
+                Object structure = stateToWrite[0];
+                Object savedState = handleSaveState(viewRoot.getViewId(), stateToWrite[1]);
+
+                String idInLogicalMap = (String)
+                          RequestStateManager.get(ctx, RequestStateManager.LOGICAL_VIEW_MAP);
+                if (idInLogicalMap == null) {
+                    idInLogicalMap = ((generateUniqueStateIds)
+                                          ? createRandomId()
+                                          : createIncrementalRequestId(ctx));
+                }
+                String idInActualMap = null;
+                if(ctx.getPartialViewContext().isPartialRequest()){
+                    // If partial request, do not change actual view Id, because page not actually changed.
+                    // Otherwise partial requests will soon overflow cache with values that would be never used.
+                    idInActualMap = (String) RequestStateManager.get(ctx, RequestStateManager.ACTUAL_VIEW_MAP);
+                }
+                if (null == idInActualMap) {
+                        idInActualMap = ((generateUniqueStateIds) ? createRandomId()
+                                                    : createIncrementalRequestId(ctx));
+                }
 
-                    Object[] stateArray = actualMap.get(idInActualMap);
-                    // reuse the array if possible
-                    if (stateArray != null) {
-                        stateArray[0] = structure;
-                        stateArray[1] = savedState;
-                    } else {
-                        actualMap.put(idInActualMap, new Object[]{ structure, savedState });
-                    }
+                id = idInLogicalMap + ':' + idInActualMap;
 
-                    // always call put/setAttribute as we may be in a clustered environment.
-                    sessionMap.put(LOGICAL_VIEW_MAP, logicalMap);
-                    ctx.getAttributes().put("com.sun.faces.ViewStateValue", id);
-                }
+                stateStore.put(ctx,
+                               idInLogicalMap,
+                               idInActualMap,
+                               new Object[] { structure, savedState });
+                ctx.getAttributes().put("com.sun.faces.ViewStateValue", id);
             } else {
                 id = (String) ctx.getAttributes().get("com.sun.faces.ViewStateValue");
             }
@@ -291,33 +283,30 @@ public class ServerSideStateHelper extends StateHelper {
             return null;
         }
 
-        //noinspection SynchronizationOnLocalVariableOrMethodParameter
-        synchronized (sessionObj) {
-            Map logicalMap = (Map) externalCtx.getSessionMap() .get(LOGICAL_VIEW_MAP);
-            if (logicalMap != null) {
-                Map actualMap = (Map) logicalMap.get(idInLogicalMap);
-                if (actualMap != null) {
-                    RequestStateManager.set(ctx,
-                                            RequestStateManager.LOGICAL_VIEW_MAP,
-                                            idInLogicalMap);
-                    
-                    Object[] restoredState = new Object[2];
-                    Object[] state = (Object[]) actualMap.get(idInActualMap);
-                    if(state != null){
-                        restoredState[0] = state[0];
-                        restoredState[1] = state[1];
-                        
-                        RequestStateManager.set(ctx,
-                                                RequestStateManager.ACTUAL_VIEW_MAP,
-                                                idInActualMap);
-                        if (state.length == 2 && state[1] != null) {
-                            restoredState[1] = handleRestoreState(state[1]);
-                        }
+        if (stateStore.containsLogicalView(ctx, idInLogicalMap)) {
+            RequestStateManager.set(ctx,
+                                    RequestStateManager.LOGICAL_VIEW_MAP,
+                                    idInLogicalMap);
+
+            Object[] restoredState = new Object[2];
+            Object[] state = stateStore.get(ctx, idInLogicalMap, idInActualMap);
+            if (state != null) {
+                restoredState[0] = state[0];
+                restoredState[1] = state[1];
+
+                RequestStateManager.set(ctx,
+                                        RequestStateManager.ACTUAL_VIEW_MAP,
+                                        idInActualMap);
+                if (state.length == 2 && state[1] != null) {
+                    restoredState[1] = handleRestoreState(viewId, state[1]);
+                    if (restoredState[1] == null) {
+                        // written with another dictionary
+                        return null;
                     }
-
-                    return restoredState;
                 }
             }
+
+            return restoredState;
         }
 
         return null;
@@ -370,13 +359,28 @@ public class ServerSideStateHelper extends StateHelper {
      */
     protected Object handleSaveState(Object state) {
 
+        return handleSaveState(null, state);
+
+    }
+
+
+    /**
+     * @param viewId the id of the view whose state is saved, used to
+     *  select the dictionary if state is compressed with one
+     * @param state the object returned from <code>UIView.processSaveState</code>
+     * @return If {@link com.sun.faces.config.WebConfiguration.BooleanWebContextInitParameter#SerializeServerStateDeprecated} is
+     *  <code>true</code>, serialize and return the state, otherwise, return
+     *  <code>state</code> unchanged.
+     */
+    protected Object handleSaveState(String viewId, Object state) {
+
         if (webConfig.isOptionEnabled(SerializeServerStateDeprecated) || webConfig.isOptionEnabled(SerializeServerState)) {
             ByteArrayOutputStream baos = new ByteArrayOutputStream(1024);
             ObjectOutputStream oas = null;
             try {
                 oas = serialProvider
-                      .createObjectOutputStream(((compressViewState)
-                                                 ? new GZIPOutputStream(baos, 1024)
+                      .createObjectOutputStream(((compressViewState && stateCompressor == null)
+                                                 ? new PooledGZIPOutputStream(baos, 1024)
                                                  : baos));
                 //noinspection NonSerializableObjectPassedToObjectStream
                 oas.writeObject(state);
@@ -394,6 +398,9 @@ public class ServerSideStateHelper extends StateHelper {
                     }
                 }
             }
+            if (compressViewState && stateCompressor != null) {
+                return stateCompressor.compress(viewId, baos.toByteArray(), baos.size());
+            }
             return baos.toByteArray();
         } else {
             return state;
@@ -407,16 +414,45 @@ public class ServerSideStateHelper extends StateHelper {
      * @return an object that can be passed to <code>UIViewRoot.processRestoreState</code>.
      *  If {@link com.sun.faces.config.WebConfiguration.BooleanWebContextInitParameter#SerializeServerStateDeprecated} de-serialize the
      *  state prior to returning it, otherwise return <code>state</code> as is.
+     *  Returns <code>null</code> if the state was compressed with a dictionary
+     *  that is not known.
      */
     protected Object handleRestoreState(Object state) {
 
+        return handleRestoreState(null, state);
+
+    }
+
+
+    /**
+     * @param viewId the id of the view whose state is restored, used to
+     *  find the dictionary if state was compressed with one
+     * @param state the state as it was stored in the session
+     * @return an object that can be passed to <code>UIViewRoot.processRestoreState</code>.
+     *  If {@link com.sun.faces.config.WebConfiguration.BooleanWebContextInitParameter#SerializeServerStateDeprecated} de-serialize the
+     *  state prior to returning it, otherwise return <code>state</code> as is.
+     *  Returns <code>null</code> if the state was compressed with a dictionary
+     *  that is not known.
+     */
+    protected Object handleRestoreState(String viewId, Object state) {
+
         if (webConfig.isOptionEnabled(SerializeServerStateDeprecated) || webConfig.isOptionEnabled(SerializeServerState)) {
-            try (ByteArrayInputStream bais = new ByteArrayInputStream((byte[]) state);
-                 ObjectInputStream ois = serialProvider
-                      .createObjectInputStream(((compressViewState)
-                                                ? new GZIPInputStream(bais, 1024)
-                                                : bais));) {
-                return ois.readObject();
+            byte[] bytes = (byte[]) state;
+            try {
+                InputStream in;
+                if (!compressViewState) {
+                    in = new ByteArrayInputStream(bytes);
+                } else if (stateCompressor != null) {
+                    in = stateCompressor.decompress(viewId, bytes, bytes.length);
+                    if (in == null) {
+                        return null;
+                    }
+                } else {
+                    in = new GZIPInputStream(new ByteArrayInputStream(bytes), 1024);
+                }
+                try (ObjectInputStream ois = serialProvider.createObjectInputStream(in)) {
+                    return ois.readObject();
+                }
             } catch (Exception e) {
                 throw new FacesException(e);
             }
@@ -434,11 +470,21 @@ public class ServerSideStateHelper extends StateHelper {
      */
     private String createIncrementalRequestId(FacesContext ctx) {
 
-        Map<String, Object> sm = ctx.getExternalContext().getSessionMap();
+        ExternalContext externalContext = ctx.getExternalContext();
+        Map<String, Object> sm = externalContext.getSessionMap();
         AtomicInteger idgen =
               (AtomicInteger) sm.get(STATEMANAGED_SERIAL_ID_KEY);
         if (idgen == null) {
-            idgen = new AtomicInteger(1);
+            // concurrent requests of a new session must share one generator
+            Object sessionObj = externalContext.getSession(true);
+            //noinspection SynchronizationOnLocalVariableOrMethodParameter
+            synchronized (sessionObj) {
+                idgen = (AtomicInteger) sm.get(STATEMANAGED_SERIAL_ID_KEY);
+                if (idgen == null) {
+                    idgen = new AtomicInteger(1);
+                    sm.put(STATEMANAGED_SERIAL_ID_KEY, idgen);
+                }
+            }
         }
 
         // always call put/setAttribute as we may be in a clustered environment.
@@ -16,6 +16,10 @@
 
 package com.sun.faces.renderkit.html_basic;
 
+import static com.sun.faces.config.WebConfiguration.BooleanWebContextInitParameter.CombineResources;
+import static com.sun.faces.config.WebConfiguration.WebContextInitParameter.WebAppContractsDirectory;
+
+import com.sun.faces.application.resource.CombinedResource;
 import com.sun.faces.config.FaceletsConfiguration;
 import com.sun.faces.config.WebConfiguration;
 import com.sun.faces.renderkit.RenderKitUtils;
@@ -23,7 +27,16 @@ import com.sun.faces.renderkit.Attribute;
 import com.sun.faces.renderkit.AttributeManager;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 
+import javax.faces.application.ProjectStage;
+import javax.faces.application.Resource;
+import javax.faces.application.ResourceHandler;
 import javax.faces.component.UIComponent;
 import javax.faces.component.UIViewRoot;
 import javax.faces.context.FacesContext;
@@ -41,6 +54,11 @@ public class HeadRenderer extends Renderer {
     private static final Attribute[] HEAD_ATTRIBUTES =
           AttributeManager.getAttributes(AttributeManager.Key.OUTPUTHEAD);
 
+    private static final String SCRIPT_RENDERER_TYPE = "javax.faces.resource.Script";
+    private static final String STYLESHEET_RENDERER_TYPE = "javax.faces.resource.Stylesheet";
+
+    private static final String RUNS_KEY = HeadRenderer.class.getName() + ".runs";
+
     @Override
     public void decode(FacesContext context, UIComponent component) {
         // no-op
@@ -78,17 +96,275 @@ public class HeadRenderer extends Renderer {
     }
 
 
+    // --------------------------------------------------------- Package Methods
+
+
+    /**
+     * @param context the <code>FacesContext</code> for the current request
+     * @return <code>true</code> if head scripts and stylesheets are combined
+     */
+    static boolean isCombineResources(FacesContext context) {
+
+        WebConfiguration webConfig = WebConfiguration.getInstance(context.getExternalContext());
+        return (webConfig.isOptionEnabled(CombineResources)
+                && !context.isProjectStage(ProjectStage.Development));
+
+    }
+
+
+    /**
+     * <p>Groups the head resources into runs of consecutive scripts, or
+     * consecutive stylesheets for the same media, that can be combined.
+     * A component that cannot be combined is a run of its own, so the order
+     * of the resources in the page is unchanged.  A run has at most
+     * {@link CombinedResource#MAX_PARTS} components.</p>
+     *
+     * <p>The runs are computed once per request, when the preload hints
+     * are sent or else when the head is rendered, and computed again only
+     * if the head resources have changed since.</p>
+     *
+     * @param context the <code>FacesContext</code> for the current request
+     * @param components the component resources targeting the head
+     * @return the runs, in order
+     */
+    static List<Run> getRuns(FacesContext context, List<UIComponent> components) {
+
+        Map<Object, Object> attributes = context.getAttributes();
+        CachedRuns cached = (CachedRuns) attributes.get(RUNS_KEY);
+        if (cached != null && cached.isFor(components)) {
+            return cached.runs;
+        }
+        List<Run> runs = computeRuns(context, components);
+        attributes.put(RUNS_KEY, new CachedRuns(components, runs));
+        return runs;
+
+    }
+
+
     // --------------------------------------------------------- Private Methods
 
 
+    private static List<Run> computeRuns(FacesContext context, List<UIComponent> components) {
+
+        ResourceHandler resourceHandler = context.getApplication().getResourceHandler();
+        List<Run> runs = new ArrayList<>();
+        Run run = null;
+        for (UIComponent component : components) {
+            String key = getCombinableKey(context, component);
+            Resource resource = null;
+            if (key != null) {
+                Map<String, Object> attributes = component.getAttributes();
+                resource = resourceHandler.createResource((String) attributes.get("name"),
+                                                          (String) attributes.get("library"));
+            }
+            if (resource == null) {
+                runs.add(new Run(null, component, null));
+                run = null;
+            } else if (run != null
+                       && key.equals(run.key)
+                       && run.components.size() < CombinedResource.MAX_PARTS) {
+                run.add(component, resource);
+            } else {
+                run = new Run(key, component, resource);
+                runs.add(run);
+            }
+        }
+        return runs;
+
+    }
+
+
     private void encodeHeadResources(FacesContext context)
     throws IOException {
 
         UIViewRoot viewRoot = context.getViewRoot();
-        for (UIComponent resource : viewRoot.getComponentResources(context, "head")) {
+        List<UIComponent> resources = viewRoot.getComponentResources(context, "head");
+        if (!resources.isEmpty() && isCombineResources(context)) {
+            for (Run run : getRuns(context, resources)) {
+                encodeRun(context, run);
+            }
+            return;
+        }
+        for (UIComponent resource : resources) {
             resource.encodeAll(context);
         }
 
     }
-    
+
+
+    /*
+     * Renders the components of a run, referencing the combination of their
+     * resources if there are several of them still to be rendered.
+     */
+    private void encodeRun(FacesContext context, Run run)
+    throws IOException {
+
+        Run parts = run.getDistinctParts(context);
+        UIComponent first = parts.components.isEmpty() ? null : parts.components.get(0);
+        Renderer renderer = ((parts.components.size() > 1)
+                             ? context.getRenderKit().getRenderer(first.getFamily(), first.getRendererType())
+                             : null);
+        if (!(renderer instanceof ScriptStyleBaseRenderer)) {
+            for (UIComponent component : parts.components) {
+                component.encodeAll(context);
+            }
+            return;
+        }
+        ScriptStyleBaseRenderer scriptStyleRenderer = (ScriptStyleBaseRenderer) renderer;
+        CombinedResource combined = CombinedResource.create(context, parts.resources);
+        String resourceUrl = context.getExternalContext().encodeResourceURL(combined.getRequestPath());
+        ResponseWriter writer = context.getResponseWriter();
+        scriptStyleRenderer.startExternalElement(writer, first);
+        scriptStyleRenderer.endExternalElement(writer, first, resourceUrl);
+        ResourceHandler resourceHandler = context.getApplication().getResourceHandler();
+        for (UIComponent component : parts.components) {
+            Map<String, Object> attributes = component.getAttributes();
+            resourceHandler.markResourceRendered(context,
+                                                 (String) attributes.get("name"),
+                                                 (String) attributes.get("library"));
+        }
+
+    }
+
+
+    /*
+     * Returns what a component must have in common with the others of a run
+     * to be combined with them, or null if the resource it references cannot
+     * be combined with any other.
+     */
+    private static String getCombinableKey(FacesContext context, UIComponent component) {
+
+        String rendererType = component.getRendererType();
+        if (!SCRIPT_RENDERER_TYPE.equals(rendererType) && !STYLESHEET_RENDERER_TYPE.equals(rendererType)) {
+            return null;
+        }
+        Map<String, Object> attributes = component.getAttributes();
+        Object name = attributes.get("name");
+        Object library = attributes.get("library");
+        if (!component.isRendered()
+              || component.getChildCount() > 0
+              || !(name instanceof String)
+              || (library != null && !(library instanceof String))
+              || attributes.get(ScriptStyleBaseRenderer.COMP_KEY) != null
+              || hasPassThroughAttributes(component)
+              || !CombinedResource.isCombinable((String) name, (String) library)) {
+            return null;
+        }
+        if (library == null) {
+            String contracts = WebConfiguration.getInstance(context.getExternalContext())
+                                               .getOptionValue(WebAppContractsDirectory);
+            if (((String) name).startsWith(contracts)) {
+                return null;
+            }
+        }
+        return rendererType + ' ' + Objects.toString(attributes.get("media"), "");
+
+    }
+
+
+    private static boolean hasPassThroughAttributes(UIComponent component) {
+
+        Map<String, Object> passThroughAttributes = component.getPassThroughAttributes(false);
+        return (passThroughAttributes != null && !passThroughAttributes.isEmpty());
+
+    }
+
+
+    // ----------------------------------------------------------- Inner Classes
+
+
+    /**
+     * <p>Consecutive head components whose resources can be combined, or a
+     * single component rendered as usual, in which case it has no key and
+     * no resources.</p>
+     */
+    static final class Run {
+
+        final String key;
+        final List<UIComponent> components = new ArrayList<>(4);
+        final List<Resource> resources = new ArrayList<>(4);
+
+        Run(String key) {
+
+            this.key = key;
+
+        }
+
+        Run(String key, UIComponent component, Resource resource) {
+
+            this(key);
+            add(component, resource);
+
+        }
+
+        private void add(UIComponent component, Resource resource) {
+
+            components.add(component);
+            if (resource != null) {
+                resources.add(resource);
+            }
+
+        }
+
+        /**
+         * @param context the <code>FacesContext</code> for the current request
+         * @return the components of this run whose resources have not been
+         *  rendered yet, each resource once
+         */
+        Run getDistinctParts(FacesContext context) {
+
+            if (key == null) {
+                return this;
+            }
+            ResourceHandler resourceHandler = context.getApplication().getResourceHandler();
+            Set<String> names = new HashSet<>();
+            Run parts = new Run(key);
+            for (int i = 0; i < components.size(); i++) {
+                Map<String, Object> attributes = components.get(i).getAttributes();
+                String name = (String) attributes.get("name");
+                String library = (String) attributes.get("library");
+                if (!resourceHandler.isResourceRendered(context, name, library)
+                      && names.add(library + ':' + name)) {
+                    parts.add(components.get(i), resources.get(i));
+                }
+            }
+            return parts;
+
+        }
+
+    }
+
+
+    /**
+     * <p>The runs of the head resources of the current request, and the
+     * components they were computed from.</p>
+     */
+    private static final class CachedRuns {
+
+        private final UIComponent[] components;
+        final List<Run> runs;
+
+        CachedRuns(List<UIComponent> components, List<Run> runs) {
+
+            this.components = components.toArray(new UIComponent[components.size()]);
+            this.runs = runs;
+
+        }
+
+        boolean isFor(List<UIComponent> current) {
+
+            if (current.size() != components.length) {
+                return false;
+            }
+            for (int i = 0; i < components.length; i++) {
+                if (current.get(i) != components[i]) {
+                    return false;
+                }
+            }
+            return true;
+
+        }
+
+    }
+
 }
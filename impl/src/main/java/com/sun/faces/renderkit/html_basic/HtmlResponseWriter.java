@@ -118,6 +118,9 @@ public class HtmlResponseWriter extends ResponseWriter {
     // Keep one instance of the script buffer per Writer
     private FastStringWriter scriptBuffer;
 
+    // See getEncodingKey()
+    private String encodingKey;
+
     // Keep one instance of attributesBuffer to buffer the writing
     // of all attributes for a particular element to reduce the number
     // of writes
@@ -404,6 +407,65 @@ public class HtmlResponseWriter extends ResponseWriter {
     }
 
 
+    /**
+     * <p>Identifies the configuration that determines how this writer
+     * encodes markup.  Two writers with the same key produce the same
+     * output for the same sequence of calls, so output captured through one
+     * (see {@link #cloneWithWriter(java.io.Writer)}) may be replayed through
+     * the other with {@link #writePreEncoded(char[])}.</p>
+     *
+     * @return the encoding key of this writer
+     */
+    public String getEncodingKey() {
+
+        if (encodingKey == null) {
+            encodingKey = contentType + ';' + encoding + ';' + disableUnicodeEscaping
+                          + ';' + isScriptHidingEnabled + ';' + isScriptInAttributeValueEnabled
+                          + ';' + isPartial;
+        }
+        return encodingKey;
+
+    }
+
+
+    /**
+     * @return <code>true</code> if {@link #writePreEncoded(char[])} would
+     *  write markup given to it in the current state of this writer
+     */
+    public boolean canWritePreEncoded() {
+
+        return !(dontEscape || writingCdata || withinScript || withinStyle
+                 || (scriptBuffer != null && writer == scriptBuffer));
+
+    }
+
+
+    /**
+     * <p>Write markup that has already been encoded by a writer with the
+     * same {@link #getEncodingKey() encoding key}, closing any open start
+     * element first.  The markup must leave no element open.</p>
+     *
+     * <p>Nothing is written if the writer is in a state in which the markup
+     * would have been encoded differently, that is within a script or style
+     * element or a CDATA section.</p>
+     *
+     * @param markup the encoded markup
+     * @return <code>true</code> if <code>markup</code> has been written,
+     *  otherwise the caller must write it with the regular methods
+     * @throws IOException if an input/output error occurs
+     */
+    public boolean writePreEncoded(char[] markup) throws IOException {
+
+        if (!canWritePreEncoded()) {
+            return false;
+        }
+        closeStartIfNecessary();
+        writer.write(markup, 0, markup.length);
+        return true;
+
+    }
+
+
     /** Output the text for the end of a document. */
     @Override
     public void endDocument() throws IOException {
@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 1997, 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.faces.renderkit.html_basic;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.faces.application.Resource;
+import javax.faces.component.UIComponent;
+import javax.faces.component.UIViewRoot;
+import javax.faces.context.ExternalContext;
+import javax.faces.context.FacesContext;
+import javax.servlet.ServletResponseWrapper;
+
+import com.sun.faces.application.resource.CombinedResource;
+import com.sun.faces.config.WebConfiguration;
+import com.sun.faces.config.WebConfiguration.WebContextInitParameter;
+import com.sun.faces.util.FacesLogger;
+
+/**
+ * <p>
+ * Announces the scripts and stylesheets of a view in a <code>Link</code>
+ * response header with <code>rel=preload</code>, once the view is built and
+ * before it is rendered, so that user agents and proxies can start fetching
+ * them while the page is being rendered.
+ * </p>
+ *
+ * <p>
+ * The context parameter <code>com.sun.faces.resourcePreloadHints</code>
+ * selects the mode: <code>none</code>, the default; <code>link</code>, to
+ * add the header to the response; or <code>earlyHints</code>, to also send
+ * it in a <code>103 Early Hints</code> informational response, if the
+ * container offers a public <code>sendEarlyHints()</code> method on its
+ * response.
+ * </p>
+ */
+public final class ResourcePreloadHints {
+
+    private static final Logger LOGGER = FacesLogger.RENDERKIT.getLogger();
+
+    private static final String LINK_MODE = "link";
+    private static final String EARLY_HINTS_MODE = "earlyHints";
+
+    private static final String SCRIPT_RENDERER_TYPE = "javax.faces.resource.Script";
+    private static final String STYLESHEET_RENDERER_TYPE = "javax.faces.resource.Stylesheet";
+
+    /*
+     * The sendEarlyHints() method of each response class, if it has one.
+     */
+    private static final ConcurrentMap<Class<?>, Optional<Method>> EARLY_HINTS_METHODS =
+          new ConcurrentHashMap<>();
+
+
+    // ------------------------------------------------------------ Constructors
+
+
+    private ResourcePreloadHints() {
+    }
+
+
+    // ---------------------------------------------------------- Public Methods
+
+
+    /**
+     * <p>
+     * Sends the preload hints for the component resources of the given view,
+     * unless disabled, or the response is committed.
+     * </p>
+     *
+     * @param context the <code>FacesContext</code> for the current request
+     * @param viewRoot the view about to be rendered
+     */
+    public static void send(FacesContext context, UIViewRoot viewRoot) {
+
+        ExternalContext extContext = context.getExternalContext();
+        String mode = WebConfiguration.getInstance(extContext).getOptionValue(WebContextInitParameter.ResourcePreloadHints);
+        boolean earlyHints = EARLY_HINTS_MODE.equals(mode);
+        if ((!earlyHints && !LINK_MODE.equals(mode)) || extContext.isResponseCommitted()) {
+            return;
+        }
+
+        Set<String> links = new LinkedHashSet<>();
+        if (HeadRenderer.isCombineResources(context)) {
+            for (HeadRenderer.Run run : HeadRenderer.getRuns(context, viewRoot.getComponentResources(context, "head"))) {
+                HeadRenderer.Run parts = run.getDistinctParts(context);
+                if (parts.resources.size() > 1) {
+                    CombinedResource combined = CombinedResource.create(context, parts.resources);
+                    addLink(links,
+                            extContext.encodeResourceURL(combined.getRequestPath()),
+                            getDestination(parts.components.get(0)));
+                } else {
+                    for (UIComponent component : parts.components) {
+                        addLink(context, links, component);
+                    }
+                }
+            }
+        } else {
+            for (UIComponent component : viewRoot.getComponentResources(context, "head")) {
+                addLink(context, links, component);
+            }
+        }
+        for (UIComponent component : viewRoot.getComponentResources(context, "body")) {
+            addLink(context, links, component);
+        }
+        if (links.isEmpty()) {
+            return;
+        }
+
+        extContext.addResponseHeader("Link", String.join(", ", links));
+        if (earlyHints) {
+            sendEarlyHints(extContext.getResponse());
+        }
+
+    }
+
+
+    // --------------------------------------------------------- Private Methods
+
+
+    /*
+     * Adds the link to the resource referenced by the component, as
+     * ScriptStyleBaseRenderer would render it.
+     */
+    private static void addLink(FacesContext context, Set<String> links, UIComponent component) {
+
+        String destination = getDestination(component);
+        Map<String, Object> attributes = component.getAttributes();
+        Object name = attributes.get("name");
+        Object library = attributes.get("library");
+        if (destination == null
+              || !component.isRendered()
+              || component.getChildCount() > 0
+              || !(name instanceof String)
+              || (library != null && !(library instanceof String))) {
+            return;
+        }
+        String resourceName = (String) name;
+        String query = null;
+        int queryPos = resourceName.indexOf('?');
+        if (queryPos > -1) {
+            query = resourceName.substring(queryPos + 1);
+            resourceName = resourceName.substring(0, queryPos);
+        }
+        Resource resource = context.getApplication().getResourceHandler()
+                                   .createResource(resourceName, (String) library);
+        if (resource == null) {
+            return;
+        }
+        String url = resource.getRequestPath();
+        if (query != null) {
+            url = url + ((url.indexOf('?') > -1) ? "&" : "?") + query;
+        }
+        addLink(links, context.getExternalContext().encodeResourceURL(url), destination);
+
+    }
+
+
+    private static void addLink(Set<String> links, String url, String destination) {
+
+        links.add('<' + url + ">; rel=preload; as=" + destination);
+
+    }
+
+
+    /*
+     * The request destination of a script or stylesheet component, or null
+     * for any other component.
+     */
+    private static String getDestination(UIComponent component) {
+
+        String rendererType = component.getRendererType();
+        if (SCRIPT_RENDERER_TYPE.equals(rendererType)) {
+            return "script";
+        }
+        if (STYLESHEET_RENDERER_TYPE.equals(rendererType)) {
+            return "style";
+        }
+        return null;
+
+    }
+
+
+    private static void sendEarlyHints(Object response) {
+
+        while (response instanceof ServletResponseWrapper) {
+            response = ((ServletResponseWrapper) response).getResponse();
+        }
+        if (response == null) {
+            return;
+        }
+        Optional<Method> method = EARLY_HINTS_METHODS.computeIfAbsent(response.getClass(), c -> {
+            try {
+                return Optional.of(c.getMethod("sendEarlyHints"));
+            } catch (NoSuchMethodException nsme) {
+                if (LOGGER.isLoggable(Level.FINE)) {
+                    LOGGER.log(Level.FINE,
+                               "{0} cannot send early hints, only the Link header will be sent",
+                               c.getName());
+                }
+                return Optional.empty();
+            }
+        });
+        if (method.isPresent()) {
+            try {
+                method.get().invoke(response);
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                if (LOGGER.isLoggable(Level.FINE)) {
+                    LOGGER.log(Level.FINE, "Unable to send early hints", e);
+                }
+            }
+        }
+
+    }
+
+}
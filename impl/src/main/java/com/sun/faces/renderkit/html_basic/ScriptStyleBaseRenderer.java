@@ -46,7 +46,7 @@ import com.sun.faces.util.FacesLogger;
 @ListenerFor(systemEventClass=PostAddToViewEvent.class)
 public abstract class ScriptStyleBaseRenderer extends Renderer implements ComponentSystemEventListener {
 
-    private static final String COMP_KEY =
+    static final String COMP_KEY =
           ScriptStyleBaseRenderer.class.getName() + "_COMPOSITE_COMPONENT";
 
     // Log instance for this class
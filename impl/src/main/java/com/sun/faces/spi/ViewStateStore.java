@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 1997, 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.faces.spi;
+
+import javax.faces.context.FacesContext;
+
+
+/**
+ * <p>This interface provides a mechanism to allow the use of alternate
+ * storage backends for server side state saving.</p>
+ *
+ * <p>Views are addressed by a logical view id (one per browser window or
+ * navigation entry point) and an actual view id (one per rendered response
+ * within that logical view).  Both ids are generated by
+ * {@link com.sun.faces.renderkit.ServerSideStateHelper}; the store is only
+ * responsible for keeping, bounding and evicting the state.</p>
+ *
+ * <p>The implementation of this interface *must* be thread-safe and must
+ * have a no-arg constructor.  Concurrent requests from the same session may
+ * invoke any of these methods at the same time; the caller does not
+ * synchronize on the session.</p>
+ */
+public interface ViewStateStore {
+
+    /**
+     * <p>Stores the provided state for the current session, replacing any
+     * state previously stored under the same ids.  The session will be
+     * created if necessary.</p>
+     *
+     * @param context the <code>FacesContext</code> for the current request
+     * @param logicalViewId the id of the logical view
+     * @param actualViewId the id of the actual view within the logical view
+     * @param state a two element array containing the tree structure and the
+     *  (possibly serialized) component state
+     */
+    public void put(FacesContext context,
+                    String logicalViewId,
+                    String actualViewId,
+                    Object[] state);
+
+
+    /**
+     * @param context the <code>FacesContext</code> for the current request
+     * @param logicalViewId the id of the logical view
+     * @param actualViewId the id of the actual view within the logical view
+     * @return the two element array previously passed to
+     *  {@link #put(FacesContext, String, String, Object[])}, or <code>null</code>
+     *  if no such state is available (anymore)
+     */
+    public Object[] get(FacesContext context,
+                        String logicalViewId,
+                        String actualViewId);
+
+
+    /**
+     * @param context the <code>FacesContext</code> for the current request
+     * @param logicalViewId the id of the logical view
+     * @return <code>true</code> if the current session still holds state for
+     *  the specified logical view
+     */
+    public boolean containsLogicalView(FacesContext context,
+                                       String logicalViewId);
+
+
+} // END ViewStateStore
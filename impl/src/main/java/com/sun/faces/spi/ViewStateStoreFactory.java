@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 1997, 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.faces.spi;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.faces.context.ExternalContext;
+
+import com.sun.faces.config.WebConfiguration;
+import com.sun.faces.config.WebConfiguration.WebContextInitParameter;
+import com.sun.faces.renderkit.ConcurrentViewStateStore;
+import com.sun.faces.util.FacesLogger;
+import com.sun.faces.util.Util;
+
+/**
+ * <p>A factory for creating <code>ViewStateStore</code> instances.</p>
+ */
+public class ViewStateStoreFactory {
+
+    private static final Logger LOGGER = FacesLogger.APPLICATION.getLogger();
+
+
+    /**
+     * <p>Creates a new instance of the class specified by the
+     * <code>com.sun.faces.viewStateStore</code> context parameter.
+     * If this parameter is not defined, or the class cannot be used,
+     * a {@link ConcurrentViewStateStore} will be returned.</p>
+     *
+     * @param extContext the ExternalContext for this application
+     * @return an implementation of the <code>ViewStateStore</code>
+     *  interface
+     */
+    public static ViewStateStore createInstance(ExternalContext extContext) {
+
+        WebConfiguration webConfig = WebConfiguration.getInstance(extContext);
+        String className = webConfig.getOptionValue(WebContextInitParameter.ViewStateStoreClass);
+
+        ViewStateStore store = null;
+        if (className != null && className.length() > 0) {
+            store = getStoreInstance(className);
+        }
+        if (store == null) {
+            store = new ConcurrentViewStateStore();
+        } else if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.log(Level.FINE,
+                       "Server side state will be stored using ViewStateStore ''{0}''",
+                       className);
+        }
+        return store;
+
+    }
+
+
+    // --------------------------------------------------------- Private Methods
+
+
+    private static ViewStateStore getStoreInstance(String className) {
+
+        try {
+            Class<?> clazz = Util.loadClass(className, ViewStateStoreFactory.class);
+            if (ViewStateStore.class.isAssignableFrom(clazz)) {
+                return (ViewStateStore) clazz.newInstance();
+            }
+            if (LOGGER.isLoggable(Level.SEVERE)) {
+                LOGGER.log(Level.SEVERE,
+                           "The specified ViewStateStore implementation ''{0}'' does not implement the ViewStateStore interface.",
+                           className);
+            }
+        } catch (ClassNotFoundException cnfe) {
+            if (LOGGER.isLoggable(Level.SEVERE)) {
+                LOGGER.log(Level.SEVERE,
+                           "The specified ViewStateStore implementation ''{0}'' cannot be loaded.",
+                           className);
+            }
+        } catch (InstantiationException | IllegalAccessException ie) {
+            if (LOGGER.isLoggable(Level.SEVERE)) {
+                LOGGER.log(Level.SEVERE,
+                           "The specified ViewStateStore ''{0}'' cannot be instantiated.",
+                           className);
+                LOGGER.log(Level.SEVERE, "", ie);
+            }
+        }
+        return null;
+
+    }
+
+} // END ViewStateStoreFactory
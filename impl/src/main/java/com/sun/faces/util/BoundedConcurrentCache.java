@@ -0,0 +1,310 @@
+/*
+ * Copyright (c) 1997, 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.faces.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.faces.FacesException;
+
+/**
+ * This class implements a ConcurrentCache with objects in the cache
+ * potentially expiring, like {@link ExpiringConcurrentCache}, and bounded in
+ * number and in weight.  When a new object takes the cache over a bound, the
+ * least recently used objects are evicted, down to nine tenths of the bounds,
+ * so that evictions are done in batches.  Recency is only tracked to within
+ * the last object created, and not at all if the cache is unbounded, so
+ * that a hit does not write to any shared counter.
+ *
+ * As with ExpiringConcurrentCache, only one thread creates an object missing
+ * in the cache, while the other threads trying to get it wait for it.  The
+ * cache keeps count of its hits, misses, loads and evictions.
+ */
+public final class BoundedConcurrentCache<K, V> extends ConcurrentCache<K, V> {
+
+    /**
+     * Interface for weighing cached objects
+     */
+    public interface Weigher<V> {
+        /**
+         * @param value cached value
+         * @return the weight of the value, at least 1
+         */
+        public int weigh(V value);
+    }
+
+    /**
+     * Public constructor.
+     * @param f used to create new instances of objects that are not already available
+     * @param checker used to check whether an object in the cache has expired
+     * @param weigher used to weigh new objects
+     * @param maxEntries the maximum number of objects in the cache, unbounded if not positive
+     * @param maxWeight the maximum total weight of the objects in the cache, unbounded if not positive
+     */
+    public BoundedConcurrentCache(Factory<K, V> f,
+                                  ExpiringConcurrentCache.ExpiryChecker<K, V> checker,
+                                  Weigher<V> weigher,
+                                  int maxEntries,
+                                  long maxWeight) {
+        super(f);
+        _checker = checker;
+        _weigher = weigher;
+        _maxEntries = maxEntries;
+        _maxWeight = maxWeight;
+        _bounded = (maxEntries > 0 || maxWeight > 0);
+    }
+
+    @Override
+    public V get(final K key) throws ExecutionException {
+        while (true) {
+            boolean newlyCached = false;
+
+            Entry<V> e = _cache.get(key);
+            if (e == null) {
+                Entry<V> ne = new Entry<>();
+                ne.task = new FutureTask<>(() -> {
+                    V value = getFactory().newInstance(key);
+                    ne.weight = _weigher.weigh(value);
+                    _weight.addAndGet(ne.weight);
+                    return value;
+                });
+                e = _cache.putIfAbsent(key, ne);
+                if (e == null) {
+                    e = ne;
+                    long start = System.nanoTime();
+                    ne.task.run();
+                    _loadTime.add(System.nanoTime() - start);
+                    _misses.increment();
+                    newlyCached = true;
+                }
+            }
+            if (_bounded) {
+                // Only loads advance the clock, so that hits merely read it:
+                // recency is then only known to within the last load, which is
+                // all eviction needs, without every hit writing to the same
+                // counter
+                long now = newlyCached ? _clock.incrementAndGet() : _clock.get();
+                if (e.lastAccess != now) {
+                    e.lastAccess = now;
+                }
+            }
+            try {
+                V obj = e.task.get();
+                if (!newlyCached && _checker.isExpired(key, obj)) {
+
+                    // Note that we are using both key and value in remove() call to ensure
+                    // that we are not removing the entry added after expiry check by a different thread
+                    remove(key, e);
+                } else {
+                    if (newlyCached) {
+                        evictIfNeeded();
+                    } else {
+                        _hits.increment();
+                    }
+                    return obj;
+                }
+            } catch (CancellationException ce) {
+                if (_LOGGER.isLoggable(Level.SEVERE)) {
+                    _LOGGER.log(Level.SEVERE,
+                               ce.toString(),
+                               ce);
+                }
+                remove(key, e);
+            } catch (ExecutionException ee) {
+                remove(key, e);
+                throw ee;
+            } catch (InterruptedException ie) {
+                throw new FacesException(ie);
+
+            }
+        }
+    }
+
+    @Override
+    public boolean containsKey(final K key) {
+
+        Entry<V> e = _cache.get(key);
+
+        if (e != null && e.task.isDone() && !e.task.isCancelled()) {
+
+            try {
+                // Call get() with a 0 timeout to avoid any wait
+                V obj = e.task.get(0, TimeUnit.MILLISECONDS);
+                if (_checker.isExpired(key, obj)) {
+                    remove(key, e);
+                } else {
+                    return true;
+                }
+            } catch (TimeoutException | ExecutionException ce) {
+            } catch (CancellationException ce) {
+                if (_LOGGER.isLoggable(Level.SEVERE)) {
+                    _LOGGER.log(Level.SEVERE, ce.toString(), ce);
+                }
+            } catch (InterruptedException ie) {
+                throw new FacesException(ie);
+
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @return the number of objects in the cache, including those being created
+     */
+    public int size() {
+        return _cache.size();
+    }
+
+    /**
+     * @return the total weight of the objects in the cache
+     */
+    public long getWeight() {
+        return _weight.get();
+    }
+
+    public int getMaxEntries() {
+        return _maxEntries;
+    }
+
+    public long getMaxWeight() {
+        return _maxWeight;
+    }
+
+    /**
+     * @return the number of times a cached object was returned
+     */
+    public long getHitCount() {
+        return _hits.sum();
+    }
+
+    /**
+     * @return the number of times an object was created, successfully or not
+     */
+    public long getMissCount() {
+        return _misses.sum();
+    }
+
+    /**
+     * @return the total time spent creating objects, in nanoseconds
+     */
+    public long getTotalLoadTime() {
+        return _loadTime.sum();
+    }
+
+    /**
+     * @return the number of objects evicted to keep the cache within its bounds
+     */
+    public long getEvictionCount() {
+        return _evictions.sum();
+    }
+
+
+    private boolean remove(K key, Entry<V> e) {
+        if (_cache.remove(key, e)) {
+            // The weight is only known, and only counted, once the object is created
+            _weight.addAndGet(-e.weight);
+            return true;
+        }
+        return false;
+    }
+
+    private boolean isOver(int maxEntries, long maxWeight) {
+        return (maxEntries > 0 && _cache.size() > maxEntries)
+               || (maxWeight > 0 && _weight.get() > maxWeight);
+    }
+
+    private void evictIfNeeded() {
+        if (!isOver(_maxEntries, _maxWeight)) {
+            return;
+        }
+        synchronized (_evictionLock) {
+            if (!isOver(_maxEntries, _maxWeight)) {
+                return;
+            }
+
+            // Snapshot the access times, as they change while sorting
+            List<Candidate<K, V>> candidates = new ArrayList<>(_cache.size());
+            for (Map.Entry<K, Entry<V>> e : _cache.entrySet()) {
+                if (e.getValue().task.isDone()) {
+                    candidates.add(new Candidate<>(e.getKey(), e.getValue()));
+                }
+            }
+            candidates.sort(Comparator.comparingLong(c -> c.lastAccess));
+
+            int maxEntries = _maxEntries - _maxEntries / 10;
+            long maxWeight = _maxWeight - _maxWeight / 10;
+            for (Candidate<K, V> c : candidates) {
+                if (!isOver(maxEntries, maxWeight)) {
+                    break;
+                }
+                if (remove(c.key, c.entry)) {
+                    _evictions.increment();
+                }
+            }
+        }
+    }
+
+
+    private static final class Entry<V> {
+        FutureTask<V> task;
+        volatile long lastAccess;
+        volatile int weight;
+    }
+
+    private static final class Candidate<K, V> {
+        final K key;
+        final Entry<V> entry;
+        final long lastAccess;
+
+        Candidate(K key, Entry<V> entry) {
+            this.key = key;
+            this.entry = entry;
+            this.lastAccess = entry.lastAccess;
+        }
+    }
+
+
+    private final ExpiringConcurrentCache.ExpiryChecker<K, V> _checker;
+    private final Weigher<V> _weigher;
+    private final int _maxEntries;
+    private final long _maxWeight;
+    private final boolean _bounded;
+    private final ConcurrentMap<K, Entry<V>> _cache = new ConcurrentHashMap<>();
+    private final AtomicLong _clock = new AtomicLong();
+    private final AtomicLong _weight = new AtomicLong();
+    private final LongAdder _hits = new LongAdder();
+    private final LongAdder _misses = new LongAdder();
+    private final LongAdder _loadTime = new LongAdder();
+    private final LongAdder _evictions = new LongAdder();
+    private final Object _evictionLock = new Object();
+
+    private static final Logger _LOGGER = FacesLogger.UTIL.getLogger();
+}
@@ -62,15 +62,7 @@ public class HtmlUtils {
                                  char[] text,
                                  int start,
                                  int length) throws IOException {
-        int buffLength = buff.length;
-        int buffIndex = 0;
-
-        int end = start + length;
-        for (int i = start; i < end; i++) {
-            buffIndex = writeTextChar(out, escapeUnicode, escapeIsocode, text[i], buffIndex, buff, buffLength);
-        }
-
-        flushBuffer(out, buff, buffIndex);
+        writeEscaped(out, escapeUnicode, escapeIsocode, buff, text, start, length, TEXT_ESCAPES);
     }
 
 
@@ -84,112 +76,18 @@ public class HtmlUtils {
                                  char[] textBuff) throws IOException {
 
         int length = text.length();
-
-        if (length >= 16) {
-            text.getChars(0, length, textBuff, 0);
-            writeText(out, escapeUnicode, escapeIsocode, buff, textBuff, 0, length);
-        } else {
-            int buffLength = buff.length;
-            int buffIndex = 0;
-            for (int i = 0; i < length; i++) {
-                char ch = text.charAt(i);
-                buffIndex = writeTextChar(out, escapeUnicode, escapeIsocode, ch, buffIndex, buff, buffLength);
-            }
-            flushBuffer(out, buff, buffIndex);
+        if (length > textBuff.length) {
+            // resize our buffer
+            textBuff = new char[length * 2];
         }
+        text.getChars(0, length, textBuff, 0);
+        writeEscaped(out, escapeUnicode, escapeIsocode, buff, textBuff, 0, length, TEXT_ESCAPES);
 
-        
-    }
-
-    private static int writeTextChar(Writer out,
-                                     boolean escapeUnicode,
-                                     boolean escapeIsocode,
-                                     char ch,
-                                     int buffIndex,
-                                     char[] buff,
-                                     int buffLength) throws IOException {
-        int nextIndex;
-        if (ch <= 0x1f) {
-            if (!isPrintableControlChar(ch)) {
-                return buffIndex;
-            }
-        }
-        if (ch < 0xA0) {
-            // If "?" or over, no escaping is needed (this covers
-            // most of the Latin alphabet)
-            if (ch >= 0x3f) {
-                nextIndex = addToBuffer(out, buff, buffIndex,
-                                        buffLength, ch);
-            } else if (ch >= 0x27) {  // If above "'"...
-                // If between "'" and ";", no escaping is needed
-                if (ch < 0x3c) {
-                    nextIndex = addToBuffer(out, buff, buffIndex,
-                                            buffLength, ch);
-                } else if (ch == '<') {
-                    nextIndex = addToBuffer(out,
-                                            buff,
-                                            buffIndex,
-                                            buffLength,
-                                            LT_CHARS);
-                } else if (ch == '>') {
-                    nextIndex = addToBuffer(out,
-                                            buff,
-                                            buffIndex,
-                                            buffLength,
-                                            GT_CHARS);
-                } else {
-                    nextIndex = addToBuffer(out, buff, buffIndex,
-                                            buffLength, ch);
-                }
-            } else {
-                if (ch == '&') {
-                    nextIndex = addToBuffer(out,
-                                            buff,
-                                            buffIndex,
-                                            buffLength,
-                                            AMP_CHARS);
-                } else if (ch == '"') {
-                        nextIndex = addToBuffer(out,
-                             buff,
-                             buffIndex,
-                             buffLength,
-                             "\"".toCharArray());
-                } else {
-                    nextIndex = addToBuffer(out, buff, buffIndex,
-                                            buffLength, ch);
-                }
-            }
-        } else if (ch <= 0xff) {
-            if (escapeIsocode) {
-                // ISO-8859-1 entities: encode as needed
-                nextIndex = addToBuffer(out,
-                                        buff,
-                                        buffIndex,
-                                        buffLength,
-                                        sISO8859_1_Entities[ch - 0xA0]);
-            }
-            else {
-                nextIndex = addToBuffer(out, buff, buffIndex,
-                        buffLength, ch);
-            }
-        } else {
-            if(escapeUnicode) {
-                // UNICODE entities: encode as needed
-                nextIndex =
-                      _writeDecRef(out, buff, buffIndex, buffLength, ch);
-            } else {
-                nextIndex = addToBuffer(out, buff, buffIndex,
-                        buffLength, ch);
-            }
-        }
-        return nextIndex;
     }
 
 
     /**
-     * Write a string attribute.  Note that this code
-     * is duplicated below for character arrays - change both
-     * places if you make any changes!!!
+     * Write a string attribute.
      */
     static public void writeAttribute(Writer out,
                                       boolean escapeUnicode,
@@ -200,126 +98,14 @@ public class HtmlUtils {
                                       boolean isScriptInAttributeValueEnabled) throws IOException {
 
         int length = text.length();
-        if (length >= 16) {
-            if (length > textBuff.length) {
-                // resize our buffer
-                textBuff = new char[length * 2];
-            }
-            text.getChars(0, length, textBuff, 0);
-            writeAttribute(out, escapeUnicode, escapeIsocode, buff, textBuff, 0, length,
-                    isScriptInAttributeValueEnabled);
-        } else {
-            int buffLength = buff.length;
-            int buffIndex = 0;
-            for (int i = 0; i < length; i++) {
-                char ch = text.charAt(i);
-
-                if (ch <= 0x1f) {
-                    if (!isPrintableControlChar(ch)) {
-                        continue;
-                    }
-                }
-                // Tilde or less...
-                if (ch < 0xA0) {
-                    // If "?" or over, no escaping is needed (this covers
-                    // most of the Latin alphabet)
-                    if (ch >= 0x3f) {
-                        if (ch == 's') {
-                            // If putting scripts in attribute values
-                            // has been disabled (the defualt), look for
-                            // script: in the attribute value.
-                            // ensure the attribute value is long enough
-                            // to accomodate "script:"
-                            if (!isScriptInAttributeValueEnabled &&
-                                    ((i + 6) < text.length())) {
-                                if ('c' == text.charAt(i + 1) &&
-                                    'r' == text.charAt(i + 2) &&
-                                    'i' == text.charAt(i + 3) &&
-                                    'p' == text.charAt(i + 4) &&
-                                    't' == text.charAt(i + 5) &&
-                                    ':' == text.charAt(i + 6)) {
-                                    return;
-                                }
-                            }
-                        }
-                        buffIndex = addToBuffer(out, buff, buffIndex,
-                                                buffLength, ch);
-                    } else if (ch >= 0x27) { // If above "'"...
-                        // If between "'" and ";", no escaping is needed
-                        if (ch < 0x3c) {
-                            buffIndex = addToBuffer(out, buff, buffIndex,
-                                                    buffLength, ch);
-                        } else if (ch == '<') {
-                            buffIndex = addToBuffer(out,
-                                                    buff,
-                                                    buffIndex,
-                                                    buffLength,
-                                                    LT_CHARS);
-                        } else if (ch == '>') {
-                            buffIndex = addToBuffer(out,
-                                                    buff,
-                                                    buffIndex,
-                                                    buffLength,
-                                                    GT_CHARS);
-                        } else {
-                            buffIndex = addToBuffer(out, buff, buffIndex,
-                                                    buffLength, ch);
-                        }
-                    } else {
-                        if (ch == '&') {
-                            // HTML 4.0, section B.7.1: ampersands followed by
-                            // an open brace don't get escaped
-                            if ((i + 1 < length) && (text.charAt(i + 1)
-                                                     == '{')) {
-                                buffIndex = addToBuffer(out,
-                                                        buff,
-                                                        buffIndex,
-                                                        buffLength,
-                                                        ch);
-                            } else {
-                                buffIndex = addToBuffer(out,
-                                                        buff,
-                                                        buffIndex,
-                                                        buffLength,
-                                                        AMP_CHARS);
-                            }
-                        } else if (ch == '"') {
-                            buffIndex = addToBuffer(out,
-                                                    buff,
-                                                    buffIndex,
-                                                    buffLength,
-                                                    QUOT_CHARS);
-                        } else {
-                            buffIndex = addToBuffer(out, buff, buffIndex,
-                                                    buffLength, ch);
-                        }
-                    }
-                } else if (ch <= 0xff) {
-                    if (escapeIsocode) {
-                        // ISO-8859-1 entities: encode as needed
-                        buffIndex = addToBuffer(out,
-                                                buff,
-                                                buffIndex,
-                                                buffLength,
-                                                sISO8859_1_Entities[ch - 0xA0]);
-                    } else {
-                        buffIndex = addToBuffer(out, buff, buffIndex,
-                                                buffLength, ch);
-                    }
-                } else {
-                    if(escapeUnicode) {
-                        // UNICODE entities: encode as needed
-                        buffIndex =
-                              _writeDecRef(out, buff, buffIndex, buffLength, ch);
-                    } else {
-                        buffIndex = addToBuffer(out, buff, buffIndex,
-                                buffLength, ch);
-                    }
-                }
-            }
-
-            flushBuffer(out, buff, buffIndex);
+        if (length > textBuff.length) {
+            // resize our buffer
+            textBuff = new char[length * 2];
         }
+        text.getChars(0, length, textBuff, 0);
+        writeAttribute(out, escapeUnicode, escapeIsocode, buff, textBuff, 0, length,
+                isScriptInAttributeValueEnabled);
+
     }
 
 
@@ -334,9 +120,7 @@ public class HtmlUtils {
 
 
     /**
-     * Write a character array attribute.  Note that this code
-     * is duplicated above for string - change both places if you make
-     * any changes!!!
+     * Write a character array attribute.
      */
     static public void writeAttribute(Writer out,
                                       boolean escapeUnicode,
@@ -346,121 +130,88 @@ public class HtmlUtils {
                                       int start,
                                       int length,
                                       boolean isScriptInAttributeValueEnabled) throws IOException {
+        writeEscaped(out, escapeUnicode, escapeIsocode, buff, text, start, length,
+                     ((isScriptInAttributeValueEnabled)
+                      ? ATTRIBUTE_ESCAPES
+                      : ATTRIBUTE_ESCAPES_NO_SCRIPT));
+    }
+
+
+    /**
+     * <p>Escapes <code>length</code> characters of <code>text</code> from
+     * <code>start</code> according to <code>escapes</code>.  Runs of
+     * characters that need no escaping, found with a table lookup for ASCII
+     * characters, are copied to <code>buff</code> in bulk, or written to
+     * <code>out</code> directly if they do not fit.</p>
+     */
+    private static void writeEscaped(Writer out,
+                                     boolean escapeUnicode,
+                                     boolean escapeIsocode,
+                                     char[] buff,
+                                     char[] text,
+                                     int start,
+                                     int length,
+                                     char[][] escapes) throws IOException {
         int buffLength = buff.length;
         int buffIndex = 0;
-
         int end = start + length;
+        int runStart = start;
+
         for (int i = start; i < end; i++) {
             char ch = text[i];
-
-            // "Application Program Command" or less...
-            if (ch <= 0x1f) {
-                if (!isPrintableControlChar(ch)) {
+            char[] escape;
+            if (ch < 0x80) {
+                escape = escapes[ch];
+                if (escape == null) {
                     continue;
                 }
-            }
-            if (ch < 0xA0) {
-                // If "?" or over, no escaping is needed (this covers
-                // most of the Latin alphabet)
-                if (ch >= 0x3f) {
-                    if (ch == 's') {
-                        // If putting scripts in attribute values
-                        // has been disabled (the defualt), look for
-                        // script: in the attribute value.  
-                        // ensure the attribute value is long enough
-                        // to accomodate "script:"
-                        if (!isScriptInAttributeValueEnabled &&
-                                ((i + 6) < text.length)) {
-                            if ('c' == text[i + 1] &&
-                                'r' == text[i + 2] &&
-                                'i' == text[i + 3] &&
-                                'p' == text[i + 4] &&
-                                't' == text[i + 5] &&
-                                ':' == text[i + 6]) {
-                                return;
-                            }
-                        }
-                    }
-                    
-                    buffIndex = addToBuffer(out, buff, buffIndex,
-                                            buffLength, ch);
-                } else if (ch >= 0x27) { // If above "'"...
-                    if (ch < 0x3c) {
-                        // If between "'" and ";", no escaping is needed
-                        buffIndex = addToBuffer(out, buff, buffIndex,
-                                                buffLength, ch);                       
-                    } else if (ch == '<') {
-                        buffIndex = addToBuffer(out,
-                                                buff,
-                                                buffIndex,
-                                                buffLength,
-                                                LT_CHARS);
-                    } else if (ch == '>') {
-                        buffIndex = addToBuffer(out,
-                                                buff,
-                                                buffIndex,
-                                                buffLength,
-                                                GT_CHARS);
-                    } else {
-                        buffIndex = addToBuffer(out, buff, buffIndex,
-                                                buffLength, ch);
-                    }
-                } else {
-                    if (ch == '&') {
-                        // HTML 4.0, section B.7.1: ampersands followed by
-                        // an open brace don't get escaped
-                        if ((i + 1 < end) && (text[i + 1] == '{')) {
-                            buffIndex = addToBuffer(out,
-                                                    buff,
-                                                    buffIndex,
-                                                    buffLength,
-                                                    ch);
-                        } else {
-                            buffIndex = addToBuffer(out,
-                                                buff,
-                                                buffIndex,
-                                                buffLength,
-                                                AMP_CHARS);
-                        }
-                    } else if (ch == '"') {
-                        buffIndex = addToBuffer(out,
-                                                buff,
-                                                buffIndex,
-                                                buffLength,
-                                                QUOT_CHARS);
-                    } else {
-                        buffIndex = addToBuffer(out, buff, buffIndex,
-                                                buffLength, ch);
+                if (escape == SCRIPT_CHECK) {
+                    // If putting scripts in attribute values has been
+                    // disabled (the default), nothing is written if the
+                    // value contains "script:"
+                    if ((i + 6) < end &&
+                        'c' == text[i + 1] &&
+                        'r' == text[i + 2] &&
+                        'i' == text[i + 3] &&
+                        'p' == text[i + 4] &&
+                        't' == text[i + 5] &&
+                        ':' == text[i + 6]) {
+                        return;
                     }
+                    continue;
                 }
-            } else if (ch <= 0xff) {
-                if (escapeIsocode) {
-                    // ISO-8859-1 entities: encode as needed
-                    buffIndex = addToBuffer(out,
-                                            buff,
-                                            buffIndex,
-                                            buffLength,
-                                            sISO8859_1_Entities[ch - 0xA0]);
-                }
-                else {
-                    buffIndex = addToBuffer(out, buff, buffIndex,
-                            buffLength, ch);
+                if (escape == AMP_CHARS && escapes != TEXT_ESCAPES
+                    && (i + 1 < end) && (text[i + 1] == '{')) {
+                    // HTML 4.0, section B.7.1: ampersands followed by
+                    // an open brace don't get escaped
+                    continue;
                 }
+            } else if (ch < 0xA0 || !((ch <= 0xff) ? escapeIsocode : escapeUnicode)) {
+                continue;
             } else {
-                if(escapeUnicode) {
+                escape = null;
+            }
+
+            buffIndex = addToBuffer(out, buff, buffIndex, buffLength, text, runStart, i - runStart);
+            runStart = i + 1;
+            if (escape == null) {
+                if (ch <= 0xff) {
+                    // ISO-8859-1 entities: encode as needed
+                    buffIndex = addToBuffer(out, buff, buffIndex, buffLength,
+                                            sISO8859_1_Entities[ch - 0xA0]);
+                } else {
                     // UNICODE entities: encode as needed
                     buffIndex = _writeDecRef(out, buff, buffIndex, buffLength, ch);
-                } else {
-                    buffIndex = addToBuffer(out, buff, buffIndex,
-                            buffLength, ch);
                 }
+            } else if (escape != DROP) {
+                buffIndex = addToBuffer(out, buff, buffIndex, buffLength, escape);
             }
         }
 
+        buffIndex = addToBuffer(out, buff, buffIndex, buffLength, text, runStart, end - runStart);
         flushBuffer(out, buff, buffIndex);
     }
 
-
     static private boolean isPrintableControlChar(int ch) {
 
         return (ch == 0x09 || ch == 0x0A || ch == 0x0C || ch == 0x0D);
@@ -572,6 +323,36 @@ public class HtmlUtils {
     }
 
 
+    /**
+     * Add a run of characters to the buffer, flushing the buffer if the run
+     * does not fit and writing runs larger than the buffer directly, and
+     * returning the new buffer index.
+     */
+    private static int addToBuffer(Writer out,
+                                   char[] buffer,
+                                   int bufferIndex,
+                                   int bufferLength,
+                                   char[] text,
+                                   int start,
+                                   int length) throws IOException {
+
+        if (length <= bufferLength - bufferIndex) {
+            System.arraycopy(text, start, buffer, bufferIndex, length);
+            return bufferIndex + length;
+        }
+        if (bufferIndex > 0) {
+            out.write(buffer, 0, bufferIndex);
+        }
+        if (length <= bufferLength) {
+            System.arraycopy(text, start, buffer, 0, length);
+            return length;
+        }
+        out.write(text, start, length);
+        return 0;
+
+    }
+
+
     /**
      * Flush the contents of the buffer to the output stream
      * and return the reset buffer index
@@ -635,6 +416,15 @@ public class HtmlUtils {
             for (int i = 0; i < length; i++) {
                 char ch = text.charAt(i);
 
+                if (isPlainURLChar(ch)) {
+                    // write runs that need no encoding in one call
+                    int runStart = i;
+                    while (i + 1 < length && isPlainURLChar(text.charAt(i + 1))) {
+                        i++;
+                    }
+                    out.write(text, runStart, i + 1 - runStart);
+                    continue;
+                }
                 if ((ch < 33) || (ch > 126)) {
                     if (ch == ' ') {
                         out.write('+');
@@ -714,6 +504,15 @@ public class HtmlUtils {
         for (int i = start; i < end; i++) {
             char ch = textBuff[i];
 
+            if (isPlainURLChar(ch)) {
+                // write runs that need no encoding in one call
+                int runStart = i;
+                while (i + 1 < end && isPlainURLChar(textBuff[i + 1])) {
+                    i++;
+                }
+                out.write(textBuff, runStart, i + 1 - runStart);
+                continue;
+            }
             if ((ch < 33) || (ch > 126)) {
                	encodeURIString(out, textBuff, "UTF-8", i, i + 1);
             }
@@ -746,6 +545,10 @@ public class HtmlUtils {
         }
     }
 
+    static private boolean isPlainURLChar(char ch) {
+        return (ch >= 33 && ch <= 126 && ch != '"' && ch != '?');
+    }
+
     static public void writeTextForXML(Writer out, String text, char[] outbuf)
         throws IOException {
         char[] textBuffer = new char[128];
@@ -939,6 +742,34 @@ public class HtmlUtils {
     static private final char[] LT_CHARS = "&lt;".toCharArray();
     static private final char[] EURO_CHARS = "&euro;".toCharArray();
     static private final char[] DEC_REF_START = "&#".toCharArray();
+
+    // Escaping tables, indexed by ASCII character: null if the character is
+    // written as is, DROP if it is not written, SCRIPT_CHECK if it may start
+    // "script:", otherwise what it is written as.  Characters from 0xA0 on
+    // are escaped depending on escapeIsocode and escapeUnicode.
+    static private final char[] DROP = new char[0];
+    static private final char[] SCRIPT_CHECK = { 's' };
+    static private final char[][] TEXT_ESCAPES = new char[0x80][];
+    static private final char[][] ATTRIBUTE_ESCAPES = new char[0x80][];
+    static private final char[][] ATTRIBUTE_ESCAPES_NO_SCRIPT = new char[0x80][];
+
+    static {
+        for (int i = 0; i <= 0x1f; i++) {
+            if (!isPrintableControlChar(i)) {
+                TEXT_ESCAPES[i] = DROP;
+                ATTRIBUTE_ESCAPES[i] = DROP;
+            }
+        }
+        TEXT_ESCAPES['<'] = LT_CHARS;
+        TEXT_ESCAPES['>'] = GT_CHARS;
+        TEXT_ESCAPES['&'] = AMP_CHARS;
+        ATTRIBUTE_ESCAPES['<'] = LT_CHARS;
+        ATTRIBUTE_ESCAPES['>'] = GT_CHARS;
+        ATTRIBUTE_ESCAPES['&'] = AMP_CHARS;
+        ATTRIBUTE_ESCAPES['"'] = QUOT_CHARS;
+        System.arraycopy(ATTRIBUTE_ESCAPES, 0, ATTRIBUTE_ESCAPES_NO_SCRIPT, 0, 0x80);
+        ATTRIBUTE_ESCAPES_NO_SCRIPT['s'] = SCRIPT_CHECK;
+    }
     static private final int MAX_BYTES_PER_CHAR = 10;
     static private final BitSet DONT_ENCODE_SET = new BitSet(256);
 
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2017, 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.faces.application.resource;
+
+import static com.sun.faces.application.resource.ByteRanges.parse;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+public class ByteRangesTest {
+
+    @Test
+    public void testSingleRange() {
+        assertRanges(parse("bytes=0-99", 1000), 0, 99);
+        assertRanges(parse("bytes=500-", 1000), 500, 999);
+        assertRanges(parse("bytes=-200", 1000), 800, 999);
+        assertRanges(parse("bytes=900-2000", 1000), 900, 999);
+        assertRanges(parse("bytes=-2000", 1000), 0, 999);
+        assertRanges(parse("Bytes=0-0", 1000), 0, 0);
+    }
+
+    @Test
+    public void testMultipleRanges() {
+        assertRanges(parse("bytes=0-0, -1", 1000), 0, 0, 999, 999);
+        assertRanges(parse("bytes=0-9,2000-3000,20-29", 1000), 0, 9, 20, 29);
+    }
+
+    @Test
+    public void testUnsatisfiable() {
+        assertTrue(parse("bytes=1000-", 1000).isEmpty());
+        assertTrue(parse("bytes=-0", 1000).isEmpty());
+        assertTrue(parse("bytes=0-", 0).isEmpty());
+    }
+
+    @Test
+    public void testIgnored() {
+        assertNull(parse("items=0-9", 1000));
+        assertNull(parse("bytes=", 1000));
+        assertNull(parse("bytes=9-0", 1000));
+        assertNull(parse("bytes=a-b", 1000));
+        assertNull(parse("bytes=10", 1000));
+        StringBuilder many = new StringBuilder("bytes=0-0");
+        for (int i = 1; i <= ByteRanges.MAX_RANGES; i++) {
+            many.append(',').append(i).append('-').append(i);
+        }
+        assertNull(parse(many.toString(), 1000));
+    }
+
+    // ---------------------------------------------------------- Private Methods
+
+    private static void assertRanges(List<long[]> ranges, long... expected) {
+        assertEquals(expected.length / 2, ranges.size());
+        for (int i = 0; i < ranges.size(); i++) {
+            assertArrayEquals(new long[] { expected[2 * i], expected[2 * i + 1] }, ranges.get(i));
+        }
+    }
+
+}
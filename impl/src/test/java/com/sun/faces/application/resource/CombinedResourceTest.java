@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2017, 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.faces.application.resource;
+
+import static com.sun.faces.application.resource.CombinedResource.isCombinable;
+import static com.sun.faces.application.resource.CombinedResource.parseParts;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+public class CombinedResourceTest {
+
+    @Test
+    public void testIsCombinable() {
+        assertTrue(isCombinable("site.css", null));
+        assertTrue(isCombinable("js/app.js", "lib"));
+        assertFalse(isCombinable("app.js?v=1", null));
+        assertFalse(isCombinable("a,b.js", null));
+        assertFalse(isCombinable("app.js", "a:b"));
+        assertFalse(isCombinable("js.d/app", null));
+    }
+
+    @Test
+    public void testParseParts() {
+        List<String[]> parts = parseParts("javax.faces:jsf.js,:js/app.js");
+        assertEquals(2, parts.size());
+        assertArrayEquals(new String[] { "javax.faces", "jsf.js" }, parts.get(0));
+        assertArrayEquals(new String[] { null, "js/app.js" }, parts.get(1));
+    }
+
+    @Test
+    public void testParsePartsMalformed() {
+        assertNull(parseParts(":app.js"));
+        assertNull(parseParts("app.js,:other.js"));
+        assertNull(parseParts("lib:,:other.js"));
+    }
+
+    @Test
+    public void testParsePartsLimits() {
+        StringBuilder parts = new StringBuilder(":part0.js");
+        for (int i = 1; i < CombinedResource.MAX_PARTS; i++) {
+            parts.append(",:part").append(i).append(".js");
+        }
+        assertEquals(CombinedResource.MAX_PARTS, parseParts(parts.toString()).size());
+        assertNull(parseParts(parts.append(",:one-too-many.js").toString()));
+
+        // the same part twice
+        assertNull(parseParts("lib:a.js,lib:a.js"));
+        assertNull(parseParts("lib:a.js,:b.js,lib:a.js"));
+        assertEquals(2, parseParts("lib:a.js,:a.js").size());
+    }
+
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright (c) 1997, 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.faces.application.resource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.faces.context.FacesContext;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.sun.faces.mock.MockExternalContext;
+import com.sun.faces.mock.MockFacesContext;
+import com.sun.faces.mock.MockHttpServletRequest;
+import com.sun.faces.mock.MockHttpServletResponse;
+import com.sun.faces.mock.MockServletContext;
+
+public class FileResourceTest {
+
+    private static final String CONTENT = "0123456789abcdefghijklmnopqrstuvwxyz";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private TestExternalContext extContext;
+    private MockFacesContext context;
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        extContext = new TestExternalContext();
+        context = new MockFacesContext(extContext);
+        file = folder.newFile("site.js");
+        Files.write(file.toPath(), CONTENT.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @After
+    public void tearDown() {
+        context.release();
+    }
+
+    @Test
+    public void testFullResponse() throws Exception {
+        assertTrue(ResourceHandlerImpl.writeFileResource(context, resource(file.toURI().toURL())));
+
+        assertEquals(0, extContext.status);
+        assertEquals("text/javascript", extContext.contentType);
+        assertEquals(CONTENT.length(), extContext.contentLength);
+        assertEquals("bytes", extContext.headers.get("Accept-Ranges"));
+        assertEquals("1000", extContext.headers.get("Last-Modified"));
+        assertEquals(CONTENT, extContext.body());
+    }
+
+    @Test
+    public void testRangeResponse() throws Exception {
+        extContext.requestHeaders.put("Range", "bytes=10-15");
+        assertTrue(ResourceHandlerImpl.writeFileResource(context, resource(file.toURI().toURL())));
+
+        assertEquals(206, extContext.status);
+        assertEquals("bytes 10-15/" + CONTENT.length(), extContext.headers.get("Content-Range"));
+        assertEquals(6, extContext.contentLength);
+        assertEquals("abcdef", extContext.body());
+    }
+
+    @Test
+    public void testStaleIfRangeSendsFullResponse() throws Exception {
+        extContext.requestHeaders.put("Range", "bytes=10-15");
+        extContext.requestHeaders.put("If-Range", "999");
+        assertTrue(ResourceHandlerImpl.writeFileResource(context, resource(file.toURI().toURL())));
+
+        assertEquals(0, extContext.status);
+        assertNull(extContext.headers.get("Content-Range"));
+        assertEquals(CONTENT, extContext.body());
+    }
+
+    @Test
+    public void testNotFileBacked() throws Exception {
+        assertFalse(ResourceHandlerImpl.writeFileResource(context, resource(null)));
+        assertFalse(ResourceHandlerImpl.writeFileResource(context, resource(new URL("http://example.com/site.js"))));
+        assertEquals("", extContext.body());
+        assertTrue(extContext.headers.isEmpty());
+    }
+
+    // ---------------------------------------------------------- Private Methods
+
+    private ResourceImpl resource(URL url) {
+        TestHelper helper = new TestHelper(url);
+        ClientResourceInfo info = new ClientResourceInfo(null, "site.js", null, null, helper, false, false, false, false);
+        return new ResourceImpl(info, "text/javascript", 0, 0) {
+            @Override
+            public Map<String, String> getResponseHeaders() {
+                Map<String, String> headers = new HashMap<>();
+                headers.put("Last-Modified", "1000");
+                return headers;
+            }
+        };
+    }
+
+    // ----------------------------------------------------------- Inner Classes
+
+    private static final class TestExternalContext extends MockExternalContext {
+
+        final Map<String, String> requestHeaders = new HashMap<>();
+        final Map<String, String> headers = new HashMap<>();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int status;
+        int contentLength = -1;
+        String contentType;
+
+        TestExternalContext() {
+            super(new MockServletContext(), new MockHttpServletRequest(null), new MockHttpServletResponse());
+        }
+
+        String body() {
+            return new String(out.toByteArray(), StandardCharsets.US_ASCII);
+        }
+
+        @Override
+        public Map getRequestHeaderMap() {
+            return requestHeaders;
+        }
+
+        @Override
+        public void setResponseHeader(String name, String value) {
+            headers.put(name, value);
+        }
+
+        @Override
+        public void setResponseStatus(int statusCode) {
+            status = statusCode;
+        }
+
+        @Override
+        public void setResponseContentLength(int length) {
+            contentLength = length;
+        }
+
+        @Override
+        public void setResponseContentType(String type) {
+            contentType = type;
+        }
+
+        @Override
+        public OutputStream getResponseOutputStream() {
+            return out;
+        }
+
+    }
+
+    private static final class TestHelper extends ResourceHelper {
+
+        private final URL url;
+
+        TestHelper(URL url) {
+            this.url = url;
+        }
+
+        @Override
+        public String getBaseResourcePath() {
+            return "/resources";
+        }
+
+        @Override
+        public String getBaseContractsPath() {
+            return "/contracts";
+        }
+
+        @Override
+        public URL getURL(ResourceInfo resource, FacesContext ctx) {
+            return url;
+        }
+
+        @Override
+        public LibraryInfo findLibrary(String libraryName, String localePrefix, String contract, FacesContext ctx) {
+            return null;
+        }
+
+        @Override
+        public ResourceInfo findResource(LibraryInfo library, String resourceName, String localePrefix,
+                                         boolean compressable, FacesContext ctx) {
+            return null;
+        }
+
+        @Override
+        protected InputStream getNonCompressedInputStream(ResourceInfo info, FacesContext ctx) {
+            return null;
+        }
+
+    }
+
+}
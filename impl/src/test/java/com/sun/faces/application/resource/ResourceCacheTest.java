@@ -23,7 +23,10 @@ import java.util.Arrays;
 import java.util.List;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 
 public class ResourceCacheTest {
 
@@ -39,4 +42,48 @@ public class ResourceCacheTest {
         assertThat(cachedResourceInfo, is(resourceInfo));
     }
 
+    @Test
+    public void cachedUnderLookupLocalePrefix() {
+        ResourceCache cache = new ResourceCache(-1L);
+        ResourceInfo resourceInfo = new ResourceInfo(new ContractInfo("foo"), "bar.gif", null, null);
+        List<String> contracts = Arrays.asList("foo");
+        // no localized variant was found for the "de" lookup
+        cache.add(resourceInfo, "de", contracts);
+        assertThat(cache.get("bar.gif", null, "de", contracts), is(resourceInfo));
+        assertNull(cache.get("bar.gif", null, null, contracts));
+    }
+
+    @Test
+    public void missingResources() {
+        ResourceCache cache = new ResourceCache(-1L);
+        List<String> contracts = Arrays.asList("foo");
+        cache.addMissing("bar.js", "lib", null, contracts);
+        assertTrue(cache.isMissing("bar.js", "lib", null, contracts));
+        assertFalse(cache.isMissing("bar.js", "lib", "de", contracts));
+        assertFalse(cache.isMissing("bar.js", null, null, contracts));
+        cache.addMissingLibrary("nolib");
+        assertTrue(cache.isMissingLibrary("nolib"));
+        cache.clear();
+        assertFalse(cache.isMissing("bar.js", "lib", null, contracts));
+        assertFalse(cache.isMissingLibrary("nolib"));
+    }
+
+    @Test
+    public void missingResourcesAreBounded() {
+        ResourceCache cache = new ResourceCache(-1L);
+        List<String> contracts = new ArrayList<>();
+        cache.addMissing("first.js", null, null, contracts);
+        for (int i = 0; i < ResourceCache.MAX_MISSING_ENTRIES; i++) {
+            cache.addMissing("probe" + i + ".js", null, null, contracts);
+        }
+        assertFalse(cache.isMissing("first.js", null, null, contracts));
+    }
+
+    @Test
+    public void missingResourcesNotRememberedWithoutCaching() {
+        ResourceCache cache = new ResourceCache(0L);
+        cache.addMissing("bar.js", null, null, new ArrayList<>());
+        assertFalse(cache.isMissing("bar.js", null, null, new ArrayList<>()));
+    }
+
 }
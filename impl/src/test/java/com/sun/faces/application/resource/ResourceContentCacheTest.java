@@ -0,0 +1,285 @@
+/*
+ * Copyright (c) 2017, 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.faces.application.resource;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import javax.faces.application.Resource;
+import javax.faces.context.FacesContext;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.faces.mock.MockApplication;
+import com.sun.faces.mock.MockExternalContext;
+import com.sun.faces.mock.MockFacesContext;
+import com.sun.faces.mock.MockHttpServletRequest;
+import com.sun.faces.mock.MockHttpServletResponse;
+import com.sun.faces.mock.MockServletContext;
+
+public class ResourceContentCacheTest {
+
+    private MockFacesContext context;
+    private TestHelper helper;
+
+    @Before
+    public void setUp() {
+        context = new MockFacesContext();
+        context.setApplication(new MockApplication());
+        helper = new TestHelper();
+    }
+
+    @After
+    public void tearDown() {
+        context.release();
+    }
+
+    @Test
+    public void testHitDoesNotReadResource() throws Exception {
+        ResourceContentCache cache = new ResourceContentCache(1 << 20, 1 << 10);
+        ClientResourceInfo info = info("site.css");
+        helper.content.put("site.css", "body { color: red }");
+
+        TestResource first = new TestResource(info);
+        ResourceContentCache.Entry entry = cache.get(context, first);
+        assertNotNull(entry);
+        assertArrayEquals(bytes("body { color: red }"), entry.content);
+        assertEquals("text/css", entry.contentType);
+        assertEquals(1, entry.headerNames.length);
+        assertEquals("Last-Modified", entry.headerNames[0]);
+        assertEquals(1, first.opened);
+
+        TestResource second = new TestResource(info);
+        assertSame(entry, cache.get(context, second));
+        assertEquals(0, second.opened);
+    }
+
+    @Test
+    public void testLargeResourceIsNotCached() throws Exception {
+        ResourceContentCache cache = new ResourceContentCache(1 << 20, 8);
+        ClientResourceInfo info = info("large.js");
+        helper.content.put("large.js", "var tooLargeToCache;");
+
+        TestResource first = new TestResource(info);
+        assertNull(cache.get(context, first));
+        assertEquals(1, first.opened);
+
+        TestResource second = new TestResource(info);
+        assertNull(cache.get(context, second));
+        assertEquals(0, second.opened);
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() throws Exception {
+        // room for three entries of 10 bytes; evicting goes down to two
+        ResourceContentCache cache = new ResourceContentCache(3 * (256 + 10), 1 << 10);
+        ClientResourceInfo a = info("a.css");
+        ClientResourceInfo b = info("b.css");
+        ClientResourceInfo c = info("c.css");
+        ClientResourceInfo d = info("d.css");
+        helper.content.put("a.css", "0123456789");
+        helper.content.put("b.css", "0123456789");
+        helper.content.put("c.css", "0123456789");
+        helper.content.put("d.css", "0123456789");
+
+        cache.get(context, new TestResource(a));
+        cache.get(context, new TestResource(b));
+        cache.get(context, new TestResource(c));
+        cache.get(context, new TestResource(a));
+        cache.get(context, new TestResource(d));
+
+        TestResource resource = new TestResource(a);
+        cache.get(context, resource);
+        assertEquals(0, resource.opened);
+        resource = new TestResource(d);
+        cache.get(context, resource);
+        assertEquals(0, resource.opened);
+        resource = new TestResource(b);
+        cache.get(context, resource);
+        assertEquals(1, resource.opened);
+    }
+
+    @Test
+    public void testModifiedResourceIsReloaded() throws Exception {
+        ResourceContentCache cache = new ResourceContentCache(1 << 20, 1 << 10);
+        helper.content.put("site.css", "old");
+        cache.get(context, new TestResource(info("site.css")));
+
+        // same modification time, different ResourceInfo
+        TestResource resource = new TestResource(info("site.css"));
+        assertArrayEquals(bytes("old"), cache.get(context, resource).content);
+        assertEquals(0, resource.opened);
+
+        helper.content.put("site.css", "new");
+        helper.lastModified++;
+        resource = new TestResource(info("site.css"));
+        assertArrayEquals(bytes("new"), cache.get(context, resource).content);
+        assertEquals(1, resource.opened);
+    }
+
+    @Test
+    public void testEntityTagNamesContentCoding() throws Exception {
+        helper.content.put("site.js", "var x = 1;");
+        TestResource resource = new TestResource(info("site.js"));
+
+        String identity = resource.getEntityTag(context, null);
+        assertNotNull(identity);
+        String hash = identity.substring(1, identity.length() - 1);
+        assertEquals('"' + hash + "-gzip\"", resource.getEntityTag(context, "gzip"));
+        assertEquals('"' + hash + "-br\"", resource.getEntityTag(context, "br"));
+        assertTrue(ResourceImpl.matchesEntityTag("W/\"" + hash + "-gzip\", \"x\"", '"' + hash + "-gzip\""));
+        assertFalse(ResourceImpl.matchesEntityTag(identity, '"' + hash + "-gzip\""));
+    }
+
+    @Test
+    public void testCombinedResourceIsCompressedAndCached() throws Exception {
+        context.setExternalContext(new MockExternalContext(new MockServletContext(),
+                                                           new MockHttpServletRequest(),
+                                                           new MockHttpServletResponse()) {
+            @Override
+            public Map getRequestHeaderValuesMap() {
+                return Collections.singletonMap("accept-encoding", new String[] { "gzip" });
+            }
+        });
+        helper.content.put("a.css", "a {}");
+        helper.content.put("b.css", "b {}");
+        TestResource a = new TestResource(compressableInfo("a.css"));
+        TestResource b = new TestResource(compressableInfo("b.css"));
+        CombinedResource combined = CombinedResource.create(context, Arrays.<Resource>asList(a, b), 0);
+        ResourceContentCache cache = new ResourceContentCache(1 << 20, 1 << 10);
+
+        ResourceContentCache.Entry entry = cache.get(context, combined);
+        assertEquals("gzip", entry.contentEncoding);
+        assertEquals(combined.getEntityTag(context, "gzip"), entry.getHeader("ETag"));
+        assertEquals("Accept-Encoding", entry.getHeader("Vary"));
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(entry.content))) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            for (int c = in.read(); c != -1; c = in.read()) {
+                out.write(c);
+            }
+            assertArrayEquals(bytes("a {}\nb {}\n"), out.toByteArray());
+        }
+
+        // content addressed: no part is read again
+        helper.content.clear();
+        assertSame(entry, cache.get(context, CombinedResource.create(context, Arrays.<Resource>asList(a, b), 0)));
+    }
+
+    // ---------------------------------------------------------- Private Methods
+
+    private ClientResourceInfo info(String name) {
+        return new ClientResourceInfo(null, name, null, null, helper, false, false, false, false);
+    }
+
+    private ClientResourceInfo compressableInfo(String name) {
+        return new ClientResourceInfo(null, name, null, null, helper, true, false, false, false);
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    // ----------------------------------------------------------- Inner Classes
+
+    private class TestResource extends ResourceImpl {
+
+        int opened;
+
+        TestResource(ClientResourceInfo info) {
+            super(info, "text/css", 0, 0);
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            opened++;
+            return new ByteArrayInputStream(bytes(helper.content.get(getResourceName())));
+        }
+
+        @Override
+        public Map<String, String> getResponseHeaders() {
+            Map<String, String> headers = new HashMap<>();
+            headers.put("Expires", "never");
+            headers.put("Cache-Control", "no-cache");
+            headers.put("Last-Modified", Long.toString(helper.lastModified));
+            return headers;
+        }
+
+    }
+
+    private static final class TestHelper extends ResourceHelper {
+
+        final Map<String, String> content = new HashMap<>();
+        long lastModified = 1000;
+
+        @Override
+        public String getBaseResourcePath() {
+            return "/resources";
+        }
+
+        @Override
+        public String getBaseContractsPath() {
+            return "/contracts";
+        }
+
+        @Override
+        public long getLastModified(ResourceInfo resource, FacesContext ctx) {
+            return lastModified;
+        }
+
+        @Override
+        public URL getURL(ResourceInfo resource, FacesContext ctx) {
+            return null;
+        }
+
+        @Override
+        public LibraryInfo findLibrary(String libraryName, String localePrefix, String contract, FacesContext ctx) {
+            return null;
+        }
+
+        @Override
+        public ResourceInfo findResource(LibraryInfo library, String resourceName, String localePrefix,
+                                         boolean compressable, FacesContext ctx) {
+            return null;
+        }
+
+        @Override
+        protected InputStream getNonCompressedInputStream(ResourceInfo info, FacesContext ctx) {
+            String body = content.get(info.getName());
+            return ((body != null) ? new ByteArrayInputStream(bytes(body)) : null);
+        }
+
+    }
+
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2017, 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.faces.application.resource;
+
+import static com.sun.faces.application.resource.ResourceHelper.acceptsEncoding;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ResourceHelperTest {
+
+    @Test
+    public void testAcceptsEncoding() {
+        assertTrue(acceptsEncoding(new String[] { "gzip, deflate, br" }, "gzip"));
+        assertTrue(acceptsEncoding(new String[] { "gzip, deflate, br" }, "br"));
+        assertTrue(acceptsEncoding(new String[] { "identity", "gzip" }, "gzip"));
+        assertTrue(acceptsEncoding(new String[] { "x-gzip" }, "gzip"));
+        assertTrue(acceptsEncoding(new String[] { "*" }, "br"));
+        assertFalse(acceptsEncoding(new String[] { "deflate" }, "gzip"));
+        assertFalse(acceptsEncoding(null, "gzip"));
+    }
+
+    @Test
+    public void testAcceptsEncodingQuality() {
+        assertFalse(acceptsEncoding(new String[] { "gzip;q=0" }, "gzip"));
+        assertFalse(acceptsEncoding(new String[] { "gzip; q=0.0, *" }, "gzip"));
+        assertTrue(acceptsEncoding(new String[] { "gzip; q=0.0, *" }, "br"));
+        assertTrue(acceptsEncoding(new String[] { "br;q=1.0, gzip;q=0.8" }, "gzip"));
+        assertFalse(acceptsEncoding(new String[] { "*;q=0" }, "gzip"));
+    }
+
+}
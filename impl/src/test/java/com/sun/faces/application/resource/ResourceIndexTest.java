@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 1997, 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.faces.application.resource;
+
+import static com.sun.faces.application.resource.ResourceIndex.toEntry;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class ResourceIndexTest {
+
+    @Test
+    public void testResources() {
+        assertEquals(asList(null, null, "site.css"), toEntry("site.css", false));
+        assertEquals(asList(null, "lib", "site.css"), toEntry("lib/site.css", false));
+        assertEquals(asList(null, "lib", "images/logo.png"), toEntry("lib/images/logo.png", false));
+        assertNull(toEntry(".hidden", false));
+    }
+
+    @Test
+    public void testVersions() {
+        assertEquals(asList(null, "lib", "site.css"), toEntry("lib/1_2/site.css", false));
+        assertEquals(asList(null, "lib", "site.css"), toEntry("lib/site.css/1_0.css", false));
+        assertEquals(asList(null, "lib", "site.css"), toEntry("lib/1_2/site.css/1_0.css", false));
+        assertEquals(asList(null, null, "site.css"), toEntry("site.css/1_0.css", false));
+    }
+
+    @Test
+    public void testContracts() {
+        assertEquals(asList("dark", null, "site.css"), toEntry("dark/site.css", true));
+        assertEquals(asList("dark", "lib", "site.css"), toEntry("dark/lib/1_0/site.css", true));
+        assertNull(toEntry("dark", true));
+    }
+
+}
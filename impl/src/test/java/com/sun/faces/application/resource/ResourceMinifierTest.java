@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2017, 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.faces.application.resource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class ResourceMinifierTest {
+
+    @Test
+    public void testIsMinifiable() {
+        assertTrue(ResourceMinifier.isMinifiable("text/css"));
+        assertTrue(ResourceMinifier.isMinifiable("application/javascript"));
+        assertTrue(ResourceMinifier.isMinifiable("text/javascript"));
+        assertFalse(ResourceMinifier.isMinifiable("image/png"));
+        assertFalse(ResourceMinifier.isMinifiable(null));
+    }
+
+    @Test
+    public void testScriptComments() {
+        assertEquals("var a=1;var b=2;",
+                     script("/* header */\nvar a = 1; // one\n\nvar b = 2;\n"));
+        assertEquals("/*! license */\nvar a;", script("/*! license */\nvar a;"));
+    }
+
+    @Test
+    public void testScriptWhitespace() {
+        assertEquals("function f(a,b){return a+ +b;}",
+                     script("function f(a, b) {\n    return a + +b;\n}"));
+        assertEquals("a=b\nc=d", script("a = b\n  c = d"));
+        assertEquals("return\nx", script("return\n x"));
+        assertEquals("x=1 .toString()", script("x = 1 .toString()"));
+    }
+
+    @Test
+    public void testScriptLiterals() {
+        assertEquals("s=\"a  // b\";", script("s = \"a  // b\";"));
+        assertEquals("r=/ab+\\/ *c/g;", script("r = /ab+\\/ *c/g;"));
+        assertEquals("if(/[/]x/.test(s))return;", script("if (/[/]x/.test(s)) return;"));
+        assertEquals("return/x y/.test(s)", script("return /x y/.test(s)"));
+        assertEquals("q=a/b/c", script("q = a / b / c"));
+        assertEquals("u=\"#{resource['a.js']}\";", script("u = \"#{resource['a.js']}\";"));
+        String template = "x = `a ${b}`;  // keep";
+        assertEquals(template, script(template));
+    }
+
+    @Test
+    public void testStylesheet() {
+        assertEquals("a:hover,b{color:red;margin:0 auto}",
+                     stylesheet("/* c */\na:hover, b {\n  color: red;\n  margin: 0 auto;\n}\n"));
+        assertEquals("div :first-child{width:calc(1px + 2px)}",
+                     stylesheet("div :first-child { width: calc(1px + 2px); }"));
+        assertEquals("@media screen and (max-width:10px){a{b:c}}",
+                     stylesheet("@media screen and (max-width: 10px) {\n a { b: c; }\n}"));
+        assertEquals("a{content:\"  x  \";background:url(#{resource['a b.png']})}",
+                     stylesheet("a { content: \"  x  \"; background: url(#{resource['a b.png']}); }"));
+    }
+
+    // ---------------------------------------------------------- Private Methods
+
+    private static String script(String source) {
+        return new String(ResourceMinifier.minifyScript(source.getBytes(StandardCharsets.UTF_8)),
+                          StandardCharsets.UTF_8);
+    }
+
+    private static String stylesheet(String source) {
+        return new String(ResourceMinifier.minifyStylesheet(source.getBytes(StandardCharsets.UTF_8)),
+                          StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,346 @@
+/*
+ * Copyright (c) 1997, 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.faces.application.view;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Serializable;
+import java.util.List;
+
+import javax.faces.FacesWrapper;
+import javax.faces.component.UIComponent;
+import javax.faces.component.UIOutput;
+import javax.faces.component.UIPanel;
+import javax.faces.component.UIViewRoot;
+import javax.faces.context.FacesContext;
+import javax.faces.convert.Converter;
+import javax.faces.event.ComponentSystemEvent;
+import javax.faces.event.ComponentSystemEventListener;
+import javax.faces.event.PostAddToViewEvent;
+import javax.faces.event.SystemEventListener;
+import javax.faces.view.facelets.Facelet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.faces.mock.MockExternalContext;
+import com.sun.faces.mock.MockFacesContext;
+import com.sun.faces.mock.MockHttpServletRequest;
+import com.sun.faces.mock.MockHttpServletResponse;
+import com.sun.faces.mock.MockServletContext;
+
+public class ViewStateBaselineTest {
+
+    private MockFacesContext context;
+
+    private final Facelet facelet = new TestFacelet();
+
+    @Before
+    public void setUp() {
+        context = new MockFacesContext(new MockExternalContext(new MockServletContext(),
+                                                               new MockHttpServletRequest(null),
+                                                               new MockHttpServletResponse()));
+    }
+
+    @After
+    public void tearDown() {
+        context.release();
+    }
+
+    @Test
+    public void testRoundTripThroughBaseline() {
+        ViewStateBaseline baseline = capture(build("/a.xhtml"));
+
+        UIViewRoot root = build("/a.xhtml");
+        output(root, 0).setValue("changed");
+        Object[] state = baseline.saveState(context, root);
+        assertNotNull(state);
+        assertTrue(baseline.matches(state));
+        // only the changed component has a delta
+        assertEquals(1, ((int[]) state[2]).length);
+
+        UIViewRoot restored = root("/a.xhtml");
+        baseline.instantiate(context, restored);
+        markInitialState(restored);
+        assertTrue(ViewStateBaseline.restoreState(context, restored, state));
+
+        assertEquals("changed", output(restored, 0).getValue());
+        assertEquals("two", output(restored, 1).getValue());
+        assertEquals("o1", output(restored, 0).getId());
+        assertEquals("header", restored.getChildren().get(0).getFacet("header").getId());
+    }
+
+    @Test
+    public void testRoundTripThroughBuiltView() {
+        ViewStateBaseline baseline = capture(build("/a.xhtml"));
+
+        UIViewRoot root = build("/a.xhtml");
+        output(root, 1).setValue("changed");
+        Object[] state = baseline.saveState(context, root);
+
+        // e.g. after a restart, the view is built from its Facelet
+        UIViewRoot built = build("/a.xhtml");
+        assertTrue(ViewStateBaseline.restoreState(context, built, state));
+        assertEquals("one", output(built, 0).getValue());
+        assertEquals("changed", output(built, 1).getValue());
+    }
+
+    @Test
+    public void testDynamicChanges() {
+        ViewStateBaseline baseline = capture(build("/a.xhtml"));
+
+        UIViewRoot added = build("/a.xhtml");
+        added.getChildren().get(0).getChildren().add(output("o3", "three"));
+        assertNull(baseline.saveState(context, added));
+
+        UIViewRoot removed = build("/a.xhtml");
+        removed.getChildren().get(0).getChildren().remove(1);
+        assertNull(baseline.saveState(context, removed));
+
+        UIViewRoot renamed = build("/a.xhtml");
+        output(renamed, 1).setId("other");
+        assertNull(baseline.saveState(context, renamed));
+
+        UIViewRoot moved = build("/a.xhtml");
+        UIComponent header = moved.getChildren().get(0).getFacets().remove("header");
+        moved.getChildren().get(0).getChildren().add(header);
+        assertNull(baseline.saveState(context, moved));
+
+        // transient components are not part of the baseline
+        UIViewRoot withTransient = build("/a.xhtml");
+        UIOutput transientOutput = output("t", "transient");
+        transientOutput.setTransient(true);
+        withTransient.getChildren().add(transientOutput);
+        assertNotNull(baseline.saveState(context, withTransient));
+    }
+
+    @Test
+    public void testMismatchedBaseline() {
+        ViewStateBaseline baseline = capture(build("/a.xhtml"));
+        Object[] state = baseline.saveState(context, build("/a.xhtml"));
+
+        UIViewRoot other = build("/b.xhtml");
+        output(other, 1).setId("other");
+        ViewStateBaseline otherBaseline = capture(other);
+        assertFalse(otherBaseline.matches(state));
+
+        UIViewRoot built = build("/b.xhtml");
+        output(built, 1).setId("other");
+        assertFalse(ViewStateBaseline.restoreState(context, built, state));
+    }
+
+    @Test
+    public void testAttachedConverterIsNotShared() {
+        UIViewRoot built = build("/a.xhtml");
+        TestConverter builtConverter = new TestConverter();
+        output(built, 0).setConverter(builtConverter);
+        ViewStateBaseline baseline = capture(built);
+
+        UIViewRoot first = instantiate(baseline);
+        UIViewRoot second = instantiate(baseline);
+        TestConverter firstConverter = (TestConverter) output(first, 0).getConverter();
+        TestConverter secondConverter = (TestConverter) output(second, 0).getConverter();
+        assertNotSame(builtConverter, firstConverter);
+        assertNotSame(firstConverter, secondConverter);
+
+        firstConverter.pattern = "changed";
+        assertEquals("default", secondConverter.pattern);
+        assertEquals("default", ((TestConverter) output(instantiate(baseline), 0).getConverter()).pattern);
+        assertEquals("one", output(second, 0).getValue());
+    }
+
+    @Test
+    public void testListenerIsNotSharedAndIsNotified() {
+        UIViewRoot built = build("/a.xhtml");
+        TestListener builtListener = new TestListener();
+        output(built, 1).subscribeToEvent(PostAddToViewEvent.class, builtListener);
+        ViewStateBaseline baseline = capture(built);
+
+        UIViewRoot first = instantiate(baseline);
+        UIViewRoot second = instantiate(baseline);
+        TestListener firstListener = listener(output(first, 1));
+        TestListener secondListener = listener(output(second, 1));
+        assertNotSame(builtListener, firstListener);
+        assertNotSame(firstListener, secondListener);
+
+        // notified once, after the tree has been assembled
+        assertEquals(1, firstListener.events);
+        assertSame(output(first, 1), firstListener.source);
+        assertEquals(1, secondListener.events);
+        assertSame(output(second, 1), secondListener.source);
+    }
+
+    @Test
+    public void testNoEventsWhenNotProcessingEvents() {
+        UIViewRoot built = build("/a.xhtml");
+        output(built, 1).subscribeToEvent(PostAddToViewEvent.class, new TestListener());
+        ViewStateBaseline baseline = capture(built);
+
+        context.setProcessingEvents(false);
+        UIViewRoot restored = instantiate(baseline);
+        assertFalse(context.isProcessingEvents());
+        context.setProcessingEvents(true);
+        assertEquals(0, listener(output(restored, 1)).events);
+    }
+
+    @Test
+    public void testUnserializableStateHasNoBaseline() {
+        UIViewRoot built = build("/a.xhtml");
+        output(built, 0).setConverter(new UnserializableConverter());
+        ViewStateBaseline.capture(context, built, facelet);
+        assertNull(ViewStateBaseline.getBaseline(context, "/a.xhtml"));
+    }
+
+    @Test
+    public void testRecompiledFaceletDropsBaseline() {
+        ViewStateBaseline baseline = capture(build("/a.xhtml"));
+        assertSame(baseline, ViewStateBaseline.getBaseline(context, "/a.xhtml", facelet));
+
+        Facelet recompiled = new TestFacelet();
+        assertNull(ViewStateBaseline.getBaseline(context, "/a.xhtml", recompiled));
+        assertNull(ViewStateBaseline.getBaseline(context, "/a.xhtml"));
+
+        ViewStateBaseline.capture(context, build("/a.xhtml"), facelet);
+        UIViewRoot changed = build("/a.xhtml");
+        output(changed, 1).setId("changed");
+        ViewStateBaseline.capture(context, changed, recompiled);
+        ViewStateBaseline recaptured = ViewStateBaseline.getBaseline(context, "/a.xhtml", recompiled);
+        assertNotNull(recaptured);
+        assertNotSame(baseline, recaptured);
+        assertNotNull(recaptured.saveState(context, changed));
+        assertNull(recaptured.saveState(context, build("/a.xhtml")));
+    }
+
+    private UIViewRoot instantiate(ViewStateBaseline baseline) {
+        UIViewRoot root = root("/a.xhtml");
+        baseline.instantiate(context, root);
+        markInitialState(root);
+        return root;
+    }
+
+    private static TestListener listener(UIComponent component) {
+        List<SystemEventListener> listeners = component.getListenersForEventClass(PostAddToViewEvent.class);
+        assertEquals(1, listeners.size());
+        return (TestListener) ((FacesWrapper<?>) listeners.get(0)).getWrapped();
+    }
+
+    private ViewStateBaseline capture(UIViewRoot root) {
+        ViewStateBaseline.capture(context, root, facelet);
+        ViewStateBaseline baseline = ViewStateBaseline.getBaseline(context, root.getViewId());
+        assertNotNull(baseline);
+        return baseline;
+    }
+
+    private static UIViewRoot build(String viewId) {
+        UIViewRoot root = root(viewId);
+        UIPanel panel = new UIPanel();
+        panel.setId("p");
+        panel.getFacets().put("header", output("header", "header"));
+        panel.getChildren().add(output("o1", "one"));
+        panel.getChildren().add(output("o2", "two"));
+        root.getChildren().add(panel);
+        markInitialState(root);
+        return root;
+    }
+
+    private static UIViewRoot root(String viewId) {
+        UIViewRoot root = new UIViewRoot();
+        root.setViewId(viewId);
+        return root;
+    }
+
+    private static UIOutput output(String id, Object value) {
+        UIOutput output = new UIOutput();
+        output.setId(id);
+        output.setValue(value);
+        return output;
+    }
+
+    private static UIOutput output(UIViewRoot root, int index) {
+        return (UIOutput) root.getChildren().get(0).getChildren().get(index);
+    }
+
+    private static void markInitialState(UIComponent component) {
+        component.markInitialState();
+        for (UIComponent child : component.getFacets().values()) {
+            markInitialState(child);
+        }
+        for (UIComponent child : component.getChildren()) {
+            markInitialState(child);
+        }
+    }
+
+    private static class TestFacelet extends Facelet {
+
+        @Override
+        public void apply(FacesContext facesContext, UIComponent parent) {
+        }
+
+    }
+
+    public static class TestConverter implements Converter<Object>, Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        String pattern = "default";
+
+        @Override
+        public Object getAsObject(FacesContext context, UIComponent component, String value) {
+            return value;
+        }
+
+        @Override
+        public String getAsString(FacesContext context, UIComponent component, Object value) {
+            return String.valueOf(value);
+        }
+
+    }
+
+    public static class UnserializableConverter extends TestConverter {
+
+        private static final long serialVersionUID = 1L;
+
+        final Object lock = new Object();
+
+    }
+
+    public static class TestListener implements ComponentSystemEventListener, Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        transient int events;
+        transient UIComponent source;
+
+        @Override
+        public void processEvent(ComponentSystemEvent event) {
+            // as the application ignores events published while they are disabled
+            if (FacesContext.getCurrentInstance().isProcessingEvents()) {
+                events++;
+                source = event.getComponent();
+            }
+        }
+
+    }
+
+}
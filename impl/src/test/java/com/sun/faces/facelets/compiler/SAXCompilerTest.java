@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 1997, 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.faces.facelets.compiler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SAXCompilerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testEventsDirectoryIsPruned() throws Exception {
+        File directory = folder.newFolder("events");
+        long now = System.currentTimeMillis();
+        int count = SAXCompiler.MAX_EVENTS_FILES + 5;
+        for (int i = 0; i < count; i++) {
+            File events = new File(directory, i + ".events");
+            Files.write(events.toPath(), new byte[] { 1 });
+            assertTrue(events.setLastModified(now - (count - i) * 1000L));
+        }
+        File temp = new File(directory, "left.tmp");
+        Files.write(temp.toPath(), new byte[] { 1 });
+        assertTrue(temp.setLastModified(now - 24 * 60 * 60 * 1000L));
+
+        new SAXCompiler().setEventsDirectory(directory);
+
+        assertEquals(SAXCompiler.MAX_EVENTS_FILES, directory.list().length);
+        for (int i = 0; i < 5; i++) {
+            assertFalse(new File(directory, i + ".events").exists());
+        }
+        assertTrue(new File(directory, (count - 1) + ".events").exists());
+        assertFalse(temp.exists());
+    }
+
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 1997, 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.faces.facelets.compiler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.xml.sax.Attributes;
+import org.xml.sax.Locator;
+import org.xml.sax.ext.LexicalHandler;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
+
+public class SAXEventsTest {
+
+    @Test
+    public void testReplay() throws Exception {
+        byte[] data = record();
+        assertTrue(SAXEvents.isValid(data));
+
+        LoggingHandler handler = new LoggingHandler();
+        SAXEvents.replay(data, handler);
+        assertEquals("startDocument;startDTD(html,null,null);endDTD;"
+                     + "startPrefixMapping(h,http://xmlns.jcp.org/jsf/html);"
+                     + "startElement(http://xmlns.jcp.org/jsf/html,outputText,h:outputText,[value=#{bean.text}]@3:7);"
+                     + "characters(a\ud83d);characters(\ude00b);comment( c );startCDATA;endCDATA;"
+                     + "endElement(http://xmlns.jcp.org/jsf/html,outputText,h:outputText);"
+                     + "endPrefixMapping(h);processingInstruction(xml-stylesheet,href=\"x\");endDocument;",
+                     handler.log.toString());
+    }
+
+    @Test
+    public void testInvalid() throws Exception {
+        byte[] data = record();
+        data[data.length - 1] ^= 1;
+        assertFalse(SAXEvents.isValid(data));
+        assertFalse(SAXEvents.isValid(new byte[3]));
+    }
+
+    // ---------------------------------------------------------- Private Methods
+
+    private static byte[] record() throws Exception {
+        SAXEvents events = new SAXEvents();
+        events.startDocument();
+        events.startDTD("html", null, null);
+        events.endDTD();
+        events.startPrefixMapping("h", "http://xmlns.jcp.org/jsf/html");
+        AttributesImpl attributes = new AttributesImpl();
+        attributes.addAttribute("", "value", "value", "CDATA", "#{bean.text}");
+        events.startElement(3, 7, "http://xmlns.jcp.org/jsf/html", "outputText", "h:outputText", attributes);
+        // A surrogate pair split across two events
+        events.characters("a\ud83d".toCharArray(), 0, 2);
+        events.characters("\ude00b".toCharArray(), 0, 2);
+        events.comment(" c ".toCharArray(), 0, 3);
+        events.startCDATA();
+        events.endCDATA();
+        events.endElement("http://xmlns.jcp.org/jsf/html", "outputText", "h:outputText");
+        events.endPrefixMapping("h");
+        events.processingInstruction("xml-stylesheet", "href=\"x\"");
+        events.endDocument();
+        return events.toByteArray();
+    }
+
+    private static class LoggingHandler extends DefaultHandler implements LexicalHandler {
+
+        private final StringBuilder log = new StringBuilder();
+        private Locator locator;
+
+        @Override
+        public void setDocumentLocator(Locator locator) {
+            this.locator = locator;
+        }
+
+        @Override
+        public void startDocument() {
+            log.append("startDocument;");
+        }
+
+        @Override
+        public void endDocument() {
+            log.append("endDocument;");
+        }
+
+        @Override
+        public void startPrefixMapping(String prefix, String uri) {
+            log.append("startPrefixMapping(").append(prefix).append(',').append(uri).append(");");
+        }
+
+        @Override
+        public void endPrefixMapping(String prefix) {
+            log.append("endPrefixMapping(").append(prefix).append(");");
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            log.append("startElement(").append(uri).append(',').append(localName).append(',').append(qName).append(",[");
+            for (int i = 0; i < attributes.getLength(); i++) {
+                log.append(attributes.getQName(i)).append('=').append(attributes.getValue(i));
+            }
+            log.append("]@").append(locator.getLineNumber()).append(':').append(locator.getColumnNumber()).append(");");
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            log.append("endElement(").append(uri).append(',').append(localName).append(',').append(qName).append(");");
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            log.append("characters(").append(ch, start, length).append(");");
+        }
+
+        @Override
+        public void processingInstruction(String target, String data) {
+            log.append("processingInstruction(").append(target).append(',').append(data).append(");");
+        }
+
+        @Override
+        public void startDTD(String name, String publicId, String systemId) {
+            log.append("startDTD(").append(name).append(',').append(publicId).append(',').append(systemId).append(");");
+        }
+
+        @Override
+        public void endDTD() {
+            log.append("endDTD;");
+        }
+
+        @Override
+        public void startEntity(String name) {
+        }
+
+        @Override
+        public void endEntity(String name) {
+        }
+
+        @Override
+        public void startCDATA() {
+            log.append("startCDATA;");
+        }
+
+        @Override
+        public void endCDATA() {
+            log.append("endCDATA;");
+        }
+
+        @Override
+        public void comment(char[] ch, int start, int length) {
+            log.append("comment(").append(ch, start, length).append(");");
+        }
+    }
+
+}
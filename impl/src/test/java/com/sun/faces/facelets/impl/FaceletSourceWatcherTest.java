@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 1997, 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.faces.facelets.impl;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import org.junit.Test;
+
+public class FaceletSourceWatcherTest {
+
+    private static final long HOUR = 3600 * 1000;
+
+    @Test
+    public void testFile() throws Exception {
+        Path dir = Files.createTempDirectory("facelets");
+        Path file = Files.write(dir.resolve("index.xhtml"), "<html/>".getBytes(UTF_8));
+        FaceletSourceWatcher watcher = new FaceletSourceWatcher(HOUR);
+        try {
+            FaceletSourceWatcher.Source source = watcher.watch(file.toUri().toURL());
+            URL otherUrl = Files.write(dir.resolve("other.xhtml"), "<html/>".getBytes(UTF_8)).toUri().toURL();
+            FaceletSourceWatcher.Source other = watcher.watch(otherUrl);
+            assertFalse(source.isModified());
+
+            // reading an unmodified source again shares its state
+            assertSame(source, watcher.watch(file.toUri().toURL()));
+
+            Files.write(file, "<html></html>".getBytes(UTF_8));
+            long timeout = System.currentTimeMillis() + 30000;
+            while (!source.isModified() && System.currentTimeMillis() < timeout) {
+                Thread.sleep(50);
+            }
+            assertTrue(source.isModified());
+            assertFalse(other.isModified());
+            assertSame(other, watcher.watch(otherUrl));
+            FaceletSourceWatcher.Source reread = watcher.watch(file.toUri().toURL());
+            assertNotSame(source, reread);
+            assertFalse(reread.isModified());
+        } finally {
+            watcher.close();
+        }
+    }
+
+    @Test
+    public void testJar() throws Exception {
+        Path jar = Files.createTempFile("facelets", ".jar");
+        try (OutputStream out = Files.newOutputStream(jar);
+             JarOutputStream jarOut = new JarOutputStream(out)) {
+            jarOut.putNextEntry(new JarEntry("META-INF/resources/index.xhtml"));
+            jarOut.write("<html/>".getBytes(UTF_8));
+        }
+        FaceletSourceWatcher watcher = new FaceletSourceWatcher(HOUR);
+        try {
+            FaceletSourceWatcher.Source source = watcher.watch(
+                  new URL("jar:" + jar.toUri() + "!/META-INF/resources/index.xhtml"));
+            watcher.scan();
+            assertFalse(source.isModified());
+
+            Files.setLastModifiedTime(jar, FileTime.fromMillis(Files.getLastModifiedTime(jar).toMillis() + 60000));
+            watcher.scan();
+            assertTrue(source.isModified());
+        } finally {
+            watcher.close();
+        }
+    }
+
+}
@@ -0,0 +1,293 @@
+/*
+ * Copyright (c) 1997, 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.faces.facelets.tag;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.net.URL;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.el.CompositeELResolver;
+import javax.el.ELResolver;
+import javax.el.ExpressionFactory;
+import javax.el.FunctionMapper;
+import javax.el.ListELResolver;
+import javax.el.ValueExpression;
+import javax.el.VariableMapper;
+import javax.faces.component.UIComponent;
+import javax.faces.context.FacesContext;
+import javax.faces.view.Location;
+import javax.faces.view.facelets.FaceletContext;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.el.ExpressionFactoryImpl;
+import com.sun.faces.facelets.el.DefaultVariableMapper;
+import com.sun.faces.facelets.el.TagValueExpression;
+import com.sun.faces.facelets.tag.jstl.core.IndexedValueExpression;
+import com.sun.faces.mock.MockExternalContext;
+import com.sun.faces.mock.MockFacesContext;
+import com.sun.faces.mock.MockHttpServletRequest;
+import com.sun.faces.mock.MockHttpServletResponse;
+import com.sun.faces.mock.MockServletContext;
+
+public class CachedExpressionTest {
+
+    private static final ExpressionFactory FACTORY = new ExpressionFactoryImpl();
+
+    private MockFacesContext facesContext;
+    private long hits;
+    private long misses;
+
+    @Before
+    public void setUp() {
+        facesContext = createFacesContext(true);
+        hits = TagAttributeImpl.getCachedExpressionHits();
+        misses = TagAttributeImpl.getCachedExpressionMisses();
+    }
+
+    @After
+    public void tearDown() {
+        facesContext.release();
+    }
+
+    @Test
+    public void testReuse() {
+        TagAttributeImpl attribute = attribute("#{'value'}");
+
+        ValueExpression first = attribute.getValueExpression(new TestFaceletContext(), Object.class);
+        assertCounts(0, 0);
+        ValueExpression second = attribute.getValueExpression(new TestFaceletContext(), Object.class);
+        assertCounts(1, 0);
+        assertSame(unwrap(first), unwrap(second));
+
+        // a different expected type needs a new expression
+        ValueExpression third = attribute.getValueExpression(new TestFaceletContext(), String.class);
+        assertCounts(1, 1);
+        assertNotSame(unwrap(second), unwrap(third));
+    }
+
+    @Test
+    public void testParam() {
+        TagAttributeImpl paramA = attribute("#{'A'}");
+        TagAttributeImpl paramB = attribute("#{'B'}");
+        TagAttributeImpl attribute = attribute("#{p}");
+
+        // <ui:include><ui:param name="p" value="#{'A'}"/></ui:include>, twice
+        TestFaceletContext ctx = new TestFaceletContext();
+        ctx.setVariable("p", paramA.getValueExpression(ctx, Object.class));
+        ValueExpression first = attribute.getValueExpression(ctx, Object.class);
+        assertEquals("A", first.getValue(ctx));
+
+        ctx = new TestFaceletContext();
+        ctx.setVariable("p", paramA.getValueExpression(ctx, Object.class));
+        ValueExpression second = attribute.getValueExpression(ctx, Object.class);
+        assertSame(unwrap(first), unwrap(second));
+        assertCounts(2, 0);
+
+        // the same page included with another parameter
+        ctx = new TestFaceletContext();
+        ctx.setVariable("p", paramB.getValueExpression(ctx, Object.class));
+        ValueExpression third = attribute.getValueExpression(ctx, Object.class);
+        assertEquals("B", third.getValue(ctx));
+        assertCounts(2, 1);
+    }
+
+    @Test
+    public void testChainedParam() {
+        TagAttributeImpl paramA = attribute("#{'A'}");
+        TagAttributeImpl paramB = attribute("#{'B'}");
+        TagAttributeImpl chained = attribute("#{q}");
+        TagAttributeImpl attribute = attribute("#{p}");
+
+        // q is #{'A'} at one site and #{'B'} at another, p is #{q} at both
+        TestFaceletContext ctx = new TestFaceletContext();
+        ctx.setVariable("q", paramA.getValueExpression(ctx, Object.class));
+        ctx.setVariable("p", chained.getValueExpression(ctx, Object.class));
+        assertEquals("A", attribute.getValueExpression(ctx, Object.class).getValue(ctx));
+
+        ctx = new TestFaceletContext();
+        ctx.setVariable("q", paramB.getValueExpression(ctx, Object.class));
+        ctx.setVariable("p", chained.getValueExpression(ctx, Object.class));
+        assertEquals("B", attribute.getValueExpression(ctx, Object.class).getValue(ctx));
+        // neither p nor the attribute were reused
+        assertCounts(0, 2);
+
+        ctx = new TestFaceletContext();
+        ctx.setVariable("q", paramB.getValueExpression(ctx, Object.class));
+        ctx.setVariable("p", chained.getValueExpression(ctx, Object.class));
+        assertEquals("B", attribute.getValueExpression(ctx, Object.class).getValue(ctx));
+        assertCounts(3, 2);
+    }
+
+    @Test
+    public void testForEach() {
+        TestFaceletContext ctx = new TestFaceletContext();
+        ctx.setVariable("items", FACTORY.createValueExpression(Arrays.asList("a", "b"), List.class));
+        ValueExpression items = FACTORY.createValueExpression(ctx, "#{items}", Object.class);
+        TagAttributeImpl attribute = attribute("#{item}");
+
+        // <c:forEach items="#{items}" var="item">, whose expressions are
+        // equal whatever their index
+        for (int i = 0; i < 2; i++) {
+            ctx.setVariable("item", new IndexedValueExpression(items, i));
+            assertEquals((i == 0) ? "a" : "b", attribute.getValueExpression(ctx, Object.class).getValue(ctx));
+        }
+        assertCounts(0, 1);
+    }
+
+    @Test
+    public void testLiteralParam() {
+        TagAttributeImpl attribute = attribute("#{p}");
+
+        TestFaceletContext ctx = new TestFaceletContext();
+        ctx.setVariable("p", FACTORY.createValueExpression("literal", Object.class));
+        ValueExpression first = attribute.getValueExpression(ctx, Object.class);
+
+        // an equal literal captured with a new expression
+        ctx = new TestFaceletContext();
+        ctx.setVariable("p", FACTORY.createValueExpression("literal", Object.class));
+        ValueExpression second = attribute.getValueExpression(ctx, Object.class);
+        assertSame(unwrap(first), unwrap(second));
+        assertEquals("literal", second.getValue(ctx));
+        assertCounts(1, 0);
+    }
+
+    @Test
+    public void testDisabledByDefault() {
+        facesContext.release();
+        facesContext = createFacesContext(false);
+        TagAttributeImpl attribute = attribute("#{'value'}");
+
+        ValueExpression first = attribute.getValueExpression(new TestFaceletContext(), Object.class);
+        ValueExpression second = attribute.getValueExpression(new TestFaceletContext(), Object.class);
+        assertNotSame(unwrap(first), unwrap(second));
+        assertCounts(0, 0);
+    }
+
+    // ---------------------------------------------------------- Private Methods
+
+    private static MockFacesContext createFacesContext(boolean cacheExpressions) {
+        MockServletContext servletContext = new MockServletContext();
+        if (cacheExpressions) {
+            servletContext.addInitParameter("com.sun.faces.cacheTagAttributeExpressions", "true");
+        }
+        return new MockFacesContext(new MockExternalContext(servletContext,
+                                                            new MockHttpServletRequest(null),
+                                                            new MockHttpServletResponse()));
+    }
+
+    private void assertCounts(long expectedHits, long expectedMisses) {
+        assertEquals(expectedHits, TagAttributeImpl.getCachedExpressionHits() - hits);
+        assertEquals(expectedMisses, TagAttributeImpl.getCachedExpressionMisses() - misses);
+    }
+
+    private static TagAttributeImpl attribute(String value) {
+        return new TagAttributeImpl(new Location("/page.xhtml", 1, 1), "", "value", "value", value);
+    }
+
+    private static ValueExpression unwrap(ValueExpression expression) {
+        return ((TagValueExpression) expression).getWrapped();
+    }
+
+    // ----------------------------------------------------------- Inner Classes
+
+    private final class TestFaceletContext extends FaceletContext {
+
+        private final Map<String, Object> attributes = new HashMap<>();
+        private final CompositeELResolver resolver = new CompositeELResolver();
+        private VariableMapper variableMapper = new DefaultVariableMapper();
+        private FunctionMapper functionMapper;
+
+        TestFaceletContext() {
+            resolver.add(new ListELResolver());
+        }
+
+        void setVariable(String name, ValueExpression expression) {
+            variableMapper.setVariable(name, expression);
+        }
+
+        @Override
+        public FacesContext getFacesContext() {
+            return facesContext;
+        }
+
+        @Override
+        public String generateUniqueId(String base) {
+            return base;
+        }
+
+        @Override
+        public ExpressionFactory getExpressionFactory() {
+            return FACTORY;
+        }
+
+        @Override
+        public void setVariableMapper(VariableMapper varMapper) {
+            variableMapper = varMapper;
+        }
+
+        @Override
+        public void setFunctionMapper(FunctionMapper fnMapper) {
+            functionMapper = fnMapper;
+        }
+
+        @Override
+        public void setAttribute(String name, Object value) {
+            attributes.put(name, value);
+        }
+
+        @Override
+        public Object getAttribute(String name) {
+            return attributes.get(name);
+        }
+
+        @Override
+        public void includeFacelet(UIComponent parent, String relativePath) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void includeFacelet(UIComponent parent, URL absolutePath) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ELResolver getELResolver() {
+            return resolver;
+        }
+
+        @Override
+        public FunctionMapper getFunctionMapper() {
+            return functionMapper;
+        }
+
+        @Override
+        public VariableMapper getVariableMapper() {
+            return variableMapper;
+        }
+
+    }
+
+}
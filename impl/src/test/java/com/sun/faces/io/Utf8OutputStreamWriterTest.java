@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 1997, 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.faces.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class Utf8OutputStreamWriterTest {
+
+    @Test
+    public void testEncodesLikeJdk() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 3000; i++) {
+            sb.append("<p class=\"x\">caf\u00e9 \u20ac \ud83d\ude00</p>");
+        }
+        String s = sb.toString();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Utf8OutputStreamWriter writer = new Utf8OutputStreamWriter(out);
+        // split writes, so that surrogate pairs and buffers are cut in odd places
+        char[] chars = s.toCharArray();
+        for (int off = 0; off < chars.length; off += 7) {
+            writer.write(chars, off, Math.min(7, chars.length - off));
+        }
+        writer.write(s, 0, 100);
+        writer.write('\u00e9');
+        writer.release();
+
+        assertArrayEquals((s + s.substring(0, 100) + '\u00e9').getBytes(StandardCharsets.UTF_8),
+                          out.toByteArray());
+    }
+
+    @Test
+    public void testUnpairedSurrogates() throws Exception {
+        String s = "a\ude00b\ud83dc\ud83d";
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        try (OutputStreamWriter jdk = new OutputStreamWriter(expected, StandardCharsets.UTF_8)) {
+            jdk.write(s);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Utf8OutputStreamWriter writer = new Utf8OutputStreamWriter(out);
+        writer.write(s);
+        writer.release();
+        assertArrayEquals(expected.toByteArray(), out.toByteArray());
+    }
+
+    @Test
+    public void testDrainAndReset() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Utf8OutputStreamWriter writer = new Utf8OutputStreamWriter(out);
+        writer.write("head");
+        assertEquals(0, out.size());
+        writer.drain();
+        assertEquals("head", out.toString("UTF-8"));
+        writer.write("discarded");
+        writer.reset();
+        writer.write("tail");
+        writer.release();
+        assertEquals("headtail", out.toString("UTF-8"));
+    }
+
+    @Test
+    public void testWriteAfterRelease() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Utf8OutputStreamWriter writer = new Utf8OutputStreamWriter(out);
+        writer.write("done");
+        writer.release();
+        writer.release();
+        try {
+            writer.write('x');
+            fail();
+        } catch (IOException expected) {
+            assertEquals("stream closed", expected.getMessage());
+        }
+        try {
+            writer.write("x");
+            fail();
+        } catch (IOException expected) {
+        }
+        try {
+            writer.flush();
+            fail();
+        } catch (IOException expected) {
+        }
+        writer.close();
+        assertEquals("done", out.toString("UTF-8"));
+    }
+
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 1997, 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.faces.renderkit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+import javax.faces.context.FacesContext;
+
+import org.junit.Test;
+
+import com.sun.faces.mock.MockExternalContext;
+import com.sun.faces.mock.MockFacesContext;
+
+public class ByteArrayGuardTest {
+
+    @Test
+    public void testRoundTripWithOffset() {
+        FacesContext context = createFacesContext();
+        ByteArrayGuard guard = new ByteArrayGuard();
+
+        byte[] data = new byte[1000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+
+        byte[] encrypted = guard.encrypt(context, data, 10, 500);
+        assertArrayEquals(Arrays.copyOfRange(data, 10, 510), guard.decrypt(context, encrypted));
+
+        // encrypting twice must reuse the per-thread primitives safely
+        encrypted = guard.encrypt(context, data);
+        assertArrayEquals(data, guard.decrypt(context, encrypted));
+    }
+
+    @Test
+    public void testTamperedMac() {
+        FacesContext context = createFacesContext();
+        ByteArrayGuard guard = new ByteArrayGuard();
+
+        byte[] encrypted = guard.encrypt(context, "state".getBytes());
+        encrypted[encrypted.length - 1] ^= 1;
+        assertNull(guard.decrypt(context, encrypted));
+        assertNull(guard.decrypt(context, new byte[10]));
+    }
+
+    @Test
+    public void testPooledGZIPIsReadableByGZIPInputStream() throws IOException {
+        byte[] data = new byte[100000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i % 31);
+        }
+
+        // twice on the same thread, so the second run uses a reset deflater
+        for (int run = 0; run < 2; run++) {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            try (PooledGZIPOutputStream out = new PooledGZIPOutputStream(baos, 1024)) {
+                out.write(data, 0, 5000);
+                out.write(data[5000]);
+                out.write(data, 5001, data.length - 5001);
+            }
+
+            ByteArrayOutputStream result = new ByteArrayOutputStream();
+            try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(baos.toByteArray()))) {
+                byte[] buf = new byte[4096];
+                for (int n; (n = in.read(buf)) != -1;) {
+                    result.write(buf, 0, n);
+                }
+            }
+            assertArrayEquals(data, result.toByteArray());
+        }
+    }
+
+    private static FacesContext createFacesContext() {
+        return new MockFacesContext(new MockExternalContext(null, null, null) {
+            @Override
+            public Object getSession(boolean create) {
+                return null;
+            }
+        });
+    }
+
+}
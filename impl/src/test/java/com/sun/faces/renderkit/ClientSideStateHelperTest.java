@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 1997, 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.faces.renderkit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.faces.component.UIViewRoot;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.sun.faces.mock.MockExternalContext;
+import com.sun.faces.mock.MockFacesContext;
+import com.sun.faces.mock.MockHttpServletRequest;
+import com.sun.faces.mock.MockHttpServletResponse;
+import com.sun.faces.mock.MockServletContext;
+import com.sun.faces.spi.SerializationProviderFactory;
+
+public class ClientSideStateHelperTest {
+
+    private MockFacesContext context;
+
+    @After
+    public void tearDown() {
+        if (context != null) {
+            context.release();
+        }
+    }
+
+    @Test
+    public void testHiddenFieldIsSmallerWithDictionary() throws Exception {
+        String gzip = write(false);
+        String dictionary = write(true);
+        assertTrue(dictionary.length() + " < " + gzip.length(), dictionary.length() < gzip.length());
+    }
+
+    @Test
+    public void testRoundTripWithDictionary() throws Exception {
+        setUp(true);
+        ClientSideStateHelper helper = new ClientSideStateHelper();
+        StringBuilder stateCapture = new StringBuilder();
+        helper.writeState(context, new Object[] { structure(), state() }, stateCapture);
+
+        Object[] restored = (Object[]) helper.doGetState(context, "/page.xhtml", stateCapture.toString());
+        assertArrayEquals(structure(), (Object[]) restored[0]);
+        Map<?, ?> state = (Map<?, ?>) restored[1];
+        assertEquals(state().keySet(), state.keySet());
+        assertArrayEquals(state().get("form:firstName"), (Object[]) state.get("form:firstName"));
+
+        // the state does not belong to that view
+        assertNull(helper.doGetState(context, "/other.xhtml", stateCapture.toString()));
+    }
+
+    // ---------------------------------------------------------- Private Methods
+
+    private String write(boolean dictionary) throws Exception {
+        setUp(dictionary);
+        try {
+            StringBuilder stateCapture = new StringBuilder();
+            new ClientSideStateHelper().writeState(context, new Object[] { structure(), state() }, stateCapture);
+            return stateCapture.toString();
+        } finally {
+            context.release();
+            context = null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void setUp(boolean dictionary) {
+        MockServletContext servletContext = new MockServletContext();
+        servletContext.addInitParameter("com.sun.faces.compressViewStateWithDictionary",
+                                        Boolean.toString(dictionary));
+        MockExternalContext extContext = new MockExternalContext(servletContext,
+                                                                 new MockHttpServletRequest(null),
+                                                                 new MockHttpServletResponse()) {
+            @Override
+            public Object getSession(boolean create) {
+                return null;
+            }
+        };
+        context = new MockFacesContext(extContext);
+        UIViewRoot viewRoot = new UIViewRoot();
+        viewRoot.setViewId("/page.xhtml");
+        context.setViewRoot(viewRoot);
+
+        // the view source as the resource handler would find it
+        byte[] shared = DictionaryStateCompressor.buildDictionary(SerializationProviderFactory.createInstance(extContext));
+        extContext.getApplicationMap().put(DictionaryStateCompressor.class.getName(),
+                                           new DictionaryStateCompressor(shared, 0, 10,
+                                                                         viewId -> DictionaryStateCompressorTest.SOURCE));
+    }
+
+    private static Object[] structure() {
+        return new Object[] {
+              "javax.faces.component.html.HtmlForm", "form",
+              new Object[] { "javax.faces.component.html.HtmlInputText", "firstName" },
+              new Object[] { "javax.faces.component.html.HtmlInputText", "lastName" },
+              new Object[] { "javax.faces.component.html.HtmlCommandButton", "save" }
+        };
+    }
+
+    private static Map<String, Object[]> state() {
+        Map<String, Object[]> state = new HashMap<>();
+        state.put("form:firstName", new Object[] { "#{bean.firstName}", "Duke" });
+        state.put("form:lastName", new Object[] { "#{bean.lastName}", "Java" });
+        state.put("form:save", new Object[] { "#{bean.save}", null });
+        return state;
+    }
+
+}
@@ -0,0 +1,288 @@
+/*
+ * Copyright (c) 1997, 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.faces.renderkit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.el.ExpressionFactory;
+import javax.el.ValueExpression;
+import javax.faces.component.UIComponentBase;
+import javax.faces.component.UIOutput;
+import javax.faces.convert.DateTimeConverter;
+import javax.faces.view.Location;
+
+import org.junit.Test;
+
+import com.sun.el.ExpressionFactoryImpl;
+import com.sun.faces.facelets.el.TagValueExpression;
+import com.sun.faces.facelets.tag.TagAttributeImpl;
+import com.sun.faces.mock.MockExternalContext;
+import com.sun.faces.mock.MockFacesContext;
+import com.sun.faces.mock.MockHttpServletRequest;
+import com.sun.faces.mock.MockHttpServletResponse;
+import com.sun.faces.mock.MockServletContext;
+import com.sun.faces.spi.SerializationProvider;
+
+public class CompactSerializationProviderTest {
+
+    static boolean initialized;
+
+    static final class NotInitialized {
+        static {
+            initialized = true;
+        }
+    }
+
+    private final SerializationProvider provider = new CompactSerializationProvider();
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        HashMap<Object, Object> delta = new HashMap<>();
+        delta.put("value", "Hello \u00e9\u4e16");
+        delta.put("styleClass", "a");
+        delta.put(TimeUnit.SECONDS, Integer.valueOf(-42));
+        ArrayList<Object> list = new ArrayList<>();
+        list.add(Long.MAX_VALUE);
+        list.add(Long.MIN_VALUE);
+        list.add(Short.valueOf((short) -3));
+        list.add(Byte.valueOf((byte) 7));
+        list.add(Character.valueOf('x'));
+        list.add(Double.valueOf(1.5));
+        list.add(Float.valueOf(-2.5f));
+        list.add(Boolean.TRUE);
+        list.add(String.class);
+        list.add(new Date(1000L));
+        delta.put("list", list);
+
+        Object[] state = new Object[] { delta, null, new Serializable[] { "custom-key", "custom-key" } };
+        Object[] result = (Object[]) roundTrip(state, 1234L);
+
+        assertEquals(3, result.length);
+        assertEquals(delta, result[0]);
+        assertEquals(null, result[1]);
+        assertTrue(result[2] instanceof Serializable[]);
+        assertArrayEquals((Object[]) state[2], (Object[]) result[2]);
+        assertSame(TimeUnit.SECONDS, ((HashMap<?, ?>) result[0]).keySet().stream()
+              .filter(k -> k instanceof TimeUnit).findFirst().get());
+    }
+
+    @Test
+    public void testPrimitiveClasses() throws Exception {
+        // e.g. the parameter types of a MethodExpression
+        Class<?>[] types = new Class<?>[] { int.class, boolean.class, String.class, long[].class };
+        Object[] state = new Object[] { void.class, double.class, types };
+        Object[] result = (Object[]) roundTrip(state, 0L);
+
+        assertSame(void.class, result[0]);
+        assertSame(double.class, result[1]);
+        assertTrue(result[2] instanceof Class<?>[]);
+        assertArrayEquals(types, (Object[]) result[2]);
+    }
+
+    @Test
+    public void testComponentState() throws Exception {
+        MockFacesContext context = new MockFacesContext();
+        try {
+            UIOutput output = new UIOutput();
+            output.setId("out");
+            output.setValue("text");
+            output.getAttributes().put("styleClass", "a");
+            DateTimeConverter converter = new DateTimeConverter();
+            converter.setPattern("yyyy");
+            output.setConverter(converter);
+
+            // full state, with the converter saved by a StateHolderSaver
+            UIOutput restored = new UIOutput();
+            restored.restoreState(context, roundTrip(output.saveState(context), 0L));
+            assertEquals("out", restored.getId());
+            assertEquals("text", restored.getValue());
+            assertEquals("a", restored.getAttributes().get("styleClass"));
+            assertEquals("yyyy", ((DateTimeConverter) restored.getConverter()).getPattern());
+
+            // partial state, from the ComponentStateHelper delta
+            output.markInitialState();
+            output.setValue("changed");
+            output.getAttributes().put("styleClass", "b");
+            restored.markInitialState();
+            restored.restoreState(context, roundTrip(output.saveState(context), 0L));
+            assertEquals("changed", restored.getValue());
+            assertEquals("b", restored.getAttributes().get("styleClass"));
+
+            // a detached StateHolder
+            Object saved = UIComponentBase.saveAttachedState(context, converter);
+            Object attached = UIComponentBase.restoreAttachedState(context, roundTrip(saved, 0L));
+            assertEquals("yyyy", ((DateTimeConverter) attached).getPattern());
+        } finally {
+            context.release();
+        }
+    }
+
+    @Test
+    public void testSmallerThanJavaSerialization() throws Exception {
+        HashMap<Object, Object> delta = new HashMap<>();
+        for (int i = 0; i < 50; i++) {
+            delta.put("form:table:" + i + ":input", new Object[] { null, new Object[] { "value", i, "styleClass", "input" } });
+        }
+
+        ByteArrayOutputStream compact = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = provider.createObjectOutputStream(compact)) {
+            out.writeObject(delta);
+        }
+        ByteArrayOutputStream java = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(java)) {
+            out.writeObject(delta);
+        }
+        assertTrue(compact.size() < java.size());
+    }
+
+    @Test
+    public void testSmallerThanJavaSerializationWithBindings() throws Exception {
+        MockFacesContext context = new MockFacesContext(new MockExternalContext(new MockServletContext(),
+                                                                                new MockHttpServletRequest(null),
+                                                                                new MockHttpServletResponse()));
+        try {
+            ExpressionFactory factory = new ExpressionFactoryImpl();
+            HashMap<Object, Object> delta = new HashMap<>();
+            for (int i = 0; i < 50; i++) {
+                TagAttributeImpl attribute = new TagAttributeImpl(new Location("/page.xhtml", i, 5), "", "value",
+                                                                  "value", "#{bean.items[" + i + "].name}");
+                ValueExpression ve = factory.createValueExpression(context.getELContext(),
+                                                                   "#{bean.items[" + i + "].name}",
+                                                                   Object.class);
+                HashMap<Object, Object> bindings = new HashMap<>();
+                bindings.put("value", new TagValueExpression(attribute, ve));
+                delta.put("form:table:" + i + ":input", new Object[] { null, new Object[] { "bindings", bindings } });
+            }
+
+            ByteArrayOutputStream compact = new ByteArrayOutputStream();
+            try (ObjectOutputStream out = provider.createObjectOutputStream(compact)) {
+                out.writeObject(delta);
+            }
+            ByteArrayOutputStream java = new ByteArrayOutputStream();
+            try (ObjectOutputStream out = new ObjectOutputStream(java)) {
+                out.writeObject(delta);
+            }
+            assertTrue(compact.size() + " >= " + java.size(), compact.size() < java.size());
+
+            HashMap<?, ?> result = (HashMap<?, ?>) roundTrip(delta, 0L);
+            Object[] state = (Object[]) ((Object[]) result.get("form:table:7:input"))[1];
+            TagValueExpression restored = (TagValueExpression) ((HashMap<?, ?>) state[1]).get("value");
+            assertEquals("#{bean.items[7].name}", restored.getExpressionString());
+        } finally {
+            context.release();
+        }
+    }
+
+    @Test
+    public void testSerializedObjectsAcrossWrites() throws Exception {
+        Date shared = new Date(1000L);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = provider.createObjectOutputStream(baos)) {
+            out.writeObject(new Object[] { shared, shared });
+            out.writeObject(new Object[] { shared, new Date(2000L) });
+        }
+        try (ObjectInputStream in = provider.createObjectInputStream(new ByteArrayInputStream(baos.toByteArray()))) {
+            Object[] first = (Object[]) in.readObject();
+            Object[] second = (Object[]) in.readObject();
+            // identity is preserved within, but not across, top level objects
+            assertSame(first[0], first[1]);
+            assertNotSame(first[0], second[0]);
+            assertEquals(shared, second[0]);
+            assertEquals(new Date(2000L), second[1]);
+        }
+    }
+
+    @Test
+    public void testClassesAreNotInitialized() throws Exception {
+        // a class literal does not initialize the class either
+        Object[] result = (Object[]) roundTrip(new Object[] { NotInitialized.class }, 0L);
+        assertSame(NotInitialized.class, result[0]);
+        assertFalse(initialized);
+    }
+
+    @Test
+    public void testUntrustedLengths() throws Exception {
+        // a length far beyond the bytes that follow must not be allocated
+        for (int tag : new int[] { CompactStateFormat.OBJECT_ARRAY,
+                                   CompactStateFormat.HASH_MAP,
+                                   CompactStateFormat.ARRAY_LIST,
+                                   CompactStateFormat.STRING,
+                                   CompactStateFormat.SERIALIZED }) {
+            try {
+                read(tag, 0xFF, 0xFF, 0xFF, 0xFF, 0x07, CompactStateFormat.NULL);
+                fail("Expected EOFException for tag " + tag);
+            } catch (EOFException expected) {
+            }
+        }
+        // a length that decodes as a negative int
+        try {
+            read(CompactStateFormat.OBJECT_ARRAY, 0xFF, 0xFF, 0xFF, 0xFF, 0x0F);
+            fail("Expected StreamCorruptedException");
+        } catch (StreamCorruptedException expected) {
+        }
+        // string references outside of the table
+        try {
+            read(CompactStateFormat.STRING_REF, 3);
+            fail("Expected StreamCorruptedException");
+        } catch (StreamCorruptedException expected) {
+        }
+    }
+
+    private Object read(int... bytes) throws IOException, ClassNotFoundException {
+        byte[] stream = new byte[bytes.length + 2];
+        stream[0] = (byte) CompactStateFormat.MAGIC;
+        stream[1] = (byte) CompactStateFormat.VERSION;
+        for (int i = 0; i < bytes.length; i++) {
+            stream[i + 2] = (byte) bytes[i];
+        }
+        try (ObjectInputStream in = provider.createObjectInputStream(new ByteArrayInputStream(stream))) {
+            return in.readObject();
+        }
+    }
+
+    private Object roundTrip(Object state, long marker) throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = provider.createObjectOutputStream(baos)) {
+            out.writeLong(marker);
+            out.writeObject(state);
+        }
+        try (ObjectInputStream in = provider.createObjectInputStream(new ByteArrayInputStream(baos.toByteArray()))) {
+            assertEquals(marker, in.readLong());
+            return in.readObject();
+        }
+    }
+
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 1997, 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.faces.renderkit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.sun.faces.renderkit.ConcurrentViewStateStore.SessionViewStates;
+
+public class ConcurrentViewStateStoreTest {
+
+    @Test
+    public void testEvictsLeastRecentlyUsedLogicalView() {
+        SessionViewStates states = new SessionViewStates();
+        put(states, "l1", "a1", 0, 2, 2, 0);
+        put(states, "l2", "a1", 0, 2, 2, 0);
+
+        // touch l1 so that l2 becomes the eldest
+        assertNotNull(states.get("l1", "a1"));
+        put(states, "l3", "a1", 0, 2, 2, 0);
+
+        assertEquals(2, states.getNumberOfLogicalViews());
+        assertTrue(states.containsLogicalView("l1"));
+        assertFalse(states.containsLogicalView("l2"));
+        assertTrue(states.containsLogicalView("l3"));
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsedView() {
+        SessionViewStates states = new SessionViewStates();
+        put(states, "l1", "a1", 0, 15, 2, 0);
+        put(states, "l1", "a2", 0, 15, 2, 0);
+        put(states, "l1", "a3", 0, 15, 2, 0);
+
+        assertNull(states.get("l1", "a1"));
+        assertNotNull(states.get("l1", "a2"));
+        assertNotNull(states.get("l1", "a3"));
+    }
+
+    @Test
+    public void testEvictsByBytes() {
+        SessionViewStates states = new SessionViewStates();
+        put(states, "l1", "a1", 400, 15, 15, 1000);
+        put(states, "l2", "a1", 400, 15, 15, 1000);
+        assertEquals(800, states.getTotalBytes());
+
+        put(states, "l2", "a2", 400, 15, 15, 1000);
+        assertEquals(800, states.getTotalBytes());
+        assertNull(states.get("l1", "a1"));
+        assertNotNull(states.get("l2", "a1"));
+        assertNotNull(states.get("l2", "a2"));
+    }
+
+    @Test
+    public void testReplaceKeepsByteAccounting() {
+        SessionViewStates states = new SessionViewStates();
+        put(states, "l1", "a1", 400, 15, 15, 0);
+        put(states, "l1", "a1", 100, 15, 15, 0);
+        assertEquals(100, states.getTotalBytes());
+
+        // the view just written is never evicted, even if it exceeds the limit
+        put(states, "l1", "a1", 5000, 15, 15, 1000);
+        assertEquals(5000, states.getTotalBytes());
+        assertNotNull(states.get("l1", "a1"));
+    }
+
+    @Test
+    public void testOnlyTheViewWrittenIsKept() {
+        SessionViewStates states = new SessionViewStates();
+        put(states, "l1", "a1", 400, 15, 15, 1000);
+        put(states, "l2", "a2", 400, 15, 15, 1000);
+
+        // a1 of l1 is the eldest view, even though a1 is also written to l2
+        put(states, "l2", "a1", 400, 15, 15, 1000);
+        assertNull(states.get("l1", "a1"));
+        assertNotNull(states.get("l2", "a1"));
+        assertNotNull(states.get("l2", "a2"));
+    }
+
+    @Test
+    public void testMap() {
+        SessionViewStates states = new SessionViewStates();
+        put(states, "l1", "a1", 10, 15, 15, 0);
+        put(states, "l1", "a2", 10, 15, 15, 0);
+        put(states, "l2", "a1", 10, 15, 15, 0);
+
+        Map<String, Map<String, Object[]>> map = states;
+        assertEquals(2, map.size());
+        assertTrue(map.containsKey("l1"));
+        assertFalse(map.containsKey(null));
+        assertEquals(2, map.get("l1").size());
+        assertArrayEquals(states.get("l1", "a2"), map.get("l1").get("a2"));
+        assertNull(map.get("l3"));
+
+        map.remove("l1");
+        assertFalse(states.containsLogicalView("l1"));
+        assertEquals(10, states.getTotalBytes());
+    }
+
+    @Test
+    public void testConcurrentWrites() throws Exception {
+        final SessionViewStates states = new SessionViewStates();
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            final String logicalId = "l" + (i % 4);
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 1000; j++) {
+                        put(states, logicalId, getName() + j, 10, 3, 5, 0);
+                    }
+                }
+            };
+        }
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        assertTrue(states.getNumberOfLogicalViews() <= 3);
+        assertTrue(states.getTotalBytes() <= 3 * 5 * 10 + threads.length * 10);
+    }
+
+    private static void put(SessionViewStates states,
+                            String logicalId,
+                            String actualId,
+                            int bytes,
+                            int maxLogicalViews,
+                            int maxViews,
+                            long maxBytes) {
+        states.put(logicalId, actualId, "structure", new byte[bytes], bytes);
+        states.evict(logicalId, actualId, maxLogicalViews, maxViews, maxBytes);
+    }
+
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 1997, 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.faces.renderkit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Test;
+
+public class DictionaryStateCompressorTest {
+
+    static final byte[] SOURCE = ("<html xmlns:h=\"http://xmlns.jcp.org/jsf/html\">\n"
+                                  + "<!-- id=\"secret\" -->\n"
+                                  + "<h:form id=\"form\">\n"
+                                  + "  Your name: <h:inputText id=\"firstName\" value=\"#{bean.firstName}\"/>\n"
+                                  + "  <h:inputText id='lastName' value=\"#{bean.lastName}\" title=\"secret\"/>\n"
+                                  + "  <h:commandButton action=\"#{bean.save}\" id=\"save\" value=\"#{bean.firstName}\"/>\n"
+                                  + "</h:form>\n"
+                                  + "</html>").getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void testSharedDictionary() throws Exception {
+        DictionaryStateCompressor writer = new DictionaryStateCompressor(state(1), 0);
+        byte[] compressed = writer.compress(null, state(2), state(2).length);
+        assertTrue(compressed.length < gzip(state(2)).length);
+        assertTrue(writer.getCompressionRatio() > 1.0);
+        assertEquals(1, writer.getCompressionCount());
+
+        // e.g. another node of the cluster
+        DictionaryStateCompressor reader = new DictionaryStateCompressor(state(1), 0);
+        assertArrayEquals(state(2), read(reader.decompress(null, compressed, compressed.length)));
+    }
+
+    @Test
+    public void testBuiltInDictionary() throws Exception {
+        byte[] dictionary = DictionaryStateCompressor.buildDictionary(new CompactSerializationProvider());
+        assertArrayEquals(dictionary, DictionaryStateCompressor.buildDictionary(new CompactSerializationProvider()));
+    }
+
+    @Test
+    public void testUnknownDictionary() throws Exception {
+        DictionaryStateCompressor writer = new DictionaryStateCompressor(state(1), 0);
+        byte[] compressed = writer.compress(null, state(2), state(2).length);
+
+        DictionaryStateCompressor reader = new DictionaryStateCompressor(state(3), 0);
+        assertNull(reader.decompress(null, compressed, compressed.length));
+        assertEquals(1, reader.getUnknownDictionaryCount());
+    }
+
+    @Test
+    public void testMaxInflatedBytes() throws Exception {
+        DictionaryStateCompressor compressor = new DictionaryStateCompressor(state(1), 1000);
+        byte[] compressed = compressor.compress(null, new byte[1000], 1000);
+        assertEquals(1000, read(compressor.decompress(null, compressed, compressed.length)).length);
+
+        compressed = compressor.compress(null, new byte[1001], 1001);
+        try {
+            compressor.decompress(null, compressed, compressed.length);
+            fail();
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void testViewDictionary() throws Exception {
+        byte[] shared = DictionaryStateCompressor.buildDictionary(new CompactSerializationProvider());
+        DictionaryStateCompressor writer = new DictionaryStateCompressor(shared, 0, 10, viewId -> SOURCE);
+        byte[] state = viewState();
+        byte[] withShared = writer.compress(null, state, state.length);
+        byte[] withView = writer.compress("/page.xhtml", state, state.length);
+        assertTrue(withView.length < withShared.length);
+        assertEquals(0.5, writer.getHitRate(), 0.0);
+        assertEquals(1, writer.getDictionaryCount());
+
+        // e.g. another node of the cluster
+        DictionaryStateCompressor reader = new DictionaryStateCompressor(shared, 0, 10, viewId -> SOURCE);
+        assertArrayEquals(state, read(reader.decompress("/page.xhtml", withView, withView.length)));
+        assertArrayEquals(state, read(reader.decompress("/page.xhtml", withShared, withShared.length)));
+        assertNull(reader.decompress("/other.xhtml", withView, withView.length));
+        assertEquals(1, reader.getUnknownDictionaryCount());
+    }
+
+    @Test
+    public void testViewDictionaryIsStructural() throws Exception {
+        String dictionary = new String(DictionaryStateCompressor.buildViewDictionary(new byte[0], "/page.xhtml", SOURCE),
+                                       StandardCharsets.UTF_8);
+        assertEquals("/page.xhtml form firstName #{bean.firstName} lastName #{bean.lastName} "
+                     + "#{bean.save} save ", dictionary);
+        assertFalse(dictionary.contains("Your name"));
+        assertFalse(dictionary.contains("secret"));
+    }
+
+    @Test
+    public void testChangedView() throws Exception {
+        byte[] state = viewState();
+        DictionaryStateCompressor writer = new DictionaryStateCompressor(state(1), 0, 10, viewId -> SOURCE);
+        byte[] compressed = writer.compress("/page.xhtml", state, state.length);
+
+        // the digest tells the versions of the view apart
+        byte[] changed = "<h:form id=\"form\"/>".getBytes(StandardCharsets.UTF_8);
+        DictionaryStateCompressor reader = new DictionaryStateCompressor(state(1), 0, 10, viewId -> changed);
+        assertNull(reader.decompress("/page.xhtml", compressed, compressed.length));
+        assertEquals(1, reader.getUnknownDictionaryCount());
+    }
+
+    @Test
+    public void testRecompiledView() throws Exception {
+        byte[] state = viewState();
+        byte[][] source = { SOURCE };
+        DictionaryStateCompressor compressor = new DictionaryStateCompressor(state(1), 0, 10, viewId -> source[0]);
+        byte[] before = compressor.compress("/page.xhtml", state, state.length);
+
+        // the dictionary is kept until the Facelet of the view is compiled again
+        source[0] = "<h:form id=\"form\"/>".getBytes(StandardCharsets.UTF_8);
+        assertArrayEquals(state, read(compressor.decompress("/page.xhtml", before, before.length)));
+        compressor.dropViewDictionary("/page.xhtml");
+        assertEquals(0, compressor.getDictionaryCount());
+        assertNull(compressor.decompress("/page.xhtml", before, before.length));
+        assertEquals(1, compressor.getDictionaryCount());
+
+        byte[] after = compressor.compress("/page.xhtml", state, state.length);
+        assertArrayEquals(state, read(compressor.decompress("/page.xhtml", after, after.length)));
+    }
+
+    @Test
+    public void testMaxViews() throws Exception {
+        byte[] state = viewState();
+        DictionaryStateCompressor full = new DictionaryStateCompressor(state(1), 0, 0, viewId -> SOURCE);
+        byte[] compressed = full.compress("/page.xhtml", state, state.length);
+        assertEquals(0.0, full.getHitRate(), 0.0);
+        assertEquals(0, full.getDictionaryCount());
+
+        // state written with the dictionary of the view is still read
+        DictionaryStateCompressor writer = new DictionaryStateCompressor(state(1), 0, 10, viewId -> SOURCE);
+        compressed = writer.compress("/page.xhtml", state, state.length);
+        assertArrayEquals(state, read(full.decompress("/page.xhtml", compressed, compressed.length)));
+        assertEquals(0, full.getDictionaryCount());
+    }
+
+    @Test
+    public void testReadsGZIP() throws Exception {
+        byte[] gzip = gzip(state(1));
+        DictionaryStateCompressor compressor = new DictionaryStateCompressor(state(1), 0);
+        assertArrayEquals(state(1), read(compressor.decompress(null, gzip, gzip.length)));
+    }
+
+    /*
+     * Serializes the state h:inputText components of SOURCE would save.
+     */
+    static byte[] viewState() throws IOException {
+        HashMap<String, Object> state = new HashMap<>();
+        state.put("form:firstName", new Object[] { "#{bean.firstName}", "Duke" });
+        state.put("form:lastName", new Object[] { "#{bean.lastName}", "Java" });
+        state.put("form:save", new Object[] { "#{bean.save}", null });
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new CompactSerializationProvider().createObjectOutputStream(baos)) {
+            out.writeObject(state);
+        }
+        return baos.toByteArray();
+    }
+
+    private static byte[] state(int request) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            sb.append("form:table:").append(i).append(":input|javax.faces.component.UIInput|value=")
+                  .append(i * request).append('|');
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(baos)) {
+            out.write(bytes);
+        }
+        return baos.toByteArray();
+    }
+
+    private static byte[] read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[512];
+        for (int n; (n = in.read(buf)) != -1; ) {
+            out.write(buf, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 1997, 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.faces.renderkit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.sun.faces.renderkit.OffHeapViewStateStore.OffHeapState;
+import com.sun.faces.renderkit.OffHeapViewStateStore.Slabs;
+
+public class OffHeapViewStateStoreTest {
+
+    @Test
+    public void testStoreAndRead() throws Exception {
+        Slabs slabs = new Slabs(16384, 65536, null);
+        byte[] bytes = randomBytes(10000);
+        OffHeapState handle = slabs.store(bytes);
+
+        assertNotNull(handle);
+        assertEquals(3 * 4096, slabs.getUsedBytes());
+        assertArrayEquals(bytes, handle.getBytes());
+
+        byte[] empty = new byte[0];
+        assertArrayEquals(empty, slabs.store(empty).getBytes());
+    }
+
+    @Test
+    public void testMappedSlabs() throws Exception {
+        Slabs slabs = new Slabs(8192, 8192, Files.createTempDirectory("viewstate").toFile());
+        byte[] bytes = randomBytes(5000);
+        assertArrayEquals(bytes, slabs.store(bytes).getBytes());
+    }
+
+    @Test
+    public void testExhaustion() throws Exception {
+        Slabs slabs = new Slabs(8192, 8192, null);
+        OffHeapState first = slabs.store(randomBytes(5000));
+        assertNotNull(first);
+
+        // no room left, the caller keeps the state on the heap
+        assertNull(slabs.store(randomBytes(5000)));
+        assertEquals(2 * 4096, slabs.getUsedBytes());
+
+        // no slab at all
+        assertNull(new Slabs(8192, 0, null).store(randomBytes(1)));
+    }
+
+    @Test
+    public void testRelease() throws Exception {
+        Slabs slabs = new Slabs(8192, 8192, null);
+        OffHeapState handle = slabs.store(randomBytes(5000));
+        assertNotNull(handle);
+        handle = null;
+
+        long timeout = System.currentTimeMillis() + 30000;
+        while (slabs.getUsedBytes() != 0 && System.currentTimeMillis() < timeout) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertEquals(0, slabs.getUsedBytes());
+
+        byte[] bytes = randomBytes(8192);
+        assertArrayEquals(bytes, slabs.store(bytes).getBytes());
+    }
+
+    @Test
+    public void testSerializedAsBytes() throws Exception {
+        Slabs slabs = new Slabs(8192, 8192, null);
+        byte[] bytes = randomBytes(100);
+        OffHeapState handle = slabs.store(bytes);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(out)) {
+            oos.writeObject(handle);
+        }
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            assertArrayEquals(bytes, (byte[]) ois.readObject());
+        }
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+
+}
@@ -17,13 +17,27 @@
 package com.sun.faces.renderkit.html_basic;
 
 import java.io.StringWriter;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import javax.faces.component.UIComponent;
 import javax.faces.component.UIViewRoot;
 import javax.faces.component.html.HtmlHead;
 import javax.faces.context.FacesContext;
 import javax.faces.context.ResponseWriter;
+import static com.sun.faces.renderkit.html_basic.TestResourceHandler.component;
 import static junit.framework.Assert.assertTrue;
 import static org.easymock.EasyMock.expect;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import com.sun.faces.application.resource.CombinedResource;
+import com.sun.faces.mock.MockApplication;
+import com.sun.faces.mock.MockExternalContext;
+import com.sun.faces.mock.MockFacesContext;
+import com.sun.faces.mock.MockHttpServletRequest;
+import com.sun.faces.mock.MockHttpServletResponse;
+import com.sun.faces.mock.MockServletContext;
 import org.junit.Test;
 import org.powermock.api.easymock.PowerMock;
 
@@ -98,4 +112,159 @@ public class HeadRendererTest {
         String html = writer.toString();
         assertTrue(html.contains("</head>"));
     }
+
+    /**
+     * Test that a run has at most as many components as a combined resource
+     * may have parts.
+     */
+    @Test
+    public void testRunsAreSplitAtMaxParts() {
+        MockFacesContext facesContext = createFacesContext();
+        try {
+            List<UIComponent> components = new ArrayList<>();
+            for (int i = 0; i < CombinedResource.MAX_PARTS + 1; i++) {
+                components.add(component("js/part" + i + ".js", "lib"));
+            }
+            List<HeadRenderer.Run> runs = HeadRenderer.getRuns(facesContext, components);
+            assertEquals(2, runs.size());
+            assertEquals(CombinedResource.MAX_PARTS, runs.get(0).components.size());
+            assertEquals(1, runs.get(1).components.size());
+            assertEquals(runs.get(0).key, runs.get(1).key);
+        } finally {
+            facesContext.release();
+        }
+    }
+
+    /**
+     * Test that the runs are computed once per request, unless the head
+     * resources change.
+     */
+    @Test
+    public void testRunsAreComputedOncePerRequest() {
+        MockFacesContext facesContext = createFacesContext();
+        try {
+            TestResourceHandler resourceHandler =
+                  (TestResourceHandler) facesContext.getApplication().getResourceHandler();
+            List<UIComponent> components = new ArrayList<>();
+            components.add(component("a.js", "lib"));
+            components.add(component("b.js", "lib"));
+
+            List<HeadRenderer.Run> runs = HeadRenderer.getRuns(facesContext, components);
+            assertEquals(2, resourceHandler.created);
+            assertSame(runs, HeadRenderer.getRuns(facesContext, new ArrayList<>(components)));
+            assertEquals(2, resourceHandler.created);
+
+            components.add(component("c.js", "lib"));
+            List<HeadRenderer.Run> changed = HeadRenderer.getRuns(facesContext, components);
+            assertEquals(1, changed.size());
+            assertEquals(3, changed.get(0).components.size());
+            assertEquals(5, resourceHandler.created);
+        } finally {
+            facesContext.release();
+        }
+    }
+
+    /**
+     * Test that runs are split where the renderer type or the media changes.
+     */
+    @Test
+    public void testRunsAreGroupedByTypeAndMedia() {
+        MockFacesContext facesContext = createFacesContext();
+        try {
+            List<UIComponent> components = new ArrayList<>();
+            components.add(component("a.js", "lib"));
+            components.add(component("b.js", "lib"));
+            components.add(component("a.css", "lib"));
+            components.add(component("b.css", "lib"));
+            UIComponent print = component("print.css", "lib");
+            print.getAttributes().put("media", "print");
+            components.add(print);
+            components.add(component("c.js", null));
+
+            List<HeadRenderer.Run> runs = HeadRenderer.getRuns(facesContext, components);
+            assertEquals(4, runs.size());
+            assertEquals(components.subList(0, 2), runs.get(0).components);
+            assertEquals(components.subList(2, 4), runs.get(1).components);
+            assertEquals(components.subList(4, 5), runs.get(2).components);
+            assertEquals(components.subList(5, 6), runs.get(3).components);
+            assertEquals(2, runs.get(0).resources.size());
+            assertEquals("javax.faces.resource.Stylesheet print", runs.get(2).key);
+        } finally {
+            facesContext.release();
+        }
+    }
+
+    /**
+     * Test that a component whose resource cannot be combined is a run of
+     * its own, without a key, and keeps its place.
+     */
+    @Test
+    public void testComponentsThatCannotBeCombined() {
+        MockFacesContext facesContext = createFacesContext();
+        try {
+            UIComponent notRendered = component("b.js", "lib");
+            notRendered.setRendered(false);
+            UIComponent withBody = component("c.js", "lib");
+            withBody.getChildren().add(new HtmlHead());
+            UIComponent withQuery = component("d.js?v=1", "lib");
+            List<UIComponent> components = new ArrayList<>();
+            components.add(component("a.js", "lib"));
+            components.add(notRendered);
+            components.add(withBody);
+            components.add(withQuery);
+            components.add(component("e.js", "lib"));
+            components.add(component("f.js", "lib"));
+
+            List<HeadRenderer.Run> runs = HeadRenderer.getRuns(facesContext, components);
+            assertEquals(5, runs.size());
+            for (int i = 1; i < 4; i++) {
+                assertEquals(null, runs.get(i).key);
+                assertEquals(Collections.singletonList(components.get(i)), runs.get(i).components);
+                assertTrue(runs.get(i).resources.isEmpty());
+            }
+            assertEquals(components.subList(0, 1), runs.get(0).components);
+            assertEquals(components.subList(4, 6), runs.get(4).components);
+        } finally {
+            facesContext.release();
+        }
+    }
+
+    /**
+     * Test that the distinct parts of a run leave out the resources already
+     * rendered and those referenced twice.
+     */
+    @Test
+    public void testDistinctParts() {
+        MockFacesContext facesContext = createFacesContext();
+        try {
+            List<UIComponent> components = new ArrayList<>();
+            components.add(component("a.js", "lib"));
+            components.add(component("b.js", "lib"));
+            components.add(component("a.js", "lib"));
+            components.add(component("c.js", "lib"));
+            facesContext.getApplication().getResourceHandler().markResourceRendered(facesContext, "b.js", "lib");
+
+            List<HeadRenderer.Run> runs = HeadRenderer.getRuns(facesContext, components);
+            assertEquals(1, runs.size());
+            HeadRenderer.Run parts = runs.get(0).getDistinctParts(facesContext);
+            assertEquals(runs.get(0).key, parts.key);
+            assertEquals(2, parts.components.size());
+            assertSame(components.get(0), parts.components.get(0));
+            assertSame(components.get(3), parts.components.get(1));
+            assertEquals("a.js", parts.resources.get(0).getResourceName());
+            assertEquals("c.js", parts.resources.get(1).getResourceName());
+        } finally {
+            facesContext.release();
+        }
+    }
+
+    static MockFacesContext createFacesContext() {
+        MockFacesContext facesContext = new MockFacesContext(new MockExternalContext(new MockServletContext(),
+                                                                                     new MockHttpServletRequest(null),
+                                                                                     new MockHttpServletResponse()));
+        MockApplication application = new MockApplication();
+        application.setResourceHandler(new TestResourceHandler());
+        facesContext.setApplication(application);
+        return facesContext;
+    }
 }
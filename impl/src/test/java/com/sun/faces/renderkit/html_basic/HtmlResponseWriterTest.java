@@ -141,4 +141,45 @@ public class HtmlResponseWriterTest {
         responseWriter.flush();
         assertEquals(expected, stringWriter.toString());
     }
+
+    /**
+     * Test writePreEncoded method.
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testWritePreEncoded() throws Exception {
+
+        Method method = FacesContext.class.getDeclaredMethod("setCurrentInstance", FacesContext.class);
+        method.setAccessible(true);
+        method.invoke(null, new Object[] { null });
+
+        StringWriter stringWriter = new StringWriter();
+        HtmlResponseWriter responseWriter = new HtmlResponseWriter(stringWriter, "text/html", "UTF-8");
+        StringWriter encoded = new StringWriter();
+        HtmlResponseWriter encoder = (HtmlResponseWriter) responseWriter.cloneWithWriter(encoded);
+        assertEquals(responseWriter.getEncodingKey(), encoder.getEncodingKey());
+        encoder.startElement("p", null);
+        encoder.writeAttribute("class", "a&b", null);
+        encoder.writeText("x < y", null);
+        encoder.endElement("p");
+        encoder.flush();
+
+        responseWriter.startElement("div", null);
+        assertTrue(responseWriter.writePreEncoded(encoded.toString().toCharArray()));
+        responseWriter.endElement("div");
+        responseWriter.flush();
+        assertEquals("<div><p class=\"a&amp;b\">x &lt; y</p></div>", stringWriter.toString());
+
+        stringWriter = new StringWriter();
+        responseWriter = new HtmlResponseWriter(stringWriter, "text/html", "UTF-8");
+        responseWriter.startElement("script", null);
+        assertFalse(responseWriter.canWritePreEncoded());
+        assertFalse(responseWriter.writePreEncoded("<p></p>".toCharArray()));
+        responseWriter.endElement("script");
+        responseWriter.flush();
+        assertFalse(stringWriter.toString().contains("<p>"));
+
+        assertFalse(responseWriter.getEncodingKey().equals(
+                new HtmlResponseWriter(new StringWriter(), "text/html", "ISO-8859-1").getEncodingKey()));
+    }
 }
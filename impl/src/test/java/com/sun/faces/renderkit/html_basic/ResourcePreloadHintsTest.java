@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 1997, 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.faces.renderkit.html_basic;
+
+import static com.sun.faces.renderkit.html_basic.TestResourceHandler.component;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.faces.component.UIComponent;
+import javax.faces.component.UIOutput;
+import javax.faces.component.UIViewRoot;
+import javax.faces.context.FacesContext;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.sun.faces.mock.MockApplication;
+import com.sun.faces.mock.MockExternalContext;
+import com.sun.faces.mock.MockFacesContext;
+import com.sun.faces.mock.MockHttpServletRequest;
+import com.sun.faces.mock.MockHttpServletResponse;
+import com.sun.faces.mock.MockServletContext;
+import com.sun.faces.util.RequestStateManager;
+
+public class ResourcePreloadHintsTest {
+
+    private MockFacesContext context;
+    private TestExternalContext extContext;
+    private TestViewRoot viewRoot;
+
+    @After
+    public void tearDown() {
+        if (context != null) {
+            context.release();
+        }
+    }
+
+    @Test
+    public void testDisabledByDefault() {
+        setUp(null, false, new MockHttpServletResponse());
+        viewRoot.head.add(component("a.js", "lib"));
+
+        ResourcePreloadHints.send(context, viewRoot);
+        assertNull(extContext.headers.get("Link"));
+    }
+
+    @Test
+    public void testLinkHeader() {
+        setUp("link", false, new MockHttpServletResponse());
+        viewRoot.head.add(component("a.js", "lib"));
+        viewRoot.head.add(component("b.js", "lib"));
+        viewRoot.head.add(component("site.css", "lib"));
+        viewRoot.body.add(component("c.js", "lib"));
+
+        ResourcePreloadHints.send(context, viewRoot);
+        assertEquals("</javax.faces.resource/a.js?ln=lib>; rel=preload; as=script, "
+                     + "</javax.faces.resource/b.js?ln=lib>; rel=preload; as=script, "
+                     + "</javax.faces.resource/site.css?ln=lib>; rel=preload; as=style, "
+                     + "</javax.faces.resource/c.js?ln=lib>; rel=preload; as=script",
+                     extContext.headers.get("Link"));
+    }
+
+    @Test
+    public void testLinkHeaderWithCombinedResources() {
+        setUp("link", true, new MockHttpServletResponse());
+        viewRoot.head.add(component("a.js", "lib"));
+        viewRoot.head.add(component("b.js", "lib"));
+        viewRoot.head.add(component("site.css", "lib"));
+        viewRoot.body.add(component("c.js", "lib"));
+
+        ResourcePreloadHints.send(context, viewRoot);
+        String[] links = extContext.headers.get("Link").split(", ");
+        assertEquals(3, links.length);
+        // the two scripts are announced as the one resource that combines them
+        assertTrue(links[0], links[0].startsWith("</ctx/faces/javax.faces.resource/"));
+        assertTrue(links[0], links[0].endsWith(".js?ln=javax.faces.combined&parts=lib%3Aa.js%2Clib%3Ab.js>; rel=preload; as=script"));
+        assertEquals("</javax.faces.resource/site.css?ln=lib>; rel=preload; as=style", links[1]);
+        assertEquals("</javax.faces.resource/c.js?ln=lib>; rel=preload; as=script", links[2]);
+    }
+
+    @Test
+    public void testComponentsWithoutHint() {
+        setUp("link", false, new MockHttpServletResponse());
+        UIComponent notRendered = component("a.js", "lib");
+        notRendered.setRendered(false);
+        viewRoot.head.add(notRendered);
+        UIComponent withBody = component("b.js", null);
+        withBody.getChildren().add(new UIOutput());
+        viewRoot.head.add(withBody);
+        UIOutput other = new UIOutput();
+        other.getAttributes().put("name", "c.js");
+        viewRoot.head.add(other);
+        viewRoot.head.add(component("d.js", "lib"));
+
+        ResourcePreloadHints.send(context, viewRoot);
+        assertEquals("</javax.faces.resource/d.js?ln=lib>; rel=preload; as=script",
+                     extContext.headers.get("Link"));
+    }
+
+    @Test
+    public void testCommittedResponse() {
+        EarlyHintsResponse response = new EarlyHintsResponse();
+        setUp("earlyHints", false, response);
+        viewRoot.head.add(component("a.js", "lib"));
+        extContext.committed = true;
+
+        ResourcePreloadHints.send(context, viewRoot);
+        assertTrue(extContext.headers.isEmpty());
+        assertEquals(0, response.sent);
+    }
+
+    @Test
+    public void testEarlyHints() {
+        EarlyHintsResponse response = new EarlyHintsResponse();
+        setUp("earlyHints", false, new HttpServletResponseWrapper(response));
+        viewRoot.head.add(component("a.js", "lib"));
+
+        ResourcePreloadHints.send(context, viewRoot);
+        assertEquals("</javax.faces.resource/a.js?ln=lib>; rel=preload; as=script",
+                     extContext.headers.get("Link"));
+        assertEquals(1, response.sent);
+    }
+
+    @Test
+    public void testEarlyHintsNotSupported() {
+        setUp("earlyHints", false, new MockHttpServletResponse());
+        viewRoot.head.add(component("a.js", "lib"));
+
+        // only the Link header is sent
+        ResourcePreloadHints.send(context, viewRoot);
+        assertEquals("</javax.faces.resource/a.js?ln=lib>; rel=preload; as=script",
+                     extContext.headers.get("Link"));
+    }
+
+    // ---------------------------------------------------------- Private Methods
+
+    private void setUp(String mode, boolean combine, Object response) {
+        MockServletContext servletContext = new MockServletContext();
+        if (mode != null) {
+            servletContext.addInitParameter("com.sun.faces.resourcePreloadHints", mode);
+        }
+        servletContext.addInitParameter("com.sun.faces.combineResources", Boolean.toString(combine));
+        extContext = new TestExternalContext(servletContext, response);
+        context = new MockFacesContext(extContext);
+        MockApplication application = new MockApplication();
+        application.setResourceHandler(new TestResourceHandler());
+        context.setApplication(application);
+        RequestStateManager.set(context, RequestStateManager.INVOCATION_PATH, "/faces");
+        viewRoot = new TestViewRoot();
+        viewRoot.setViewId("/page.xhtml");
+        context.setViewRoot(viewRoot);
+    }
+
+    // ----------------------------------------------------------- Inner Classes
+
+    public static class EarlyHintsResponse extends MockHttpServletResponse {
+
+        int sent;
+
+        public void sendEarlyHints() {
+            sent++;
+        }
+
+    }
+
+    private static final class TestViewRoot extends UIViewRoot {
+
+        final List<UIComponent> head = new ArrayList<>();
+        final List<UIComponent> body = new ArrayList<>();
+
+        @Override
+        public List<UIComponent> getComponentResources(FacesContext context, String target) {
+            return "head".equals(target) ? head : body;
+        }
+
+    }
+
+    private static final class TestExternalContext extends MockExternalContext {
+
+        private final Object response;
+        final Map<String, String> headers = new HashMap<>();
+        boolean committed;
+
+        TestExternalContext(MockServletContext servletContext, Object response) {
+            super(servletContext, new MockHttpServletRequest(null), new MockHttpServletResponse());
+            this.response = response;
+        }
+
+        @Override
+        public Object getResponse() {
+            return response;
+        }
+
+        @Override
+        public boolean isResponseCommitted() {
+            return committed;
+        }
+
+        @Override
+        public void addResponseHeader(String name, String value) {
+            headers.merge(name, value, (a, b) -> a + ", " + b);
+        }
+
+        @Override
+        public String encodeResourceURL(String url) {
+            return url;
+        }
+
+        @Override
+        public String getRequestContextPath() {
+            return "/ctx";
+        }
+
+    }
+
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 1997, 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.faces.renderkit.html_basic;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+
+import javax.faces.application.Resource;
+import javax.faces.component.UIComponent;
+import javax.faces.component.UIOutput;
+import javax.faces.context.FacesContext;
+
+import com.sun.faces.mock.MockResourceHandler;
+
+/**
+ * A resource handler that creates every script and stylesheet asked for,
+ * counting how many it created, and whose content is the resource name.
+ */
+public class TestResourceHandler extends MockResourceHandler {
+
+    int created;
+
+    @Override
+    public Resource createResource(String resourceName, String libraryName) {
+        String rendererType = getRendererTypeForResourceName(resourceName);
+        if (rendererType == null) {
+            return null;
+        }
+        created++;
+        return new TestResource(resourceName,
+                                libraryName,
+                                rendererType.endsWith("Script") ? "text/javascript" : "text/css");
+    }
+
+    /**
+     * @param name the resource name
+     * @param library the library name, or <code>null</code>
+     * @return a component referencing the resource, as
+     *  <code>h:outputScript</code> or <code>h:outputStylesheet</code> would
+     */
+    static UIComponent component(String name, String library) {
+        UIOutput component = new UIOutput();
+        component.setRendererType(name.endsWith(".js") ? "javax.faces.resource.Script" : "javax.faces.resource.Stylesheet");
+        component.getAttributes().put("name", name);
+        if (library != null) {
+            component.getAttributes().put("library", library);
+        }
+        return component;
+    }
+
+    private static final class TestResource extends Resource {
+
+        TestResource(String resourceName, String libraryName, String contentType) {
+            setResourceName(resourceName);
+            setLibraryName(libraryName);
+            setContentType(contentType);
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return new ByteArrayInputStream(getResourceName().getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public Map<String, String> getResponseHeaders() {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public String getRequestPath() {
+            return "/javax.faces.resource/" + getResourceName()
+                   + ((getLibraryName() != null) ? "?ln=" + getLibraryName() : "");
+        }
+
+        @Override
+        public URL getURL() {
+            return null;
+        }
+
+        @Override
+        public boolean userAgentNeedsUpdate(FacesContext context) {
+            return true;
+        }
+
+    }
+
+}
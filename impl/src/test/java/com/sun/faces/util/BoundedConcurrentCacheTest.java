@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 1997, 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.faces.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class BoundedConcurrentCacheTest {
+
+    @Test
+    public void testSingleFlight() throws Exception {
+        AtomicInteger created = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        BoundedConcurrentCache<String, String> cache = new BoundedConcurrentCache<>(key -> {
+            created.incrementAndGet();
+            release.await();
+            return key;
+        }, (key, value) -> false, String::length, 0, 0);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(executor.submit(() -> cache.get("a")));
+            }
+            Thread.sleep(100);
+            release.countDown();
+            for (Future<String> result : results) {
+                assertEquals("a", result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(1, created.get());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(3, cache.getHitCount());
+    }
+
+    @Test
+    public void testMaxEntries() throws Exception {
+        BoundedConcurrentCache<String, String> cache = newCache(10, 0);
+        for (int i = 0; i < 10; i++) {
+            cache.get("k" + i);
+        }
+        cache.get("k0");
+        cache.get("k10");
+
+        // Evicted down to 9, least recently used first
+        assertEquals(9, cache.size());
+        assertEquals(2, cache.getEvictionCount());
+        assertTrue(cache.containsKey("k0"));
+        assertFalse(cache.containsKey("k1"));
+        assertFalse(cache.containsKey("k2"));
+        assertTrue(cache.containsKey("k10"));
+    }
+
+    @Test
+    public void testMaxWeight() throws Exception {
+        BoundedConcurrentCache<String, String> cache = newCache(0, 20);
+        cache.get("aaaaa");
+        cache.get("bbbbb");
+        cache.get("ccccc");
+        assertEquals(15, cache.getWeight());
+        cache.get("dddddddddd");
+
+        // Evicted down to a weight of 18
+        assertEquals(15, cache.getWeight());
+        assertFalse(cache.containsKey("aaaaa"));
+        assertFalse(cache.containsKey("bbbbb"));
+        assertTrue(cache.containsKey("ccccc"));
+        assertTrue(cache.containsKey("dddddddddd"));
+    }
+
+    @Test
+    public void testExpiry() throws Exception {
+        AtomicInteger created = new AtomicInteger();
+        BoundedConcurrentCache<String, String> cache = new BoundedConcurrentCache<>(key -> {
+            created.incrementAndGet();
+            return key;
+        }, (key, value) -> true, String::length, 0, 0);
+        cache.get("a");
+        cache.get("a");
+        assertEquals(2, created.get());
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getWeight());
+    }
+
+    private static BoundedConcurrentCache<String, String> newCache(int maxEntries, long maxWeight) {
+        return new BoundedConcurrentCache<>(key -> key, (key, value) -> false, String::length, maxEntries, maxWeight);
+    }
+
+}
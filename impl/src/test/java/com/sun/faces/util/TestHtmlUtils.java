@@ -132,6 +132,35 @@ public class TestHtmlUtils extends TestCase {
         }
     }
 
+    public void testEscaping() throws IOException {
+        assertEquals("a &lt;b&gt; &amp; \"c\"", text("a <b> & \"c\"", false, false));
+        assertEquals("a &lt;b&gt; &amp; &quot;c&quot; &{x}", attribute("a <b> & \"c\" &{x}", true));
+        assertEquals("&eacute;&#256;&euro;", text("\u00e9\u0100\u20ac", true, true));
+        assertEquals("\u00e9\u0100\u20ac", text("\u00e9\u0100\u20ac", false, false));
+        assertEquals("", attribute("javascript:alert(1)", false));
+        assertEquals("javascript:alert(1)", attribute("javascript:alert(1)", true));
+
+        // runs larger than the buffer
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            sb.append("plain text ");
+        }
+        String plain = sb.toString();
+        assertEquals(plain + "&lt;" + plain, text(plain + "<" + plain, false, false));
+    }
+
+    private static String text(String value, boolean escapeUnicode, boolean escapeIsocode) throws IOException {
+        StringWriter writer = new StringWriter();
+        HtmlUtils.writeText(writer, escapeUnicode, escapeIsocode, new char[64], value, new char[16]);
+        return writer.toString();
+    }
+
+    private static String attribute(String value, boolean scriptInAttributeValueEnabled) throws IOException {
+        StringWriter writer = new StringWriter();
+        HtmlUtils.writeAttribute(writer, false, false, new char[64], value, new char[16], scriptInAttributeValueEnabled);
+        return writer.toString();
+    }
+
     private void testURLEncoding(String urlToEncode, String expectedHTML, String expectedXML)
             throws IOException {
         char[] textBuffer = new char[1024];